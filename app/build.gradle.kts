@@ -33,6 +33,9 @@ android {
 }
 
 dependencies {
+    // ✅ Platform-independent protocol, session and haptic logic
+    implementation(project(":core"))
+
     // ✅ AndroidX Core & Material Components
     implementation(libs.appcompat)
     implementation(libs.material)
@@ -0,0 +1,22 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.os.SystemClock;
+
+import com.example.smartwatchhapticsystem.core.Clock;
+
+/**
+ * {@link Clock} whose elapsed realtime is {@link SystemClock#elapsedRealtimeNanos()},
+ * the time base of sensor event timestamps.
+ */
+public final class AndroidClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+}
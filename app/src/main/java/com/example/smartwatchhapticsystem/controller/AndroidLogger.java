@@ -0,0 +1,35 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.util.Log;
+
+import com.example.smartwatchhapticsystem.core.Logger;
+
+/**
+ * {@link Logger} backed by android.util.Log (Logcat).
+ */
+public final class AndroidLogger implements Logger {
+
+    @Override
+    public void d(String tag, String message) {
+        Log.d(tag, message);
+    }
+
+    @Override
+    public void w(String tag, String message) {
+        Log.w(tag, message);
+    }
+
+    @Override
+    public void e(String tag, String message, Throwable error) {
+        if (error != null) {
+            Log.e(tag, message, error);
+        } else {
+            Log.e(tag, message);
+        }
+    }
+
+    @Override
+    public boolean isDebugEnabled(String tag) {
+        return Log.isLoggable(tag, Log.DEBUG);
+    }
+}
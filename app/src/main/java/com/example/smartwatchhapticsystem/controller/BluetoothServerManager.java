@@ -1,12 +1,12 @@
 package com.example.smartwatchhapticsystem.controller;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
 
-import android.bluetooth.BluetoothServerSocket;
-import android.bluetooth.BluetoothSocket;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
@@ -14,34 +14,138 @@ import android.os.Looper;
 import android.util.Log;
 import android.os.Process;
 import androidx.core.content.ContextCompat;
+
+import com.example.smartwatchhapticsystem.core.AzimuthModeHandler;
+import com.example.smartwatchhapticsystem.core.ByteTransport;
+import com.example.smartwatchhapticsystem.core.ClientSession;
+import com.example.smartwatchhapticsystem.core.CommandParser;
+import com.example.smartwatchhapticsystem.core.HapticFeedback;
+import com.example.smartwatchhapticsystem.core.HeartRateModeHandler;
+import com.example.smartwatchhapticsystem.core.MonitoringModeHandler;
+import com.example.smartwatchhapticsystem.core.MonitoringModeRegistry;
+import com.example.smartwatchhapticsystem.core.ReconnectBackoff;
+import com.example.smartwatchhapticsystem.core.ServerTransport;
+import com.example.smartwatchhapticsystem.core.SessionRecorder;
+import com.example.smartwatchhapticsystem.core.TraceBuffer;
+import com.example.smartwatchhapticsystem.core.WakeLeases;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BluetoothServerManager {
     private static final String TAG = "BluetoothServerManager";
     private static final String SERVICE_NAME = "SmartwatchHapticService";
-    private String monitoringType = "";
     private static final UUID APP_UUID = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb"); // SPP UUID
-    private String androidId = "UnknownAndroid";
-    private String userId = "UnknownUser";
-    private String watchId = "UnknownWatchID";
+
+    // Clients served at the same time (e.g. a phone and a logging station); more are refused
+    public static final int MAX_CLIENTS = 4;
+
+    // How long the negotiated state of a disconnected phone is kept for its reconnection
+    public static final long RESUME_WINDOW_MILLIS = 5 * 60_000;
 
     private final Context context;
     private final FeedBackController feedbackController;
-    private BluetoothServerSocket serverSocket;
-    private boolean isRunning = false;
+    private final AndroidLogger logger = new AndroidLogger();
+    private final MonitoringModeRegistry modeRegistry = new MonitoringModeRegistry();
+    private final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger clientThreadCount = new AtomicInteger();
+    private final ThreadPoolExecutor clientExecutor = new ThreadPoolExecutor(
+            MAX_CLIENTS, MAX_CLIENTS, 30, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "BluetoothClient-" + clientThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Negotiated state of recently disconnected phones, by device address (names can be shared)
+    private final Map<String, ClientSession.ResumeState> resumeStates = new ConcurrentHashMap<>();
+    private volatile ServerTransport serverTransport;
+
+    // Listener supervision: rebuilt with backoff after failures, woken by Bluetooth state changes
+    private final Object supervisorLock = new Object();
+    private final ReconnectBackoff backoff = new ReconnectBackoff();
+    private volatile boolean supervising = false;
+    private volatile boolean stopped = false;
+    private boolean adapterStateChanged = false;
+    private long outageStartedNanos = 0; // Listener lost and no client accepted since (0 = none)
+    private final BroadcastReceiver adapterStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onAdapterStateChanged(intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR));
+        }
+    };
+    private volatile SessionRecorder recorder;
+    private volatile boolean isRunning = false;
 
     public BluetoothServerManager(Context context, FeedBackController feedbackController) {
         this.context = context;
         this.feedbackController = feedbackController;
+
+        // Built-in monitoring types; Moon azimuth reuses the sun azimuth pattern
+        HapticFeedback hapticFeedback = feedbackController.getHapticFeedback();
+        modeRegistry.register(new HeartRateModeHandler(hapticFeedback));
+        modeRegistry.register(new AzimuthModeHandler(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth", hapticFeedback));
+        modeRegistry.register(new AzimuthModeHandler(CommandParser.MODE_MOON_AZIMUTH, "MoonAzimuth", hapticFeedback));
+
+        // Idle client threads time out, so no thread is kept while nobody is connected
+        clientExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
-     * Starts a classic Bluetooth SPP (Serial Port Profile) server socket on the current thread.
-     * Waits for incoming Bluetooth connections to receive vibration commands.
-     * Ensures proper permission and adapter checks, and runs as a blocking loop until stopped.
+     * Monitoring types understood by this server; register a {@link MonitoringModeHandler}
+     * here to add one.
+     */
+    public MonitoringModeRegistry getModeRegistry() {
+        return modeRegistry;
+    }
+
+    /**
+     * Records the frames and writes of every client connecting from now on into a bounded,
+     * rotating log in {@code directory} ({@link SessionRecorder#DEFAULT_FILE_COUNT} files of
+     * {@link SessionRecorder#DEFAULT_FILE_SIZE} bytes), for offline replay with SessionReplayer.
+     */
+    public void startRecording(File directory) {
+        if (recorder != null) {
+            return;
+        }
+        try {
+            recorder = new SessionRecorder(directory, "session",
+                    SessionRecorder.DEFAULT_FILE_SIZE, SessionRecorder.DEFAULT_FILE_COUNT);
+            Log.d(TAG, "⏺️ Recording sessions to " + directory);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to start session recording", e);
+        }
+    }
+
+    /**
+     * Stops recording and flushes the log; sessions still connected are no longer recorded.
+     */
+    public void stopRecording() {
+        SessionRecorder current = recorder;
+        if (current != null) {
+            recorder = null;
+            current.close();
+            Log.d(TAG, "⏹️ Session recording stopped: " + current.getRecordsWritten() + " records, "
+                    + current.getRecordsDropped() + " dropped");
+        }
+    }
+
+    /**
+     * Runs the classic Bluetooth SPP (Serial Port Profile) server on the current thread until
+     * {@link #stopServer()}: a supervisor loop that (re)creates the RFCOMM listener and serves
+     * clients on it.
+     *
+     * When Bluetooth is off or the permission is missing, it waits for the adapter to turn on;
+     * when the listener cannot be created or fails (radio hiccup), it is rebuilt after a jittered
+     * exponential backoff. Connected clients are not affected by a listener rebuild, and a phone
+     * that reconnects resumes its previous monitoring session.
      */
     public void startServerOnCurrentThread() {
         // Step 1: Set the thread priority to foreground (just below main UI thread)
@@ -55,253 +159,286 @@ public class BluetoothServerManager {
             return; // Abort if the device has no Bluetooth hardware
         }
 
-        // Step 3: Make sure Bluetooth is turned on
-        if (!adapter.isEnabled()) {
-            Log.w(TAG, "⚠️ Bluetooth is OFF. Cannot start server.");
-            return; // Important: retry logic (e.g., waiting for Bluetooth to turn on) should be handled elsewhere
-        }
-
-        // Step 4: Check runtime permission (Android 12+ requires BLUETOOTH_CONNECT)
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
-                ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
-                        != PackageManager.PERMISSION_GRANTED) {
-            Log.e(TAG, "❌ Missing BLUETOOTH_CONNECT permission. Cannot start SPP server.");
-            return;
+        synchronized (supervisorLock) {
+            if (stopped) {
+                return; // stopServer() already ran
+            }
+            supervising = true;
         }
-
+        context.registerReceiver(adapterStateReceiver, new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
         try {
-            // Step 5: Start listening for incoming Bluetooth SPP connections
-            serverSocket = adapter.listenUsingRfcommWithServiceRecord(SERVICE_NAME, APP_UUID);
-            isRunning = true;
-            Log.d(TAG, "📡 Classic Bluetooth server started. Waiting for connections...");
+            while (supervising) {
+                // Step 3: Make sure Bluetooth is turned on; the state receiver wakes us up
+                if (!adapter.isEnabled()) {
+                    Log.w(TAG, "⚠️ Bluetooth is OFF. Waiting for it to turn on...");
+                    markOutage();
+                    waitForRetry(0);
+                    continue;
+                }
 
-            // Step 6: Enter main server loop (blocks on .accept())
-            while (isRunning) {
-                Log.d(TAG, "🔄 Bluetooth server still running...");
+                // Step 4: Check runtime permission (Android 12+ requires BLUETOOTH_CONNECT)
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S &&
+                        ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
+                                != PackageManager.PERMISSION_GRANTED) {
+                    Log.e(TAG, "❌ Missing BLUETOOTH_CONNECT permission. Cannot start SPP server.");
+                    waitForRetry(ReconnectBackoff.DEFAULT_MAX_MILLIS);
+                    continue;
+                }
 
                 try {
-                    // Step 7: Accept a new client connection (blocking until a device connects)
-                    BluetoothSocket socket = serverSocket.accept();
-
-                    // Step 8: Optionally get the name of the connected device (if permission allows)
-                    String deviceName = "Unknown";
-                    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S ||
-                            ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
-                                    == PackageManager.PERMISSION_GRANTED) {
-                        deviceName = socket.getRemoteDevice().getName();
+                    // Step 5: Start listening for incoming Bluetooth SPP connections
+                    ServerTransport transport = new RfcommServerTransport(context, adapter, SERVICE_NAME, APP_UUID);
+                    Log.d(TAG, "📡 Classic Bluetooth server started. Waiting for connections...");
+
+                    // Step 6: Serve clients until the listener fails or we are stopped; the backoff
+                    // is reset once a client is accepted, so a listener failing right away keeps backing off
+                    try {
+                        serve(transport);
+                    } finally {
+                        closeQuietly(transport); // Release the RFCOMM channel before rebuilding it
                     }
 
-                    Log.d(TAG, "✅ Device connected via SPP: " + deviceName);
+                } catch (IOException e) {
+                    // Handle failure when starting the server
+                    Log.e(TAG, "❌ Failed to start SPP server: " + e.getMessage());
+                }
 
-                    // Step 9: Handle communication with the connected device
-                    handleClient(socket);
+                // Step 7: Rebuild the listener after a jittered backoff (cut short by Bluetooth turning on)
+                if (supervising) {
+                    markOutage();
+                    long delay = backoff.nextDelayMillis();
+                    Log.w(TAG, "🔁 Rebuilding SPP server in " + delay + "ms (attempt " + backoff.getAttempts() + ")");
+                    waitForRetry(delay);
+                }
+            }
+        } finally {
+            context.unregisterReceiver(adapterStateReceiver);
+        }
+    }
 
-                } catch (SecurityException se) {
-                    // Handle permission error mid-loop (could happen if permission is revoked)
-                    Log.e(TAG, "❌ SecurityException: Missing BLUETOOTH_CONNECT permission", se);
+    /**
+     * Bluetooth adapter state changes (main thread): drop the listener when the radio goes off,
+     * and retry right away when it comes back on.
+     */
+    private void onAdapterStateChanged(int state) {
+        Log.d(TAG, "📶 Bluetooth adapter state: " + state);
+        if (state == BluetoothAdapter.STATE_TURNING_OFF || state == BluetoothAdapter.STATE_OFF) {
+            ServerTransport transport = serverTransport;
+            if (transport != null) {
+                try {
+                    transport.close(); // Unblocks accept(); the supervisor then waits for STATE_ON
+                } catch (IOException e) {
+                    Log.e(TAG, "❌ Failed to close server socket", e);
                 }
             }
+        } else if (state == BluetoothAdapter.STATE_ON) {
+            synchronized (supervisorLock) {
+                backoff.reset();
+                adapterStateChanged = true;
+                supervisorLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits up to {@code millis} (0 = until woken) or until the adapter state changes or the server stops.
+     */
+    private void waitForRetry(long millis) {
+        synchronized (supervisorLock) {
+            long deadline = System.currentTimeMillis() + millis;
+            try {
+                while (supervising && !adapterStateChanged) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (millis > 0 && remaining <= 0) {
+                        break;
+                    }
+                    supervisorLock.wait(millis > 0 ? remaining : 0);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                supervising = false;
+            }
+            adapterStateChanged = false;
+        }
+    }
 
+    private static void closeQuietly(ServerTransport transport) {
+        try {
+            transport.close();
         } catch (IOException e) {
-            // Handle critical failure when starting the server
-            Log.e(TAG, "❌ Failed to start SPP server: " + e.getMessage());
+            Log.e(TAG, "❌ Failed to close server socket", e);
         }
     }
 
+    /**
+     * Starts timing an outage (listener lost), unless one is already being timed.
+     */
+    private void markOutage() {
+        synchronized (supervisorLock) {
+            if (outageStartedNanos == 0) {
+                outageStartedNanos = System.nanoTime();
+            }
+        }
+    }
 
     /**
-     * Handles communication with a connected Bluetooth client on a dedicated thread.
-     * Interprets incoming commands (e.g., "Monitoring:HeartRate", "Vibrate:...") and responds accordingly.
+     * Accepts clients from {@code transport} on the current thread until {@link #stopServer()}
+     * is called. Used with the RFCOMM transport on the watch; TCP or in-memory transports let the
+     * same command pipeline be load-tested off-device.
      *
-     * @param socket The Bluetooth socket representing the connection to the client.
+     * @param transport A listening transport; closed by {@link #stopServer()}, or right away if the
+     *                  server has already been stopped.
      */
-    private void handleClient(BluetoothSocket socket) {
-        new Thread(() -> {
-            // Step 1: Start a "heartbeat" log to confirm thread is alive every 3 seconds
-            Handler heartbeatHandler = new Handler(Looper.getMainLooper());
-            Runnable heartbeatRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    Log.d("Heartbeat", "✅ Heartbeat thread is still alive");
-                    heartbeatHandler.postDelayed(this, 3000);
+    public void serve(ServerTransport transport) {
+        // Published under the lock, so a concurrent stopServer() either sees the transport and
+        // closes it, or has already run and we do not start
+        synchronized (supervisorLock) {
+            if (stopped) {
+                closeQuietly(transport);
+                return;
+            }
+            serverTransport = transport;
+            isRunning = true;
+        }
+
+        // Main server loop (blocks on .accept())
+        while (isRunning) {
+            Log.d(TAG, "🔄 Bluetooth server still running...");
+
+            try {
+                // Step 1: Accept a new client connection (blocking until a device connects)
+                ByteTransport connection = transport.accept();
+
+                // Step 2: Optionally get the name of the connected device (if permission allows)
+                String deviceName = connection.getRemoteName();
+                if (deviceName == null) {
+                    deviceName = "Unknown";
                 }
-            };
-            heartbeatHandler.post(heartbeatRunnable);
-
-            try (
-                    // Step 2: Open input/output streams for Bluetooth socket
-                    InputStream input = socket.getInputStream();
-                    OutputStream output = socket.getOutputStream()
-            ) {
-                byte[] buffer = new byte[1024];
-                int bytes;
-                boolean heartRateStarted = false;
-
-                // Step 3: Read messages from client in a loop
-                while ((bytes = input.read(buffer)) != -1) {
-                    String message = new String(buffer, 0, bytes).trim();
-                    Log.d(TAG, "📥 Received: " + message);
-
-                    // Step 4: Split message into command and payload
-                    String[] parts = message.split(":", 2);
-                    if (parts.length != 2) {
-                        Log.e(TAG, "❌ Invalid message format: " + message);
-                        continue;
-                    }
 
-                    String command = parts[0];
-                    String payload = parts[1];
-
-                    // Step 5: Handle the command
-                    switch (command) {
-                        case "Monitoring":
-                            monitoringType = payload;
-                            Log.d(TAG, "📌 Monitoring Type set to: " + monitoringType);
-
-                            if (monitoringType.equalsIgnoreCase("HeartRate") && !heartRateStarted) {
-                                heartRateStarted = true;
-                                startSendingHeartRate(output, socket); // Begin heart rate streaming
-                            }
-                            break;
-
-                            // Handle Vibration command
-                        case "Vibrate":
-                            handleVibrateCommand(payload);
-                            break;
-
-                        default:
-                            Log.w(TAG, "⚠️ Unknown command: " + command);
-                            break;
+                Log.d(TAG, "✅ Device connected: " + deviceName);
+
+                // First client after an outage: record how long reconnecting took; the listener
+                // works again, so the next rebuild starts from the shortest backoff
+                synchronized (supervisorLock) {
+                    backoff.reset();
+                    if (outageStartedNanos != 0) {
+                        feedbackController.getMetrics().recordReaccept(outageStartedNanos);
+                        Log.d(TAG, "⏱️ Re-accepted a client " + (System.nanoTime() - outageStartedNanos) / 1_000_000L
+                                + "ms after losing the listener");
+                        outageStartedNanos = 0;
                     }
                 }
 
+                // Step 3: Handle communication with the connected device on the client pool
+                handleClient(connection, deviceName, connection.getRemoteAddress());
+
+            } catch (SecurityException se) {
+                // Handle permission error mid-loop (could happen if permission is revoked)
+                Log.e(TAG, "❌ SecurityException: Missing BLUETOOTH_CONNECT permission", se);
             } catch (IOException e) {
-                // Handle disconnection or communication failure
-                Log.e(TAG, "❌ Error while reading from socket: " + e.getMessage());
-            } finally {
-                // Step 6: Clean up when the socket is closed
-                try {
-                    socket.close();
-                    Log.d(TAG, "🔌 Socket closed. Stopping heart rate monitoring.");
-                    feedbackController.stopHeartRateMonitoring();
-                } catch (IOException e) {
-                    Log.e(TAG, "❌ Failed to close socket", e);
+                // accept() fails once the transport is closed
+                if (isRunning) {
+                    Log.e(TAG, "❌ Failed to accept connection: " + e.getMessage());
+                    isRunning = false;
                 }
-
-                // Remove heartbeat logging
-                heartbeatHandler.removeCallbacksAndMessages(null);
             }
-        }).start();
+        }
     }
 
+
     /**
-     * Parses a "Vibrate" command payload and triggers vibration feedback based on the current monitoring type.
-     * The payload is expected to be in the format: "intensity,pulses,duration,interval".
-     *
-     * Supported monitoring types:
-     * - "HeartRate"     → Triggers heart rate-specific vibration feedback
-     * - "SunAzimuth"    → Triggers sun azimuth-specific feedback pattern
-     *
-     * If the monitoring type is unknown or not supported, the command is logged and ignored.
+     * Serves a connected client in its own {@link ClientSession} on a worker thread of
+     * the bounded client pool. If {@link #MAX_CLIENTS} clients are already connected, the new
+     * connection is closed right away.
      *
-     * @param payload The raw command string received from the client (e.g., "50,3,1000,200")
+     * @param connection    The transport connection to the client.
+     * @param deviceName    Name of the remote device, for logging.
+     * @param deviceAddress Address of the remote device, keying its resume state (null if unknown).
      */
-    private void handleVibrateCommand(String payload) {
-        String[] vibrationParams = payload.split(",");
-
-        // Step 1: Ensure the payload contains exactly 4 comma-separated values
-        if (vibrationParams.length != 4) {
-            Log.e(TAG, "❌ Incorrect number of vibration parameters: " + payload);
-            return;
-        }
+    private void handleClient(ByteTransport connection, String deviceName, String deviceAddress) {
+        ClientSession session = new ClientSession(connection, deviceName,
+                feedbackController.getHeartRateService(), modeRegistry, feedbackController.getMetrics(), logger);
+        session.setRecorder(recorder);
 
         try {
-            // Step 2: Parse all values into integers
-            int intensity = Integer.parseInt(vibrationParams[0]);
-            int pulses = Integer.parseInt(vibrationParams[1]);
-            int duration = Integer.parseInt(vibrationParams[2]);
-            int interval = Integer.parseInt(vibrationParams[3]);
-
-            // Step 3: Trigger feedback based on current monitoring type
-            switch (monitoringType) {
-                case "HeartRate":
-                    feedbackController.triggerHeartRateVibration(intensity, pulses, duration, interval);
-                    break;
-
-                case "SunAzimuth":
-                    feedbackController.triggerVibrationForSunAzimuth(intensity, pulses, duration, interval);
-                    break;
-
-                case "MoonAzimuth":
-                    feedbackController.triggerVibrationForSunAzimuth(intensity, pulses, duration, interval);
-                    break;
-
-                default:
-                    Log.w(TAG, "⚠️ Vibration command received, but monitoring type is unknown or unsupported: " + monitoringType);
-                    break;
-            }
+            clientExecutor.execute(() -> {
+                // A phone reconnecting shortly after losing its link picks up where it left off; matched
+                // by address, since another phone may carry the same (user-editable) name. Taken here so
+                // a connection refused by a full pool leaves the state for the next attempt
+                ClientSession.ResumeState resumeState =
+                        deviceAddress != null ? resumeStates.remove(deviceAddress) : null;
+                if (resumeState != null && resumeState.getAgeMillis() <= RESUME_WINDOW_MILLIS) {
+                    session.resume(resumeState);
+                }
 
-        } catch (NumberFormatException e) {
-            // Step 4: Handle case where one or more parameters are not valid integers
-            Log.e(TAG, "❌ Invalid numbers in vibration command: " + payload, e);
+                // Trace a "heartbeat" every 3 seconds to confirm the client thread is alive,
+                // and give up on the connection if a write has stalled
+                TraceBuffer trace = feedbackController.getMetrics().getTrace();
+                Handler heartbeatHandler = new Handler(Looper.getMainLooper());
+                Runnable heartbeatRunnable = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (TraceBuffer.COMPILED) {
+                            trace.record(TraceBuffer.EVENT_HEARTBEAT, session.getId(), 0);
+                        }
+                        session.checkWriteTimeout();
+                        heartbeatHandler.postDelayed(this, 3000);
+                    }
+                };
+                heartbeatHandler.post(heartbeatRunnable);
+
+                sessions.add(session);
+                try {
+                    resolveIdentity(session);
+                    session.run();
+                } finally {
+                    heartbeatHandler.removeCallbacks(heartbeatRunnable);
+                    sessions.remove(session);
+                    if (sessions.isEmpty()) {
+                        // Nobody connected: let the CPU sleep until the radio wakes it for the next client
+                        feedbackController.getMetrics().getWakeLeases().release(WakeLeases.REASON_SESSION);
+                    }
+                    ClientSession.ResumeState state = session.getResumeState();
+                    if (state != null && deviceAddress != null && !stopped) {
+                        resumeStates.put(deviceAddress, state);
+                    }
+                    Log.d(TAG, "👋 Client disconnected: " + deviceName + " (" + sessions.size() + " connected)");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "⚠️ Too many clients (" + MAX_CLIENTS + "), refusing " + deviceName);
+            try {
+                connection.close();
+            } catch (IOException closeError) {
+                Log.e(TAG, "❌ Failed to close socket", closeError);
+            }
         }
     }
 
 
     /**
-     * Starts heart rate monitoring and continuously sends heart rate updates
-     * over the provided Bluetooth socket's output stream.
+     * Parses the device names to extract the user, watch and Android IDs sent with the
+     * session's heart rate updates, falling back gracefully in case of errors or invalid formats.
      *
-     * Also parses the device names to extract user and watch IDs,
-     * falling back gracefully in case of errors or invalid formats.
+     * @param session The client session to set the IDs on.
      */
-    private void startSendingHeartRate(OutputStream output, BluetoothSocket socket) {
-        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
-
+    private void resolveIdentity(ClientSession session) {
         String watchName = "UnknownWatch";
         String androidName = "UnknownAndroid";
 
-        // Step 1: Safely try to retrieve Bluetooth names, with permission checks
+        // Step 1: Safely try to retrieve the names (the RFCOMM transport checks permissions)
         try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                if (ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
-                        == PackageManager.PERMISSION_GRANTED) {
-
-                    if (adapter != null && adapter.getName() != null) {
-                        watchName = adapter.getName();
-                    } else {
-                        Log.w(TAG, "⚠️ Bluetooth adapter or name is null");
-                    }
-
-                    if (socket != null && socket.getRemoteDevice() != null) {
-                        @SuppressLint("MissingPermission")
-                        String alias = socket.getRemoteDevice().getAlias();
-                        if (alias != null) {
-                            androidName = alias;
-                        } else {
-                            Log.w(TAG, "⚠️ Alias from remote device is null");
-                        }
-                    } else {
-                        Log.w(TAG, "⚠️ BluetoothSocket or remote device is null");
-                    }
-
-                } else {
-                    Log.w(TAG, "⚠️ Missing BLUETOOTH_CONNECT permission, using fallback names.");
-                }
+            ServerTransport transport = serverTransport;
+            String localName = transport != null ? transport.getLocalName() : null;
+            if (localName != null) {
+                watchName = localName;
             } else {
-                // For Android < 12
-                if (adapter != null && adapter.getName() != null) {
-                    watchName = adapter.getName();
-                }
+                Log.w(TAG, "⚠️ Bluetooth adapter or name is null");
+            }
 
-                if (socket != null && socket.getRemoteDevice() != null) {
-                    @SuppressLint("MissingPermission")
-                    String alias = null;
-                    alias = socket.getRemoteDevice().getAlias();
-                    if (alias != null) {
-                        androidName = alias;
-                    }
-                }
+            String remoteName = session.getTransport().getRemoteName();
+            if (remoteName != null) {
+                androidName = remoteName;
             }
         } catch (Exception e) {
             Log.e(TAG, "❌ Error while retrieving Bluetooth names", e);
@@ -312,6 +449,9 @@ public class BluetoothServerManager {
         Log.d(TAG, "📛 Connected Android Device Name: " + androidName);
 
         // Step 3: Parse Watch name into userId and watchId
+        String userId;
+        String watchId;
+        String androidId;
         if (watchName != null && watchName.matches("^UserID-\\d+-SmartWatchID-\\d+$")) {
             String[] tokens = watchName.split("-");
             userId = tokens[1];
@@ -332,25 +472,8 @@ public class BluetoothServerManager {
             androidId = "UnknownAndroid";
         }
 
-        // Step 5: Start heart rate monitoring and send data
-        feedbackController.startHeartRateMonitoring(hr -> {
-            try {
-                String message = "MonitoringType:HeartRate," +
-                        "Value:" + hr + "," +
-                        "UserID:" + userId + "," +
-                        "SmartWatchID:" + watchId + "," +
-                        "AndroidID:" + androidId + "\n";
-
-                output.write(message.getBytes());
-                output.flush();
-
-                Log.d(TAG, "📤 Sent heart rate: " + message.trim());
-            } catch (IOException e) {
-                Log.e(TAG, "❌ Failed to send heart rate", e);
-            } catch (Exception e) {
-                Log.e(TAG, "❌ Unexpected error while sending heart rate", e);
-            }
-        });
+        // Step 5: Use the IDs for this session's heart rate updates
+        session.setIdentity(userId, watchId, androidId);
     }
 
 
@@ -359,19 +482,42 @@ public class BluetoothServerManager {
      * This method should be called when the service is being shut down or the app is cleaned up.
      */
     public void stopServer() {
-        // Step 1: Signal the server loop to exit
-        isRunning = false;
+        // Step 1: Signal the supervisor and the server loop to exit (under the lock serve() publishes
+        // its transport with, so the transport read below is the latest one)
+        synchronized (supervisorLock) {
+            isRunning = false;
+            stopped = true;
+            supervising = false;
+            supervisorLock.notifyAll();
+        }
 
         try {
-            // Step 2: Close the Bluetooth server socket to release the port and unblock .accept()
-            if (serverSocket != null) {
-                serverSocket.close();
+            // Step 2: Close the server transport to release the port and unblock .accept()
+            ServerTransport transport = serverTransport;
+            if (transport != null) {
+                transport.close();
                 Log.d(TAG, "🛑 Bluetooth server stopped.");
             }
         } catch (IOException e) {
             // Step 3: Log any exception that occurs during socket shutdown
             Log.e(TAG, "❌ Failed to stop server", e);
         }
+
+        // Step 4: Disconnect all clients (unblocks their reads) and release the client pool
+        for (ClientSession session : sessions) {
+            try {
+                session.getTransport().close();
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to close client socket", e);
+            }
+        }
+        clientExecutor.shutdown();
+        stopRecording();
+
+        // Step 5: Keep the recent trace history in Logcat for post-mortem analysis
+        if (TraceBuffer.COMPILED) {
+            feedbackController.getMetrics().getTrace().dump(logger, TAG);
+        }
     }
 
 
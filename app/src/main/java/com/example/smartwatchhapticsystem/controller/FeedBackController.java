@@ -1,26 +1,66 @@
 package com.example.smartwatchhapticsystem.controller;
 import android.content.Context;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
-public class FeedBackController implements SensorEventListener {
 
+import com.example.smartwatchhapticsystem.core.CommandParser;
+import com.example.smartwatchhapticsystem.core.HapticFeedback;
+import com.example.smartwatchhapticsystem.core.HapticScheduler;
+import com.example.smartwatchhapticsystem.core.HeartRateProcessor;
+import com.example.smartwatchhapticsystem.core.HeartRateService;
+import com.example.smartwatchhapticsystem.core.HeartRateStore;
+import com.example.smartwatchhapticsystem.core.HotPathMetrics;
+import com.example.smartwatchhapticsystem.core.OnHeartRateUpdateListener;
+import com.example.smartwatchhapticsystem.core.TraceBuffer;
+import com.example.smartwatchhapticsystem.core.WakeLeases;
+import com.example.smartwatchhapticsystem.core.WaveformCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Wires the core haptic and heart-rate logic to the watch: the {@link Vibrator} through
+ * {@link VibratorHapticSink}, the heart-rate sensor through {@link SensorHeartRateSource},
+ * plus {@link AndroidClock} and {@link AndroidLogger}. The CPU is kept awake only while a
+ * {@link WakeLeases} lease is live (connected session, queued vibration, pending telemetry),
+ * through a partial wake lock wrapped by {@link WakeLockPowerLock}.
+ */
+public class FeedBackController {
+    private static final String TAG = "FeedBackController";
 
     private Context context;
     private SensorManager sensorManager;
-    private Sensor heartRateSensor;
     private Vibrator vibrator;
-    private boolean isMonitoring = false;
-    private OnHeartRateUpdateListener heartRateListener;
+    private final VibratorHapticSink hapticSink;
+    private final HapticFeedback hapticFeedback;
+    private final HeartRateService heartRateService;
+
+    // Smoothing, zone detection and local alerts on the watch ("Zones:", "Alert:")
+    private final HeartRateProcessor heartRateProcessor;
+
+    // Latency histograms, traffic counters and wake lock leases ("Stats:"), trace ring buffer ("Trace:Dump")
+    private final HotPathMetrics metrics;
+
+    // Heart-rate samples kept on disk while no phone is connected (null until enabled)
+    private HeartRateStore heartRateStore;
 
     public FeedBackController(Context context) {
         this.context = context;
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+
+        AndroidLogger logger = new AndroidLogger();
+        AndroidClock clock = new AndroidClock();
+        metrics = new HotPathMetrics(clock, new TraceBuffer(), new WakeLeases(new WakeLockPowerLock(context)));
+        hapticSink = new VibratorHapticSink(vibrator);
+        hapticFeedback = new HapticFeedback(hapticSink, logger, metrics);
+        heartRateService = new HeartRateService(new SensorHeartRateSource(sensorManager), clock, logger,
+                metrics.getTrace());
+        heartRateProcessor = new HeartRateProcessor(hapticFeedback, heartRateService::getAccuracy, logger,
+                metrics.getTrace());
+        heartRateService.setProcessor(heartRateProcessor);
     }
 
     /**
@@ -31,45 +71,10 @@ public class FeedBackController implements SensorEventListener {
      * @param pulses    Number of vibration pulses
      * @param duration  Duration of each pulse in milliseconds
      * @param interval  Duration of pause between pulses in milliseconds
+     * @return true if the pattern was queued for playback
      */
-    public void triggerVibrationForSunAzimuth(int intensity, int pulses, int duration, int interval) {
-        Log.d("FeedBackController", "triggerVibrationForSunAzimuth called with " +
-                "Intensity=" + intensity + ", Pulses=" + pulses +
-                ", Duration=" + duration + ", Interval=" + interval);
-
-        // Validate inputs
-        if (pulses > 0 && intensity > 0 && intensity <= 255 && duration > 0) {
-            if (vibrator != null && vibrator.hasVibrator()) {
-                // Create vibration pattern and amplitude array
-                long[] vibrationPattern = new long[pulses * 2 + 1];
-                int[] amplitudes = new int[pulses * 2 + 1];
-
-                vibrationPattern[0] = 0;   // Start immediately
-                amplitudes[0] = 0;         // No amplitude for initial delay
-
-                for (int i = 1; i <= pulses * 2; i++) {
-                    if (i % 2 == 1) {
-                        // Vibration pulse
-                        vibrationPattern[i] = duration;
-                        amplitudes[i] = intensity;
-                    } else {
-                        // Pause between pulses
-                        vibrationPattern[i] = interval;
-                        amplitudes[i] = 0;
-                    }
-                }
-
-                // Trigger the vibration waveform
-                VibrationEffect effect = VibrationEffect.createWaveform(vibrationPattern, amplitudes, -1);
-                vibrator.vibrate(effect);
-
-                Log.d("FeedBackController", "✅ Sun Azimuth Vibration triggered.");
-            } else {
-                Log.e("FeedBackController", "❌ Device does not support vibration.");
-            }
-        } else {
-            Log.e("FeedBackController", "❌ Invalid parameters for vibration.");
-        }
+    public boolean triggerVibrationForSunAzimuth(int intensity, int pulses, int duration, int interval) {
+        return hapticFeedback.triggerAzimuth(intensity, pulses, duration, interval);
     }
 
     /**
@@ -80,136 +85,131 @@ public class FeedBackController implements SensorEventListener {
      * @param pulses    Number of vibration pulses to deliver
      * @param duration  Duration (in ms) of each pulse
      * @param interval  Duration (in ms) of pause between pulses
+     * @return true if the pattern was queued for playback
      */
-    public void triggerHeartRateVibration(int intensity, int pulses, int duration, int interval) {
-        Log.d("FeedBackController", "triggerHeartRateVibration called with intensity: "
-                + intensity + ", pulses: " + pulses + ", duration: " + duration + ", interval: " + interval);
-
-        if (pulses > 0 && intensity > 0 && duration > 0) {
-
-            if (vibrator != null && vibrator.hasVibrator()) {
-
-                // 1. Build vibration pattern: [0, duration, interval, duration, interval, ...]
-                long[] vibrationPattern = new long[pulses * 2 + 1];
-                vibrationPattern[0] = 0; // no initial delay
-
-                // 2. Build amplitude pattern: [0, intensity, 0, intensity, 0, ...]
-                int[] amplitudes = new int[pulses * 2 + 1];
-                amplitudes[0] = 0; // no amplitude during initial delay
+    public boolean triggerHeartRateVibration(int intensity, int pulses, int duration, int interval) {
+        return hapticFeedback.triggerHeartRate(intensity, pulses, duration, interval);
+    }
 
-                for (int i = 1; i <= pulses * 2; i++) {
-                    if (i % 2 == 0) {
-                        vibrationPattern[i] = interval;   // pauses
-                        amplitudes[i] = 0;
-                    } else {
-                        vibrationPattern[i] = duration;   // vibrations
-                        amplitudes[i] = intensity;        // apply intensity
-                    }
-                }
 
-                vibrator.vibrate(VibrationEffect.createWaveform(vibrationPattern, amplitudes, -1));
+    /**
+     * Starts continuous heart-rate monitoring using the device’s built-in BODY SENSORS API,
+     * with the batching profile of the "HeartRate" monitoring type.
+     *
+     * @param listener A callback that will receive heart-rate updates (beats-per-minute + sample time).
+     */
+    public void startHeartRateMonitoring(OnHeartRateUpdateListener listener) {
+        startHeartRateMonitoring(CommandParser.MODE_HEART_RATE, listener);
+    }
 
-                Log.d("FeedBackController", "✅ Heart rate vibration triggered.");
-            } else {
-                Log.e("FeedBackController", "❌ Device does not support vibration.");
-            }
+    /**
+     * Starts continuous heart-rate monitoring with the batching profile of {@code monitoringMode}
+     * (see {@link HeartRateService#start}).
+     */
+    public void startHeartRateMonitoring(int monitoringMode, OnHeartRateUpdateListener listener) {
+        heartRateService.start(monitoringMode, listener);
+    }
 
-        } else {
-            Log.e("FeedBackController", "❌ Invalid parameters for heart rate vibration.");
-        }
+    /**
+     * Subscribes a client session to heart-rate updates; the sensor registration is shared by all subscribers.
+     */
+    public void subscribeHeartRate(OnHeartRateUpdateListener listener) {
+        heartRateService.subscribe(listener);
     }
 
+    /**
+     * Unsubscribes a client session; the sensor is unregistered when the last subscriber leaves.
+     */
+    public void unsubscribeHeartRate(OnHeartRateUpdateListener listener) {
+        heartRateService.unsubscribe(listener);
+    }
 
     /**
-     * Starts continuous heart-rate monitoring using the device’s built-in BODY SENSORS API.
-     * Registers this class (implements SensorEventListener) to receive HR updates and
-     * forwards each reading to a client-supplied callback.
-     *
-     * @param listener A callback that will receive heart-rate updates (beats-per-minute).
+     * Configures the latency/power trade-off of heart-rate sampling for a monitoring type
+     * (see {@link HeartRateService#setBatching}).
      */
-    public void startHeartRateMonitoring(OnHeartRateUpdateListener listener) {
+    public void setHeartRateBatching(int monitoringMode, int samplingPeriodUs, int maxReportLatencyUs) {
+        heartRateService.setBatching(monitoringMode, samplingPeriodUs, maxReportLatencyUs);
+    }
 
-        /* ── 1. Prevent duplicate registration ───────────────────────────────────── */
-        if (isMonitoring) {                                 // Already active?
-            Log.d("FeedBackController", "ℹ️ Heart-Rate monitoring already active.");
-            return;                                         // Exit early
-        }
 
-        /* ── 2️.  Retrieve the heart-rate sensor from the SensorManager ────────────── */
-        if (sensorManager != null) {
-            heartRateSensor = sensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE);
-
-            if (heartRateSensor != null) {
-                /* ── 3.  Save the client’s callback and register listener ─────────── */
-                this.heartRateListener = listener;          // Store callback for later updates
-                sensorManager.registerListener(
-                        this,                               // Current class implements SensorEventListener
-                        heartRateSensor,
-                        SensorManager.SENSOR_DELAY_NORMAL   // Sampling rate (~1 Hz, varies by device)
-                );
-
-                isMonitoring = true;                        // Mark as active
-                Log.d("FeedBackController", "✅ Heart-Rate monitoring started…");
-            } else {
-                Log.e("FeedBackController", "❌ Heart-rate sensor not available!");
+    /**
+     * Keeps sampling heart rate into a file while no phone is connected; the next phone that
+     * streams heart rate receives the stored samples first, at {@code catchUpSamplesPerSecond}.
+     */
+    public void enableOfflineHeartRateBuffering(int catchUpSamplesPerSecond) {
+        if (heartRateStore == null) {
+            try {
+                heartRateStore = new HeartRateStore(new File(context.getFilesDir(), "heart_rate.store"));
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to open the offline heart-rate store", e);
+                return;
             }
         }
+        heartRateService.setOfflineStore(heartRateStore, catchUpSamplesPerSecond);
     }
 
 
-
     /**
      * Stops active heart rate monitoring by unregistering the sensor listener.
      * Ensures resources are released and callbacks are cleared to prevent memory leaks.
      */
     public void stopHeartRateMonitoring() {
-        // Step 1: Only proceed if monitoring is active and sensorManager is available
-        if (isMonitoring && sensorManager != null) {
-            // Step 2: Unregister this class from receiving heart rate sensor updates
-            sensorManager.unregisterListener(this);
-
-            // Step 3: Reset internal state
-            isMonitoring = false;
-            heartRateListener = null; // 🧹 Clear the listener to prevent memory leaks or unexpected callbacks
-
-            Log.d("FeedBackController", "⛔ Heart Rate Monitoring Stopped.");
-        } else {
-            // Step 4: Monitoring wasn't active, nothing to stop
-            Log.d("FeedBackController", "ℹ️ Heart Rate Monitoring is not active.");
+        heartRateService.stop();
+    }
+
+    /**
+     * Stops the haptic scheduler thread, closes the offline store and releases the wake lock;
+     * call when the owning service is destroyed.
+     */
+    public void release() {
+        hapticFeedback.release();
+        metrics.getWakeLeases().releaseAll();
+        Log.d(TAG, "🔋 Wake lock held for " + metrics.getWakeLeases().getHeldMillis() + "ms in "
+                + metrics.getWakeLeases().getAcquisitions() + " acquisitions");
+        if (heartRateStore != null) {
+            try {
+                heartRateStore.close(); // Final fsync of the stored samples
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to close the offline heart-rate store", e);
+            }
         }
     }
 
+    public HapticFeedback getHapticFeedback() {
+        return hapticFeedback;
+    }
 
+    public HeartRateService getHeartRateService() {
+        return heartRateService;
+    }
 
     /**
-     * Called automatically when new sensor data is available.
-     * Specifically listens for heart rate sensor updates and forwards the detected value
-     * to the registered listener callback.
-     *
-     * @param event The sensor event containing new heart rate data.
+     * Exposes the on-watch heart-rate processor, e.g. to set zones and alert rules without a phone.
      */
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        // Step 1: Ensure the event is from the heart rate sensor
-        if (event.sensor.getType() == Sensor.TYPE_HEART_RATE) {
-            // Step 2: Extract heart rate value (as float → int)
-            int heartRate = Math.round(event.values[0]);
-            Log.d("FeedBackController", "❤️ Heart Rate Detected: " + heartRate);
-
-            // Step 3: Notify the registered listener (if any)
-            if (heartRateListener != null) {
-                heartRateListener.onUpdate(heartRate);  // Pass the detected BPM to the app
-            }
-        }
+    public HeartRateProcessor getHeartRateProcessor() {
+        return heartRateProcessor;
     }
 
+    /**
+     * Exposes the hot-path metrics shared with the client sessions.
+     */
+    public HotPathMetrics getMetrics() {
+        return metrics;
+    }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not needed for heart rate
+    /**
+     * Exposes the haptic scheduler so its queue depth and drop/coalesce/preempt counts can be reported.
+     */
+    public HapticScheduler getHapticScheduler() {
+        return hapticFeedback.getScheduler();
     }
-    public interface OnHeartRateUpdateListener {
-        void onUpdate(int heartRate);
+
+    /**
+     * Exposes the waveform cache so its hit/miss counters can be reported.
+     */
+    public WaveformCache<VibrationEffect> getWaveformCache() {
+        return hapticSink.getWaveformCache();
     }
 
 
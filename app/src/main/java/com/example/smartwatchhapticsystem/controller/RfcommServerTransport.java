@@ -0,0 +1,129 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothServerSocket;
+import android.bluetooth.BluetoothSocket;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+
+import com.example.smartwatchhapticsystem.core.ByteTransport;
+import com.example.smartwatchhapticsystem.core.ServerTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * {@link ServerTransport} over a classic Bluetooth SPP (RFCOMM) server socket, as used on the watch.
+ * Device names are only read when the BLUETOOTH_CONNECT permission is granted (Android 12+).
+ */
+public final class RfcommServerTransport implements ServerTransport {
+    private static final String TAG = "RfcommServerTransport";
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final BluetoothServerSocket serverSocket;
+
+    /**
+     * Starts listening for incoming SPP connections.
+     *
+     * @param serviceName Service record name.
+     * @param uuid        Service UUID (the SPP UUID for serial clients).
+     */
+    @SuppressLint("MissingPermission")
+    public RfcommServerTransport(Context context, BluetoothAdapter adapter,
+                                 String serviceName, UUID uuid) throws IOException {
+        this.context = context;
+        this.adapter = adapter;
+        this.serverSocket = adapter.listenUsingRfcommWithServiceRecord(serviceName, uuid);
+    }
+
+    @Override
+    public ByteTransport accept() throws IOException {
+        return new Connection(serverSocket.accept());
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public String getLocalName() {
+        if (!hasConnectPermission()) {
+            Log.w(TAG, "⚠️ Missing BLUETOOTH_CONNECT permission, using fallback names.");
+            return null;
+        }
+        return adapter.getName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private boolean hasConnectPermission() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.S
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
+                        == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * One accepted RFCOMM connection.
+     */
+    private final class Connection implements ByteTransport {
+        private final BluetoothSocket socket;
+
+        Connection(BluetoothSocket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        /**
+         * @return The remote device's alias (the phone's Bluetooth name), or null if unavailable.
+         */
+        @SuppressLint("MissingPermission")
+        @Override
+        public String getRemoteName() {
+            if (!hasConnectPermission()) {
+                return null;
+            }
+            BluetoothDevice device = socket.getRemoteDevice();
+            if (device == null) {
+                Log.w(TAG, "⚠️ BluetoothSocket or remote device is null");
+                return null;
+            }
+            String alias = device.getAlias();
+            if (alias == null) {
+                Log.w(TAG, "⚠️ Alias from remote device is null");
+            }
+            return alias;
+        }
+
+        /**
+         * @return The remote device's MAC address, which unlike its alias identifies the phone.
+         */
+        @Override
+        public String getRemoteAddress() {
+            BluetoothDevice device = socket.getRemoteDevice();
+            return device != null ? device.getAddress() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+import com.example.smartwatchhapticsystem.core.HeartRateSource;
+
+/**
+ * {@link HeartRateSource} backed by the Android {@link SensorManager}.
+ * Uses {@code registerListener(..., samplingPeriodUs, maxReportLatencyUs)} so that samples can be
+ * batched in the sensor hub FIFO instead of waking the application processor for every reading.
+ */
+public class SensorHeartRateSource implements HeartRateSource, SensorEventListener {
+
+    private final SensorManager sensorManager;
+    private final Sensor heartRateSensor;
+    private volatile Callback callback;
+
+    public SensorHeartRateSource(SensorManager sensorManager) {
+        this.sensorManager = sensorManager;
+        this.heartRateSensor = sensorManager != null
+                ? sensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE)
+                : null;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return heartRateSensor != null;
+    }
+
+    @Override
+    public boolean supportsBatching() {
+        return heartRateSensor != null && heartRateSensor.getFifoMaxEventCount() > 0;
+    }
+
+    @Override
+    public boolean register(Callback callback, int samplingPeriodUs, int maxReportLatencyUs) {
+        if (heartRateSensor == null) {
+            return false;
+        }
+        this.callback = callback;
+        return sensorManager.registerListener(this, heartRateSensor, samplingPeriodUs, maxReportLatencyUs);
+    }
+
+    @Override
+    public void unregister() {
+        if (sensorManager != null) {
+            sensorManager.unregisterListener(this);
+        }
+        callback = null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        // Only forward heart rate events (event.timestamp is in the elapsed-realtime time base)
+        Callback current = callback;
+        if (current != null && event.sensor.getType() == Sensor.TYPE_HEART_RATE) {
+            current.onHeartRate(event.values[0], event.timestamp);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // SENSOR_STATUS_* values are passed through; they gate samples in the HeartRateProcessor
+        Callback current = callback;
+        if (current != null && sensor.getType() == Sensor.TYPE_HEART_RATE) {
+            current.onAccuracyChanged(accuracy);
+        }
+    }
+}
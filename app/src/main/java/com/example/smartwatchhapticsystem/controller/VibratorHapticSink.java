@@ -0,0 +1,60 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+
+import com.example.smartwatchhapticsystem.core.AzimuthPatternLibrary;
+import com.example.smartwatchhapticsystem.core.HapticSink;
+import com.example.smartwatchhapticsystem.core.WaveformCache;
+
+/**
+ * {@link HapticSink} backed by the Android {@link Vibrator}.
+ * Pattern [0, duration, interval, ...] with amplitudes [0, intensity, 0, ...], reused from the
+ * waveform cache (built once per parameter tuple). Azimuth direction cues are built for every
+ * sector when the sink is created, so "Azimuth:" commands only look one up.
+ */
+public final class VibratorHapticSink implements HapticSink {
+
+    private final Vibrator vibrator;
+
+    // Prebuilt waveforms keyed on (intensity, pulses, duration, interval), shared by all patterns
+    private final WaveformCache<VibrationEffect> waveformCache =
+            new WaveformCache<>((timings, amplitudes) -> VibrationEffect.createWaveform(timings, amplitudes, -1));
+
+    // Ramped direction cues, one per azimuth sector, prebuilt at startup
+    private final AzimuthPatternLibrary<VibrationEffect> azimuthPatterns =
+            new AzimuthPatternLibrary<>((timings, amplitudes) -> VibrationEffect.createWaveform(timings, amplitudes, -1));
+
+    public VibratorHapticSink(Vibrator vibrator) {
+        this.vibrator = vibrator;
+    }
+
+    @Override
+    public boolean hasVibrator() {
+        return vibrator != null && vibrator.hasVibrator();
+    }
+
+    @Override
+    public void play(int intensity, int pulses, int duration, int interval) {
+        vibrator.vibrate(waveformCache.get(intensity, pulses, duration, interval));
+    }
+
+    @Override
+    public void playAzimuthPattern(int sector) {
+        vibrator.vibrate(azimuthPatterns.get(sector));
+    }
+
+    @Override
+    public void cancel() {
+        if (vibrator != null) {
+            vibrator.cancel();
+        }
+    }
+
+    /**
+     * Exposes the waveform cache so its hit/miss counters can be reported.
+     */
+    public WaveformCache<VibrationEffect> getWaveformCache() {
+        return waveformCache;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.smartwatchhapticsystem.controller;
+
+import android.content.Context;
+import android.os.PowerManager;
+
+import com.example.smartwatchhapticsystem.core.WakeLeases;
+
+/**
+ * {@link WakeLeases.PowerLock} backed by a partial {@link PowerManager.WakeLock}
+ * (CPU stays on, screen and other components can sleep).
+ *
+ * The lock is not reference counted and always acquired with a timeout: acquiring it again
+ * replaces the timeout, so the lock lapses on its own once no lease renews it.
+ */
+public final class WakeLockPowerLock implements WakeLeases.PowerLock {
+
+    private final PowerManager.WakeLock wakeLock;
+
+    public WakeLockPowerLock(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        wakeLock = powerManager.newWakeLock(
+                PowerManager.PARTIAL_WAKE_LOCK,
+                "SmartwatchHapticSystem::WakeLockTag" // Custom tag for debugging
+        );
+        wakeLock.setReferenceCounted(false);
+    }
+
+    @Override
+    public void hold(long timeoutMillis) {
+        wakeLock.acquire(timeoutMillis);
+    }
+
+    @Override
+    public void release() {
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+}
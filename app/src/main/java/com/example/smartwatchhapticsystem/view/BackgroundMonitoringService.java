@@ -1,6 +1,5 @@
 package com.example.smartwatchhapticsystem.view;
 
-import android.annotation.SuppressLint;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -15,20 +14,27 @@ import androidx.core.app.NotificationCompat;
 import com.example.smartwatchhapticsystem.R;
 import com.example.smartwatchhapticsystem.controller.BluetoothServerManager;
 import com.example.smartwatchhapticsystem.controller.FeedBackController;
-import android.os.PowerManager;
+import com.example.smartwatchhapticsystem.core.HeartRateUplink;
+import java.io.File;
 
 public class BackgroundMonitoringService extends Service {
     private static final String CHANNEL_ID = "MonitoringChannel";
     private HandlerThread bluetoothThread;
     private Handler bluetoothHandler;
     private static final String TAG = "BackgroundService";
-    private PowerManager.WakeLock wakeLock;
+
+    // Boolean extra: record client sessions to files/sessions for offline replay
+    public static final String EXTRA_RECORD_SESSIONS = "record_sessions";
+
+    // Boolean extra: keep heart rate on disk while disconnected; int extra: catch-up rate (samples/s)
+    public static final String EXTRA_OFFLINE_BUFFERING = "offline_buffering";
+    public static final String EXTRA_CATCH_UP_RATE = "catch_up_rate";
     private FeedBackController feedbackController;
     private BluetoothServerManager bluetoothServerManager;
 
     /**
      * Called when the background service is first created.
-     * Sets up notification, wake lock, controller dependencies, and starts the Bluetooth server
+     * Sets up notification, controller dependencies, and starts the Bluetooth server
      * on a dedicated background thread using a HandlerThread.
      */
     @Override
@@ -41,22 +47,20 @@ public class BackgroundMonitoringService extends Service {
         // This is mandatory for background services on Android 8+ to stay alive
         createNotificationChannel();
 
-        // Step 2: Acquire a wake lock to prevent the CPU from sleeping while the service runs
-        acquireWakeLock();
-
-        // Step 3: Initialize helper classes that manage feedback and Bluetooth server logic
+        // Step 2: Initialize helper classes that manage feedback and Bluetooth server logic
+        // (the controller holds the CPU wake lock only while a session, vibration or telemetry flush needs it)
         feedbackController = new FeedBackController(this);                  // Manages vibration feedback
         bluetoothServerManager = new BluetoothServerManager(this, feedbackController); // Handles incoming Bluetooth commands
 
-        // Step 4: Create and start a background thread dedicated to running the Bluetooth server
+        // Step 3: Create and start a background thread dedicated to running the Bluetooth server
         // HandlerThread gives you a Looper-backed thread for async operations
         bluetoothThread = new HandlerThread("BluetoothServerThread", Process.THREAD_PRIORITY_FOREGROUND);
         bluetoothThread.start();
 
-        // Step 5: Attach a Handler to the thread’s Looper so we can post work to it
+        // Step 4: Attach a Handler to the thread’s Looper so we can post work to it
         bluetoothHandler = new Handler(bluetoothThread.getLooper());
 
-        // Step 6: Post a task to run the server on that background thread (non-blocking)
+        // Step 5: Post a task to run the server on that background thread (non-blocking)
         bluetoothHandler.post(() -> bluetoothServerManager.startServerOnCurrentThread());
 
         Log.d(TAG, "✅ Bluetooth server thread started via HandlerThread");
@@ -76,6 +80,17 @@ public class BackgroundMonitoringService extends Service {
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "🟢 Background Service Started");
 
+        // Optional session recording, e.g. adb shell am start-foreground-service --ez record_sessions true ...
+        if (intent != null && intent.getBooleanExtra(EXTRA_RECORD_SESSIONS, false)) {
+            bluetoothServerManager.startRecording(new File(getFilesDir(), "sessions"));
+        }
+
+        // Optional store-and-forward of heart rate while no phone is connected
+        if (intent != null && intent.getBooleanExtra(EXTRA_OFFLINE_BUFFERING, false)) {
+            feedbackController.enableOfflineHeartRateBuffering(
+                    intent.getIntExtra(EXTRA_CATCH_UP_RATE, HeartRateUplink.DEFAULT_CATCH_UP_RATE));
+        }
+
         // START_STICKY means:
         // → If the service is killed by the system (e.g., due to memory pressure),
         // → Android will try to recreate it after resources are available
@@ -97,11 +112,10 @@ public class BackgroundMonitoringService extends Service {
             bluetoothServerManager.stopServer();
         }
 
-        // Step 2: Stop any ongoing heart rate monitoring or vibration logic
+        // Step 2: Stop any ongoing heart rate monitoring or vibration logic,
+        // and release the CPU wake lock to allow the device to sleep again
         feedbackController.stopHeartRateMonitoring();
-
-        // Step 3: Release the CPU wake lock to allow the device to sleep again
-        releaseWakeLock();
+        feedbackController.release();
     }
 
 
@@ -117,41 +131,6 @@ public class BackgroundMonitoringService extends Service {
         Log.w(TAG, "⚠️ Service task removed (maybe screen off?)");
     }
 
-    /**
-     * Acquires a partial wake lock to keep the CPU running even if the screen turns off.
-     * This is important for long-running background services like Bluetooth or sensor monitoring.
-     *
-     * We suppress the warning because we're intentionally holding the lock indefinitely
-     * until the service is stopped.
-     */
-    @SuppressLint("WakelockTimeout")
-    private void acquireWakeLock() {
-        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
-
-        // Create a partial wake lock (CPU stays on, screen and other components can sleep)
-        wakeLock = powerManager.newWakeLock(
-                PowerManager.PARTIAL_WAKE_LOCK,
-                "SmartwatchHapticSystem::WakeLockTag" // Custom tag for debugging
-        );
-
-        // We don't want Android to count references automatically; we manage this manually
-        wakeLock.setReferenceCounted(false);
-
-        // Acquire the wake lock (no timeout — released manually in onDestroy())
-        wakeLock.acquire();
-    }
-
-
-    /**
-     * Releases the wake lock if it was acquired and is still held.
-     * Always call this during service shutdown to avoid battery drain or system warnings.
-     */
-    private void releaseWakeLock() {
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-        }
-    }
-
     /**
      * This service does not support binding, so return null.
      * This means the service is only started/stopped via startService / stopService
@@ -0,0 +1,23 @@
+// Pure JVM JMH benchmarks for the command and telemetry hot paths (no Android dependencies).
+// Run: ./gradlew :benchmark:jmh  (optionally -PjmhInclude=CommandParser)
+// Results: benchmark/build/results/jmh/results.json
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    implementation(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (project.findProperty("jmhInclude") as String?)?.let { includes.add(it) }
+}
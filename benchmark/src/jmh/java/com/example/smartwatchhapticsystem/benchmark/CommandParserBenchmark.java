@@ -0,0 +1,79 @@
+package com.example.smartwatchhapticsystem.benchmark;
+
+import com.example.smartwatchhapticsystem.core.BinaryProtocol;
+import com.example.smartwatchhapticsystem.core.CommandParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one "Vibrate" command: the byte-level {@link CommandParser} (text and binary framing)
+ * against the original {@code String.trim()/split()/Integer.parseInt()} implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+
+    private final CommandParser parser = new CommandParser();
+    private byte[] vibrateText;
+    private byte[] vibrateBinary;
+    private int vibrateBinaryLength;
+
+    @Setup
+    public void setUp() {
+        vibrateText = "Vibrate:50,3,1000,200\n".getBytes(StandardCharsets.US_ASCII);
+
+        vibrateBinary = new byte[32];
+        int end = BinaryProtocol.beginFrame(vibrateBinary, 0, BinaryProtocol.OP_VIBRATE);
+        end = BinaryProtocol.writeVarint(vibrateBinary, end, 50);
+        end = BinaryProtocol.writeVarint(vibrateBinary, end, 3);
+        end = BinaryProtocol.writeVarint(vibrateBinary, end, 1000);
+        end = BinaryProtocol.writeVarint(vibrateBinary, end, 200);
+        vibrateBinaryLength = BinaryProtocol.endFrame(vibrateBinary, 0, end);
+    }
+
+    @Benchmark
+    public int parseVibrateText() {
+        int result = parser.parse(vibrateText, 0, vibrateText.length);
+        return result + parser.getIntensity() + parser.getPulses() + parser.getDuration() + parser.getInterval();
+    }
+
+    @Benchmark
+    public int parseVibrateBinary() {
+        int result = parser.parseBinary(vibrateBinary, 0, vibrateBinaryLength);
+        return result + parser.getIntensity() + parser.getPulses() + parser.getDuration() + parser.getInterval();
+    }
+
+    /**
+     * Baseline: the String-based parsing the server used before the byte parser.
+     */
+    @Benchmark
+    public int parseVibrateLegacy() {
+        String message = new String(vibrateText, 0, vibrateText.length).trim();
+        String[] parts = message.split(":", 2);
+        if (parts.length != 2 || !parts[0].equals("Vibrate")) {
+            return -1;
+        }
+        String[] values = parts[1].split(",");
+        if (values.length != 4) {
+            return -3;
+        }
+        return Integer.parseInt(values[0].trim()) + Integer.parseInt(values[1].trim())
+                + Integer.parseInt(values[2].trim()) + Integer.parseInt(values[3].trim());
+    }
+}
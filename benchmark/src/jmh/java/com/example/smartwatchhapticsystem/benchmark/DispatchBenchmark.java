@@ -0,0 +1,153 @@
+package com.example.smartwatchhapticsystem.benchmark;
+
+import com.example.smartwatchhapticsystem.core.ByteTransport;
+import com.example.smartwatchhapticsystem.core.CommandParser;
+import com.example.smartwatchhapticsystem.core.FrameReader;
+import com.example.smartwatchhapticsystem.core.HapticCommandQueue;
+import com.example.smartwatchhapticsystem.core.InMemoryServerTransport;
+import com.example.smartwatchhapticsystem.core.MonitoringModeHandler;
+import com.example.smartwatchhapticsystem.core.MonitoringModeRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end command dispatch over an in-memory connection: bytes written by the "phone" are
+ * framed by {@link FrameReader}, parsed by {@link CommandParser}, routed to the monitoring
+ * type's {@link MonitoringModeHandler} and handed to the haptic queue, as in a client session.
+ * Each invocation sends a burst of {@link #BURST} Vibrate commands; scores are per command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    static final int BURST = 64;
+
+    private ByteTransport phone;
+    private OutputStream phoneOutput;
+    private FrameReader reader;
+    private HapticCommandQueue hapticQueue;
+    private byte[] burst;
+    private long framesExpected;
+
+    /**
+     * Queues patterns like the azimuth handler does, without a vibrator behind it.
+     */
+    private static final class QueueingHandler extends MonitoringModeHandler {
+        private final HapticCommandQueue queue;
+
+        QueueingHandler(HapticCommandQueue queue) {
+            super(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth");
+            this.queue = queue;
+        }
+
+        @Override
+        protected boolean vibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+            return queue.offer(0, intensity, pulses, duration, interval, receivedNanos);
+        }
+    }
+
+    /**
+     * The session side: parse, resolve the handler once, dispatch.
+     */
+    private static final class Session implements FrameReader.FrameHandler {
+        private final CommandParser parser = new CommandParser();
+        private final MonitoringModeRegistry registry;
+        private MonitoringModeHandler handler;
+
+        Session(MonitoringModeRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            switch (parser.parse(buffer, offset, length)) {
+                case CommandParser.RESULT_MONITORING:
+                    handler = registry.resolve(parser.getMonitoringMode(), parser.getMonitoringName());
+                    break;
+                case CommandParser.RESULT_VIBRATE:
+                    if (handler != null) {
+                        handler.handleVibrate(parser.getIntensity(), parser.getPulses(),
+                                parser.getDuration(), parser.getInterval());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onFrameDropped(int length) {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hapticQueue = new HapticCommandQueue(BURST * 2);
+        MonitoringModeRegistry registry = new MonitoringModeRegistry();
+        registry.register(new QueueingHandler(hapticQueue));
+
+        InMemoryServerTransport transport = new InMemoryServerTransport("UserID-1-SmartWatchID-1");
+        phone = transport.connect("Android-1");
+        phoneOutput = phone.getOutputStream();
+        ByteTransport watch = transport.accept();
+        reader = new FrameReader(watch.getInputStream(), new Session(registry));
+
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < BURST; i++) {
+            commands.append("Vibrate:").append(50 + i).append(",3,1000,200\n");
+        }
+        burst = commands.toString().getBytes(StandardCharsets.US_ASCII);
+
+        // Select the monitoring type once, as a phone does after connecting
+        phoneOutput.write("Monitoring:SunAzimuth\n".getBytes(StandardCharsets.US_ASCII));
+        framesExpected = 1;
+        drain();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        phone.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int dispatchBurst() throws IOException {
+        phoneOutput.write(burst);
+        framesExpected += BURST;
+        drain();
+
+        // The haptic scheduler thread would consume these
+        int played = 0;
+        while (hapticQueue.poll()) {
+            played += hapticQueue.getIntensity();
+        }
+        return played;
+    }
+
+    private void drain() throws IOException {
+        while (reader.getFramesDelivered() < framesExpected) {
+            reader.readOnce();
+        }
+    }
+}
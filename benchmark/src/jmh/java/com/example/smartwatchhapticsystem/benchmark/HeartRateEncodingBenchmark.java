@@ -0,0 +1,65 @@
+package com.example.smartwatchhapticsystem.benchmark;
+
+import com.example.smartwatchhapticsystem.core.HeartRateFrameEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding one heart-rate telemetry line: the pre-encoded {@link HeartRateFrameEncoder}
+ * against the per-sample String concatenation {@code startSendingHeartRate} used originally.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeartRateEncodingBenchmark {
+
+    private static final String USER_ID = "12";
+    private static final String WATCH_ID = "34";
+    private static final String ANDROID_ID = "56";
+
+    private final HeartRateFrameEncoder encoder = new HeartRateFrameEncoder(USER_ID, WATCH_ID, ANDROID_ID);
+    private final byte[] batch = new byte[encoder.getMaxTimestampedLength()];
+    private int sample;
+
+    private int nextHeartRate() {
+        sample = (sample + 1) & 63;
+        return 60 + sample; // 60..123 BPM, so the digit count varies
+    }
+
+    @Benchmark
+    public int encodePreEncoded() {
+        return encoder.encode(nextHeartRate());
+    }
+
+    @Benchmark
+    public int encodeTimestamped() {
+        return encoder.encodeTo(batch, 0, nextHeartRate(), 1_700_000_000_000L + sample);
+    }
+
+    /**
+     * Baseline: the String built and encoded for every sample before the encoder existed.
+     */
+    @Benchmark
+    public byte[] encodeLegacyString() {
+        String message = "MonitoringType:HeartRate," +
+                "Value:" + nextHeartRate() + "," +
+                "UserID:" + USER_ID + "," +
+                "SmartWatchID:" + WATCH_ID + "," +
+                "AndroidID:" + ANDROID_ID + "\n";
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.smartwatchhapticsystem.benchmark;
+
+import com.example.smartwatchhapticsystem.core.WaveformBuilder;
+import com.example.smartwatchhapticsystem.core.WaveformCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the timing/amplitude arrays of a heart-rate vibration, as done for every
+ * "Vibrate" command by {@code triggerHeartRateVibration}, against looking the prebuilt
+ * waveform up in the {@link WaveformCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveformBenchmark {
+
+    @Param({"3", "20"})
+    public int pulses;
+
+    // On the watch the factory wraps the arrays in a VibrationEffect
+    private final WaveformCache<long[]> cache = new WaveformCache<>((timings, amplitudes) -> timings);
+
+    @Benchmark
+    public void buildWaveform(Blackhole blackhole) {
+        blackhole.consume(WaveformBuilder.timings(pulses, 1000, 200));
+        blackhole.consume(WaveformBuilder.amplitudes(50, pulses));
+    }
+
+    @Benchmark
+    public long[] cachedWaveform() {
+        return cache.get(50, pulses, 1000, 200);
+    }
+}
@@ -0,0 +1,15 @@
+// Android-free core: protocol parsing, client sessions, waveforms, haptic scheduling and
+// heart-rate telemetry. Talks to the platform only through Logger, Clock, HapticSink,
+// HeartRateSource and ByteTransport; the app module provides the Android implementations.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
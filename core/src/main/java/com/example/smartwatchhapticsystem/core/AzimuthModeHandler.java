@@ -0,0 +1,50 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Azimuth monitoring ("SunAzimuth", "MoonAzimuth"): Vibrate commands are played as azimuth
+ * cues, which the {@link HapticScheduler} coalesces so only the newest cue plays.
+ * Both celestial bodies share the sun azimuth pattern; each keeps its own counters.
+ * "Azimuth:&lt;degrees&gt;" plays a prebuilt direction cue from the {@link AzimuthPatternLibrary}.
+ * Cues are "latest wins": commands over the admission limit wait for the playing cue to end,
+ * and only the newest of them plays.
+ */
+public class AzimuthModeHandler extends MonitoringModeHandler {
+
+    // Bearings change quickly while the user turns; anything faster waits for the playing cue
+    static final int ADMISSION_BURST = 4;
+    static final int ADMISSION_RATE = 5;
+
+    private final HapticFeedback hapticFeedback;
+
+    public AzimuthModeHandler(int mode, String name, HapticFeedback hapticFeedback) {
+        super(mode, name);
+        this.hapticFeedback = hapticFeedback;
+        setAdmission(ADMISSION_BURST, ADMISSION_RATE);
+    }
+
+    @Override
+    protected boolean vibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return hapticFeedback.triggerAzimuth(intensity, pulses, duration, interval, receivedNanos);
+    }
+
+    @Override
+    protected boolean vibrateAt(long atNanos, int intensity, int pulses, int duration, int interval) {
+        return hapticFeedback.triggerAt(HapticScheduler.KIND_AZIMUTH, intensity, pulses, duration, interval,
+                atNanos);
+    }
+
+    @Override
+    protected boolean azimuth(int degrees, long receivedNanos) {
+        return hapticFeedback.triggerAzimuthPattern(degrees, receivedNanos, false);
+    }
+
+    @Override
+    protected boolean vibrateDeferred(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return hapticFeedback.triggerAzimuth(intensity, pulses, duration, interval, receivedNanos, true);
+    }
+
+    @Override
+    protected boolean azimuthDeferred(int degrees, long receivedNanos) {
+        return hapticFeedback.triggerAzimuthPattern(degrees, receivedNanos, true);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Direction cues for azimuth guidance, one prebuilt waveform per {@link #SECTOR_DEGREES}° sector of
+ * the bearing sent with "Azimuth:&lt;degrees&gt;" (0 = straight ahead, clockwise):
+ * <ul>
+ *   <li>ahead: one long steady pulse ("on target");</li>
+ *   <li>behind: three short steady pulses;</li>
+ *   <li>to the right: rising ramps; to the left: falling ramps. The further the target is from
+ *       straight ahead, the more ramps (1 to 4).</li>
+ * </ul>
+ * The timing/amplitude arrays are defined once per class, and every waveform is built by the
+ * {@link WaveformCache.Factory} when the library is constructed (at startup), so playing a cue is
+ * an array lookup: the watch never builds a waveform on the hot path, and the phone sends one
+ * small number instead of four pattern parameters.
+ *
+ * Thread-safe (immutable after construction). No Android dependencies.
+ *
+ * @param <T> The built waveform type (VibrationEffect on the watch).
+ */
+public final class AzimuthPatternLibrary<T> {
+
+    public static final int SECTOR_DEGREES = 15;
+    public static final int SECTOR_COUNT = 360 / SECTOR_DEGREES;
+
+    // Pattern shape
+    static final int MAX_AMPLITUDE = 255;
+    static final int RAMP_STEPS = 5;
+    static final int RAMP_STEP_MILLIS = 30;
+    static final int PULSE_MILLIS = RAMP_STEPS * RAMP_STEP_MILLIS;
+    static final int GAP_MILLIS = 120;
+    static final int AHEAD_MILLIS = 300;
+    static final int BEHIND_PULSE_MILLIS = 80;
+    static final int BEHIND_PULSES = 3;
+
+    private static final long[][] TIMINGS = new long[SECTOR_COUNT][];
+    private static final int[][] AMPLITUDES = new int[SECTOR_COUNT][];
+    private static final long[] DURATIONS = new long[SECTOR_COUNT];
+
+    static {
+        for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+            define(sector);
+        }
+    }
+
+    private final Object[] waveforms = new Object[SECTOR_COUNT];
+
+    /**
+     * Builds every sector's waveform now.
+     */
+    public AzimuthPatternLibrary(WaveformCache.Factory<T> factory) {
+        for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+            waveforms[sector] = factory.create(TIMINGS[sector], AMPLITUDES[sector]);
+        }
+    }
+
+    /**
+     * @return The prebuilt waveform of {@code sector} (see {@link #sectorOf}).
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int sector) {
+        return (T) waveforms[sector];
+    }
+
+    /**
+     * @return The sector of a bearing in degrees (any integer, normalised to 0–359), rounded to the nearest.
+     */
+    public static int sectorOf(int degrees) {
+        int normalised = Math.floorMod(degrees, 360);
+        return ((normalised + SECTOR_DEGREES / 2) / SECTOR_DEGREES) % SECTOR_COUNT;
+    }
+
+    /** Total length of a sector's pattern in milliseconds. */
+    public static long durationMillis(int sector) {
+        return DURATIONS[sector];
+    }
+
+    /** Number of pulses (or ramps) in a sector's pattern. */
+    public static int pulses(int sector) {
+        int offset = Math.min(sector, SECTOR_COUNT - sector);
+        if (offset == 0) {
+            return 1;
+        }
+        if (offset == SECTOR_COUNT / 2) {
+            return BEHIND_PULSES;
+        }
+        return 1 + (offset - 1) / 3;
+    }
+
+    /**
+     * Fills the timing and amplitude arrays of one sector; each pulse is followed by a pause.
+     */
+    private static void define(int sector) {
+        int offset = Math.min(sector, SECTOR_COUNT - sector);
+        int pulses = pulses(sector);
+        boolean steady = offset == 0 || offset == SECTOR_COUNT / 2;
+        int stepsPerPulse = steady ? 1 : RAMP_STEPS;
+        boolean rising = sector < SECTOR_COUNT / 2;
+
+        long[] timings = new long[1 + pulses * (stepsPerPulse + 1)];
+        int[] amplitudes = new int[timings.length];
+        int index = 1; // timings[0] = 0, amplitudes[0] = 0: start immediately
+        for (int pulse = 0; pulse < pulses; pulse++) {
+            for (int step = 0; step < stepsPerPulse; step++) {
+                if (steady) {
+                    timings[index] = offset == 0 ? AHEAD_MILLIS : BEHIND_PULSE_MILLIS;
+                    amplitudes[index] = MAX_AMPLITUDE;
+                } else {
+                    int level = rising ? step + 1 : RAMP_STEPS - step;
+                    timings[index] = RAMP_STEP_MILLIS;
+                    amplitudes[index] = MAX_AMPLITUDE * level / RAMP_STEPS;
+                }
+                index++;
+            }
+            timings[index] = steady && offset == SECTOR_COUNT / 2 ? BEHIND_PULSE_MILLIS : GAP_MILLIS;
+            amplitudes[index] = 0;
+            index++;
+        }
+
+        long duration = 0;
+        for (long timing : timings) {
+            duration += timing;
+        }
+        TIMINGS[sector] = timings;
+        AMPLITUDES[sector] = amplitudes;
+        DURATIONS[sector] = duration;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary wire format, negotiated per connection as an alternative to the text commands.
+ *
+ * Handshake: the client sends the text frame {@code "Protocol:Binary\n"}; the watch answers with
+ * {@link #HANDSHAKE_ACK} and every following frame in both directions uses this layout:
+ * <pre>
+ * +--------+--------+-------------------------+--------+
+ * | opcode | length | payload (varint fields) | crc-8  |
+ * +--------+--------+-------------------------+--------+
+ *   1 byte   1 byte        length bytes          1 byte
+ * </pre>
+ * Fields are unsigned LEB128 varints. The CRC-8 (polynomial 0x07) covers opcode, length and payload.
+ * Clients that never send the handshake keep using the text protocol.
+ *
+ * No Android dependencies.
+ */
+public final class BinaryProtocol {
+
+    /** Text command (before the switch) and acknowledgement (last text frame sent by the watch). */
+    public static final String HANDSHAKE_VALUE = "Binary";
+    public static final byte[] HANDSHAKE_ACK = "Protocol:Binary\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static final int HEADER_LENGTH = 2;   // opcode + length
+    public static final int TRAILER_LENGTH = 1;  // crc-8
+    public static final int MAX_VARINT_LENGTH = 5;
+    public static final int MAX_VARLONG_LENGTH = 10;
+    public static final int MAX_PAYLOAD_LENGTH = 255;  // Fits the 1-byte length
+    public static final int MAX_FRAME_LENGTH = HEADER_LENGTH + MAX_PAYLOAD_LENGTH + TRAILER_LENGTH;
+
+    /** Samples per heart-rate batch frame, chosen so the payload always fits the 1-byte length. */
+    public static final int MAX_BATCH_SAMPLES_PER_FRAME = 16;
+
+    // Inbound opcodes (phone → watch)
+    public static final int OP_MONITORING = 0x01;  // varint mode (CommandParser.MODE_*)
+    public static final int OP_VIBRATE = 0x02;     // varint intensity, pulses, duration, interval
+    public static final int OP_BATCH = 0x03;       // varint windowMillis, maxSamples, mode (HeartRateUplink.MODE_*)
+    public static final int OP_STATS = 0x04;       // no payload; answered with OP_STATS_REPLY
+    public static final int OP_TRACE = 0x05;       // varint TraceBuffer.LEVEL_*, or CommandParser.TRACE_DUMP
+    public static final int OP_ZONES = 0x06;       // varint zone boundaries b1, b2, b3 (bpm)
+    public static final int OP_ALERT = 0x07;       // varint zone, intensity, pulses, duration, interval
+    public static final int OP_DEADBAND = 0x08;    // varint deadbandBpm, keepAliveMillis
+    public static final int OP_AZIMUTH = 0x09;     // varint degrees (0–359)
+    public static final int OP_RATE_LIMIT = 0x0A;  // varint burst, ratePerSecond (0 = unlimited; 0, 0 = type limits)
+    public static final int OP_SYNC = 0x0B;        // varint token; answered with OP_SYNC_REPLY
+    public static final int OP_VIBRATE_AT = 0x0C;  // varlong atMicros (session clock), varint intensity,
+                                                   // pulses, duration, interval
+
+    // Outbound opcodes (watch → phone)
+    public static final int OP_IDENTITY = 0x80;    // varint userId, watchId, androidId (0 = unknown)
+    public static final int OP_HEART_RATE = 0x81;  // varint bpm
+    public static final int OP_HEART_RATE_BATCH = 0x82; // varint count, varlong first timestamp (ms),
+                                                        // then per sample: varint bpm, varlong delta (ms)
+    public static final int OP_STATS_REPLY = 0x83; // varint firstField, fieldCount, then varlong fields;
+                                                   // one snapshot spans several frames, see
+                                                   // HotPathMetrics#encodeSnapshot
+    public static final int OP_TRACE_EVENT = 0x84; // varlong age (µs), varint event, varlong arg0, arg1;
+                                                   // an empty OP_TRACE_EVENT frame ends a dump
+    public static final int OP_SYNC_REPLY = 0x85;  // varint token, varlong receivedMicros, sentMicros
+                                                   // (session clock)
+
+    private static final byte[] CRC8_TABLE = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            CRC8_TABLE[i] = (byte) crc;
+        }
+    }
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Computes the CRC-8 of {@code buffer[offset, offset + length)}.
+     */
+    public static int crc8(byte[] buffer, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc = CRC8_TABLE[(crc ^ buffer[i]) & 0xFF] & 0xFF;
+        }
+        return crc;
+    }
+
+    /**
+     * Writes {@code value} (must be non-negative) as an unsigned varint.
+     *
+     * @return The position right after the written bytes.
+     */
+    public static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Writes {@code value} (must be non-negative) as an unsigned varint of up to 10 bytes.
+     *
+     * @return The position right after the written bytes.
+     */
+    public static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Starts a frame by reserving the header.
+     *
+     * @return The position where the payload starts.
+     */
+    public static int beginFrame(byte[] buffer, int offset, int opcode) {
+        buffer[offset] = (byte) opcode;
+        return offset + HEADER_LENGTH;
+    }
+
+    /**
+     * Completes a frame started with {@link #beginFrame}: fills in the length and appends the CRC.
+     *
+     * @param end Position right after the last payload byte.
+     * @return Total frame length in bytes.
+     * @throws IllegalArgumentException If the payload is longer than {@link #MAX_PAYLOAD_LENGTH}.
+     */
+    public static int endFrame(byte[] buffer, int offset, int end) {
+        if (end - offset - HEADER_LENGTH > MAX_PAYLOAD_LENGTH) {
+            throw new IllegalArgumentException("payload does not fit a frame: " + (end - offset - HEADER_LENGTH));
+        }
+        buffer[offset + 1] = (byte) (end - offset - HEADER_LENGTH);
+        buffer[end] = (byte) crc8(buffer, offset, end - offset);
+        return end - offset + TRAILER_LENGTH;
+    }
+
+    /**
+     * Returns the total length (header + payload + CRC) of a frame from its length byte.
+     */
+    public static int frameLength(byte lengthByte) {
+        return HEADER_LENGTH + (lengthByte & 0xFF) + TRAILER_LENGTH;
+    }
+}
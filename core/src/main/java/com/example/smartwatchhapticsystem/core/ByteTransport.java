@@ -0,0 +1,34 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * One bidirectional byte-stream connection to a client (RFCOMM socket, TCP socket or in-memory pipe).
+ *
+ * The {@link ClientSession} reads commands from {@link #getInputStream()} and writes telemetry to
+ * {@link #getOutputStream()}; {@link #close()} must unblock a pending read.
+ *
+ * No Android dependencies.
+ */
+public interface ByteTransport extends Closeable {
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * @return Name of the remote end (e.g. the phone's Bluetooth alias "Android-7"), or null if unknown.
+     */
+    String getRemoteName();
+
+    /**
+     * Stable identity of the remote end, for state kept across its reconnections. Unlike the
+     * name, which users can edit and two phones may share, it tells devices apart.
+     *
+     * @return The remote address (e.g. the phone's Bluetooth MAC address), or null if unknown.
+     */
+    String getRemoteAddress();
+}
@@ -0,0 +1,929 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State and command handling of one connected client.
+ *
+ * Everything that used to be shared on the server (monitoring type, user/watch/Android IDs,
+ * protocol, batching configuration, heart-rate uplink) lives here, so several phones or
+ * logging stations can be connected at the same time without affecting each other.
+ * {@link #run()} serves the connection until it closes; on the watch it is executed on a worker
+ * thread of the BluetoothServerManager's client pool.
+ *
+ * Every write goes through the session's {@link ConnectionWriter} thread: the reader thread and
+ * the heart-rate uplink only queue messages, so a stalled radio never blocks them, and a write
+ * blocked past the timeout closes the connection.
+ *
+ * Heart rate is received through {@link HeartRateService#subscribe}, which shares one sensor
+ * registration among all sessions; a session leaving only unsubscribes itself. After "Zones:" the
+ * session subscribes to the {@link HeartRateProcessor} instead and only sends zone changes;
+ * "Alert:" rules are played on the watch by the processor.
+ *
+ * "Vibrate:" and "Azimuth:" commands pass the session's {@link TokenBucket} first. It admits
+ * everything until the client sends "RateLimit:", so existing clients are never throttled without
+ * knowing it; "RateLimit:0,0" follows the limits of the monitoring type. A command over the limit
+ * is handed to the handler as deferred: azimuth cues then play once the current pattern is over, newest only, and
+ * heart-rate alerts are rejected. Both are counted in the "Stats:" reply.
+ *
+ * Scheduled haptics use the session clock: watch monotonic time since the connection opened.
+ * The phone estimates its offset NTP-style with "Sync:&lt;token&gt;", answered at once with the
+ * token and the session-clock times (µs) at which the ping was read and the reply was queued.
+ * With t0/t3 the phone's send/receive times and t1/t2 the watch's, the offset is
+ * ((t1 - t0) + (t2 - t3)) / 2; the sample with the shortest round trip is the most accurate.
+ * "VibrateAt:&lt;atMicros&gt;,..." then plays a pattern at that session-clock time (µs, like the reply) on the haptic
+ * scheduler thread, so Bluetooth jitter no longer shifts it; its lateness is in "Stats:".
+ *
+ * Traffic, parse failures, dropped commands and sensor-to-send latency are recorded in the
+ * server-wide {@link HotPathMetrics}, which a client can query with "Stats:". Per-frame events go
+ * to its {@link TraceBuffer} instead of the log ("Trace:Dump" returns them). With a
+ * {@link SessionRecorder} set, every frame and write is also logged for {@link SessionReplayer}.
+ *
+ * The session keeps the CPU awake through {@link WakeLeases}: a {@link WakeLeases#REASON_SESSION}
+ * lease renewed by every inbound frame, so an idle connection lets the watch sleep (the radio wakes
+ * it for the next frame), and a {@link WakeLeases#REASON_TELEMETRY} lease from each heart-rate
+ * sample until its batch has been flushed.
+ *
+ * No Android dependencies: the platform is reached through {@link ByteTransport},
+ * {@link HeartRateService}, the {@link MonitoringModeHandler}s and {@link Logger}.
+ */
+public final class ClientSession implements Runnable, FrameReader.FrameHandler {
+    private static final String TAG = "ClientSession";
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // Wake lease of a connection, renewed by every inbound frame
+    public static final long SESSION_LEASE_MILLIS = 10_000;
+    // Added to the batch window to cover encoding and the writer thread's flush
+    static final long TELEMETRY_LEASE_SLACK_MILLIS = 1000;
+    // "VibrateAt:" targets further ahead are rejected; targets missed by more are not played
+    public static final long MAX_SCHEDULE_AHEAD_MILLIS = 60_000;
+    public static final long MAX_LATENESS_MILLIS = 250;
+    private static final byte[] SYNC_PREFIX = "Sync:".getBytes(StandardCharsets.US_ASCII);
+    // The larger of the binary frame and the text line "Sync:<int>,<long>,<long>\n"
+    private static final int SYNC_REPLY_LENGTH = Math.max(
+            BinaryProtocol.HEADER_LENGTH + BinaryProtocol.MAX_VARINT_LENGTH
+                    + 2 * BinaryProtocol.MAX_VARLONG_LENGTH + BinaryProtocol.TRAILER_LENGTH,
+            SYNC_PREFIX.length + 11 + 1 + 20 + 1 + 20 + 1);
+
+    /**
+     * What a session had negotiated (monitoring type, batching, protocol, zone mode, dead-band,
+     * rate limit), carried over to the next
+     * connection of the same device so a phone that reconnects after a radio hiccup resumes
+     * streaming without re-sending its setup commands.
+     */
+    public static final class ResumeState {
+        final int monitoringMode;
+        final String monitoringName;
+        final boolean binary;
+        final boolean batchingConfigured;
+        final int batchWindowMillis;
+        final int batchMaxSamples;
+        final int batchMode;
+        final boolean zoneTelemetry;
+        final int deadbandBpm;
+        final long keepAliveMillis;
+        final boolean typeRateLimit;
+        final int rateLimitBurst;
+        final int rateLimitPerSecond;
+        // Elapsed realtime keeps counting while the CPU sleeps (System.nanoTime may not)
+        private final Clock clock;
+        private final long savedNanos;
+
+        ResumeState(Clock clock, int monitoringMode, String monitoringName, boolean binary, boolean batchingConfigured,
+                    int batchWindowMillis, int batchMaxSamples, int batchMode, boolean zoneTelemetry,
+                    int deadbandBpm, long keepAliveMillis, boolean typeRateLimit, int rateLimitBurst,
+                    int rateLimitPerSecond) {
+            this.monitoringMode = monitoringMode;
+            this.monitoringName = monitoringName;
+            this.binary = binary;
+            this.batchingConfigured = batchingConfigured;
+            this.batchWindowMillis = batchWindowMillis;
+            this.batchMaxSamples = batchMaxSamples;
+            this.batchMode = batchMode;
+            this.zoneTelemetry = zoneTelemetry;
+            this.deadbandBpm = deadbandBpm;
+            this.keepAliveMillis = keepAliveMillis;
+            this.typeRateLimit = typeRateLimit;
+            this.rateLimitBurst = rateLimitBurst;
+            this.rateLimitPerSecond = rateLimitPerSecond;
+            this.clock = clock;
+            this.savedNanos = clock.elapsedRealtimeNanos();
+        }
+
+        public long getAgeMillis() {
+            return (clock.elapsedRealtimeNanos() - savedNanos) / 1_000_000L;
+        }
+    }
+
+    private final ByteTransport transport;
+    private final String deviceName;
+    private final HeartRateService heartRateService;
+    private final MonitoringModeRegistry modeRegistry;
+    private final Logger logger;
+    private final HotPathMetrics metrics;
+    private final TraceBuffer trace;
+    private final WakeLeases wakeLeases;
+    private final int id = NEXT_ID.incrementAndGet();
+    private final CommandParser parser = new CommandParser(); // Reused for every message on this connection
+
+    private OutputStream output;      // Control queue of the writer (replies, handshakes)
+    private volatile ConnectionWriter writer;
+    private FrameReader reader;
+    private SessionRecorder recorder;
+    private long bytesInCounted;
+    private long clockEpochNanos; // Zero of the session clock ("Sync:", "VibrateAt:")
+    private final byte[] syncReply = new byte[SYNC_REPLY_LENGTH]; // Copied by the writer's queue, so reusable
+
+    // Session identity, parsed from the Bluetooth names when the client connects
+    private String userId = "UnknownUser";
+    private String watchId = "UnknownWatchID";
+    private String androidId = "UnknownAndroid";
+
+    // Handler of the selected monitoring type, resolved once per "Monitoring:" command
+    private String monitoringType = "";
+    private int monitoringMode = CommandParser.MODE_UNKNOWN;
+    private MonitoringModeHandler modeHandler;
+    private boolean heartRateStarted = false;
+
+    // State of the previous connection of this device, applied when this one starts
+    private ResumeState resumeState;
+    private boolean heartRateAwaitsBinary = false;
+
+    // Heart rate uplink (created once streaming starts) and its requested configuration
+    private HeartRateUplink uplink;
+    private HeartRateTelemetryWriter telemetryWriter;
+    private OnHeartRateUpdateListener heartRateListener;
+    private boolean batchingConfigured = false;
+    private volatile int batchWindowMillis = 0; // Also read by the sensor thread for the wake lease
+    private int batchMaxSamples = 1;
+    private int batchMode = HeartRateUplink.MODE_ALL;
+
+    // Zone mode: the listener is subscribed to the processor's state changes instead of raw samples
+    private boolean zoneTelemetry = false;
+    private volatile boolean subscribedToZones = false; // Read by the heart-rate listener
+
+    // Send policy: samples within the dead-band of the last one sent are dropped ("Deadband:")
+    private final HeartRateDeadband deadband = new HeartRateDeadband();
+
+    // Admission control of vibration commands: unlimited until "RateLimit:" is sent
+    private final TokenBucket admission = new TokenBucket();
+    private boolean typeRateLimit = false; // "RateLimit:0,0": follow the monitoring type's limits
+
+    // This session's vibration commands (reader thread only); the handlers count them server-wide
+    private long vibrations;
+    private long rejected;
+    private long deferred;
+    private long rateLimited;
+
+    public ClientSession(ByteTransport transport, String deviceName, HeartRateService heartRateService,
+                         MonitoringModeRegistry modeRegistry, HotPathMetrics metrics, Logger logger) {
+        this.transport = transport;
+        this.deviceName = deviceName;
+        this.heartRateService = heartRateService;
+        this.modeRegistry = modeRegistry;
+        this.metrics = metrics;
+        this.trace = metrics.getTrace();
+        this.wakeLeases = metrics.getWakeLeases();
+        this.logger = logger;
+    }
+
+    /**
+     * Sets the IDs sent with this session's heart-rate telemetry; call before {@link #run()}.
+     */
+    public void setIdentity(String userId, String watchId, String androidId) {
+        this.userId = userId;
+        this.watchId = watchId;
+        this.androidId = androidId;
+    }
+
+    /**
+     * Records this session's inbound frames and outbound writes; call before {@link #run()}.
+     */
+    public void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Resumes the monitoring type and batching of the device's previous connection; call before
+     * {@link #run()}. A binary client's telemetry restarts once it repeats the handshake.
+     */
+    public void resume(ResumeState state) {
+        this.resumeState = state;
+    }
+
+    /**
+     * @return What this session negotiated, for {@link #resume} on the next connection; null if the
+     * client never selected a monitoring type.
+     */
+    public ResumeState getResumeState() {
+        if (modeHandler == null) {
+            return null;
+        }
+        return new ResumeState(metrics.getClock(), monitoringMode, monitoringType, reader != null && reader.isBinary(),
+                batchingConfigured, batchWindowMillis, batchMaxSamples, batchMode, zoneTelemetry,
+                deadband.getDeadbandBpm(), deadband.getKeepAliveMillis(),
+                typeRateLimit, admission.getBurst(), admission.getRatePerSecond());
+    }
+
+    public ByteTransport getTransport() {
+        return transport;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /** Number of this session, as recorded in trace events. */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Closes the connection if a write has been blocked for longer than the write timeout;
+     * call periodically (the server does it from its heartbeat).
+     *
+     * @return true if the connection was stalled.
+     */
+    public boolean checkWriteTimeout() {
+        ConnectionWriter current = writer;
+        return current != null && current.checkWriteTimeout();
+    }
+
+    /**
+     * Handles communication with the connected client until the connection closes.
+     * Interprets incoming commands (e.g., "Monitoring:HeartRate", "Vibrate:...") and responds accordingly.
+     * Commands are newline-delimited; several may arrive in one read or one may span several reads.
+     * A client may switch the connection to the compact {@link BinaryProtocol} with "Protocol:Binary".
+     */
+    @Override
+    public void run() {
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_CLIENT_CONNECTED, id, 0);
+        }
+        wakeLeases.lease(WakeLeases.REASON_SESSION, SESSION_LEASE_MILLIS);
+        clockEpochNanos = System.nanoTime();
+        try (
+                // Step 1: Open input/output streams of the transport (RFCOMM, TCP or in-memory)
+                InputStream input = transport.getInputStream();
+                OutputStream output = transport.getOutputStream()
+        ) {
+            // Step 2: All writes go through this connection's writer thread, so neither the
+            // reader nor the uplink ever blocks on the radio
+            writer = new ConnectionWriter(recorder != null ? recorder.wrapOutput(id, output) : output,
+                    logger, trace, id, this::abort);
+            writer.setSentListener(metrics::recordSent);
+            writer.start("ClientWriter-" + id);
+            this.output = writer.controlStream();
+
+            // Step 3: Read newline-delimited frames from the client; commands may be merged
+            // into one read or split across several, the FrameReader reassembles them
+            reader = new FrameReader(input, this);
+            if (resumeState != null) {
+                applyResumeState(resumeState);
+            }
+            reader.run();
+
+        } catch (IOException e) {
+            // Handle disconnection or communication failure
+            logger.e(TAG, "❌ Error while reading from socket (" + deviceName + "): " + e.getMessage());
+        } finally {
+            // Step 4: Clean up when the socket is closed
+            try {
+                transport.close();
+                logger.d(TAG, "🔌 Socket closed (" + deviceName + "). Stopping heart rate streaming.");
+            } catch (IOException e) {
+                logger.e(TAG, "❌ Failed to close socket", e);
+            }
+            close();
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_CLIENT_DISCONNECTED, id,
+                        reader != null ? reader.getFramesDelivered() : 0);
+            }
+        }
+    }
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+        countBytesIn();
+        metrics.incrementMessagesIn();
+        wakeLeases.lease(WakeLeases.REASON_SESSION, SESSION_LEASE_MILLIS);
+
+        // Step 1: Parse command and payload straight from the frame bytes (no String allocation)
+        boolean binary = reader.isBinary();
+        if (recorder != null) {
+            recorder.record(binary ? SessionRecorder.TYPE_INBOUND_BINARY : SessionRecorder.TYPE_INBOUND_TEXT,
+                    id, buffer, offset, length);
+        }
+        int result = binary
+                ? parser.parseBinary(buffer, offset, length)
+                : parser.parse(buffer, offset, length);
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_FRAME, result, length);
+        }
+
+        // Step 2: Handle the command
+        switch (result) {
+            case CommandParser.RESULT_MONITORING:
+                monitoringType = parser.getMonitoringName();
+                monitoringMode = parser.getMonitoringMode();
+                modeHandler = modeRegistry.resolve(monitoringMode, monitoringType);
+                applyAdmissionLimits();
+                logger.d(TAG, "📌 Monitoring Type set to: " + monitoringType);
+
+                if (modeHandler != null && modeHandler.streamsHeartRate() && !heartRateStarted) {
+                    heartRateStarted = true;
+                    startHeartRateUplink(); // Begin heart rate streaming
+                }
+                break;
+
+                // Handle Vibration command
+            case CommandParser.RESULT_VIBRATE:
+                handleVibrateCommand(parser.getIntensity(), parser.getPulses(),
+                        parser.getDuration(), parser.getInterval(), reader.getLastReadNanos());
+                break;
+
+            case CommandParser.RESULT_AZIMUTH:
+                handleAzimuthCommand(parser.getAzimuthDegrees(), reader.getLastReadNanos());
+                break;
+
+            case CommandParser.RESULT_VIBRATE_AT:
+                handleVibrateAtCommand(parser.getVibrateAtMicros(), parser.getVibrateAtIntensity(),
+                        parser.getVibrateAtPulses(), parser.getVibrateAtDuration(),
+                        parser.getVibrateAtInterval(), reader.getLastReadNanos());
+                break;
+
+            case CommandParser.RESULT_SYNC:
+                sendSyncReply(parser.getSyncToken(), reader.getLastReadNanos(), binary);
+                break;
+
+            case CommandParser.RESULT_PROTOCOL_BINARY:
+                switchToBinary();
+                break;
+
+            case CommandParser.RESULT_BATCH:
+                configureBatching(parser.getBatchWindowMillis(), parser.getBatchMaxSamples(),
+                        parser.getBatchMode());
+                break;
+
+            case CommandParser.RESULT_STATS:
+                sendStats(binary);
+                break;
+
+            case CommandParser.RESULT_TRACE:
+                handleTraceCommand(parser.getTraceCommand(), binary);
+                break;
+
+            case CommandParser.RESULT_ZONES:
+                configureZones(parser.getZoneBoundary(0), parser.getZoneBoundary(1), parser.getZoneBoundary(2));
+                break;
+
+            case CommandParser.RESULT_DEADBAND:
+                configureDeadband(parser.getDeadbandBpm(), parser.getKeepAliveMillis());
+                break;
+
+            case CommandParser.RESULT_RATE_LIMIT:
+                configureRateLimit(parser.getRateLimitBurst(), parser.getRateLimitPerSecond());
+                break;
+
+            case CommandParser.RESULT_ALERT:
+                configureAlert(parser.getAlertZone(), parser.getAlertIntensity(), parser.getAlertPulses(),
+                        parser.getAlertDuration(), parser.getAlertInterval());
+                break;
+
+            case CommandParser.RESULT_EMPTY:
+                break;
+
+            default:
+                metrics.incrementParseFailures();
+                if (TraceBuffer.COMPILED) {
+                    trace.record(TraceBuffer.EVENT_PARSE_FAILED, result, length);
+                }
+
+                // Error path only: decode the raw bytes for the log
+                logInvalidMessage(result, binary
+                        ? "<binary frame, " + length + " bytes>"
+                        : new String(buffer, offset, length).trim());
+                break;
+        }
+    }
+
+    @Override
+    public boolean isCompleteFrame(byte[] buffer, int offset, int length) {
+        return parser.isComplete(buffer, offset, length);
+    }
+
+    @Override
+    public void onFrameDropped(int length) {
+        metrics.incrementDroppedCommands();
+        logger.e(TAG, "❌ Dropped oversized frame (" + length + "+ bytes)");
+    }
+
+    /**
+     * Triggers vibration feedback for a parsed "Vibrate" command through the handler of the
+     * current monitoring type, which owns the pattern and its counters.
+     * A command over the admission limit is handed over as deferred (see {@link #countOverLimit}).
+     * If the monitoring type is unknown or not supported, the command is logged and ignored.
+     */
+    private void handleVibrateCommand(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        MonitoringModeHandler handler = modeHandler;
+        if (handler != null) {
+            if (!admission.tryAcquire(receivedNanos)) {
+                countOverLimit(handler.deferVibrate(intensity, pulses, duration, interval, receivedNanos));
+            } else {
+                countHandled(handler.handleVibrate(intensity, pulses, duration, interval, receivedNanos));
+            }
+        } else {
+            countHandled(false);
+            logger.w(TAG, "⚠️ Vibration command received, but monitoring type is unknown or unsupported: " + monitoringType);
+        }
+    }
+
+    /**
+     * Plays the prebuilt direction cue of an "Azimuth:" command through the handler of the current
+     * monitoring type (only the azimuth types have direction cues).
+     */
+    private void handleAzimuthCommand(int degrees, long receivedNanos) {
+        MonitoringModeHandler handler = modeHandler;
+        if (handler != null && !admission.tryAcquire(receivedNanos)) {
+            countOverLimit(handler.deferAzimuth(degrees, receivedNanos));
+        } else if (handler != null) {
+            countHandled(handler.handleAzimuth(degrees, receivedNanos));
+        } else {
+            countHandled(false);
+            logger.w(TAG, "⚠️ Azimuth command received, but monitoring type is unknown or unsupported: " + monitoringType);
+        }
+    }
+
+    /**
+     * Schedules the pattern of a "VibrateAt:" command at {@code atMicros} of the session clock through
+     * the handler of the current monitoring type. A target up to {@link #MAX_LATENESS_MILLIS} in the
+     * past plays at once (and counts as late); older ones are counted as missed deadlines, and any
+     * more than {@link #MAX_SCHEDULE_AHEAD_MILLIS} ahead is rejected.
+     */
+    private void handleVibrateAtCommand(long atMicros, int intensity, int pulses, int duration, int interval,
+                                        long receivedNanos) {
+        MonitoringModeHandler handler = modeHandler;
+        if (handler == null) {
+            countHandled(false);
+            logger.w(TAG, "⚠️ Scheduled vibration received, but monitoring type is unknown or unsupported: " + monitoringType);
+            return;
+        }
+        // Compared in µs: a target far off either way would overflow once converted to nanoseconds
+        long receivedMicros = (receivedNanos - clockEpochNanos) / 1000;
+        if (atMicros < receivedMicros - MAX_LATENESS_MILLIS * 1000) {
+            metrics.incrementMissedDeadlines();
+            return;
+        }
+        long aheadMicros = atMicros - receivedMicros;
+        if (aheadMicros > MAX_SCHEDULE_AHEAD_MILLIS * 1000) {
+            countHandled(false);
+            logger.e(TAG, "❌ Scheduled vibration too far ahead: " + aheadMicros / 1000 + "ms");
+            return;
+        }
+        long atNanos = clockEpochNanos + atMicros * 1000;
+        if (!admission.tryAcquire(receivedNanos)) {
+            countOverLimit(false); // A timed pattern cannot be deferred
+        } else {
+            countHandled(handler.handleVibrateAt(atNanos, intensity, pulses, duration, interval));
+        }
+    }
+
+    /**
+     * Answers a "Sync:" ping with the token and the session-clock times (µs) at which it was read
+     * and at which the reply is queued: a text line, or an {@link BinaryProtocol#OP_SYNC_REPLY} frame.
+     */
+    private void sendSyncReply(int token, long receivedNanos, boolean binary) {
+        long receivedMicros = (receivedNanos - clockEpochNanos) / 1000;
+        long sentMicros = (System.nanoTime() - clockEpochNanos) / 1000;
+        byte[] reply = syncReply;
+        int length;
+        if (binary) {
+            int end = BinaryProtocol.beginFrame(reply, 0, BinaryProtocol.OP_SYNC_REPLY);
+            end = BinaryProtocol.writeVarint(reply, end, token);
+            end = BinaryProtocol.writeVarLong(reply, end, receivedMicros);
+            end = BinaryProtocol.writeVarLong(reply, end, sentMicros);
+            length = BinaryProtocol.endFrame(reply, 0, end);
+        } else {
+            System.arraycopy(SYNC_PREFIX, 0, reply, 0, SYNC_PREFIX.length);
+            int end = HeartRateFrameEncoder.writeDecimal(reply, SYNC_PREFIX.length, token);
+            reply[end++] = ',';
+            end = HeartRateFrameEncoder.writeDecimal(reply, end, receivedMicros);
+            reply[end++] = ',';
+            end = HeartRateFrameEncoder.writeDecimal(reply, end, sentMicros);
+            reply[end++] = '\n';
+            length = end;
+        }
+        sendReply(reply, length, "clock sync");
+    }
+
+    /**
+     * Counts an admitted vibration command: played or scheduled, or rejected by the handler
+     * (a dropped command).
+     */
+    private void countHandled(boolean accepted) {
+        if (accepted) {
+            vibrations++;
+        } else {
+            rejected++;
+            metrics.incrementDroppedCommands();
+        }
+    }
+
+    /**
+     * Counts a command over the admission limit: deferred as the latest cue, or rejected (not
+     * logged, a flood would flood the log too).
+     */
+    private void countOverLimit(boolean deferred) {
+        if (deferred) {
+            this.deferred++;
+            metrics.incrementDeferredCommands();
+        } else {
+            rateLimited++;
+            metrics.incrementRateLimitedCommands();
+        }
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_RATE_LIMITED, id, deferred ? 1 : 0);
+        }
+    }
+
+    /**
+     * Configures the admission control with the limits of the selected monitoring type, if the
+     * client asked for them with "RateLimit:0,0".
+     */
+    private void applyAdmissionLimits() {
+        if (modeHandler != null && typeRateLimit) {
+            admission.configure(modeHandler.getAdmissionBurst(), modeHandler.getAdmissionRate());
+        }
+    }
+
+    /**
+     * Handles "RateLimit:burst,ratePerSecond": this session's vibration commands are admitted
+     * {@code burst} at once, then {@code ratePerSecond} (0 = unlimited); "RateLimit:0,0" follows the
+     * limits of the monitoring type.
+     */
+    private void configureRateLimit(int burst, int ratePerSecond) {
+        if (burst < 0 || ratePerSecond < 0) {
+            metrics.incrementDroppedCommands();
+            logger.e(TAG, "❌ Invalid rate limit: " + burst + "," + ratePerSecond);
+            return;
+        }
+        typeRateLimit = burst == 0;
+        if (typeRateLimit) {
+            applyAdmissionLimits();
+        } else {
+            admission.configure(burst, ratePerSecond);
+        }
+        logger.d(TAG, "🚦 Vibration rate limit: burst " + admission.getBurst() + ", "
+                + admission.getRatePerSecond() + "/s (" + deviceName + ")");
+    }
+
+    /**
+     * Logs a message that the {@link CommandParser} rejected, using the same wording as before.
+     *
+     * @param result  The (negative) parser result code.
+     * @param message The raw message, decoded only for logging.
+     */
+    private void logInvalidMessage(int result, String message) {
+        switch (result) {
+            case CommandParser.RESULT_INVALID_FORMAT:
+                logger.e(TAG, "❌ Invalid message format: " + message);
+                break;
+
+            case CommandParser.RESULT_UNKNOWN_COMMAND:
+                logger.w(TAG, "⚠️ Unknown command: " + message);
+                break;
+
+            case CommandParser.RESULT_BAD_PARAMETER_COUNT:
+                logger.e(TAG, "❌ Incorrect number of vibration parameters: " + message);
+                break;
+
+            case CommandParser.RESULT_BAD_CHECKSUM:
+                logger.e(TAG, "❌ Checksum mismatch: " + message);
+                break;
+
+            default:
+                logger.e(TAG, "❌ Invalid numbers in vibration command: " + message);
+                break;
+        }
+    }
+
+    /**
+     * Applies the state of the device's previous connection, as if the client had sent its
+     * "Batch:" and "Monitoring:" commands again.
+     */
+    private void applyResumeState(ResumeState state) {
+        zoneTelemetry = state.zoneTelemetry && heartRateService.getProcessor() != null
+                && heartRateService.getProcessor().isEnabled();
+        if (state.deadbandBpm > 0) {
+            deadband.configure(state.deadbandBpm, state.keepAliveMillis);
+        }
+        if (state.batchingConfigured) {
+            configureBatching(state.batchWindowMillis, state.batchMaxSamples, state.batchMode);
+        }
+        monitoringType = state.monitoringName;
+        monitoringMode = state.monitoringMode;
+        modeHandler = modeRegistry.resolve(monitoringMode, monitoringType);
+        typeRateLimit = state.typeRateLimit;
+        if (typeRateLimit) {
+            applyAdmissionLimits();
+        } else {
+            admission.configure(state.rateLimitBurst, state.rateLimitPerSecond);
+        }
+        if (modeHandler != null && modeHandler.streamsHeartRate()) {
+            if (state.binary) {
+                heartRateAwaitsBinary = true;
+            } else {
+                heartRateStarted = true;
+                startHeartRateUplink();
+            }
+        }
+        logger.d(TAG, "🔁 Resumed " + deviceName + ": Monitoring " + monitoringType
+                + " (disconnected " + state.getAgeMillis() + "ms ago)");
+    }
+
+    /**
+     * Creates the batching uplink for this session and subscribes it to heart rate updates.
+     * Samples are encoded once per batch; the IDs are fixed for the session.
+     */
+    private void startHeartRateUplink() {
+        telemetryWriter = new HeartRateTelemetryWriter(writer.telemetryStream(), reader.isBinary(),
+                userId, watchId, androidId);
+        telemetryWriter.setTimestamped(batchingConfigured);
+        try {
+            telemetryWriter.writeIdentity(writer.controlStream());
+        } catch (IOException e) {
+            logger.e(TAG, "❌ Failed to send identity frame", e);
+        }
+
+        uplink = new HeartRateUplink(new HeartRateUplink.Sink() {
+            @Override
+            public void send(int[] heartRates, long[] timestamps, int count) {
+                try {
+                    // Queued with the sample timestamps; sensor-to-send is recorded after the flush
+                    int bytes = telemetryWriter.encode(heartRates, timestamps, count);
+                    if (bytes > 0 && writer.offerTelemetry(telemetryWriter.getBuffer(), 0, bytes, timestamps, count)
+                            && TraceBuffer.COMPILED) {
+                        trace.record(TraceBuffer.EVENT_HEART_RATE_SENT, count, bytes);
+                    }
+                } catch (Exception e) {
+                    logger.e(TAG, "❌ Unexpected error while sending heart rate", e);
+                }
+            }
+
+            @Override
+            public boolean sendBacklog(int[] heartRates, long[] timestamps, int count) {
+                // The store only drops the chunk once it has been flushed, not merely queued
+                int bytes = telemetryWriter.encodeBacklog(heartRates, timestamps, count);
+                try {
+                    if (!writer.offerTelemetryAndAwait(telemetryWriter.getBuffer(), 0, bytes)) {
+                        logger.w(TAG, "⚠️ Stored heart rate not sent, kept for the next connection ("
+                                + deviceName + ")");
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                metrics.recordBacklogSent(count, bytes);
+                if (TraceBuffer.COMPILED) {
+                    trace.record(TraceBuffer.EVENT_BACKLOG_SENT, count, bytes);
+                }
+                return true;
+            }
+        });
+        uplink.configure(batchWindowMillis, batchMaxSamples, batchMode);
+
+        // Samples stored while no phone was connected go out first (one session drains them)
+        HeartRateStore store = heartRateService.getOfflineStore();
+        if (store != null && store.tryBeginDrain()) {
+            logger.d(TAG, "💾 Sending " + store.getBacklog() + " stored heart-rate samples (" + deviceName + ")");
+            // Half the telemetry queue per chunk (less its length prefix), so live batches still fit
+            int chunkBytes = writer.getTelemetryCapacity() / 2 - 4;
+            uplink.drainBacklog(store, heartRateService.getCatchUpRate(),
+                    telemetryWriter.getMaxBacklogSamples(chunkBytes));
+        }
+        uplink.start();
+
+        // Samples inside the dead-band are dropped here, but never zone changes, which are rare and
+        // may well fall within the band; each one sent keeps the CPU awake until the batch holding
+        // it has been flushed
+        HeartRateUplink sessionUplink = uplink;
+        heartRateListener = (heartRate, timestampMillis) -> {
+            if (!subscribedToZones && !deadband.shouldSend(heartRate, timestampMillis)) {
+                metrics.incrementSuppressedSamples();
+                return;
+            }
+            wakeLeases.lease(WakeLeases.REASON_TELEMETRY, batchWindowMillis + TELEMETRY_LEASE_SLACK_MILLIS);
+            sessionUplink.offer(heartRate, timestampMillis);
+        };
+        subscribeHeartRate();
+    }
+
+    /**
+     * Subscribes the uplink to raw samples, or to the processor's zone changes in zone mode.
+     */
+    private void subscribeHeartRate() {
+        HeartRateProcessor processor = heartRateService.getProcessor();
+        subscribedToZones = zoneTelemetry && processor != null;
+        if (subscribedToZones) {
+            processor.subscribe(heartRateListener);
+        } else {
+            heartRateService.subscribe(heartRateListener);
+        }
+    }
+
+    private void unsubscribeHeartRate() {
+        if (subscribedToZones) {
+            heartRateService.getProcessor().unsubscribe(heartRateListener);
+        } else {
+            heartRateService.unsubscribe(heartRateListener);
+        }
+    }
+
+    /**
+     * Handles "Zones:b1,b2,b3": sets the zone boundaries on the watch (shared by all sessions) and
+     * switches this session to sending zone changes only; "Zones:0,0,0" goes back to every sample.
+     */
+    private void configureZones(int b1, int b2, int b3) {
+        if (!heartRateService.setZones(b1, b2, b3)) {
+            metrics.incrementDroppedCommands();
+            logger.e(TAG, "❌ Invalid heart-rate zones or no processor: " + b1 + "," + b2 + "," + b3);
+            return;
+        }
+        zoneTelemetry = heartRateService.getProcessor().isEnabled();
+        if (heartRateListener != null && subscribedToZones != zoneTelemetry) {
+            unsubscribeHeartRate();
+            subscribeHeartRate();
+        }
+        logger.d(TAG, "💓 " + (zoneTelemetry ? "Sending heart-rate zone changes only" : "Sending every heart-rate sample")
+                + " (" + deviceName + ")");
+    }
+
+    /**
+     * Handles "Deadband:bpm,keepAliveMillis": heart-rate samples within ±bpm of the last one sent
+     * are not sent, but one is sent at least every keepAliveMillis; "Deadband:0,0" sends every sample.
+     */
+    private void configureDeadband(int deadbandBpm, int keepAliveMillis) {
+        if (deadbandBpm < 0) {
+            metrics.incrementDroppedCommands();
+            logger.e(TAG, "❌ Invalid heart-rate dead-band: " + deadbandBpm);
+            return;
+        }
+        deadband.configure(deadbandBpm, keepAliveMillis);
+        logger.d(TAG, "📉 Heart rate dead-band: ±" + deadbandBpm + " bpm, keep-alive "
+                + deadband.getKeepAliveMillis() + "ms (" + deviceName + ")");
+    }
+
+    /**
+     * Handles "Alert:zone,intensity,pulses,duration,interval": the watch vibrates by itself when
+     * the smoothed heart rate enters that zone.
+     */
+    private void configureAlert(int zone, int intensity, int pulses, int duration, int interval) {
+        HeartRateProcessor processor = heartRateService.getProcessor();
+        if (processor == null || !processor.setAlert(zone, intensity, pulses, duration, interval)) {
+            metrics.incrementDroppedCommands();
+            logger.e(TAG, "❌ Invalid heart-rate alert for zone " + zone);
+            return;
+        }
+        logger.d(TAG, "💓 Alert for zone " + zone + ": " + intensity + "," + pulses + "," + duration + "," + interval);
+    }
+
+    /**
+     * Handles "Batch:window,maxSamples,mode": applies it now or when streaming starts.
+     * The sensor report latency is shared by all sessions; the last request wins.
+     */
+    private void configureBatching(int windowMillis, int maxSamples, int mode) {
+        batchingConfigured = true;
+        batchWindowMillis = windowMillis;
+        batchMaxSamples = maxSamples;
+        batchMode = mode;
+        logger.d(TAG, "📦 Heart rate batching: window=" + windowMillis + "ms, max=" + maxSamples + ", mode=" + mode);
+
+        // Let the sensor hub hold samples for up to one flush window, so the processor
+        // wakes once per burst and the uplink sends each burst as one batch
+        int reportLatencyUs = (int) Math.min(Integer.MAX_VALUE, Math.max(0, windowMillis) * 1000L);
+        heartRateService.setBatching(CommandParser.MODE_HEART_RATE,
+                HeartRateMonitor.DEFAULT_SAMPLING_PERIOD_US, reportLatencyUs);
+
+        if (uplink != null) {
+            telemetryWriter.setTimestamped(true);
+            uplink.configure(windowMillis, maxSamples, mode);
+        }
+    }
+
+    /**
+     * Acknowledges the "Protocol:Binary" handshake (as the last text frame) and switches framing.
+     */
+    private void switchToBinary() {
+        if (reader.isBinary()) {
+            return;
+        }
+        try {
+            output.write(BinaryProtocol.HANDSHAKE_ACK);
+            metrics.addBytesOut(BinaryProtocol.HANDSHAKE_ACK.length);
+            reader.switchToBinary();
+            logger.d(TAG, "🔀 Switched connection to binary protocol");
+
+            // Resumed heart-rate streaming of a binary client starts once it is binary again
+            if (heartRateAwaitsBinary && !heartRateStarted) {
+                heartRateStarted = true;
+                startHeartRateUplink();
+            }
+            heartRateAwaitsBinary = false;
+        } catch (IOException e) {
+            logger.e(TAG, "❌ Failed to acknowledge binary protocol", e);
+        }
+    }
+
+    /**
+     * Answers "Stats:" with a snapshot of the server-wide {@link HotPathMetrics}: a text line, or a
+     * series of {@link BinaryProtocol#OP_STATS_REPLY} frames on binary connections. Built on request only.
+     */
+    private void sendStats(boolean binary) {
+        byte[] reply;
+        int length;
+        if (binary) {
+            reply = new byte[HotPathMetrics.maxBinaryLength()];
+            length = metrics.encodeBinary(reply, 0);
+        } else {
+            reply = metrics.formatText();
+            length = reply.length;
+        }
+        sendReply(reply, length, "stats");
+    }
+
+    /**
+     * Handles "Trace:Dump" (sends the {@link TraceBuffer} history) and "Trace:<level>"
+     * (changes the server-wide trace level).
+     */
+    private void handleTraceCommand(int command, boolean binary) {
+        if (command == CommandParser.TRACE_DUMP) {
+            byte[] dump = binary ? trace.encodeBinary() : trace.formatText();
+            sendReply(dump, dump.length, "trace");
+        } else {
+            trace.setLevel(command);
+            logger.d(TAG, "🧾 Trace level set to " + TraceBuffer.levelName(command));
+        }
+    }
+
+    private void sendReply(byte[] reply, int length, String what) {
+        try {
+            output.write(reply, 0, length); // Queued for the writer thread
+            metrics.addBytesOut(length);
+        } catch (IOException e) {
+            logger.e(TAG, "❌ Failed to send " + what, e);
+        }
+    }
+
+    /**
+     * Gives up on a connection whose writes fail or stall: closing the transport unblocks both the
+     * writer and the reader, which then cleans up as on a normal disconnect.
+     */
+    private void abort() {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            logger.e(TAG, "❌ Failed to close socket", e);
+        }
+    }
+
+    /**
+     * Adds the bytes read since the last call to the inbound traffic counter.
+     */
+    private void countBytesIn() {
+        long bytesRead = reader.getBytesRead();
+        metrics.addBytesIn(bytesRead - bytesInCounted);
+        bytesInCounted = bytesRead;
+    }
+
+    /**
+     * Unsubscribes from heart rate, logs the counters and stops the uplink thread
+     * when the connection ends.
+     */
+    private void close() {
+        if (reader != null) {
+            countBytesIn(); // Trailing bytes of an incomplete frame
+        }
+        if (heartRateListener != null) {
+            unsubscribeHeartRate();
+        }
+        logger.d(TAG, "📊 Commands (" + deviceName + "): " + vibrations + " vibrations, " + rejected
+                + " rejected, " + deferred + " deferred, " + rateLimited + " rate-limited");
+        if (uplink != null) {
+            logger.d(TAG, "📊 Uplink (" + deviceName + "): " + uplink.getSamplesSent() + " samples in "
+                    + uplink.getBatchesSent() + " batches, " + uplink.getSamplesDropped() + " dropped, "
+                    + uplink.getBacklogSent() + " from the offline store, " + deadband.getSuppressed()
+                    + " suppressed by the dead-band");
+            uplink.close();
+        }
+        if (writer != null) {
+            logger.d(TAG, "📊 Writer (" + deviceName + "): " + writer.getBytesWritten() + " bytes in "
+                    + writer.getWrites() + " writes, " + writer.getTelemetryDropped() + " telemetry dropped");
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Time sources used by the core. On the watch, elapsed realtime is SystemClock.elapsedRealtimeNanos(),
+ * the time base of sensor event timestamps.
+ */
+public interface Clock {
+
+    /** Plain JVM clock; elapsed realtime is {@link System#nanoTime()}. */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return System.nanoTime();
+        }
+    };
+
+    /** Current wall-clock time in milliseconds. */
+    long currentTimeMillis();
+
+    /** Monotonic time in nanoseconds, in the time base of {@link HeartRateSource} sample timestamps. */
+    long elapsedRealtimeNanos();
+}
@@ -0,0 +1,725 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level state-machine parser for the text commands sent by the phone:
+ * <ul>
+ *   <li>{@code Monitoring:<type>} → e.g. "Monitoring:HeartRate"</li>
+ *   <li>{@code Vibrate:<intensity>,<pulses>,<duration>,<interval>} → e.g. "Vibrate:50,3,1000,200"</li>
+ *   <li>{@code Protocol:Binary} → switch the connection to the {@link BinaryProtocol} framing</li>
+ *   <li>{@code Batch:<windowMillis>,<maxSamples>,<mode>} → configure the {@link HeartRateUplink}</li>
+ *   <li>{@code Stats:} → reply with a {@link HotPathMetrics} snapshot (any payload is ignored)</li>
+ *   <li>{@code Trace:<Dump|Off|Info|Debug|Verbose>} → dump the {@link TraceBuffer} or set its level</li>
+ *   <li>{@code Zones:<b1>,<b2>,<b3>} → heart-rate zone boundaries of the {@link HeartRateProcessor} (0,0,0 = off)</li>
+ *   <li>{@code Alert:<zone>,<intensity>,<pulses>,<duration>,<interval>} → local vibration on entering a zone</li>
+ *   <li>{@code Deadband:<bpm>,<keepAliveMillis>} → suppress heart-rate samples within ±bpm of the last one sent</li>
+ *   <li>{@code Azimuth:<degrees>} → play the prebuilt {@link AzimuthPatternLibrary} cue of that bearing</li>
+ *   <li>{@code RateLimit:<burst>,<ratePerSecond>} → admission limits of this session's vibration commands
+ *       (none until sent; {@code 0,0} = the limits of the monitoring type)</li>
+ *   <li>{@code Sync:<token>} → clock-sync ping, answered with the watch's receive and send times</li>
+ *   <li>{@code VibrateAt:<atMicros>,<intensity>,<pulses>,<duration>,<interval>} → play at a watch time
+ *       (µs of the session clock, as in the sync reply; a 64-bit value)</li>
+ * </ul>
+ * Bytes are consumed straight from the socket read buffer into primitive fields,
+ * so parsing a command allocates nothing. The accepted syntax mirrors the previous
+ * {@code String.trim()/split()/Integer.parseInt()} implementation. Binary frames are decoded by
+ * {@link #parseBinary} into the same fields, so both protocols share one dispatch path.
+ *
+ * One instance is meant to be owned by a single connection thread; it is not thread-safe.
+ * It has no Android dependencies and can be driven from a plain JVM unit test.
+ */
+public final class CommandParser {
+
+    // Results returned by finish() / parse()
+    public static final int RESULT_EMPTY = 0;                 // Frame contained only whitespace
+    public static final int RESULT_MONITORING = 1;            // "Monitoring:<type>"
+    public static final int RESULT_VIBRATE = 2;               // "Vibrate:i,p,d,i" with 4 valid integers
+    public static final int RESULT_PROTOCOL_BINARY = 3;       // "Protocol:Binary" handshake
+    public static final int RESULT_BATCH = 4;                 // "Batch:window,max,mode" with 3 valid integers
+    public static final int RESULT_STATS = 5;                 // "Stats:" metrics query
+    public static final int RESULT_TRACE = 6;                 // "Trace:Dump" or "Trace:<level>"
+    public static final int RESULT_ZONES = 7;                 // "Zones:b1,b2,b3" with 3 valid integers
+    public static final int RESULT_ALERT = 8;                 // "Alert:zone,i,p,d,i" with 5 valid integers
+    public static final int RESULT_DEADBAND = 9;              // "Deadband:bpm,keepAliveMillis" with 2 valid integers
+    public static final int RESULT_AZIMUTH = 10;              // "Azimuth:degrees" with 1 valid integer
+    public static final int RESULT_RATE_LIMIT = 11;           // "RateLimit:burst,ratePerSecond" with 2 valid integers
+    public static final int RESULT_SYNC = 12;                 // "Sync:token" with 1 valid integer
+    public static final int RESULT_VIBRATE_AT = 13;           // "VibrateAt:at,i,p,d,i" with 5 valid integers
+    public static final int RESULT_INVALID_FORMAT = -1;       // No ':' separator
+    public static final int RESULT_UNKNOWN_COMMAND = -2;      // Command name not recognised
+    public static final int RESULT_BAD_PARAMETER_COUNT = -3;  // Numeric payload with the wrong number of values
+    public static final int RESULT_BAD_NUMBER = -4;           // Numeric payload with a non-integer value
+    public static final int RESULT_BAD_CHECKSUM = -5;         // Binary frame with a CRC mismatch
+
+    // Monitoring modes understood by the watch
+    public static final int MODE_UNKNOWN = 0;
+    public static final int MODE_HEART_RATE = 1;
+    public static final int MODE_SUN_AZIMUTH = 2;
+    public static final int MODE_MOON_AZIMUTH = 3;
+
+    // Argument of RESULT_TRACE besides the TraceBuffer.LEVEL_* values
+    public static final int TRACE_DUMP = 0x7F;
+
+    public static final int VIBRATE_PARAM_COUNT = 4;
+    public static final int BATCH_PARAM_COUNT = 3;
+    public static final int ZONES_PARAM_COUNT = HeartRateProcessor.ZONE_BOUNDARY_COUNT;
+    public static final int ALERT_PARAM_COUNT = 5;
+    public static final int DEADBAND_PARAM_COUNT = 2;
+    public static final int AZIMUTH_PARAM_COUNT = 1;
+    public static final int RATE_LIMIT_PARAM_COUNT = 2;
+    public static final int SYNC_PARAM_COUNT = 1;
+    public static final int VIBRATE_AT_PARAM_COUNT = 5;
+    private static final int MAX_PARAM_COUNT = Math.max(ALERT_PARAM_COUNT, VIBRATE_AT_PARAM_COUNT);
+
+    private static final byte[] CMD_MONITORING = ascii("Monitoring");
+    private static final byte[] CMD_VIBRATE = ascii("Vibrate");
+    private static final byte[] CMD_PROTOCOL = ascii("Protocol");
+    private static final byte[] CMD_BATCH = ascii("Batch");
+    private static final byte[] CMD_STATS = ascii("Stats");
+    private static final byte[] CMD_TRACE = ascii("Trace");
+    private static final byte[] CMD_ZONES = ascii("Zones");
+    private static final byte[] CMD_ALERT = ascii("Alert");
+    private static final byte[] CMD_DEADBAND = ascii("Deadband");
+    private static final byte[] CMD_AZIMUTH = ascii("Azimuth");
+    private static final byte[] CMD_RATE_LIMIT = ascii("RateLimit");
+    private static final byte[] CMD_SYNC = ascii("Sync");
+    private static final byte[] CMD_VIBRATE_AT = ascii("VibrateAt");
+    private static final byte[] TRACE_DUMP_NAME = ascii("Dump");
+    private static final byte[][] TRACE_LEVEL_NAMES = {
+            ascii("Off"), ascii("Info"), ascii("Debug"), ascii("Verbose") // Indexed by TraceBuffer.LEVEL_*
+    };
+    private static final byte[] PROTOCOL_BINARY = ascii(BinaryProtocol.HANDSHAKE_VALUE);
+    private static final byte[] TYPE_HEART_RATE = ascii("HeartRate");
+    private static final byte[] TYPE_SUN_AZIMUTH = ascii("SunAzimuth");
+    private static final byte[] TYPE_MOON_AZIMUTH = ascii("MoonAzimuth");
+
+    private static final int NAME_CAPACITY = 32;
+
+    // Parser states
+    private static final int STATE_START = 0;        // Skipping leading whitespace
+    private static final int STATE_COMMAND = 1;      // Reading the command name up to ':'
+    private static final int STATE_MONITORING = 2;   // Reading the monitoring type
+    private static final int STATE_NUMBERS = 3;      // Reading comma-separated integers
+    private static final int STATE_SKIP = 4;         // Unknown command: ignore the rest of the frame
+    private static final int STATE_PROTOCOL = 5;     // Reading the requested protocol
+    private static final int STATE_STATS = 6;        // Metrics query: the payload is ignored
+    private static final int STATE_TRACE = 7;        // Reading the trace action
+
+    private final byte[] command = new byte[NAME_CAPACITY];
+    private final byte[] name = new byte[NAME_CAPACITY];
+    private final int[] params = new int[MAX_PARAM_COUNT];
+
+    private int state;
+    private int commandLength;
+    private int nameLength;
+    private int monitoringMode;
+    private int traceCommand;
+    private int numbersResult;       // Result reported for the numeric command being read
+    private int expectedCount;       // Number of integers that command takes
+
+    // Numeric field state
+    private int fieldCount;
+    private int fieldBytes;          // Non-whitespace bytes of the current field
+    private int emptyFields;         // Empty fields since the last non-empty one
+    private long fieldValue;
+    private int fieldDigits;
+    private boolean fieldNegative;
+    private boolean fieldSigned;
+    private boolean pendingWhitespace;
+    private boolean numberError;
+    private long vibrateAtMicros;
+
+    public CommandParser() {
+        reset();
+    }
+
+    /**
+     * Parses one complete frame from {@code buffer[offset, offset + length)}.
+     *
+     * @return One of the {@code RESULT_*} constants.
+     */
+    public int parse(byte[] buffer, int offset, int length) {
+        reset();
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            feed(buffer[i]);
+        }
+        return finish();
+    }
+
+    /**
+     * Whether {@code buffer[offset, offset + length)} is already a whole command, for legacy clients
+     * that send one command per write without a newline: it parses without error and, for
+     * "Monitoring:", names a known type. A numeric command cut short right after a digit still
+     * parses; the {@link FrameReader} does not take such bytes as whole on their own.
+     */
+    public boolean isComplete(byte[] buffer, int offset, int length) {
+        int result = parse(buffer, offset, length);
+        return result == RESULT_MONITORING ? monitoringMode != MODE_UNKNOWN : result > RESULT_EMPTY;
+    }
+
+    /**
+     * Clears all state so the next {@link #feed(byte)} starts a new frame.
+     */
+    public void reset() {
+        state = STATE_START;
+        commandLength = 0;
+        nameLength = 0;
+        monitoringMode = MODE_UNKNOWN;
+        fieldCount = 0;
+        fieldBytes = 0;
+        emptyFields = 0;
+        fieldValue = 0;
+        fieldDigits = 0;
+        fieldNegative = false;
+        fieldSigned = false;
+        pendingWhitespace = false;
+        numberError = false;
+    }
+
+    /**
+     * Consumes a single byte of the current frame.
+     */
+    public void feed(byte b) {
+        switch (state) {
+            case STATE_START:
+                if (isWhitespace(b)) {
+                    return;
+                }
+                state = STATE_COMMAND;
+                feedCommand(b); // First byte of the command name
+                return;
+
+            case STATE_COMMAND:
+                feedCommand(b);
+                return;
+
+            case STATE_MONITORING:
+            case STATE_PROTOCOL:
+            case STATE_TRACE:
+                if (nameLength < NAME_CAPACITY) {
+                    name[nameLength++] = b;
+                } else {
+                    nameLength = NAME_CAPACITY + 1; // Too long to be a known type
+                }
+                return;
+
+            case STATE_NUMBERS:
+                feedNumber(b);
+                return;
+
+            default:
+                // STATE_SKIP, STATE_STATS: nothing to do until the frame ends
+        }
+    }
+
+    /**
+     * Consumes a byte of the command name; at ':' selects the state for its payload.
+     */
+    private void feedCommand(byte b) {
+        if (b == ':') {
+            if (matches(command, commandLength, CMD_VIBRATE, false)) {
+                startNumbers(RESULT_VIBRATE, VIBRATE_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_BATCH, false)) {
+                startNumbers(RESULT_BATCH, BATCH_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_ZONES, false)) {
+                startNumbers(RESULT_ZONES, ZONES_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_ALERT, false)) {
+                startNumbers(RESULT_ALERT, ALERT_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_DEADBAND, false)) {
+                startNumbers(RESULT_DEADBAND, DEADBAND_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_AZIMUTH, false)) {
+                startNumbers(RESULT_AZIMUTH, AZIMUTH_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_RATE_LIMIT, false)) {
+                startNumbers(RESULT_RATE_LIMIT, RATE_LIMIT_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_SYNC, false)) {
+                startNumbers(RESULT_SYNC, SYNC_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_VIBRATE_AT, false)) {
+                startNumbers(RESULT_VIBRATE_AT, VIBRATE_AT_PARAM_COUNT);
+            } else if (matches(command, commandLength, CMD_MONITORING, false)) {
+                state = STATE_MONITORING;
+            } else if (matches(command, commandLength, CMD_PROTOCOL, false)) {
+                state = STATE_PROTOCOL;
+            } else if (matches(command, commandLength, CMD_STATS, false)) {
+                state = STATE_STATS;
+            } else if (matches(command, commandLength, CMD_TRACE, false)) {
+                state = STATE_TRACE;
+            } else {
+                state = STATE_SKIP;
+            }
+        } else if (commandLength < NAME_CAPACITY) {
+            command[commandLength++] = b;
+        } else {
+            commandLength = NAME_CAPACITY + 1; // Too long to be a known command
+        }
+    }
+
+    /**
+     * Ends the current frame and reports what was parsed.
+     *
+     * @return One of the {@code RESULT_*} constants.
+     */
+    public int finish() {
+        switch (state) {
+            case STATE_START:
+                return RESULT_EMPTY;
+
+            case STATE_COMMAND:
+                return RESULT_INVALID_FORMAT;
+
+            case STATE_MONITORING:
+                trimName();
+                monitoringMode = resolveMode();
+                return RESULT_MONITORING;
+
+            case STATE_PROTOCOL:
+                trimName();
+                return matches(name, nameLength, PROTOCOL_BINARY, true)
+                        ? RESULT_PROTOCOL_BINARY : RESULT_UNKNOWN_COMMAND;
+
+            case STATE_NUMBERS:
+                endField();
+                // Trailing empty fields are dropped, as String.split(",") did
+                if (fieldCount - emptyFields != expectedCount) {
+                    return RESULT_BAD_PARAMETER_COUNT;
+                }
+                return numberError ? RESULT_BAD_NUMBER : numbersResult;
+
+            case STATE_STATS:
+                return RESULT_STATS;
+
+            case STATE_TRACE:
+                trimName();
+                traceCommand = resolveTraceCommand();
+                return traceCommand >= 0 ? RESULT_TRACE : RESULT_UNKNOWN_COMMAND;
+
+            default:
+                return RESULT_UNKNOWN_COMMAND;
+        }
+    }
+
+    /**
+     * Decodes one complete {@link BinaryProtocol} frame from {@code buffer[offset, offset + length)}
+     * into the same fields used by the text commands.
+     *
+     * @return One of the {@code RESULT_*} constants.
+     */
+    public int parseBinary(byte[] buffer, int offset, int length) {
+        reset();
+        if (length < BinaryProtocol.HEADER_LENGTH + BinaryProtocol.TRAILER_LENGTH
+                || BinaryProtocol.frameLength(buffer[offset + 1]) != length) {
+            return RESULT_INVALID_FORMAT;
+        }
+        int crcIndex = offset + length - BinaryProtocol.TRAILER_LENGTH;
+        if (BinaryProtocol.crc8(buffer, offset, crcIndex - offset) != (buffer[crcIndex] & 0xFF)) {
+            return RESULT_BAD_CHECKSUM;
+        }
+
+        int opcode = buffer[offset] & 0xFF;
+        int position = offset + BinaryProtocol.HEADER_LENGTH;
+        int fields;
+        switch (opcode) {
+            case BinaryProtocol.OP_MONITORING:
+                fields = 1;
+                break;
+            case BinaryProtocol.OP_VIBRATE:
+                fields = VIBRATE_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_BATCH:
+                fields = BATCH_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_STATS:
+                fields = 0;
+                break;
+            case BinaryProtocol.OP_TRACE:
+                fields = 1;
+                break;
+            case BinaryProtocol.OP_ZONES:
+                fields = ZONES_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_ALERT:
+                fields = ALERT_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_DEADBAND:
+                fields = DEADBAND_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_AZIMUTH:
+                fields = AZIMUTH_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_RATE_LIMIT:
+                fields = RATE_LIMIT_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_SYNC:
+                fields = SYNC_PARAM_COUNT;
+                break;
+            case BinaryProtocol.OP_VIBRATE_AT:
+                fields = VIBRATE_AT_PARAM_COUNT;
+                break;
+            default:
+                return RESULT_UNKNOWN_COMMAND;
+        }
+
+        // Decode exactly `fields` varints that must fill the payload (the "VibrateAt" time is a varlong)
+        for (int field = 0; field < fields; field++) {
+            boolean wide = opcode == BinaryProtocol.OP_VIBRATE_AT && field == 0;
+            int maxLength = wide ? BinaryProtocol.MAX_VARLONG_LENGTH : BinaryProtocol.MAX_VARINT_LENGTH;
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= crcIndex || shift >= 7 * maxLength) {
+                    return fields > 1 ? RESULT_BAD_PARAMETER_COUNT : RESULT_INVALID_FORMAT;
+                }
+                byte b = buffer[position++];
+                if (shift == 63 && (b & 0x7E) != 0) {
+                    return RESULT_BAD_NUMBER; // Bits above bit 63 would be shifted out
+                }
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            if (value < 0 || value > (wide ? Long.MAX_VALUE : Integer.MAX_VALUE)) {
+                return RESULT_BAD_NUMBER; // Does not fit a non-negative int (long)
+            }
+            if (wide) {
+                vibrateAtMicros = value;
+            } else {
+                params[field] = (int) value;
+            }
+        }
+        if (position != crcIndex) {
+            return fields > 1 ? RESULT_BAD_PARAMETER_COUNT : RESULT_INVALID_FORMAT;
+        }
+
+        if (opcode == BinaryProtocol.OP_STATS) {
+            return RESULT_STATS;
+        }
+        if (opcode == BinaryProtocol.OP_TRACE) {
+            if (params[0] != TRACE_DUMP && params[0] > TraceBuffer.LEVEL_VERBOSE) {
+                return RESULT_BAD_NUMBER;
+            }
+            traceCommand = params[0];
+            return RESULT_TRACE;
+        }
+
+        if (opcode == BinaryProtocol.OP_MONITORING) {
+            // Mode IDs are passed through as-is so modes registered in the MonitoringModeRegistry
+            // work without parser changes; keep the name available for logging, as with the text command
+            monitoringMode = params[0];
+            byte[] type = modeName(params[0]);
+            if (type != null) {
+                nameLength = type.length;
+                System.arraycopy(type, 0, name, 0, nameLength);
+            }
+            return RESULT_MONITORING;
+        }
+        switch (opcode) {
+            case BinaryProtocol.OP_BATCH:
+                return RESULT_BATCH;
+            case BinaryProtocol.OP_ZONES:
+                return RESULT_ZONES;
+            case BinaryProtocol.OP_ALERT:
+                return RESULT_ALERT;
+            case BinaryProtocol.OP_DEADBAND:
+                return RESULT_DEADBAND;
+            case BinaryProtocol.OP_AZIMUTH:
+                return RESULT_AZIMUTH;
+            case BinaryProtocol.OP_RATE_LIMIT:
+                return RESULT_RATE_LIMIT;
+            case BinaryProtocol.OP_SYNC:
+                return RESULT_SYNC;
+            case BinaryProtocol.OP_VIBRATE_AT:
+                return RESULT_VIBRATE_AT;
+            default:
+                return RESULT_VIBRATE;
+        }
+    }
+
+    private void startNumbers(int result, int count) {
+        state = STATE_NUMBERS;
+        numbersResult = result;
+        expectedCount = count;
+        fieldCount = 1;
+    }
+
+    private void feedNumber(byte b) {
+        if (isWhitespace(b)) {
+            // Only trailing whitespace is allowed; anything after it makes the field invalid
+            pendingWhitespace = true;
+            return;
+        }
+        if (pendingWhitespace) {
+            pendingWhitespace = false;
+            numberError = true;
+        }
+
+        if (b == ',') {
+            endField();
+            fieldCount++;
+            return;
+        }
+        fieldBytes++;
+
+        if ((b == '-' || b == '+') && fieldDigits == 0 && !fieldSigned) {
+            fieldSigned = true;
+            fieldNegative = b == '-';
+            return;
+        }
+
+        int digit = b - '0';
+        if (digit < 0 || digit > 9) {
+            numberError = true;
+            return;
+        }
+        if (fieldValue > (maxFieldValue() - digit) / 10) {
+            numberError = true; // Overflow, Integer.parseInt would have rejected it too
+            return;
+        }
+        fieldValue = fieldValue * 10 + digit;
+        fieldDigits++;
+    }
+
+    private void endField() {
+        if (fieldBytes == 0) {
+            emptyFields++; // Only allowed at the end of the payload
+        } else {
+            if (emptyFields > 0) {
+                numberError = true; // An empty field before this one
+                emptyFields = 0;
+            }
+            if (fieldDigits == 0) {
+                numberError = true;
+            } else if (isLongField()) {
+                vibrateAtMicros = fieldNegative ? -fieldValue : fieldValue;
+            } else if (fieldCount <= expectedCount) {
+                params[fieldCount - 1] = (int) (fieldNegative ? -fieldValue : fieldValue);
+            }
+        }
+        fieldBytes = 0;
+        fieldValue = 0;
+        fieldDigits = 0;
+        fieldNegative = false;
+        fieldSigned = false;
+    }
+
+    /** The first field of "VibrateAt:" is a 64-bit time; every other field is an int. */
+    private boolean isLongField() {
+        return numbersResult == RESULT_VIBRATE_AT && fieldCount == 1;
+    }
+
+    private long maxFieldValue() {
+        return isLongField() ? Long.MAX_VALUE : Integer.MAX_VALUE;
+    }
+
+    private void trimName() {
+        // Trailing whitespace was trimmed from the original message
+        while (nameLength > 0 && nameLength <= NAME_CAPACITY && isWhitespace(name[nameLength - 1])) {
+            nameLength--;
+        }
+    }
+
+    private static byte[] modeName(int mode) {
+        switch (mode) {
+            case MODE_HEART_RATE:
+                return TYPE_HEART_RATE;
+            case MODE_SUN_AZIMUTH:
+                return TYPE_SUN_AZIMUTH;
+            case MODE_MOON_AZIMUTH:
+                return TYPE_MOON_AZIMUTH;
+            default:
+                return null;
+        }
+    }
+
+    private int resolveMode() {
+        if (matches(name, nameLength, TYPE_HEART_RATE, true)) {
+            return MODE_HEART_RATE;
+        } else if (matches(name, nameLength, TYPE_SUN_AZIMUTH, true)) {
+            return MODE_SUN_AZIMUTH;
+        } else if (matches(name, nameLength, TYPE_MOON_AZIMUTH, true)) {
+            return MODE_MOON_AZIMUTH;
+        }
+        return MODE_UNKNOWN;
+    }
+
+    private int resolveTraceCommand() {
+        if (matches(name, nameLength, TRACE_DUMP_NAME, true)) {
+            return TRACE_DUMP;
+        }
+        for (int level = 0; level < TRACE_LEVEL_NAMES.length; level++) {
+            if (matches(name, nameLength, TRACE_LEVEL_NAMES[level], true)) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /* ── Results of the last frame ─────────────────────────────────────────── */
+
+    /**
+     * Monitoring mode of the last {@link #RESULT_MONITORING} frame: one of the built-in
+     * {@code MODE_*} constants for text frames ({@link #MODE_UNKNOWN} for other names), or the raw
+     * mode ID for binary frames.
+     */
+    public int getMonitoringMode() {
+        return monitoringMode;
+    }
+
+    /**
+     * Argument of the last {@link #RESULT_TRACE} frame: {@link #TRACE_DUMP} or a TraceBuffer.LEVEL_* value.
+     */
+    public int getTraceCommand() {
+        return traceCommand;
+    }
+
+    public int getIntensity() {
+        return params[0];
+    }
+
+    public int getPulses() {
+        return params[1];
+    }
+
+    public int getDuration() {
+        return params[2];
+    }
+
+    public int getInterval() {
+        return params[3];
+    }
+
+    /** Flush window of the last {@link #RESULT_BATCH} frame, in milliseconds. */
+    public int getBatchWindowMillis() {
+        return params[0];
+    }
+
+    /** Batch size of the last {@link #RESULT_BATCH} frame. */
+    public int getBatchMaxSamples() {
+        return params[1];
+    }
+
+    /** {@link HeartRateUplink} mode of the last {@link #RESULT_BATCH} frame. */
+    public int getBatchMode() {
+        return params[2];
+    }
+
+    /** Upper bound (bpm, exclusive) of zone {@code index} of the last {@link #RESULT_ZONES} frame. */
+    public int getZoneBoundary(int index) {
+        return params[index];
+    }
+
+    /** Zone of the last {@link #RESULT_ALERT} frame; its pattern follows in {@link #getAlertIntensity()} etc. */
+    public int getAlertZone() {
+        return params[0];
+    }
+
+    public int getAlertIntensity() {
+        return params[1];
+    }
+
+    public int getAlertPulses() {
+        return params[2];
+    }
+
+    public int getAlertDuration() {
+        return params[3];
+    }
+
+    public int getAlertInterval() {
+        return params[4];
+    }
+
+    /** Dead-band (bpm) of the last {@link #RESULT_DEADBAND} frame. */
+    public int getDeadbandBpm() {
+        return params[0];
+    }
+
+    /** Keep-alive interval of the last {@link #RESULT_DEADBAND} frame, in milliseconds. */
+    public int getKeepAliveMillis() {
+        return params[1];
+    }
+
+    /** Bearing of the last {@link #RESULT_AZIMUTH} frame, in degrees (not normalised). */
+    public int getAzimuthDegrees() {
+        return params[0];
+    }
+
+    /** Burst of the last {@link #RESULT_RATE_LIMIT} frame. */
+    public int getRateLimitBurst() {
+        return params[0];
+    }
+
+    /** Sustained commands per second of the last {@link #RESULT_RATE_LIMIT} frame (0 = unlimited). */
+    public int getRateLimitPerSecond() {
+        return params[1];
+    }
+
+    /** Token of the last {@link #RESULT_SYNC} frame, echoed in the reply. */
+    public int getSyncToken() {
+        return params[0];
+    }
+
+    /**
+     * Target of the last {@link #RESULT_VIBRATE_AT} frame, in microseconds of the session clock (the
+     * unit of the sync reply); any long, negative only in text frames. Its pattern follows in
+     * {@link #getVibrateAtIntensity()} etc.
+     */
+    public long getVibrateAtMicros() {
+        return vibrateAtMicros;
+    }
+
+    public int getVibrateAtIntensity() {
+        return params[1];
+    }
+
+    public int getVibrateAtPulses() {
+        return params[2];
+    }
+
+    public int getVibrateAtDuration() {
+        return params[3];
+    }
+
+    public int getVibrateAtInterval() {
+        return params[4];
+    }
+
+    /**
+     * Returns the raw monitoring type of the last {@link #RESULT_MONITORING} frame.
+     * Allocates a String, so it is meant for logging on the (rare) mode-change path only.
+     */
+    public String getMonitoringName() {
+        int length = Math.min(nameLength, NAME_CAPACITY);
+        return new String(name, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /* ── Helpers ───────────────────────────────────────────────────────────── */
+
+    private static boolean isWhitespace(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    private static boolean matches(byte[] value, int length, byte[] expected, boolean ignoreCase) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            byte a = value[i];
+            byte e = expected[i];
+            if (a != e && !(ignoreCase && toLower(a) == toLower(e))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte toLower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
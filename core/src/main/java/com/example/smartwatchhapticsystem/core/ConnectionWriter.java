@@ -0,0 +1,521 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Dedicated writer thread of one connection, so no other thread ever blocks on radio I/O.
+ *
+ * Producers (the session's reader thread for replies, the heart-rate uplink for telemetry) only
+ * copy whole messages into one of two bounded in-memory queues and return; the writer thread
+ * sends them, in order within each queue:
+ * <ul>
+ *   <li>control (handshake, identity, "Stats:"/"Trace:" replies) goes first and is never dropped
+ *       silently: if it does not fit, the producer gets an IOException;</li>
+ *   <li>telemetry is merged: everything queued is sent in a single write + flush. When the queue
+ *       is full (the link is slower than the sensor), the oldest telemetry is dropped, as the
+ *       newest readings matter most.</li>
+ * </ul>
+ * Telemetry may carry the sensor timestamps of its samples; once it has been flushed they are
+ * handed to the {@link SentListener} on the writer thread, so sensor-to-send latency covers the
+ * queueing and the radio write. Dropped telemetry is never reported as sent. A producer that must
+ * not lose a message (the stored heart-rate backlog) uses {@link #offerTelemetryAndAwait}, which
+ * waits until the message has been flushed and reports whether it was dropped instead.
+ *
+ * A write blocked for longer than the write timeout is reported by {@link #checkWriteTimeout()}
+ * (called when a message is queued and periodically by the owner); the failure callback then
+ * closes the connection, which unblocks the writer. A write error calls it as well.
+ *
+ * No Android dependencies.
+ */
+public final class ConnectionWriter implements Runnable {
+    private static final String TAG = "ConnectionWriter";
+
+    public static final int DEFAULT_CONTROL_CAPACITY = 64 * 1024;   // Fits a full trace dump
+    public static final int DEFAULT_TELEMETRY_CAPACITY = 16 * 1024;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Told about telemetry samples after their message has been written and flushed.
+     */
+    public interface SentListener {
+        /**
+         * Called on the writer thread after a flush.
+         *
+         * @param timestampsMillis Sensor timestamps of the samples flushed, in queue order.
+         * @param count            Valid entries in {@code timestampsMillis}.
+         * @param bytes            Bytes of the messages that carried these samples.
+         */
+        void onTelemetrySent(long[] timestampsMillis, int count, int bytes);
+    }
+
+    private final OutputStream output;
+    private final Logger logger;
+    private final TraceBuffer trace;
+    private final int connectionId;
+    private final long writeTimeoutNanos;
+    private final Runnable onFailure;
+
+    private final Object lock = new Object();
+    private final MessageQueue control;
+    private final MessageQueue telemetry;
+    private final byte[] writeBuffer;
+
+    private boolean closed;
+    private boolean failed;
+    private long telemetryFlushed;          // Telemetry messages (by sequence) written and flushed
+    private long awaitedSequence = -1;      // Message watched by offerTelemetryAndAwait
+    private boolean awaitedDropped;
+    private Thread thread;
+    private volatile long writeStartedNanos; // 0 while not writing
+    private volatile SentListener sentListener;
+
+    private long bytesWritten;
+    private long writes;
+    private long telemetryDropped;
+
+    private final OutputStream controlStream = new QueueStream(true);
+    private final OutputStream telemetryStream = new QueueStream(false);
+
+    public ConnectionWriter(OutputStream output, Logger logger, TraceBuffer trace, int connectionId,
+                            Runnable onFailure) {
+        this(output, DEFAULT_CONTROL_CAPACITY, DEFAULT_TELEMETRY_CAPACITY, DEFAULT_WRITE_TIMEOUT_MILLIS,
+                logger, trace, connectionId, onFailure);
+    }
+
+    /**
+     * @param output             The connection's output stream; only the writer thread writes to it.
+     * @param controlCapacity    Bytes of control messages that may be queued.
+     * @param telemetryCapacity  Bytes of telemetry that may be queued before the oldest is dropped.
+     * @param writeTimeoutMillis Longest a single write may block before the connection is given up.
+     * @param onFailure          Called once when a write fails or times out (e.g. closes the transport).
+     */
+    public ConnectionWriter(OutputStream output, int controlCapacity, int telemetryCapacity,
+                            long writeTimeoutMillis, Logger logger, TraceBuffer trace, int connectionId,
+                            Runnable onFailure) {
+        this.output = output;
+        this.control = new MessageQueue(controlCapacity, 0);
+        // Every sample takes at least 2 bytes of telemetry, so the timestamps never fill up first
+        this.telemetry = new MessageQueue(telemetryCapacity, telemetryCapacity / 2);
+        this.writeBuffer = new byte[controlCapacity + telemetryCapacity];
+        this.writeTimeoutNanos = writeTimeoutMillis * 1_000_000L;
+        this.logger = logger;
+        this.trace = trace;
+        this.connectionId = connectionId;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start(String name) {
+        synchronized (lock) {
+            if (thread != null) {
+                return;
+            }
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread; messages still queued are discarded.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets who is told about flushed telemetry samples (see {@link #offerTelemetry(byte[], int, int, long[], int)}).
+     */
+    public void setSentListener(SentListener listener) {
+        sentListener = listener;
+    }
+
+    /** Bytes of telemetry that may be queued; a larger message is always dropped. */
+    public int getTelemetryCapacity() {
+        return telemetry.capacity();
+    }
+
+    /** Queue for replies and handshakes; {@code write} throws if the message does not fit. */
+    public OutputStream controlStream() {
+        return controlStream;
+    }
+
+    /** Queue for heart-rate telemetry; {@code write} never blocks and never throws for a full queue. */
+    public OutputStream telemetryStream() {
+        return telemetryStream;
+    }
+
+    /**
+     * Queues a control message.
+     *
+     * @return false if the queue is full or the connection has failed.
+     */
+    public boolean offerControl(byte[] buffer, int offset, int length) {
+        checkWriteTimeout();
+        synchronized (lock) {
+            if (closed || failed || !control.offer(buffer, offset, length, null, 0)) {
+                return false;
+            }
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Queues a telemetry message, dropping the oldest queued telemetry to make room.
+     *
+     * @return false if the message was dropped (larger than the queue, or the connection failed).
+     */
+    public boolean offerTelemetry(byte[] buffer, int offset, int length) {
+        return offerTelemetry(buffer, offset, length, null, 0);
+    }
+
+    /**
+     * Queues a telemetry message with the sensor timestamps of its samples, which are passed to
+     * the {@link SentListener} once the message has been flushed.
+     *
+     * @return false if the message was dropped (larger than the queue, or the connection failed).
+     */
+    public boolean offerTelemetry(byte[] buffer, int offset, int length, long[] timestampsMillis, int count) {
+        checkWriteTimeout();
+        synchronized (lock) {
+            return queueTelemetry(buffer, offset, length, timestampsMillis, count);
+        }
+    }
+
+    /**
+     * Queues a telemetry message and waits until the writer thread has flushed it. Unlike
+     * {@link #offerTelemetry(byte[], int, int)}, a message that is later dropped to make room for
+     * newer telemetry is reported as not sent, so the caller can keep it and retry. Only one thread
+     * at a time may wait (the heart-rate uplink sending the stored backlog).
+     *
+     * @return false if the message was dropped or the connection failed or closed before the flush.
+     */
+    public boolean offerTelemetryAndAwait(byte[] buffer, int offset, int length) throws InterruptedException {
+        checkWriteTimeout();
+        synchronized (lock) {
+            long sequence = telemetry.tailSequence;
+            if (!queueTelemetry(buffer, offset, length, null, 0)) {
+                return false;
+            }
+            awaitedSequence = sequence;
+            awaitedDropped = false;
+            try {
+                // A stalled write fails the connection through the owner's periodic timeout check
+                while (telemetryFlushed <= sequence) {
+                    if (awaitedDropped || closed || failed) {
+                        return false;
+                    }
+                    lock.wait();
+                }
+                return true;
+            } finally {
+                awaitedSequence = -1;
+            }
+        }
+    }
+
+    /**
+     * Queues a telemetry message, dropping the oldest queued telemetry to make room. Holds the lock.
+     */
+    private boolean queueTelemetry(byte[] buffer, int offset, int length, long[] timestampsMillis, int count) {
+        if (closed || failed) {
+            return false;
+        }
+        boolean queued = true;
+        int dropped = 0;
+        while (!telemetry.offer(buffer, offset, length, timestampsMillis, count)) {
+            dropped++;
+            if (telemetry.headSequence == awaitedSequence) {
+                awaitedDropped = true;
+            }
+            if (telemetry.dropOldest() < 0) {
+                queued = false; // Larger than the whole queue
+                break;
+            }
+        }
+        if (dropped > 0) {
+            telemetryDropped += dropped;
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_OUTBOUND_DROPPED, connectionId, dropped);
+            }
+        }
+        lock.notifyAll();
+        return queued;
+    }
+
+    /**
+     * Reports a write that has been blocked for longer than the write timeout, and calls the
+     * failure callback the first time. Cheap; call it periodically from another thread.
+     *
+     * @return true if the connection is stalled.
+     */
+    public boolean checkWriteTimeout() {
+        long started = writeStartedNanos;
+        if (started == 0 || System.nanoTime() - started < writeTimeoutNanos) {
+            return false;
+        }
+        long blockedMillis = (System.nanoTime() - started) / 1_000_000L;
+        if (markFailed()) {
+            logger.e(TAG, "❌ Write blocked for " + blockedMillis + "ms, closing connection " + connectionId);
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_WRITE_STALLED, connectionId, blockedMillis);
+            }
+            onFailure.run();
+        }
+        return true;
+    }
+
+    /**
+     * Writer loop: waits for queued messages, then sends all queued control messages followed by
+     * all queued telemetry in a single write + flush, and reports the telemetry samples sent.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            int length;
+            long drainedThrough;
+            synchronized (lock) {
+                try {
+                    while (!closed && !failed && control.isEmpty() && telemetry.isEmpty()) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+                if (closed || failed) {
+                    return;
+                }
+                length = control.drainTo(writeBuffer, 0);
+                length = telemetry.drainTo(writeBuffer, length);
+                drainedThrough = telemetry.headSequence;
+            }
+
+            // Write outside the lock, so producers can keep queueing
+            writeStartedNanos = System.nanoTime();
+            try {
+                output.write(writeBuffer, 0, length);
+                output.flush();
+            } catch (IOException e) {
+                if (markFailed()) {
+                    logger.e(TAG, "❌ Write failed on connection " + connectionId, e);
+                    onFailure.run();
+                }
+                return;
+            } finally {
+                writeStartedNanos = 0;
+            }
+
+            synchronized (lock) {
+                bytesWritten += length;
+                writes++;
+                telemetryFlushed = drainedThrough;
+                lock.notifyAll();
+            }
+            SentListener listener = sentListener;
+            if (listener != null && telemetry.drainedSamples > 0) {
+                // Only this thread drains, so the drained timestamps stay put until the next loop
+                listener.onTelemetrySent(telemetry.drained, telemetry.drainedSamples, telemetry.drainedSampleBytes);
+            }
+        }
+    }
+
+    private boolean markFailed() {
+        synchronized (lock) {
+            if (failed || closed) {
+                return false;
+            }
+            failed = true;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    public long getBytesWritten() {
+        synchronized (lock) {
+            return bytesWritten;
+        }
+    }
+
+    /** Number of write + flush calls; lower than the messages queued when they were merged. */
+    public long getWrites() {
+        synchronized (lock) {
+            return writes;
+        }
+    }
+
+    /** Telemetry messages dropped because the link could not keep up. */
+    public long getTelemetryDropped() {
+        synchronized (lock) {
+            return telemetryDropped;
+        }
+    }
+
+    /**
+     * Bounded FIFO of whole messages in a byte ring, each stored as a 4-byte length + its bytes.
+     * Sample timestamps travel in a second ring, as a count followed by the timestamps of each
+     * message. Messages are numbered in queue order, so a producer can tell whether its message was
+     * drained or dropped. Guarded by the writer's lock, except for the drained timestamps, which
+     * only the writer thread touches.
+     */
+    private static final class MessageQueue {
+        private final byte[] ring;
+        private final long[] stamps;
+        private long head; // Position of the oldest message
+        private long tail; // Position after the newest message
+        private long stampHead;
+        private long stampTail;
+        long headSequence; // Sequence number of the oldest message
+        long tailSequence; // Sequence number the next message gets
+
+        // Timestamps of the messages moved out by the last drainTo
+        final long[] drained;
+        int drainedSamples;
+        int drainedSampleBytes;
+
+        MessageQueue(int capacity, int stampCapacity) {
+            ring = new byte[capacity];
+            stamps = new long[stampCapacity];
+            drained = new long[stampCapacity];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        int size() {
+            return (int) (tail - head);
+        }
+
+        int capacity() {
+            return ring.length;
+        }
+
+        boolean offer(byte[] buffer, int offset, int length, long[] timestamps, int count) {
+            if (ring.length - size() < 4 + length) {
+                return false;
+            }
+            if (stamps.length > 0) {
+                if (stamps.length - (stampTail - stampHead) < 1 + count) {
+                    return false;
+                }
+                stamps[(int) (stampTail++ % stamps.length)] = count;
+                for (int i = 0; i < count; i++) {
+                    stamps[(int) (stampTail++ % stamps.length)] = timestamps[i];
+                }
+            }
+            putInt(tail, length);
+            copyIn(tail + 4, buffer, offset, length);
+            tail += 4 + length;
+            tailSequence++;
+            return true;
+        }
+
+        /**
+         * @return Payload bytes dropped, or -1 if the queue was empty.
+         */
+        int dropOldest() {
+            if (isEmpty()) {
+                return -1;
+            }
+            int length = getInt(head);
+            head += 4 + length;
+            headSequence++;
+            if (stamps.length > 0) {
+                stampHead += 1 + stamps[(int) (stampHead % stamps.length)];
+            }
+            return length;
+        }
+
+        /**
+         * Moves every queued message, without length prefixes, into {@code target} at {@code offset},
+         * and their timestamps into {@link #drained}.
+         *
+         * @return The offset after the copied bytes.
+         */
+        int drainTo(byte[] target, int offset) {
+            drainedSamples = 0;
+            drainedSampleBytes = 0;
+            while (!isEmpty()) {
+                int length = getInt(head);
+                copyOut(head + 4, target, offset, length);
+                offset += length;
+                head += 4 + length;
+                headSequence++;
+                if (stamps.length > 0) {
+                    int count = (int) stamps[(int) (stampHead++ % stamps.length)];
+                    for (int i = 0; i < count; i++) {
+                        drained[drainedSamples++] = stamps[(int) (stampHead++ % stamps.length)];
+                    }
+                    if (count > 0) {
+                        drainedSampleBytes += length;
+                    }
+                }
+            }
+            return offset;
+        }
+
+        private void putInt(long position, int value) {
+            for (int i = 0; i < 4; i++) {
+                ring[(int) ((position + i) % ring.length)] = (byte) (value >>> (24 - 8 * i));
+            }
+        }
+
+        private int getInt(long position) {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (ring[(int) ((position + i) % ring.length)] & 0xFF);
+            }
+            return value;
+        }
+
+        private void copyIn(long position, byte[] source, int offset, int length) {
+            int index = (int) (position % ring.length);
+            int first = Math.min(length, ring.length - index);
+            System.arraycopy(source, offset, ring, index, first);
+            System.arraycopy(source, offset + first, ring, 0, length - first);
+        }
+
+        private void copyOut(long position, byte[] target, int offset, int length) {
+            int index = (int) (position % ring.length);
+            int first = Math.min(length, ring.length - index);
+            System.arraycopy(ring, index, target, offset, first);
+            System.arraycopy(ring, 0, target, offset + first, length - first);
+        }
+    }
+
+    /**
+     * Stream view of one queue, for the existing encoders ({@link HeartRateTelemetryWriter}, replies).
+     * Each {@code write} call is one message; {@code flush} is a no-op since the writer thread flushes.
+     */
+    private final class QueueStream extends OutputStream {
+        private final boolean isControl;
+
+        QueueStream(boolean isControl) {
+            this.isControl = isControl;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (isControl) {
+                if (!offerControl(buffer, offset, length)) {
+                    throw new IOException("Outbound queue full or connection failed");
+                }
+            } else {
+                offerTelemetry(buffer, offset, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Newline-delimited framing layer over a (Bluetooth SPP) {@link InputStream}.
+ *
+ * RFCOMM freely merges and splits writes, so a single read() can contain several commands
+ * or only part of one. Bytes are read into a reusable ring buffer and every complete frame
+ * (terminated by '\n') is handed to a {@link FrameHandler}, no matter how it was split
+ * across reads. Frames longer than {@code maxFrameLength} are discarded up to the next delimiter.
+ *
+ * Legacy clients that send one command per write without a newline keep working:
+ * until the first delimiter is seen on a connection, whatever is buffered once the stream has
+ * had no pending bytes for {@link #LEGACY_IDLE_NANOS} is treated as one frame (the previous
+ * one-write-one-command behavior). The idle wait keeps a delimited client's first command, if
+ * the radio splits it, from being taken for two legacy frames. Bytes that the handler accepts
+ * as a whole frame ({@link FrameHandler#isCompleteFrame}) skip the wait, unless they end in a
+ * digit and could still be a number cut short: those wait too, until a first frame completed by
+ * the idle wait has shown that the client does not send delimiters.
+ *
+ * After the handshake the stream can be switched to {@link BinaryProtocol} framing with
+ * {@link #switchToBinary()}; frames are then delimited by their length header instead.
+ *
+ * Not thread-safe; owned by the connection's reader thread. No Android dependencies.
+ */
+public final class FrameReader {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    // Longest text command, and fits the longest binary frame
+    public static final int DEFAULT_MAX_FRAME_LENGTH = BinaryProtocol.MAX_FRAME_LENGTH;
+    // Without a delimiter yet, bytes are a legacy frame once nothing more arrived for this long
+    static final long LEGACY_IDLE_NANOS = 20_000_000L;
+    private static final long LEGACY_FIRST_POLL_NANOS = 1_000_000L; // Doubled on every poll
+
+    private static final byte DELIMITER = '\n';
+
+    /**
+     * Receives complete frames. The buffer is only valid for the duration of the call.
+     */
+    public interface FrameHandler {
+        void onFrame(byte[] buffer, int offset, int length);
+
+        void onFrameDropped(int length);
+
+        /**
+         * Legacy framing only: whether bytes buffered without a delimiter already form a whole
+         * frame, to be dispatched without waiting for the stream to go idle. The buffer is only
+         * valid for the duration of the call.
+         */
+        default boolean isCompleteFrame(byte[] buffer, int offset, int length) {
+            return false;
+        }
+    }
+
+    private final InputStream input;
+    private final FrameHandler handler;
+    private final byte[] ring;
+    private final byte[] scratch;   // Holds frames that wrap around the end of the ring
+    private final int mask;
+    private final int maxFrameLength;
+
+    // Absolute stream positions; ring index = position & mask
+    private long frameStart;
+    private long scanPos;
+    private long writePos;
+
+    private boolean delimited;      // A delimiter has been seen on this stream
+    private boolean legacy;         // A frame without delimiter was completed by the idle wait
+    private boolean discarding;     // Dropping an oversized frame until the next delimiter
+    private boolean binary;         // Length-prefixed BinaryProtocol framing instead of '\n'
+    private int binarySkip;         // Bytes of an oversized binary frame still to skip
+    private long framesDelivered;
+    private long framesDropped;
+    private long lastReadNanos;     // When the bytes of the frames being dispatched were read
+
+    public FrameReader(InputStream input, FrameHandler handler) {
+        this(input, DEFAULT_CAPACITY, DEFAULT_MAX_FRAME_LENGTH, handler);
+    }
+
+    /**
+     * @param capacity       Ring buffer size in bytes; must be a power of two.
+     * @param maxFrameLength Longest accepted frame (excluding the delimiter); must be smaller than capacity.
+     */
+    public FrameReader(InputStream input, int capacity, int maxFrameLength, FrameHandler handler) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        if (maxFrameLength <= 0 || maxFrameLength >= capacity) {
+            throw new IllegalArgumentException("maxFrameLength must be in (0, capacity): " + maxFrameLength);
+        }
+        this.input = input;
+        this.handler = handler;
+        this.ring = new byte[capacity];
+        this.scratch = new byte[maxFrameLength];
+        this.mask = capacity - 1;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Reads and dispatches frames until the stream reaches end-of-stream.
+     *
+     * @throws IOException If reading from the underlying stream fails (e.g. the socket dropped).
+     */
+    public void run() throws IOException {
+        while (readOnce()) {
+            // Keep reading until EOF
+        }
+    }
+
+    /**
+     * Performs a single blocking read and dispatches every frame it completes.
+     *
+     * @return false once the stream has reached end-of-stream.
+     */
+    public boolean readOnce() throws IOException {
+        int index = (int) (writePos & mask);
+        int free = ring.length - (int) (writePos - frameStart);
+        int count = input.read(ring, index, Math.min(free, ring.length - index));
+        if (count == -1) {
+            // A legacy client may close right after its last command
+            if (!delimited && !binary && !discarding && writePos > frameStart) {
+                deliver(frameStart, (int) (writePos - frameStart));
+            }
+            frameStart = writePos;
+            return false;
+        }
+        writePos += count;
+        lastReadNanos = System.nanoTime();
+
+        // Step 1: Dispatch every complete frame in the buffered bytes. The handler may switch
+        // the stream to binary framing, in which case the rest is re-scanned in that mode.
+        while (binary ? scanBinary() : scanText()) {
+            // Keep dispatching until only a partial frame is left
+        }
+
+        // Step 2: Enforce the frame length cap on the trailing partial frame
+        // (oversized binary frames are already skipped by scanBinary using their header)
+        int pending = (int) (writePos - frameStart);
+        if (binary) {
+            return true;
+        } else if (discarding) {
+            frameStart = writePos;
+            scanPos = writePos;
+        } else if (pending > maxFrameLength) {
+            discarding = true;
+            framesDropped++;
+            handler.onFrameDropped(pending);
+            frameStart = writePos;
+            scanPos = writePos;
+        } else if (!delimited && !binary && pending > 0) {
+            // Step 3: Legacy client without delimiters → the write itself is the frame
+            boolean complete = isCompleteFrame(frameStart, pending);
+            if (complete || isIdle()) {
+                legacy |= !complete;
+                deliver(frameStart, pending);
+                frameStart = writePos;
+                scanPos = writePos;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Asks the handler whether the buffered bytes are a whole legacy frame. Until the client is
+     * known to send no delimiters, a trailing digit may be a number split by the radio.
+     */
+    private boolean isCompleteFrame(long start, int length) {
+        byte last = ring[(int) ((start + length - 1) & mask)];
+        if (!legacy && last >= '0' && last <= '9') {
+            return false;
+        }
+        int index = (int) (start & mask);
+        int firstPart = ring.length - index;
+        if (length <= firstPart) {
+            return handler.isCompleteFrame(ring, index, length);
+        }
+        stitch(index, firstPart, length);
+        return handler.isCompleteFrame(scratch, 0, length);
+    }
+
+    /**
+     * Waits until more bytes are pending or the stream has been quiet for {@link #LEGACY_IDLE_NANOS}
+     * since the last read.
+     *
+     * InputStream has no timed read (nor does the RFCOMM socket), so this polls
+     * {@code available()}, backing off to a handful of wake-ups per wait.
+     *
+     * @return true if the stream stayed idle (the buffered bytes are a complete legacy frame).
+     */
+    private boolean isIdle() throws IOException {
+        long poll = LEGACY_FIRST_POLL_NANOS;
+        while (input.available() == 0) {
+            long remaining = lastReadNanos + LEGACY_IDLE_NANOS - System.nanoTime();
+            if (remaining <= 0) {
+                return true;
+            }
+            LockSupport.parkNanos(Math.min(poll, remaining));
+            poll *= 2;
+        }
+        return false;
+    }
+
+    /**
+     * Switches the stream to {@link BinaryProtocol} framing (length taken from the frame header).
+     * Meant to be called from {@link FrameHandler#onFrame} when the handshake frame is received;
+     * bytes already buffered behind it are parsed as binary frames.
+     */
+    public void switchToBinary() {
+        binary = true;
+        discarding = false;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Dispatches the next newline-terminated frame, if one is buffered.
+     *
+     * @return true if a frame was consumed.
+     */
+    private boolean scanText() {
+        for (; scanPos < writePos; scanPos++) {
+            if (ring[(int) (scanPos & mask)] == DELIMITER) {
+                long end = scanPos;
+                long start = frameStart;
+                frameStart = ++scanPos;
+                delimited = true;
+                if (discarding) {
+                    discarding = false;
+                } else {
+                    deliver(start, (int) (end - start));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Dispatches the next length-prefixed binary frame, if it is fully buffered.
+     *
+     * @return true if a frame was consumed.
+     */
+    private boolean scanBinary() {
+        if (binarySkip > 0) {
+            // Still inside an oversized frame
+            int skipped = (int) Math.min(binarySkip, writePos - frameStart);
+            frameStart += skipped;
+            binarySkip -= skipped;
+            if (binarySkip > 0) {
+                return false;
+            }
+        }
+        if (writePos - frameStart < BinaryProtocol.HEADER_LENGTH) {
+            return false;
+        }
+        int length = BinaryProtocol.frameLength(ring[(int) ((frameStart + 1) & mask)]);
+        if (length > maxFrameLength) {
+            framesDropped++;
+            handler.onFrameDropped(length);
+            binarySkip = length;
+            return true;
+        }
+        if (writePos - frameStart < length) {
+            return false;
+        }
+        long start = frameStart;
+        frameStart += length;
+        scanPos = frameStart;
+        deliver(start, length);
+        return true;
+    }
+
+    private void deliver(long start, int length) {
+        if (length > maxFrameLength) {
+            framesDropped++;
+            handler.onFrameDropped(length);
+            return;
+        }
+        framesDelivered++;
+        int index = (int) (start & mask);
+        int firstPart = ring.length - index;
+        if (length <= firstPart) {
+            handler.onFrame(ring, index, length);
+        } else {
+            // Frame wraps around the end of the ring: stitch it into the scratch buffer
+            stitch(index, firstPart, length);
+            handler.onFrame(scratch, 0, length);
+        }
+    }
+
+    private void stitch(int index, int firstPart, int length) {
+        System.arraycopy(ring, index, scratch, 0, firstPart);
+        System.arraycopy(ring, 0, scratch, firstPart, length - firstPart);
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /** Total bytes read from the stream. */
+    public long getBytesRead() {
+        return writePos;
+    }
+
+    /**
+     * {@link System#nanoTime()} right after the read that completed the frame being dispatched;
+     * the start of the command-to-vibration latency.
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+}
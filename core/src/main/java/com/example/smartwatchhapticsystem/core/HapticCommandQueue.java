@@ -0,0 +1,155 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer / single-consumer queue of haptic commands.
+ *
+ * Commands are stored field by field in preallocated primitive arrays (no per-command objects).
+ * Each slot has a sequence number that tells producers when it is free and the consumer when
+ * it is filled, so {@link #offer} never blocks: when the queue is full it simply returns false.
+ *
+ * Producers: Bluetooth reader threads. Consumer: the {@link HapticScheduler} thread.
+ * No Android dependencies.
+ */
+public final class HapticCommandQueue {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] kinds;
+    private final int[] intensities;
+    private final int[] pulseCounts;
+    private final int[] durations;
+    private final int[] intervals;
+    private final long[] receivedTimes;
+
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private volatile long dequeuePosition;
+
+    // Fields of the command returned by the last successful poll()
+    private int kind;
+    private int intensity;
+    private int pulses;
+    private int duration;
+    private int interval;
+    private long receivedNanos;
+
+    /**
+     * @param capacity Number of slots; must be a power of two.
+     */
+    public HapticCommandQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.kinds = new int[capacity];
+        this.intensities = new int[capacity];
+        this.pulseCounts = new int[capacity];
+        this.durations = new int[capacity];
+        this.intervals = new int[capacity];
+        this.receivedTimes = new long[capacity];
+    }
+
+    /**
+     * Enqueues a command received now; see {@link #offer(int, int, int, int, int, long)}.
+     */
+    public boolean offer(int kind, int intensity, int pulses, int duration, int interval) {
+        return offer(kind, intensity, pulses, duration, interval, System.nanoTime());
+    }
+
+    /**
+     * Enqueues a command without blocking. Safe to call from several threads.
+     *
+     * @param receivedNanos When the command was read from the connection ({@link System#nanoTime()}).
+     * @return false if the queue is full.
+     */
+    public boolean offer(int kind, int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        long position = enqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                // Slot is free for this position: try to claim it
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false; // Slot still holds an unconsumed command → full
+            } else {
+                position = enqueuePosition.get(); // Another producer claimed it; retry
+            }
+        }
+
+        kinds[index] = kind;
+        intensities[index] = intensity;
+        pulseCounts[index] = pulses;
+        durations[index] = duration;
+        intervals[index] = interval;
+        receivedTimes[index] = receivedNanos;
+        sequences.set(index, position + 1); // Publish to the consumer
+        return true;
+    }
+
+    /**
+     * Dequeues the next command into the {@code get*} fields. Consumer thread only.
+     *
+     * @return false if the queue is empty.
+     */
+    public boolean poll() {
+        long position = dequeuePosition;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return false;
+        }
+
+        kind = kinds[index];
+        intensity = intensities[index];
+        pulses = pulseCounts[index];
+        duration = durations[index];
+        interval = intervals[index];
+        receivedNanos = receivedTimes[index];
+        sequences.set(index, position + mask + 1); // Hand the slot back to producers
+        dequeuePosition = position + 1;
+        return true;
+    }
+
+    /** Approximate number of queued commands. */
+    public int size() {
+        return (int) Math.max(0, enqueuePosition.get() - dequeuePosition);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getIntensity() {
+        return intensity;
+    }
+
+    public int getPulses() {
+        return pulses;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+}
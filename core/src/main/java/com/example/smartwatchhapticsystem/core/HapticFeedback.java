@@ -0,0 +1,257 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Validates vibration requests and plays them through the {@link HapticScheduler} on a
+ * {@link HapticSink}. Azimuth cues are coalesced; heart-rate alerts take priority.
+ * The time from reading a command to the vibrator call returning is recorded in {@link HotPathMetrics}.
+ * A pattern keeps the CPU awake through a {@link WakeLeases#REASON_HAPTIC} lease from the moment
+ * it is queued until it has finished playing.
+ * Patterns scheduled with {@link #triggerAt} play at their target time instead; how late they
+ * played is recorded as the "VibrateAt:" lateness.
+ */
+public final class HapticFeedback {
+    private static final String TAG = "HapticFeedback";
+
+    // Covers the wait in the scheduler queue before playback starts
+    static final long QUEUED_LEASE_SLACK_MILLIS = 500;
+
+    private final HapticSink sink;
+    private final Logger logger;
+    private final HotPathMetrics metrics;
+    private final TraceBuffer trace;
+    private final WakeLeases wakeLeases;
+
+    // Queues patterns from the connection threads and plays them one at a time on its own thread
+    private final HapticScheduler scheduler;
+
+    public HapticFeedback(HapticSink sink, Logger logger) {
+        this(sink, logger, new HotPathMetrics(Clock.SYSTEM));
+    }
+
+    public HapticFeedback(HapticSink sink, Logger logger, HotPathMetrics metrics) {
+        this.sink = sink;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.trace = metrics.getTrace();
+        this.wakeLeases = metrics.getWakeLeases();
+        this.scheduler = new HapticScheduler(this::play);
+        this.scheduler.start();
+    }
+
+    /**
+     * Triggers a vibration pattern based on sun azimuth feedback logic.
+     *
+     * @param intensity Amplitude of vibration (1–255); 0 = silent
+     * @param pulses    Number of vibration pulses
+     * @param duration  Duration of each pulse in milliseconds
+     * @param interval  Duration of pause between pulses in milliseconds
+     * @return true if the pattern was queued for playback
+     */
+    public boolean triggerAzimuth(int intensity, int pulses, int duration, int interval) {
+        return triggerAzimuth(intensity, pulses, duration, interval, System.nanoTime());
+    }
+
+    /**
+     * Same as {@link #triggerAzimuth(int, int, int, int)} for a command read at {@code receivedNanos}
+     * ({@link System#nanoTime()}).
+     */
+    public boolean triggerAzimuth(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return triggerAzimuth(intensity, pulses, duration, interval, receivedNanos, false);
+    }
+
+    /**
+     * Same as {@link #triggerAzimuth(int, int, int, int, long)}; a {@code deferred} cue (over the
+     * session's rate limit) waits for the playing pattern to end instead of replacing it, and is
+     * itself replaced by any newer azimuth cue ({@link HapticScheduler#FLAG_DEFERRED}).
+     */
+    public boolean triggerAzimuth(int intensity, int pulses, int duration, int interval, long receivedNanos,
+                                  boolean deferred) {
+        // Validate inputs
+        if (pulses > 0 && intensity > 0 && intensity <= 255 && duration > 0) {
+            if (sink.hasVibrator()) {
+                // Queued; a newer azimuth cue replaces this one if it has not played yet
+                int kind = deferred
+                        ? HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_DEFERRED
+                        : HapticScheduler.KIND_AZIMUTH;
+                if (scheduler.submit(kind, intensity, pulses, duration, interval, receivedNanos)) {
+                    wakeLeases.lease(WakeLeases.REASON_HAPTIC,
+                            patternMillis(pulses, duration, interval) + QUEUED_LEASE_SLACK_MILLIS);
+                    if (TraceBuffer.COMPILED) {
+                        trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, HapticScheduler.KIND_AZIMUTH, intensity);
+                    }
+                    return true;
+                }
+                if (TraceBuffer.COMPILED) {
+                    trace.record(TraceBuffer.EVENT_VIBRATE_DROPPED, HapticScheduler.KIND_AZIMUTH, intensity);
+                }
+                logger.w(TAG, "⚠️ Haptic queue full, Sun Azimuth Vibration dropped.");
+            } else {
+                logger.e(TAG, "❌ Device does not support vibration.");
+            }
+        } else {
+            logger.e(TAG, "❌ Invalid parameters for vibration.");
+        }
+        return false;
+    }
+
+    /**
+     * Queues the prebuilt direction cue of a bearing ("Azimuth:&lt;degrees&gt;", see
+     * {@link AzimuthPatternLibrary}); coalesced with the other azimuth cues.
+     *
+     * @param degrees       Bearing of the target relative to straight ahead, clockwise.
+     * @param receivedNanos When the command was read ({@link System#nanoTime()}).
+     * @param deferred      Wait for the playing pattern to end (see {@link #triggerAzimuth(int, int, int, int, long, boolean)}).
+     * @return true if the cue was queued for playback
+     */
+    public boolean triggerAzimuthPattern(int degrees, long receivedNanos, boolean deferred) {
+        if (!sink.hasVibrator()) {
+            logger.e(TAG, "❌ Device does not support vibration.");
+            return false;
+        }
+        int sector = AzimuthPatternLibrary.sectorOf(degrees);
+        int length = (int) AzimuthPatternLibrary.durationMillis(sector);
+        int kind = deferred
+                ? HapticScheduler.KIND_AZIMUTH_PATTERN | HapticScheduler.FLAG_DEFERRED
+                : HapticScheduler.KIND_AZIMUTH_PATTERN;
+        if (scheduler.submit(kind, sector, 1, length, 0, receivedNanos)) {
+            wakeLeases.lease(WakeLeases.REASON_HAPTIC, length + QUEUED_LEASE_SLACK_MILLIS);
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, HapticScheduler.KIND_AZIMUTH_PATTERN, sector);
+            }
+            return true;
+        }
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_VIBRATE_DROPPED, HapticScheduler.KIND_AZIMUTH_PATTERN, sector);
+        }
+        logger.w(TAG, "⚠️ Haptic queue full, azimuth cue dropped.");
+        return false;
+    }
+
+    /**
+     * Triggers a vibration pattern in response to heart rate-related feedback.
+     *
+     * @param intensity Intensity level (1–255) representing vibration strength
+     * @param pulses    Number of vibration pulses to deliver
+     * @param duration  Duration (in ms) of each pulse
+     * @param interval  Duration (in ms) of pause between pulses
+     * @return true if the pattern was queued for playback
+     */
+    public boolean triggerHeartRate(int intensity, int pulses, int duration, int interval) {
+        return triggerHeartRate(intensity, pulses, duration, interval, System.nanoTime());
+    }
+
+    /**
+     * Same as {@link #triggerHeartRate(int, int, int, int)} for a command read at {@code receivedNanos}
+     * ({@link System#nanoTime()}).
+     */
+    public boolean triggerHeartRate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        if (pulses > 0 && intensity > 0 && duration > 0) {
+
+            if (sink.hasVibrator()) {
+
+                // Queued with priority over azimuth cues (interrupts one that is playing)
+                if (scheduler.submit(HapticScheduler.KIND_HEART_RATE, intensity, pulses, duration, interval,
+                        receivedNanos)) {
+                    wakeLeases.lease(WakeLeases.REASON_HAPTIC,
+                            patternMillis(pulses, duration, interval) + QUEUED_LEASE_SLACK_MILLIS);
+                    if (TraceBuffer.COMPILED) {
+                        trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, HapticScheduler.KIND_HEART_RATE, intensity);
+                    }
+                    return true;
+                }
+                if (TraceBuffer.COMPILED) {
+                    trace.record(TraceBuffer.EVENT_VIBRATE_DROPPED, HapticScheduler.KIND_HEART_RATE, intensity);
+                }
+                logger.w(TAG, "⚠️ Haptic queue full, heart rate vibration dropped.");
+            } else {
+                logger.e(TAG, "❌ Device does not support vibration.");
+            }
+
+        } else {
+            logger.e(TAG, "❌ Invalid parameters for heart rate vibration.");
+        }
+        return false;
+    }
+
+    /**
+     * Queues a pattern to be played at {@code atNanos} ({@link System#nanoTime()}), interrupting
+     * whatever plays then ("VibrateAt:"); a target in the past plays as soon as possible.
+     *
+     * @param kind {@link HapticScheduler#KIND_HEART_RATE} or {@link HapticScheduler#KIND_AZIMUTH}; the
+     *             usual priority rules apply once it has started.
+     * @return true if the pattern was scheduled
+     */
+    public boolean triggerAt(int kind, int intensity, int pulses, int duration, int interval, long atNanos) {
+        if (pulses <= 0 || intensity <= 0 || intensity > 255 || duration <= 0) {
+            logger.e(TAG, "❌ Invalid parameters for scheduled vibration.");
+            return false;
+        }
+        if (!sink.hasVibrator()) {
+            logger.e(TAG, "❌ Device does not support vibration.");
+            return false;
+        }
+        if (scheduler.submit(kind | HapticScheduler.FLAG_TIMED, intensity, pulses, duration, interval, atNanos)) {
+            // Stay awake until the target, so the scheduler thread is not frozen in suspend
+            long waitMillis = Math.max(0, (atNanos - System.nanoTime()) / 1_000_000L);
+            wakeLeases.lease(WakeLeases.REASON_HAPTIC,
+                    waitMillis + patternMillis(pulses, duration, interval) + QUEUED_LEASE_SLACK_MILLIS);
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, kind | HapticScheduler.FLAG_TIMED, intensity);
+            }
+            return true;
+        }
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_VIBRATE_DROPPED, kind | HapticScheduler.FLAG_TIMED, intensity);
+        }
+        logger.w(TAG, "⚠️ Haptic queue full, scheduled vibration dropped.");
+        return false;
+    }
+
+    /**
+     * Plays one pattern on the haptic scheduler thread; for a {@link HapticScheduler#FLAG_TIMED}
+     * pattern {@code receivedNanos} is its target time.
+     */
+    private void play(int kind, int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        try {
+            boolean timed = (kind & HapticScheduler.FLAG_TIMED) != 0;
+            // The vibrator plays asynchronously; stay awake until the pattern is over
+            wakeLeases.lease(WakeLeases.REASON_HAPTIC, patternMillis(pulses, duration, interval));
+            if ((kind & ~HapticScheduler.FLAG_TIMED) == HapticScheduler.KIND_AZIMUTH_PATTERN) {
+                sink.playAzimuthPattern(intensity); // Prebuilt waveform of that sector
+            } else {
+                sink.play(intensity, pulses, duration, interval);
+            }
+            long latencyMicros = timed
+                    ? metrics.recordVibrateAtLateness(receivedNanos)
+                    : metrics.recordCommandToVibration(receivedNanos);
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_VIBRATE_PLAYED, kind, latencyMicros);
+            }
+        } catch (RuntimeException e) {
+            logger.e(TAG, "❌ Failed to play vibration: " + e.getMessage(), e);
+        }
+    }
+
+    private static long patternMillis(int pulses, int duration, int interval) {
+        return (long) pulses * (duration + Math.max(interval, 0));
+    }
+
+    /**
+     * Stops the haptic scheduler thread and any vibration in progress.
+     */
+    public void release() {
+        scheduler.stop();
+        sink.cancel();
+    }
+
+    /**
+     * Exposes the haptic scheduler so its queue depth and drop/coalesce/preempt counts can be reported.
+     */
+    public HapticScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public HotPathMetrics getMetrics() {
+        return metrics;
+    }
+}
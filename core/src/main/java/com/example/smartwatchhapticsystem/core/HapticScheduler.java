@@ -0,0 +1,381 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-threaded haptic command scheduler.
+ *
+ * Reader threads {@link #submit} patterns into a bounded lock-free {@link HapticCommandQueue}
+ * and never block. The scheduler thread drains the queue and decides what to play:
+ * <ul>
+ *   <li><b>Coalescing</b>: azimuth cues (pulse trains or prebuilt direction patterns) superseded
+ *       by a newer one before they played are dropped;
+ *       only the newest azimuth cue is kept. Re-sending the pattern that is already playing
+ *       does not restart it (no stutter).</li>
+ *   <li><b>Priority</b>: pending heart-rate alerts always play before azimuth cues (FIFO among alerts).</li>
+ *   <li><b>Preemption</b>: a heart-rate alert interrupts a playing azimuth cue, while azimuth cues
+ *       wait for a playing alert to finish.</li>
+ *   <li><b>Deferral</b>: an azimuth cue submitted with {@link #FLAG_DEFERRED} (over the session's
+ *       rate limit) does not interrupt a playing pattern; it waits in the coalescing slot, so
+ *       only the newest one plays once the current pattern is over ("latest wins").</li>
+ *   <li><b>Timed playback</b>: a pattern submitted with {@link #FLAG_TIMED} ("VibrateAt:") carries
+ *       its target {@link System#nanoTime()} instead of the receive time and plays at that moment,
+ *       whatever else is pending or playing. The thread parks until just before the target and
+ *       spins the last {@link #SPIN_NANOS}, so wakeup jitter does not become haptic jitter.</li>
+ * </ul>
+ * Queue depth and drop/coalesce/preempt counts are exposed for diagnostics. Each command carries
+ * the time it was read from the connection, so the {@link Player} can measure end-to-end latency.
+ *
+ * No Android dependencies: the actual vibration is done by the {@link Player}.
+ */
+public final class HapticScheduler {
+
+    public static final int KIND_AZIMUTH = 0;
+    public static final int KIND_HEART_RATE = 1;
+    // Prebuilt AzimuthPatternLibrary cue: intensity carries the sector, duration the pattern length
+    public static final int KIND_AZIMUTH_PATTERN = 2;
+    // Or'ed into an azimuth kind: wait for the playing pattern to end instead of replacing it
+    public static final int FLAG_DEFERRED = 0x100;
+    // Or'ed into any kind: receivedNanos is the time the pattern must play at
+    public static final int FLAG_TIMED = 0x200;
+
+    public static final int DEFAULT_TIMED_CAPACITY = 16;
+    // Parked until this long before a timed pattern, then spinning (park wakeups are late by up to ~100 µs)
+    static final long SPIN_NANOS = 500_000L;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    private static final int NOTHING = -1;
+
+    /**
+     * Plays a pattern on the scheduler thread (replacing whatever is playing).
+     * {@code receivedNanos} is when the command was read ({@link System#nanoTime()}); for a pattern
+     * whose {@code kind} carries {@link #FLAG_TIMED} it is the time it was due.
+     */
+    public interface Player {
+        void play(int kind, int intensity, int pulses, int duration, int interval, long receivedNanos);
+    }
+
+    private final HapticCommandQueue queue;
+    private final Player player;
+
+    // Consumer-side state (scheduler thread only)
+    private final int[] alertIntensities;
+    private final int[] alertPulses;
+    private final int[] alertDurations;
+    private final int[] alertIntervals;
+    private final long[] alertReceivedTimes;
+    private int alertHead;
+    private int alertCount;
+
+    private boolean azimuthPending;
+    private boolean azimuthDeferred;
+    private int azimuthKind;
+    private int azimuthIntensity;
+    private int azimuthPulses;
+    private int azimuthDuration;
+    private int azimuthInterval;
+    private long azimuthReceivedNanos;
+
+    // Timed patterns, sorted by target time (earliest first)
+    private final long[] timedAt;
+    private final int[] timedKinds;
+    private final int[] timedIntensities;
+    private final int[] timedPulses;
+    private final int[] timedDurations;
+    private final int[] timedIntervals;
+    private int timedCount;
+    // Timed patterns submitted and not yet played; reserved by producers so submit() can refuse overflow
+    private final AtomicInteger timedReserved = new AtomicInteger();
+
+    private int playingKind = NOTHING;
+    private long playingUntilNanos;
+    private int playingIntensity;
+    private int playingPulses;
+    private int playingDuration;
+    private int playingInterval;
+
+    private volatile int pendingCount;
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    private final AtomicLong played = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong preempted = new AtomicLong();
+
+    public HapticScheduler(Player player) {
+        this(player, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity Size of the command queue; must be a power of two.
+     */
+    public HapticScheduler(Player player, int queueCapacity) {
+        this.player = player;
+        this.queue = new HapticCommandQueue(queueCapacity);
+        this.alertIntensities = new int[queueCapacity];
+        this.alertPulses = new int[queueCapacity];
+        this.alertDurations = new int[queueCapacity];
+        this.alertIntervals = new int[queueCapacity];
+        this.alertReceivedTimes = new long[queueCapacity];
+        this.timedAt = new long[DEFAULT_TIMED_CAPACITY];
+        this.timedKinds = new int[DEFAULT_TIMED_CAPACITY];
+        this.timedIntensities = new int[DEFAULT_TIMED_CAPACITY];
+        this.timedPulses = new int[DEFAULT_TIMED_CAPACITY];
+        this.timedDurations = new int[DEFAULT_TIMED_CAPACITY];
+        this.timedIntervals = new int[DEFAULT_TIMED_CAPACITY];
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread worker = new Thread(this::runLoop, "HapticScheduler");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MAX_PRIORITY);
+        thread = worker;
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        Thread worker = thread;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+        thread = null;
+    }
+
+    /**
+     * Queues a pattern received now; see {@link #submit(int, int, int, int, int, long)}.
+     */
+    public boolean submit(int kind, int intensity, int pulses, int duration, int interval) {
+        return submit(kind, intensity, pulses, duration, interval, System.nanoTime());
+    }
+
+    /**
+     * Queues a pattern without blocking.
+     *
+     * @param kind          {@link #KIND_HEART_RATE}, {@link #KIND_AZIMUTH} or {@link #KIND_AZIMUTH_PATTERN};
+     *                      an azimuth kind may carry {@link #FLAG_DEFERRED}, any kind {@link #FLAG_TIMED}.
+     * @param receivedNanos When the command was read from the connection ({@link System#nanoTime()});
+     *                      with {@link #FLAG_TIMED}, when it must play.
+     * @return false if the queue was full (or, with {@link #FLAG_TIMED}, {@link #DEFAULT_TIMED_CAPACITY}
+     *         timed patterns are already waiting) and the command was dropped.
+     */
+    public boolean submit(int kind, int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        boolean timed = (kind & FLAG_TIMED) != 0;
+        if (timed && !reserveTimed()) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (!queue.offer(kind, intensity, pulses, duration, interval, receivedNanos)) {
+            if (timed) {
+                timedReserved.decrementAndGet();
+            }
+            dropped.incrementAndGet();
+            return false;
+        }
+        Thread worker = thread;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    /**
+     * Claims one of the {@link #DEFAULT_TIMED_CAPACITY} timed slots, released once the pattern plays.
+     */
+    private boolean reserveTimed() {
+        int reserved;
+        do {
+            reserved = timedReserved.get();
+            if (reserved == DEFAULT_TIMED_CAPACITY) {
+                return false;
+            }
+        } while (!timedReserved.compareAndSet(reserved, reserved + 1));
+        return true;
+    }
+
+    private void runLoop() {
+        while (running) {
+            // Step 1: Move everything queued into the local pending state (coalescing azimuth cues)
+            drain();
+
+            long now = System.nanoTime();
+            long timedWait = timedCount > 0 ? timedAt[0] - now : Long.MAX_VALUE;
+            if (timedWait <= SPIN_NANOS) {
+                // Step 2: A timed pattern is due: spin to its target, then play it over anything else
+                playTimed();
+                pendingCount = alertCount + (azimuthPending ? 1 : 0) + timedCount;
+                continue;
+            }
+            timedWait -= SPIN_NANOS;
+
+            boolean playing = playingKind != NOTHING && now < playingUntilNanos;
+            boolean alertPlaying = playing && playingKind == KIND_HEART_RATE;
+
+            if (!alertPlaying && alertCount > 0) {
+                // Step 3: Heart-rate alerts first, preempting an azimuth cue if one is playing
+                if (playing && playingKind != KIND_HEART_RATE) {
+                    preempted.incrementAndGet();
+                }
+                int i = alertHead;
+                alertHead = (alertHead + 1) % alertIntensities.length;
+                alertCount--;
+                play(KIND_HEART_RATE, alertIntensities[i], alertPulses[i], alertDurations[i], alertIntervals[i],
+                        alertReceivedTimes[i], now);
+            } else if (!alertPlaying && azimuthPending && !(azimuthDeferred && playing)) {
+                // Step 4: Newest azimuth cue, unless that exact pattern is already playing
+                azimuthPending = false;
+                if (playing && playingKind == azimuthKind
+                        && playingIntensity == azimuthIntensity && playingPulses == azimuthPulses
+                        && playingDuration == azimuthDuration && playingInterval == azimuthInterval) {
+                    coalesced.incrementAndGet();
+                } else {
+                    play(azimuthKind, azimuthIntensity, azimuthPulses, azimuthDuration, azimuthInterval,
+                            azimuthReceivedNanos, now);
+                }
+            } else if (playing && (alertCount > 0 || azimuthPending)) {
+                // Step 5: Something is waiting for the current alert (or, if deferred, pattern) to finish
+                LockSupport.parkNanos(this, Math.min(playingUntilNanos - now, timedWait));
+            } else if (timedCount > 0) {
+                // Step 6: Nothing to do until a new command arrives or the next timed pattern is due
+                LockSupport.parkNanos(this, timedWait);
+            } else {
+                LockSupport.park(this);
+            }
+            pendingCount = alertCount + (azimuthPending ? 1 : 0) + timedCount;
+        }
+    }
+
+    /**
+     * Busy-waits until the earliest timed pattern is due (at most {@link #SPIN_NANOS}) and plays it.
+     */
+    private void playTimed() {
+        long at = timedAt[0];
+        long now = System.nanoTime();
+        while (now - at < 0) {
+            now = System.nanoTime();
+        }
+        int kind = timedKinds[0];
+        int intensity = timedIntensities[0];
+        int pulses = timedPulses[0];
+        int duration = timedDurations[0];
+        int interval = timedIntervals[0];
+        timedCount--;
+        System.arraycopy(timedAt, 1, timedAt, 0, timedCount);
+        System.arraycopy(timedKinds, 1, timedKinds, 0, timedCount);
+        System.arraycopy(timedIntensities, 1, timedIntensities, 0, timedCount);
+        System.arraycopy(timedPulses, 1, timedPulses, 0, timedCount);
+        System.arraycopy(timedDurations, 1, timedDurations, 0, timedCount);
+        System.arraycopy(timedIntervals, 1, timedIntervals, 0, timedCount);
+        timedReserved.decrementAndGet();
+
+        if (playingKind != NOTHING && now < playingUntilNanos) {
+            preempted.incrementAndGet();
+        }
+        play(kind | FLAG_TIMED, intensity, pulses, duration, interval, at, now);
+    }
+
+    /**
+     * Inserts the polled timed pattern in target order; there is room, since {@link #submit} reserved
+     * its slot.
+     */
+    private void schedule() {
+        long at = queue.getReceivedNanos();
+        int i = timedCount;
+        while (i > 0 && timedAt[i - 1] - at > 0) {
+            timedAt[i] = timedAt[i - 1];
+            timedKinds[i] = timedKinds[i - 1];
+            timedIntensities[i] = timedIntensities[i - 1];
+            timedPulses[i] = timedPulses[i - 1];
+            timedDurations[i] = timedDurations[i - 1];
+            timedIntervals[i] = timedIntervals[i - 1];
+            i--;
+        }
+        timedAt[i] = at;
+        timedKinds[i] = queue.getKind() & ~FLAG_TIMED;
+        timedIntensities[i] = queue.getIntensity();
+        timedPulses[i] = queue.getPulses();
+        timedDurations[i] = queue.getDuration();
+        timedIntervals[i] = queue.getInterval();
+        timedCount++;
+    }
+
+    private void drain() {
+        while (queue.poll()) {
+            if ((queue.getKind() & FLAG_TIMED) != 0) {
+                schedule();
+            } else if (queue.getKind() == KIND_HEART_RATE) {
+                if (alertCount == alertIntensities.length) {
+                    // Alerts arrive faster than they can play: drop the oldest
+                    alertHead = (alertHead + 1) % alertIntensities.length;
+                    alertCount--;
+                    dropped.incrementAndGet();
+                }
+                int i = (alertHead + alertCount) % alertIntensities.length;
+                alertIntensities[i] = queue.getIntensity();
+                alertPulses[i] = queue.getPulses();
+                alertDurations[i] = queue.getDuration();
+                alertIntervals[i] = queue.getInterval();
+                alertReceivedTimes[i] = queue.getReceivedNanos();
+                alertCount++;
+            } else {
+                if (azimuthPending) {
+                    coalesced.incrementAndGet(); // Superseded before it played
+                }
+                azimuthPending = true;
+                azimuthDeferred = (queue.getKind() & FLAG_DEFERRED) != 0;
+                azimuthKind = queue.getKind() & ~FLAG_DEFERRED;
+                azimuthIntensity = queue.getIntensity();
+                azimuthPulses = queue.getPulses();
+                azimuthDuration = queue.getDuration();
+                azimuthInterval = queue.getInterval();
+                azimuthReceivedNanos = queue.getReceivedNanos();
+            }
+        }
+    }
+
+    private void play(int kind, int intensity, int pulses, int duration, int interval,
+                      long receivedNanos, long now) {
+        player.play(kind, intensity, pulses, duration, interval, receivedNanos);
+        played.incrementAndGet();
+
+        playingKind = kind & ~FLAG_TIMED;
+        playingIntensity = intensity;
+        playingPulses = pulses;
+        playingDuration = duration;
+        playingInterval = interval;
+        long lengthMillis = (long) pulses * ((long) Math.max(0, duration) + Math.max(0, interval));
+        playingUntilNanos = now + lengthMillis * 1_000_000L;
+    }
+
+    /** Commands queued or waiting to play. */
+    public int getQueueDepth() {
+        return queue.size() + pendingCount;
+    }
+
+    public long getPlayed() {
+        return played.get();
+    }
+
+    /** Commands rejected because the queue was full (or the timed patterns full), or oldest alerts dropped on overflow. */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Azimuth cues superseded by a newer one, or identical to the one already playing. */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /** Azimuth cues interrupted by a heart-rate alert. */
+    public long getPreempted() {
+        return preempted.get();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * The vibration motor as seen by the core (the Android Vibrator on the watch).
+ */
+public interface HapticSink {
+
+    /** @return true if the device can vibrate. */
+    boolean hasVibrator();
+
+    /**
+     * Plays a pulse train (see {@link WaveformBuilder}), replacing whatever is playing.
+     * Called from the {@link HapticScheduler} thread.
+     */
+    void play(int intensity, int pulses, int duration, int interval);
+
+    /**
+     * Plays the direction cue of an {@link AzimuthPatternLibrary} sector, replacing whatever is
+     * playing. Called from the {@link HapticScheduler} thread. Sinks without prebuilt ramped
+     * waveforms play a steady pulse train with the same number of pulses.
+     */
+    default void playAzimuthPattern(int sector) {
+        play(AzimuthPatternLibrary.MAX_AMPLITUDE, AzimuthPatternLibrary.pulses(sector),
+                AzimuthPatternLibrary.PULSE_MILLIS, AzimuthPatternLibrary.GAP_MILLIS);
+    }
+
+    /** Stops any vibration in progress. */
+    void cancel();
+}
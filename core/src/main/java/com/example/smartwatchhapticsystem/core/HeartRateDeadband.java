@@ -0,0 +1,73 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Send policy of a session's heart-rate telemetry: a sample within {@code ±deadbandBpm} of the
+ * last value sent is suppressed, unless nothing has been sent for {@code keepAliveMillis}, so the
+ * phone still sees the stream is alive. At rest this removes most frames (and the radio wakeups
+ * they cause) without losing a meaningful change.
+ *
+ * The band is measured from the last value sent, not the previous sample, so a slow drift is
+ * still reported once it adds up. A dead-band of 0 sends every sample.
+ *
+ * Thread-safe (configured by the reader thread, applied on the sensor thread); no allocation.
+ * No Android dependencies.
+ */
+public final class HeartRateDeadband {
+
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30_000;
+
+    private int deadbandBpm;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+
+    private boolean hasSent;
+    private int lastSentHeartRate;
+    private long lastSentMillis;
+
+    private long sent;
+    private long suppressed;
+
+    /**
+     * @param deadbandBpm     Largest change (bpm) that is not sent; 0 turns suppression off.
+     * @param keepAliveMillis Longest time without a sample sent; 0 or less = {@link #DEFAULT_KEEP_ALIVE_MILLIS}.
+     */
+    public synchronized void configure(int deadbandBpm, long keepAliveMillis) {
+        this.deadbandBpm = Math.max(0, deadbandBpm);
+        this.keepAliveMillis = keepAliveMillis > 0 ? keepAliveMillis : DEFAULT_KEEP_ALIVE_MILLIS;
+        hasSent = false; // The next sample is sent as the new reference
+    }
+
+    /**
+     * @return true if the sample should be sent; false if it is suppressed.
+     */
+    public synchronized boolean shouldSend(int heartRate, long timestampMillis) {
+        if (deadbandBpm > 0 && hasSent
+                && Math.abs(heartRate - lastSentHeartRate) <= deadbandBpm
+                && timestampMillis - lastSentMillis < keepAliveMillis) {
+            suppressed++;
+            return false;
+        }
+        hasSent = true;
+        lastSentHeartRate = heartRate;
+        lastSentMillis = timestampMillis;
+        sent++;
+        return true;
+    }
+
+    public synchronized int getDeadbandBpm() {
+        return deadbandBpm;
+    }
+
+    public synchronized long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /** Samples passed on to the uplink. */
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /** Samples dropped inside the dead-band. */
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Delivers every heart-rate sample from the single sensor registration to all subscribed
+ * client sessions.
+ *
+ * Subscribers are kept in a copy-on-write array, so delivering a sample takes no lock and
+ * allocates nothing; subscribing and unsubscribing (once per session) copy the array.
+ * {@link #add} and {@link #remove} report when the first subscriber arrives and the last one
+ * leaves, so the owner registers the sensor only while someone is listening.
+ *
+ * No Android dependencies.
+ */
+public final class HeartRateFanout implements OnHeartRateUpdateListener {
+
+    private static final OnHeartRateUpdateListener[] NONE =
+            new OnHeartRateUpdateListener[0];
+
+    private volatile OnHeartRateUpdateListener[] subscribers = NONE;
+
+    /**
+     * @return true if this is the first subscriber (the sensor should be started).
+     */
+    public synchronized boolean add(OnHeartRateUpdateListener listener) {
+        OnHeartRateUpdateListener[] current = subscribers;
+        for (OnHeartRateUpdateListener subscriber : current) {
+            if (subscriber == listener) {
+                return false;
+            }
+        }
+        OnHeartRateUpdateListener[] updated =
+                new OnHeartRateUpdateListener[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = listener;
+        subscribers = updated;
+        return current.length == 0;
+    }
+
+    /**
+     * @return true if the last subscriber left (the sensor should be stopped).
+     */
+    public synchronized boolean remove(OnHeartRateUpdateListener listener) {
+        OnHeartRateUpdateListener[] current = subscribers;
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return false;
+        }
+        OnHeartRateUpdateListener[] updated = NONE;
+        if (current.length > 1) {
+            updated = new OnHeartRateUpdateListener[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        }
+        subscribers = updated;
+        return updated.length == 0;
+    }
+
+    /**
+     * Drops all subscribers (e.g. when the service shuts down).
+     */
+    public synchronized void clear() {
+        subscribers = NONE;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.length;
+    }
+
+    @Override
+    public void onUpdate(int heartRate, long timestampMillis) {
+        for (OnHeartRateUpdateListener subscriber : subscribers) {
+            subscriber.onUpdate(heartRate, timestampMillis);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes the text heart-rate telemetry line
+ * {@code "MonitoringType:HeartRate,Value:<bpm>,UserID:<u>,SmartWatchID:<w>,AndroidID:<a>\n"}
+ * into a reusable byte buffer.
+ *
+ * The IDs never change during a session, so the constant prefix and the ID suffix are encoded
+ * once per connection; each sample only writes its BPM digits (and re-copies the short prefix
+ * in front of them). Encoding a sample allocates nothing.
+ *
+ * When the client enabled batching, {@link #encodeTo} appends lines that also carry the
+ * sample's own timestamp: {@code "...,AndroidID:<a>,Timestamp:<millis>\n"}.
+ *
+ * Not thread-safe: one instance per connection, used from the sending thread only.
+ * No Android dependencies.
+ */
+public final class HeartRateFrameEncoder {
+
+    private static final byte[] PREFIX = "MonitoringType:HeartRate,Value:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_KEY = ",Timestamp:".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_DIGITS = 11; // "-2147483648"
+    private static final int MAX_LONG_DIGITS = 20; // "-9223372036854775808"
+
+    private final byte[] idSuffix;
+    private final byte[] buffer;
+    private final int suffixStart;
+    private int offset;
+    private int length;
+
+    /**
+     * Pre-encodes the constant parts of the frame for one session.
+     */
+    public HeartRateFrameEncoder(String userId, String watchId, String androidId) {
+        idSuffix = ("," +
+                "UserID:" + userId + "," +
+                "SmartWatchID:" + watchId + "," +
+                "AndroidID:" + androidId).getBytes(StandardCharsets.UTF_8);
+
+        // Layout: [room for PREFIX + digits][suffix + '\n']; digits are written right-aligned before the suffix
+        suffixStart = PREFIX.length + MAX_DIGITS;
+        buffer = new byte[suffixStart + idSuffix.length + 1];
+        System.arraycopy(idSuffix, 0, buffer, suffixStart, idSuffix.length);
+        buffer[buffer.length - 1] = '\n';
+    }
+
+    /**
+     * Encodes one sample. The frame is then available as
+     * {@code getBuffer()[getOffset(), getOffset() + getLength())}.
+     *
+     * @return The frame length in bytes.
+     */
+    public int encode(int heartRate) {
+        // Step 1: Write the digits backwards, ending right before the suffix
+        int position = suffixStart;
+        long value = Math.abs((long) heartRate);
+        do {
+            buffer[--position] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (heartRate < 0) {
+            buffer[--position] = '-';
+        }
+
+        // Step 2: Put the constant prefix right in front of the digits
+        position -= PREFIX.length;
+        System.arraycopy(PREFIX, 0, buffer, position, PREFIX.length);
+
+        offset = position;
+        length = buffer.length - position;
+        return length;
+    }
+
+    /**
+     * Appends one timestamped line to {@code out} at {@code position}.
+     * The caller must provide at least {@link #getMaxTimestampedLength()} free bytes.
+     *
+     * @return The position right after the written line.
+     */
+    public int encodeTo(byte[] out, int position, int heartRate, long timestampMillis) {
+        System.arraycopy(PREFIX, 0, out, position, PREFIX.length);
+        position = writeDecimal(out, position + PREFIX.length, heartRate);
+        System.arraycopy(idSuffix, 0, out, position, idSuffix.length);
+        position += idSuffix.length;
+        System.arraycopy(TIMESTAMP_KEY, 0, out, position, TIMESTAMP_KEY.length);
+        position = writeDecimal(out, position + TIMESTAMP_KEY.length, timestampMillis);
+        out[position++] = '\n';
+        return position;
+    }
+
+    /**
+     * Upper bound of the length of a line written by {@link #encodeTo}.
+     */
+    public int getMaxTimestampedLength() {
+        return PREFIX.length + MAX_DIGITS + idSuffix.length + TIMESTAMP_KEY.length + MAX_LONG_DIGITS + 1;
+    }
+
+    /**
+     * Writes {@code value} as decimal ASCII digits starting at {@code position}.
+     *
+     * @return The position right after the last digit.
+     */
+    static int writeDecimal(byte[] out, int position, long value) {
+        if (value < 0) {
+            out[position++] = '-';
+        }
+        // Count digits, then fill them in backwards (negative range avoids overflow on MIN_VALUE)
+        long negative = value < 0 ? value : -value;
+        int digits = 1;
+        for (long v = negative / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            out[i] = (byte) ('0' - (negative % 10));
+            negative /= 10;
+        }
+        return end;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * "HeartRate" monitoring: selecting it starts heart-rate streaming, and Vibrate commands are
+ * played as heart-rate alerts (priority over azimuth cues in the {@link HapticScheduler}).
+ * Every alert matters, so commands over the admission limit are rejected rather than coalesced.
+ */
+public class HeartRateModeHandler extends MonitoringModeHandler {
+
+    // Alerts are queued and played in full: a few at once, then one a second
+    static final int ADMISSION_BURST = 3;
+    static final int ADMISSION_RATE = 1;
+
+    private final HapticFeedback hapticFeedback;
+
+    public HeartRateModeHandler(HapticFeedback hapticFeedback) {
+        super(CommandParser.MODE_HEART_RATE, "HeartRate");
+        this.hapticFeedback = hapticFeedback;
+        setAdmission(ADMISSION_BURST, ADMISSION_RATE);
+    }
+
+    @Override
+    protected boolean vibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return hapticFeedback.triggerHeartRate(intensity, pulses, duration, interval, receivedNanos);
+    }
+
+    @Override
+    protected boolean vibrateAt(long atNanos, int intensity, int pulses, int duration, int interval) {
+        return hapticFeedback.triggerAt(HapticScheduler.KIND_HEART_RATE, intensity, pulses, duration, interval,
+                atNanos);
+    }
+
+    @Override
+    public boolean streamsHeartRate() {
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.Arrays;
+
+/**
+ * Heart-rate monitoring logic on top of a {@link HeartRateSource}: prevents duplicate registration,
+ * converts raw samples (float BPM, sensor time base) into the values sent to the phone, and picks
+ * the sensor batching parameters from a per-monitoring-type profile.
+ *
+ * A profile trades latency for power: with a non-zero max report latency the sensor hub buffers
+ * samples in its FIFO and delivers them in bursts, so the application processor only wakes once
+ * per latency period. The {@link HeartRateUplink} then sends each burst as one batch.
+ *
+ * Thread-safe. No Android dependencies.
+ */
+public final class HeartRateMonitor implements HeartRateSource.Callback {
+
+    /** Equivalent of SensorManager.SENSOR_DELAY_NORMAL. */
+    public static final int DEFAULT_SAMPLING_PERIOD_US = 200_000;
+
+    public static final int RESULT_STARTED = 0;
+    public static final int RESULT_ALREADY_ACTIVE = 1;
+    public static final int RESULT_NO_SENSOR = -1;
+    public static final int RESULT_REGISTER_FAILED = -2;
+
+    private static final int PROFILE_COUNT = CommandParser.MODE_MOON_AZIMUTH + 1;
+
+    private final HeartRateSource source;
+    private final Clock clock;
+
+    // Batching profile per monitoring type (indexed by CommandParser.MODE_*)
+    private final int[] samplingPeriodsUs = new int[PROFILE_COUNT];
+    private final int[] reportLatenciesUs = new int[PROFILE_COUNT];
+
+    private boolean monitoring;
+    private int activeMode;
+    private volatile OnHeartRateUpdateListener listener;
+
+    // Latest accuracy reported by the sensor; delivered on the same thread as the samples
+    private volatile int accuracy = HeartRateProcessor.ACCURACY_HIGH;
+
+    /**
+     * @param clock Must share the time base of the source's sample timestamps.
+     */
+    public HeartRateMonitor(HeartRateSource source, Clock clock) {
+        this.source = source;
+        this.clock = clock;
+        Arrays.fill(samplingPeriodsUs, DEFAULT_SAMPLING_PERIOD_US);
+    }
+
+    /**
+     * Sets the sampling period and max report latency used for a monitoring type.
+     * If monitoring is active for that type, the sensor is re-registered with the new values.
+     *
+     * @return The result of the re-registration, or {@link #RESULT_STARTED} if nothing was active.
+     */
+    public synchronized int setBatchingProfile(int monitoringMode, int samplingPeriodUs, int maxReportLatencyUs) {
+        int index = profileIndex(monitoringMode);
+        samplingPeriodsUs[index] = Math.max(0, samplingPeriodUs);
+        reportLatenciesUs[index] = Math.max(0, maxReportLatencyUs);
+
+        if (monitoring && activeMode == index) {
+            source.unregister();
+            return register(index);
+        }
+        return RESULT_STARTED;
+    }
+
+    public synchronized int getReportLatencyUs(int monitoringMode) {
+        return reportLatenciesUs[profileIndex(monitoringMode)];
+    }
+
+    public synchronized int getSamplingPeriodUs(int monitoringMode) {
+        return samplingPeriodsUs[profileIndex(monitoringMode)];
+    }
+
+    /**
+     * Starts monitoring with the profile of {@code monitoringMode}.
+     *
+     * @return One of the {@code RESULT_*} constants.
+     */
+    public synchronized int start(int monitoringMode, OnHeartRateUpdateListener listener) {
+        if (monitoring) {
+            return RESULT_ALREADY_ACTIVE;
+        }
+        if (!source.isAvailable()) {
+            return RESULT_NO_SENSOR;
+        }
+        this.listener = listener;
+        int result = register(profileIndex(monitoringMode));
+        if (result != RESULT_STARTED) {
+            this.listener = null;
+        }
+        return result;
+    }
+
+    /**
+     * Stops monitoring and clears the listener.
+     *
+     * @return false if monitoring was not active.
+     */
+    public synchronized boolean stop() {
+        if (!monitoring) {
+            return false;
+        }
+        source.unregister();
+        monitoring = false;
+        listener = null;
+        return true;
+    }
+
+    public synchronized boolean isMonitoring() {
+        return monitoring;
+    }
+
+    /**
+     * @return true if the sensor can actually buffer samples in hardware (report latency is honoured).
+     */
+    public boolean supportsBatching() {
+        return source.supportsBatching();
+    }
+
+    @Override
+    public void onHeartRate(float value, long timestampNanos) {
+        OnHeartRateUpdateListener current = listener;
+        if (current == null) {
+            return;
+        }
+        // Batched samples arrive late, so each keeps the time it was measured at
+        int heartRate = Math.round(value);
+        long timestampMillis = clock.currentTimeMillis()
+                - (clock.elapsedRealtimeNanos() - timestampNanos) / 1_000_000L;
+        current.onUpdate(heartRate, timestampMillis);
+    }
+
+    @Override
+    public void onAccuracyChanged(int accuracy) {
+        this.accuracy = accuracy;
+    }
+
+    /**
+     * @return The latest sensor accuracy ({@code HeartRateProcessor.ACCURACY_*}); high until the sensor reports one.
+     */
+    public int getAccuracy() {
+        return accuracy;
+    }
+
+    private int register(int index) {
+        activeMode = index;
+        monitoring = source.register(this, samplingPeriodsUs[index], reportLatenciesUs[index]);
+        return monitoring ? RESULT_STARTED : RESULT_REGISTER_FAILED;
+    }
+
+    private static int profileIndex(int monitoringMode) {
+        return monitoringMode >= 0 && monitoringMode < PROFILE_COUNT ? monitoringMode : CommandParser.MODE_UNKNOWN;
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.function.IntSupplier;
+
+/**
+ * On-watch heart-rate processing, so alerts no longer need a round trip through the phone and
+ * keep working while the link is down:
+ * <ol>
+ *   <li>accuracy gate: samples taken while the sensor reports less than {@link #getMinAccuracy()}
+ *       (or 0 bpm) are discarded; losing skin contact resets the filter;</li>
+ *   <li>artifact rejection: a sample further than {@link #DEFAULT_MAX_JUMP_BPM} from the current
+ *       median is ignored, unless the jump persists for a whole median window;</li>
+ *   <li>smoothing: median of the last {@link #DEFAULT_MEDIAN_WINDOW} samples (primitive ring
+ *       buffer), followed by an EWMA;</li>
+ *   <li>zone detection: up to {@link #ZONE_COUNT} zones split by the "Zones:" boundaries, with
+ *       {@link #DEFAULT_HYSTERESIS_BPM} of hysteresis on the way down so a value hovering at a
+ *       boundary does not flap.</li>
+ * </ol>
+ * Entering a zone plays the zone's "Alert:" rule through {@link HapticFeedback#triggerHeartRate}
+ * (repeated every {@link #DEFAULT_ALERT_REPEAT_MILLIS} while it lasts), and publishes the
+ * smoothed value to the state subscribers. Sessions in zone mode subscribe here instead of to the
+ * raw stream, so only state changes go upstream; {@link #ZONE_UNKNOWN} is published as 0 bpm.
+ *
+ * Processing a sample allocates nothing. Thread-safe. No Android dependencies.
+ */
+public final class HeartRateProcessor implements OnHeartRateUpdateListener {
+    private static final String TAG = "HeartRateProcessor";
+
+    // Sensor accuracy, same values as SensorManager.SENSOR_STATUS_*
+    public static final int ACCURACY_NO_CONTACT = -1;
+    public static final int ACCURACY_UNRELIABLE = 0;
+    public static final int ACCURACY_LOW = 1;
+    public static final int ACCURACY_MEDIUM = 2;
+    public static final int ACCURACY_HIGH = 3;
+
+    public static final int ZONE_BOUNDARY_COUNT = 3;
+    public static final int ZONE_COUNT = ZONE_BOUNDARY_COUNT + 1;
+    public static final int ZONE_UNKNOWN = -1;
+
+    public static final int DEFAULT_MEDIAN_WINDOW = 5;
+    public static final double DEFAULT_EWMA_ALPHA = 0.3;
+    public static final int DEFAULT_HYSTERESIS_BPM = 3;
+    public static final int DEFAULT_MAX_JUMP_BPM = 40;
+    public static final long DEFAULT_ALERT_REPEAT_MILLIS = 60_000;
+
+    private final HapticFeedback hapticFeedback;
+    private final IntSupplier accuracy;
+    private final Logger logger;
+    private final TraceBuffer trace;
+    private final double alpha;
+
+    // Sessions receiving state changes only
+    private final HeartRateFanout stateFanout = new HeartRateFanout();
+
+    // Median window: ring of the latest samples and a scratch copy for sorting
+    private final int[] window;
+    private final int[] sorted;
+    private int windowCount;
+    private int windowNext;
+    private int consecutiveArtifacts;
+
+    private double smoothed;
+    private boolean hasSmoothed;
+
+    // Zone configuration; boundaries[i] is the first bpm of zone i + 1
+    private final int[] boundaries = new int[ZONE_BOUNDARY_COUNT];
+    private boolean enabled;
+    private int minAccuracy = ACCURACY_LOW;
+
+    // Alert rule per zone (intensity 0 = no alert)
+    private final int[] alertIntensities = new int[ZONE_COUNT];
+    private final int[] alertPulses = new int[ZONE_COUNT];
+    private final int[] alertDurations = new int[ZONE_COUNT];
+    private final int[] alertIntervals = new int[ZONE_COUNT];
+
+    private int zone = ZONE_UNKNOWN;
+    private long lastAlertMillis;
+
+    private long samplesAccepted;
+    private long samplesRejected;
+    private long artifacts;
+    private long zoneChanges;
+    private long alerts;
+
+    /**
+     * @param accuracy Latest sensor accuracy (e.g. {@link HeartRateService#getAccuracy()}).
+     */
+    public HeartRateProcessor(HapticFeedback hapticFeedback, IntSupplier accuracy, Logger logger, TraceBuffer trace) {
+        this(hapticFeedback, accuracy, logger, trace, DEFAULT_MEDIAN_WINDOW, DEFAULT_EWMA_ALPHA);
+    }
+
+    public HeartRateProcessor(HapticFeedback hapticFeedback, IntSupplier accuracy, Logger logger, TraceBuffer trace,
+                              int medianWindow, double alpha) {
+        if (medianWindow <= 0 || alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("medianWindow=" + medianWindow + ", alpha=" + alpha);
+        }
+        this.hapticFeedback = hapticFeedback;
+        this.accuracy = accuracy;
+        this.logger = logger;
+        this.trace = trace;
+        this.alpha = alpha;
+        this.window = new int[medianWindow];
+        this.sorted = new int[medianWindow];
+    }
+
+    /**
+     * Sets the zone boundaries (strictly increasing bpm); all zeros turns zone detection off.
+     *
+     * @return false if the boundaries are invalid (nothing changed).
+     */
+    public synchronized boolean setZones(int b1, int b2, int b3) {
+        if (b1 == 0 && b2 == 0 && b3 == 0) {
+            enabled = false;
+        } else if (b1 > 0 && b2 > b1 && b3 > b2) {
+            boundaries[0] = b1;
+            boundaries[1] = b2;
+            boundaries[2] = b3;
+            enabled = true;
+        } else {
+            return false;
+        }
+        zone = ZONE_UNKNOWN; // Re-evaluated (and published) with the next sample
+        logger.d(TAG, enabled
+                ? "💓 Heart-rate zones: <" + b1 + ", <" + b2 + ", <" + b3 + ", ≥" + b3 + " bpm"
+                : "💓 Heart-rate zones off");
+        return true;
+    }
+
+    /**
+     * Sets the vibration played when entering {@code zone}; an intensity of 0 removes it.
+     *
+     * @return false if the zone or the pattern is invalid.
+     */
+    public synchronized boolean setAlert(int zone, int intensity, int pulses, int duration, int interval) {
+        if (zone < 0 || zone >= ZONE_COUNT || intensity < 0 || intensity > 255
+                || (intensity > 0 && (pulses <= 0 || duration <= 0 || interval < 0))) {
+            return false;
+        }
+        alertIntensities[zone] = intensity;
+        alertPulses[zone] = pulses;
+        alertDurations[zone] = duration;
+        alertIntervals[zone] = interval;
+        return true;
+    }
+
+    /**
+     * Samples below this accuracy are discarded (default {@link #ACCURACY_LOW}).
+     */
+    public synchronized void setMinAccuracy(int minAccuracy) {
+        this.minAccuracy = minAccuracy;
+    }
+
+    public synchronized int getMinAccuracy() {
+        return minAccuracy;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Subscribes a session to state changes (smoothed bpm on every zone change).
+     */
+    public void subscribe(OnHeartRateUpdateListener listener) {
+        stateFanout.add(listener);
+    }
+
+    public void unsubscribe(OnHeartRateUpdateListener listener) {
+        stateFanout.remove(listener);
+    }
+
+    public int getSubscriberCount() {
+        return stateFanout.getSubscriberCount();
+    }
+
+    @Override
+    public synchronized void onUpdate(int heartRate, long timestampMillis) {
+        if (!enabled) {
+            return;
+        }
+
+        // Step 1: Accuracy gate; without skin contact the filter history is meaningless
+        int currentAccuracy = accuracy.getAsInt();
+        if (heartRate <= 0 || currentAccuracy < minAccuracy) {
+            samplesRejected++;
+            if (heartRate <= 0 || currentAccuracy == ACCURACY_NO_CONTACT) {
+                resetFilter();
+                changeZone(ZONE_UNKNOWN, 0, timestampMillis);
+            }
+            return;
+        }
+
+        // Step 2: Artifact rejection against the current median (a sustained jump is accepted)
+        if (windowCount > 0 && Math.abs(heartRate - median()) > DEFAULT_MAX_JUMP_BPM) {
+            if (++consecutiveArtifacts < window.length) {
+                artifacts++;
+                return;
+            }
+            resetFilter();
+        }
+        consecutiveArtifacts = 0;
+        samplesAccepted++;
+
+        // Step 3: Median of the window, then EWMA
+        window[windowNext] = heartRate;
+        windowNext = (windowNext + 1) % window.length;
+        if (windowCount < window.length) {
+            windowCount++;
+        }
+        int median = median();
+        smoothed = hasSmoothed ? smoothed + alpha * (median - smoothed) : median;
+        hasSmoothed = true;
+        int bpm = (int) Math.round(smoothed);
+
+        // Step 4: Zone with hysteresis (moving down needs bpm + hysteresis below the boundary)
+        int raw = zoneOf(bpm);
+        int next = zone == ZONE_UNKNOWN || raw > zone ? raw : Math.min(zone, zoneOf(bpm + DEFAULT_HYSTERESIS_BPM));
+        if (next != zone) {
+            changeZone(next, bpm, timestampMillis);
+            alert(next, timestampMillis);
+        } else if (alertIntensities[zone] > 0 && timestampMillis - lastAlertMillis >= DEFAULT_ALERT_REPEAT_MILLIS) {
+            alert(zone, timestampMillis);
+        }
+    }
+
+    private void changeZone(int next, int bpm, long timestampMillis) {
+        if (next == zone) {
+            return;
+        }
+        zone = next;
+        zoneChanges++;
+        if (TraceBuffer.COMPILED) {
+            trace.record(TraceBuffer.EVENT_HEART_RATE_ZONE, next, bpm);
+        }
+        stateFanout.onUpdate(bpm, timestampMillis);
+    }
+
+    private void alert(int zone, long timestampMillis) {
+        if (alertIntensities[zone] == 0) {
+            return;
+        }
+        lastAlertMillis = timestampMillis;
+        if (hapticFeedback.triggerHeartRate(alertIntensities[zone], alertPulses[zone],
+                alertDurations[zone], alertIntervals[zone])) {
+            alerts++;
+        }
+    }
+
+    private int zoneOf(int bpm) {
+        int index = 0;
+        while (index < ZONE_BOUNDARY_COUNT && bpm >= boundaries[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Median of the filled part of the window (insertion sort of a scratch copy; the window is small).
+     */
+    private int median() {
+        for (int i = 0; i < windowCount; i++) {
+            int value = window[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > value) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = value;
+        }
+        return sorted[windowCount / 2];
+    }
+
+    private void resetFilter() {
+        windowCount = 0;
+        windowNext = 0;
+        consecutiveArtifacts = 0;
+        hasSmoothed = false;
+    }
+
+    /** Current zone, or {@link #ZONE_UNKNOWN} without a valid reading. */
+    public synchronized int getZone() {
+        return zone;
+    }
+
+    /** Smoothed heart rate, or 0 without a valid reading. */
+    public synchronized int getSmoothedHeartRate() {
+        return hasSmoothed ? (int) Math.round(smoothed) : 0;
+    }
+
+    public synchronized long getSamplesAccepted() {
+        return samplesAccepted;
+    }
+
+    /** Samples discarded for low accuracy or no reading. */
+    public synchronized long getSamplesRejected() {
+        return samplesRejected;
+    }
+
+    /** Samples ignored as motion artifacts. */
+    public synchronized long getArtifacts() {
+        return artifacts;
+    }
+
+    public synchronized long getZoneChanges() {
+        return zoneChanges;
+    }
+
+    /** Local vibrations queued by the alert rules. */
+    public synchronized long getAlerts() {
+        return alerts;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Heart-rate monitoring shared by all client sessions: one {@link HeartRateMonitor} registration,
+ * fanned out to every subscriber by a {@link HeartRateFanout}, with per-monitoring-type batching
+ * profiles. Results are logged through the {@link Logger}; individual readings only go to the
+ * {@link TraceBuffer}.
+ *
+ * With an offline {@link HeartRateStore} set, the sensor stays registered while no session is
+ * connected and the samples are stored; the next session that streams heart rate drains them
+ * ahead of live data (see {@link HeartRateUplink#drainBacklog}).
+ *
+ * With a {@link HeartRateProcessor} set, "Zones:" keeps the sensor registered for it (also while
+ * no session is connected), so zone alerts are played on the watch without the phone.
+ */
+public final class HeartRateService {
+    private static final String TAG = "HeartRateService";
+
+    private final HeartRateMonitor heartRateMonitor;
+    private final Logger logger;
+    private final TraceBuffer trace;
+
+    // One sensor registration shared by every client session that streams heart rate
+    private final HeartRateFanout heartRateFanout = new HeartRateFanout();
+
+    // Store-and-forward while no session is connected (null = disabled)
+    private volatile HeartRateStore offlineStore;
+    private volatile int catchUpRate;
+    private final OnHeartRateUpdateListener offlineRecorder = this::recordOffline;
+
+    // On-watch smoothing and zone alerts (null = not available)
+    private volatile HeartRateProcessor processor;
+
+    public HeartRateService(HeartRateSource source, Clock clock, Logger logger) {
+        this(source, clock, logger, new TraceBuffer());
+    }
+
+    public HeartRateService(HeartRateSource source, Clock clock, Logger logger, TraceBuffer trace) {
+        this.heartRateMonitor = new HeartRateMonitor(source, clock);
+        this.logger = logger;
+        this.trace = trace;
+    }
+
+    /**
+     * Starts continuous heart-rate monitoring and forwards each reading to a client-supplied callback.
+     * The sensor is registered with the sampling period and max report latency configured for
+     * {@code monitoringMode} (see {@link #setBatching}), so samples may arrive in bursts
+     * from the sensor hub FIFO, each carrying its own measurement time.
+     *
+     * @param monitoringMode The monitoring type (CommandParser.MODE_*) whose batching profile applies.
+     * @param listener       A callback that will receive heart-rate updates (beats-per-minute + sample time).
+     */
+    public void start(int monitoringMode, OnHeartRateUpdateListener listener) {
+        // Trace each reading before handing it to the client
+        int result = heartRateMonitor.start(monitoringMode, (heartRate, timestampMillis) -> {
+            if (TraceBuffer.COMPILED) {
+                trace.record(TraceBuffer.EVENT_HEART_RATE, heartRate, timestampMillis);
+            }
+            listener.onUpdate(heartRate, timestampMillis);
+        });
+
+        switch (result) {
+            case HeartRateMonitor.RESULT_STARTED:
+                logger.d(TAG, "✅ Heart-Rate monitoring started… (period="
+                        + heartRateMonitor.getSamplingPeriodUs(monitoringMode) + "µs, latency="
+                        + heartRateMonitor.getReportLatencyUs(monitoringMode) + "µs)");
+                break;
+            case HeartRateMonitor.RESULT_ALREADY_ACTIVE:
+                logger.d(TAG, "ℹ️ Heart-Rate monitoring already active.");
+                break;
+            case HeartRateMonitor.RESULT_NO_SENSOR:
+                logger.e(TAG, "❌ Heart-rate sensor not available!");
+                break;
+            default:
+                logger.e(TAG, "❌ Failed to register heart-rate sensor listener.");
+                break;
+        }
+    }
+
+    /**
+     * Subscribes a client session to heart-rate updates. The sensor is registered (with the
+     * "HeartRate" batching profile) when the first subscriber arrives; later subscribers share it.
+     *
+     * @param listener A callback that will receive heart-rate updates (beats-per-minute + sample time).
+     */
+    public synchronized void subscribe(OnHeartRateUpdateListener listener) {
+        if (heartRateFanout.add(listener)) {
+            start(CommandParser.MODE_HEART_RATE, heartRateFanout);
+        }
+        logger.d(TAG, "👥 Heart-Rate subscribers: " + heartRateFanout.getSubscriberCount());
+    }
+
+    /**
+     * Unsubscribes a client session; the sensor is unregistered when the last subscriber leaves.
+     */
+    public synchronized void unsubscribe(OnHeartRateUpdateListener listener) {
+        if (heartRateFanout.remove(listener)) {
+            stop();
+        }
+    }
+
+    /**
+     * Configures the latency/power trade-off of heart-rate sampling for a monitoring type.
+     * A non-zero report latency lets the sensor hub batch samples in its FIFO, so the application
+     * processor wakes once per latency period instead of once per sample. Applied immediately if
+     * monitoring is active with that type.
+     *
+     * @param monitoringMode     The monitoring type (CommandParser.MODE_*).
+     * @param samplingPeriodUs   Sampling period in microseconds.
+     * @param maxReportLatencyUs Maximum time samples may be held in the sensor FIFO (0 = live).
+     */
+    public void setBatching(int monitoringMode, int samplingPeriodUs, int maxReportLatencyUs) {
+        if (maxReportLatencyUs > 0 && !heartRateMonitor.supportsBatching()) {
+            logger.w(TAG, "⚠️ Heart-rate sensor has no FIFO; samples will not be batched in hardware.");
+        }
+        int result = heartRateMonitor.setBatchingProfile(monitoringMode, samplingPeriodUs, maxReportLatencyUs);
+        if (result != HeartRateMonitor.RESULT_STARTED) {
+            logger.e(TAG, "❌ Failed to re-register heart-rate sensor with new batching profile.");
+        }
+    }
+
+    /**
+     * Stops active heart rate monitoring by unregistering the sensor listener and dropping all subscribers.
+     */
+    public synchronized void stop() {
+        heartRateFanout.clear();
+
+        // Unregister from the sensor and clear the listener (only if monitoring is active)
+        if (heartRateMonitor.stop()) {
+            logger.d(TAG, "⛔ Heart Rate Monitoring Stopped.");
+        } else {
+            // Monitoring wasn't active, nothing to stop
+            logger.d(TAG, "ℹ️ Heart Rate Monitoring is not active.");
+        }
+    }
+
+    /**
+     * Enables (or, with null, disables) store-and-forward: samples taken while no session is
+     * subscribed are appended to {@code store}, and the sensor is kept registered for it.
+     *
+     * @param catchUpSamplesPerSecond Rate at which a reconnecting session drains the backlog (0 = unlimited).
+     */
+    public synchronized void setOfflineStore(HeartRateStore store, int catchUpSamplesPerSecond) {
+        catchUpRate = catchUpSamplesPerSecond;
+        if (store == offlineStore) {
+            return;
+        }
+        HeartRateStore previous = offlineStore;
+        offlineStore = store;
+        if (store != null && previous == null) {
+            subscribe(offlineRecorder);
+            logger.d(TAG, "💾 Offline heart-rate buffering enabled (" + store.getBacklog() + " samples stored)");
+        } else if (store == null) {
+            unsubscribe(offlineRecorder);
+            logger.d(TAG, "💾 Offline heart-rate buffering disabled");
+        }
+    }
+
+    public void setProcessor(HeartRateProcessor processor) {
+        this.processor = processor;
+    }
+
+    public HeartRateProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Configures the processor's zone boundaries; the processor receives samples while zones are set.
+     *
+     * @return false if there is no processor or the boundaries are invalid.
+     */
+    public synchronized boolean setZones(int b1, int b2, int b3) {
+        HeartRateProcessor current = processor;
+        if (current == null || !current.setZones(b1, b2, b3)) {
+            return false;
+        }
+        if (current.isEnabled()) {
+            subscribe(current);
+        } else {
+            unsubscribe(current);
+        }
+        return true;
+    }
+
+    /**
+     * @return The latest sensor accuracy ({@code HeartRateProcessor.ACCURACY_*}).
+     */
+    public int getAccuracy() {
+        return heartRateMonitor.getAccuracy();
+    }
+
+    public HeartRateStore getOfflineStore() {
+        return offlineStore;
+    }
+
+    public int getCatchUpRate() {
+        return catchUpRate;
+    }
+
+    /**
+     * Stores a sample only while no session streams it live (the recorder and the processor are
+     * subscribers themselves; zone-mode sessions subscribe to the processor instead).
+     * Sessions still catching up append their live samples to the store through their uplink.
+     */
+    private void recordOffline(int heartRate, long timestampMillis) {
+        HeartRateStore store = offlineStore;
+        if (store == null) {
+            return;
+        }
+        HeartRateProcessor current = processor;
+        int sessions = heartRateFanout.getSubscriberCount() - 1;
+        if (current != null && current.isEnabled()) {
+            sessions += current.getSubscriberCount() - 1;
+        }
+        if (sessions <= 0) {
+            store.append(heartRate, timestampMillis);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return heartRateFanout.getSubscriberCount();
+    }
+}
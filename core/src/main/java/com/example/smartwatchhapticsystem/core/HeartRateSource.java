@@ -0,0 +1,45 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Platform-neutral view of the heart-rate sensor, so the monitoring logic in
+ * {@link HeartRateMonitor} can be unit-tested with a fake source.
+ * The Android implementation is the app's SensorHeartRateSource.
+ */
+public interface HeartRateSource {
+
+    /**
+     * Receives raw samples, possibly in bursts when the sensor hub FIFO is flushed.
+     */
+    interface Callback {
+        /**
+         * @param value          Heart rate in beats per minute, as reported by the sensor.
+         * @param timestampNanos When the sample was measured, in the {@link Clock#elapsedRealtimeNanos()} time base.
+         */
+        void onHeartRate(float value, long timestampNanos);
+
+        /**
+         * @param accuracy New sensor accuracy, one of the {@code HeartRateProcessor.ACCURACY_*}
+         *                 values (same as SensorManager.SENSOR_STATUS_*).
+         */
+        default void onAccuracyChanged(int accuracy) {
+        }
+    }
+
+    /** @return true if a heart-rate sensor is present. */
+    boolean isAvailable();
+
+    /** @return true if the sensor has a hardware FIFO, i.e. a report latency actually batches samples. */
+    boolean supportsBatching();
+
+    /**
+     * Starts delivering samples.
+     *
+     * @param samplingPeriodUs   Requested sampling period in microseconds.
+     * @param maxReportLatencyUs How long samples may be held in the sensor hub FIFO (0 = deliver immediately).
+     * @return true if the registration succeeded.
+     */
+    boolean register(Callback callback, int samplingPeriodUs, int maxReportLatencyUs);
+
+    /** Stops delivering samples. */
+    void unregister();
+}
@@ -0,0 +1,486 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Durable circular store of heart-rate samples, kept while no phone is connected and drained
+ * to the next one (store-and-forward).
+ *
+ * The file holds a header with the read cursor and a ring of fixed-size blocks. Samples are
+ * appended to the newest block as zigzag varint deltas from the previous sample (BPM and
+ * timestamp), so a sample at 1 Hz usually takes 3 bytes. The block being filled lives in memory
+ * and is written back, together with the header, every {@code syncEvery} samples and whenever it
+ * fills up, followed by one fsync; a crash loses at most the unsynced samples. When the ring is
+ * full the oldest block is overwritten.
+ * <pre>
+ * header: magic "SWHS" (int) | version (byte) | block size (int) | block count (int)
+ *         | read sequence (long) | read index (int)
+ * block:  sequence + 1 (long, 0 = unused) | sample count (int) | samples
+ * sample: BPM delta (zigzag varint) | timestamp delta, ms (zigzag varlong)
+ * </pre>
+ * Reading is two-phase: {@link #peek} copies the oldest samples without consuming them and
+ * {@link #consume} drops them once they were sent, so a failed send keeps them. The read
+ * cursor is persisted at the next sync, so after a crash a few samples may be sent twice.
+ *
+ * {@link #append} is called from the sensor callback, which must never wait for the disk: it only
+ * copies the sample into a small staging buffer under its own lock. A writer thread (started by
+ * the first append) moves staged samples into the store and does the syncs; readers move them
+ * first too, so a sample is visible to {@link #peek} as soon as it was appended.
+ *
+ * Thread-safe. No Android dependencies.
+ */
+public final class HeartRateStore implements OnHeartRateUpdateListener, Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_BLOCK_COUNT = 64;      // 256 KiB, about a day at 1 Hz
+    public static final int DEFAULT_SYNC_EVERY = 32;
+    // Samples appended but not yet moved into the store; a sensor FIFO burst fits
+    public static final int STAGING_CAPACITY = 512;
+
+    private static final int MAGIC = 0x53574853; // "SWHS"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_LENGTH = 64;
+    private static final int BLOCK_HEADER_LENGTH = 8 + 4;
+    private static final int MAX_SAMPLE_LENGTH = BinaryProtocol.MAX_VARINT_LENGTH + BinaryProtocol.MAX_VARLONG_LENGTH;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int blockCount;
+    private final int syncEvery;
+
+    // Samples per block slot, for the blocks between the read and write cursors
+    private final int[] blockCounts;
+
+    // Block being filled (write cursor)
+    private final byte[] block;
+    private long writeSequence;
+    private int writeOffset;
+    private long lastTimestamp;
+    private int lastHeartRate;
+    private int unsynced;
+
+    // Read cursor: next sample to send
+    private long readSequence;
+    private int readIndex;
+    private boolean draining;
+
+    // Last block read back from the file by peek()
+    private final byte[] readBlock;
+    private long readBlockSequence = -1;
+    private int decodePosition;
+
+    private long samplesStored;
+    private long samplesOverwritten;
+
+    // Staging buffer between the sensor thread and the writer thread, guarded by stagingLock
+    private final Object stagingLock = new Object();
+    private final int[] stagedRates = new int[STAGING_CAPACITY];
+    private final long[] stagedTimes = new long[STAGING_CAPACITY];
+    private int stagedCount;
+    private long samplesDropped;
+    private boolean closing;
+    private Thread writer;
+
+    // Staged samples being moved into the store, guarded by this
+    private final int[] movingRates = new int[STAGING_CAPACITY];
+    private final long[] movingTimes = new long[STAGING_CAPACITY];
+
+    public HeartRateStore(File path) throws IOException {
+        this(path, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT, DEFAULT_SYNC_EVERY);
+    }
+
+    /**
+     * Opens the store, resuming an existing file with the same geometry (otherwise it is reset).
+     *
+     * @param path       Store file.
+     * @param blockSize  Bytes per block.
+     * @param blockCount Blocks in the ring; the file is {@code blockSize * blockCount} bytes plus a header.
+     * @param syncEvery  Samples appended between two fsyncs.
+     */
+    public HeartRateStore(File path, int blockSize, int blockCount, int syncEvery) throws IOException {
+        if (blockSize < BLOCK_HEADER_LENGTH + MAX_SAMPLE_LENGTH || blockCount < 2 || syncEvery <= 0) {
+            throw new IllegalArgumentException("blockSize=" + blockSize + ", blockCount=" + blockCount
+                    + ", syncEvery=" + syncEvery);
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.syncEvery = syncEvery;
+        this.blockCounts = new int[blockCount];
+        this.block = new byte[blockSize];
+        this.readBlock = new byte[blockSize];
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+
+        if (!resume()) {
+            file.setLength(0);
+            file.setLength(FILE_HEADER_LENGTH + (long) blockSize * blockCount);
+            startBlock(0);
+            syncFile();
+        }
+    }
+
+    @Override
+    public void onUpdate(int heartRate, long timestampMillis) {
+        append(heartRate, timestampMillis);
+    }
+
+    /**
+     * Appends one sample without waiting for the disk: it is stored by the writer thread, and an
+     * fsync happens every {@code syncEvery} samples. If the staging buffer is full (the disk fell
+     * far behind), the sample is dropped.
+     */
+    public void append(int heartRate, long timestampMillis) {
+        synchronized (stagingLock) {
+            if (closing) {
+                return;
+            }
+            if (stagedCount == STAGING_CAPACITY) {
+                samplesDropped++;
+                return;
+            }
+            stagedRates[stagedCount] = heartRate;
+            stagedTimes[stagedCount] = timestampMillis;
+            stagedCount++;
+            if (writer == null) {
+                writer = new Thread(this::runWriter, "HeartRateStore");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            stagingLock.notifyAll();
+        }
+    }
+
+    /**
+     * Writer loop: moves staged samples into the store until the store is closed.
+     */
+    private void runWriter() {
+        while (true) {
+            synchronized (stagingLock) {
+                try {
+                    while (!closing && stagedCount == 0) {
+                        stagingLock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (closing) {
+                    return; // close() stores what is left
+                }
+            }
+            synchronized (this) {
+                storeStaged();
+            }
+        }
+    }
+
+    /**
+     * Moves the staged samples into the store. Holds the store lock.
+     */
+    private void storeStaged() {
+        int count;
+        synchronized (stagingLock) {
+            count = stagedCount;
+            System.arraycopy(stagedRates, 0, movingRates, 0, count);
+            System.arraycopy(stagedTimes, 0, movingTimes, 0, count);
+            stagedCount = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            store(movingRates[i], movingTimes[i]);
+        }
+    }
+
+    private void store(int heartRate, long timestampMillis) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            if (writeOffset + MAX_SAMPLE_LENGTH > blockSize) {
+                writeBlock();
+                channel.force(false);
+                startBlock(writeSequence + 1);
+            }
+            writeOffset = writeZigZag(block, writeOffset, heartRate - lastHeartRate);
+            writeOffset = writeZigZag(block, writeOffset, timestampMillis - lastTimestamp);
+            lastHeartRate = heartRate;
+            lastTimestamp = timestampMillis;
+            blockCounts[slot(writeSequence)]++;
+            samplesStored++;
+
+            if (++unsynced >= syncEvery) {
+                syncFile();
+            }
+        } catch (IOException e) {
+            // Disk full or store closed under us: the sample is lost, the store stays consistent
+        }
+    }
+
+    /**
+     * Copies up to {@code max} of the oldest samples without consuming them.
+     *
+     * @return Number of samples copied (0 if the store is empty).
+     */
+    public synchronized int peek(int[] heartRates, long[] timestamps, int max) throws IOException {
+        storeStaged();
+        long sequence = readSequence;
+        int index = readIndex;
+        int copied = 0;
+        while (copied < max) {
+            int count = blockCounts[slot(sequence)];
+            if (index >= count) {
+                if (sequence >= writeSequence) {
+                    break;
+                }
+                sequence++;
+                index = 0;
+                continue;
+            }
+            byte[] source = sequence == writeSequence ? block : loadBlock(sequence);
+
+            // Decode from the start of the block (deltas), keeping samples from index on
+            decodePosition = BLOCK_HEADER_LENGTH;
+            int heartRate = 0;
+            long timestamp = 0;
+            for (int i = 0; i < count && copied < max; i++) {
+                heartRate += (int) readZigZag(source);
+                timestamp += readZigZag(source);
+                if (i >= index) {
+                    heartRates[copied] = heartRate;
+                    timestamps[copied] = timestamp;
+                    copied++;
+                    index++;
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Drops the {@code count} oldest samples (those returned by the last {@link #peek}).
+     */
+    public synchronized void consume(int count) {
+        storeStaged();
+        while (count > 0) {
+            int available = blockCounts[slot(readSequence)] - readIndex;
+            if (available <= 0) {
+                if (readSequence >= writeSequence) {
+                    return;
+                }
+                readSequence++;
+                readIndex = 0;
+                continue;
+            }
+            int taken = Math.min(available, count);
+            readIndex += taken;
+            count -= taken;
+        }
+    }
+
+    /**
+     * Claims the backlog for one session; others keep streaming live only.
+     *
+     * @return false if another session is already draining it.
+     */
+    public synchronized boolean tryBeginDrain() {
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * Releases the claim of {@link #tryBeginDrain()}; what was not consumed stays for the next session.
+     */
+    public synchronized void endDrain() {
+        draining = false;
+    }
+
+    /** Samples waiting to be sent. */
+    public synchronized long getBacklog() {
+        storeStaged();
+        long backlog = -readIndex;
+        for (long sequence = readSequence; sequence <= writeSequence; sequence++) {
+            backlog += blockCounts[slot(sequence)];
+        }
+        return Math.max(0, backlog);
+    }
+
+    public synchronized long getSamplesStored() {
+        storeStaged();
+        return samplesStored;
+    }
+
+    /** Samples lost because the ring was full before a phone drained them. */
+    public synchronized long getSamplesOverwritten() {
+        storeStaged();
+        return samplesOverwritten;
+    }
+
+    /** Samples lost because the staging buffer was full (the disk could not keep up). */
+    public long getSamplesDropped() {
+        synchronized (stagingLock) {
+            return samplesDropped;
+        }
+    }
+
+    /**
+     * Stores the staged samples, then writes the current block and the read cursor to the file
+     * and fsyncs it.
+     */
+    public synchronized void sync() throws IOException {
+        storeStaged();
+        syncFile();
+    }
+
+    private void syncFile() throws IOException {
+        writeBlock();
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        header.putInt(MAGIC).put((byte) VERSION).putInt(blockSize).putInt(blockCount)
+                .putLong(readSequence).putInt(readIndex);
+        header.clear();
+        channel.write(header, 0);
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Stops the writer thread, then stores the staged samples and syncs the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        synchronized (stagingLock) {
+            closing = true;
+            stagingLock.notifyAll();
+        }
+        if (channel.isOpen()) {
+            sync();
+            file.close();
+        }
+    }
+
+    /**
+     * Starts block {@code sequence}, overwriting the oldest one if the ring is full.
+     */
+    private void startBlock(long sequence) {
+        writeSequence = sequence;
+        if (writeSequence - readSequence >= blockCount) {
+            // Ring full: the oldest unsent block is lost
+            samplesOverwritten += blockCounts[slot(readSequence)] - readIndex;
+            readSequence = writeSequence - blockCount + 1;
+            readIndex = 0;
+        }
+        blockCounts[slot(writeSequence)] = 0;
+        writeOffset = BLOCK_HEADER_LENGTH;
+        lastHeartRate = 0;
+        lastTimestamp = 0;
+    }
+
+    private void writeBlock() throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(block, 0, BLOCK_HEADER_LENGTH);
+        header.putLong(writeSequence + 1).putInt(blockCounts[slot(writeSequence)]);
+        channel.write(ByteBuffer.wrap(block, 0, writeOffset), blockPosition(writeSequence));
+    }
+
+    private byte[] loadBlock(long sequence) throws IOException {
+        if (readBlockSequence != sequence) {
+            ByteBuffer buffer = ByteBuffer.wrap(readBlock);
+            long position = blockPosition(sequence);
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                // Fill the block
+            }
+            readBlockSequence = sequence;
+        }
+        return readBlock;
+    }
+
+    /**
+     * Resumes an existing file: finds the newest block, reloads it as the block being filled and
+     * restores the read cursor.
+     *
+     * @return false if the file is new or has a different geometry.
+     */
+    private boolean resume() throws IOException {
+        if (file.length() != FILE_HEADER_LENGTH + (long) blockSize * blockCount) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.get() != VERSION
+                || header.getInt() != blockSize || header.getInt() != blockCount) {
+            return false;
+        }
+        long savedReadSequence = header.getLong();
+        int savedReadIndex = header.getInt();
+
+        // Step 1: Read every block header
+        long[] sequences = new long[blockCount];
+        int[] counts = new int[blockCount];
+        long newest = -1;
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_LENGTH);
+        for (int slot = 0; slot < blockCount; slot++) {
+            blockHeader.clear();
+            channel.read(blockHeader, FILE_HEADER_LENGTH + (long) slot * blockSize);
+            blockHeader.flip();
+            sequences[slot] = blockHeader.getLong() - 1;
+            counts[slot] = blockHeader.getInt();
+            newest = Math.max(newest, sequences[slot]);
+        }
+        if (newest < 0) {
+            return false;
+        }
+
+        // Step 2: Keep the counts of the blocks of the current ring generation
+        for (int slot = 0; slot < blockCount; slot++) {
+            long sequence = sequences[slot];
+            if (sequence >= 0 && sequence > newest - blockCount && slot(sequence) == slot) {
+                blockCounts[slot] = counts[slot];
+            }
+        }
+        writeSequence = newest;
+        readSequence = Math.max(newest - blockCount + 1, Math.min(savedReadSequence, newest));
+        readIndex = readSequence == savedReadSequence ? savedReadIndex : 0;
+
+        // Step 3: Reload the newest block and decode it to restore the delta state
+        System.arraycopy(loadBlock(newest), 0, block, 0, blockSize);
+        readBlockSequence = -1;
+        decodePosition = BLOCK_HEADER_LENGTH;
+        for (int i = 0; i < blockCounts[slot(newest)]; i++) {
+            lastHeartRate += (int) readZigZag(block);
+            lastTimestamp += readZigZag(block);
+        }
+        writeOffset = decodePosition;
+        return true;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % blockCount);
+    }
+
+    private long blockPosition(long sequence) {
+        return FILE_HEADER_LENGTH + (long) slot(sequence) * blockSize;
+    }
+
+    private static int writeZigZag(byte[] buffer, int position, long value) {
+        return BinaryProtocol.writeVarLong(buffer, position, (value << 1) ^ (value >> 63));
+    }
+
+    private long readZigZag(byte[] buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = buffer[decodePosition++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
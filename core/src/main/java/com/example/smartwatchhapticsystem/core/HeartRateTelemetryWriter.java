@@ -0,0 +1,213 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes heart-rate batches from the {@link HeartRateUplink} to the connection's output stream,
+ * as text lines or {@link BinaryProtocol} frames depending on what the client negotiated.
+ * A whole batch goes out in a single write + flush, so the radio wakes once per batch.
+ *
+ * Until the client configures batching ("Batch:" command), text samples are sent in the
+ * original format without a timestamp so existing phone apps keep working.
+ *
+ * Used from the uplink thread only (writes are synchronized on the output stream). On a client
+ * session the output is the telemetry queue of its {@link ConnectionWriter}: a batch is one message.
+ * No Android dependencies.
+ */
+public final class HeartRateTelemetryWriter {
+
+    private final OutputStream output;
+    private final boolean binary;
+    private final HeartRateFrameEncoder encoder;
+    private final String userId;
+    private final String watchId;
+    private final String androidId;
+
+    private volatile boolean timestamped;
+    private byte[] batchBuffer = new byte[256]; // Grown (rarely) to fit the largest batch seen
+
+    public HeartRateTelemetryWriter(OutputStream output, boolean binary,
+                                    String userId, String watchId, String androidId) {
+        this.output = output;
+        this.binary = binary;
+        this.userId = userId;
+        this.watchId = watchId;
+        this.androidId = androidId;
+        this.encoder = new HeartRateFrameEncoder(userId, watchId, androidId);
+    }
+
+    /**
+     * Enables per-sample timestamps; set once the client has asked for batched telemetry.
+     */
+    public void setTimestamped(boolean timestamped) {
+        this.timestamped = timestamped;
+    }
+
+    /**
+     * Binary only: sends the session IDs once (numeric IDs, 0 = unknown) to {@code output}.
+     * On a client session this is the control queue, since telemetry may be dropped and the
+     * phone cannot attribute the stream without this frame.
+     */
+    public void writeIdentity(OutputStream output) throws IOException {
+        if (!binary) {
+            return;
+        }
+        byte[] frame = batchBuffer;
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_IDENTITY);
+        end = BinaryProtocol.writeVarint(frame, end, parseNumericId(userId));
+        end = BinaryProtocol.writeVarint(frame, end, parseNumericId(watchId));
+        end = BinaryProtocol.writeVarint(frame, end, parseNumericId(androidId));
+        int length = BinaryProtocol.endFrame(frame, 0, end);
+        synchronized (output) {
+            output.write(frame, 0, length);
+            output.flush();
+        }
+    }
+
+    /**
+     * Encodes and sends one batch.
+     *
+     * @return Number of bytes written.
+     */
+    public int write(int[] heartRates, long[] timestamps, int count) throws IOException {
+        return write(heartRates, timestamps, count, timestamped);
+    }
+
+    /**
+     * Encodes one batch without sending it, so the caller can queue it together with the sample
+     * timestamps (see {@link ConnectionWriter#offerTelemetry(byte[], int, int, long[], int)}).
+     * The batch stays in {@link #getBuffer()} until the next call.
+     *
+     * @return Length of the encoded batch.
+     */
+    public int encode(int[] heartRates, long[] timestamps, int count) {
+        return encode(heartRates, timestamps, count, timestamped);
+    }
+
+    /** Buffer holding the batch from the last {@link #encode}; used from the uplink thread only. */
+    public byte[] getBuffer() {
+        return batchBuffer;
+    }
+
+    /**
+     * Encodes stored samples from the offline backlog without sending them; always timestamped,
+     * since they are old. The chunk stays in {@link #getBuffer()} until the next call.
+     *
+     * @return Length of the encoded chunk.
+     */
+    public int encodeBacklog(int[] heartRates, long[] timestamps, int count) {
+        return encode(heartRates, timestamps, count, true);
+    }
+
+    /**
+     * Largest number of backlog samples whose encoding is sure to fit in {@code maxBytes}
+     * (at least 1), so a chunk never exceeds the queue it is sent through.
+     */
+    public int getMaxBacklogSamples(int maxBytes) {
+        if (!binary) {
+            return Math.max(1, maxBytes / encoder.getMaxTimestampedLength());
+        }
+        int perFrame = BinaryProtocol.MAX_BATCH_SAMPLES_PER_FRAME;
+        int perSample = BinaryProtocol.MAX_VARINT_LENGTH + BinaryProtocol.MAX_VARLONG_LENGTH;
+        int frameOverhead = BinaryProtocol.HEADER_LENGTH + BinaryProtocol.TRAILER_LENGTH + perSample;
+        int fullFrame = frameOverhead + perFrame * perSample;
+        int samples = maxBytes / fullFrame * perFrame;
+        int rest = maxBytes % fullFrame - frameOverhead;
+        if (rest > 0) {
+            samples += Math.min(perFrame - 1, rest / perSample);
+        }
+        return Math.max(1, samples);
+    }
+
+    private int write(int[] heartRates, long[] timestamps, int count, boolean timestamped) throws IOException {
+        int length = encode(heartRates, timestamps, count, timestamped);
+        if (length > 0) {
+            writeAndFlush(batchBuffer, length);
+        }
+        return length;
+    }
+
+    private int encode(int[] heartRates, long[] timestamps, int count, boolean timestamped) {
+        if (count <= 0) {
+            return 0;
+        }
+        return binary
+                ? encodeBinary(heartRates, timestamps, count, timestamped)
+                : encodeText(heartRates, timestamps, count, timestamped);
+    }
+
+    private int encodeText(int[] heartRates, long[] timestamps, int count, boolean timestamped) {
+        ensureCapacity(count * encoder.getMaxTimestampedLength());
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (timestamped) {
+                position = encoder.encodeTo(batchBuffer, position, heartRates[i], timestamps[i]);
+            } else {
+                // Original per-sample line, one after the other
+                int length = encoder.encode(heartRates[i]);
+                System.arraycopy(encoder.getBuffer(), encoder.getOffset(), batchBuffer, position, length);
+                position += length;
+            }
+        }
+        return position;
+    }
+
+    private int encodeBinary(int[] heartRates, long[] timestamps, int count, boolean timestamped) {
+        if (count == 1 && !timestamped) {
+            // Single sample without timestamp: the compact 4-byte frame
+            ensureCapacity(BinaryProtocol.HEADER_LENGTH + BinaryProtocol.MAX_VARINT_LENGTH
+                    + BinaryProtocol.TRAILER_LENGTH);
+            int end = BinaryProtocol.beginFrame(batchBuffer, 0, BinaryProtocol.OP_HEART_RATE);
+            end = BinaryProtocol.writeVarint(batchBuffer, end, Math.max(0, heartRates[0]));
+            return BinaryProtocol.endFrame(batchBuffer, 0, end);
+        }
+
+        // Batch frames of up to MAX_BATCH_SAMPLES_PER_FRAME samples, timestamps delta-encoded
+        int perFrame = BinaryProtocol.MAX_BATCH_SAMPLES_PER_FRAME;
+        int frames = (count + perFrame - 1) / perFrame;
+        ensureCapacity(frames * (BinaryProtocol.HEADER_LENGTH + BinaryProtocol.TRAILER_LENGTH
+                + BinaryProtocol.MAX_VARINT_LENGTH + BinaryProtocol.MAX_VARLONG_LENGTH
+                + perFrame * (BinaryProtocol.MAX_VARINT_LENGTH + BinaryProtocol.MAX_VARLONG_LENGTH)));
+
+        int position = 0;
+        for (int first = 0; first < count; first += perFrame) {
+            int n = Math.min(perFrame, count - first);
+            int end = BinaryProtocol.beginFrame(batchBuffer, position, BinaryProtocol.OP_HEART_RATE_BATCH);
+            end = BinaryProtocol.writeVarint(batchBuffer, end, n);
+            end = BinaryProtocol.writeVarLong(batchBuffer, end, Math.max(0, timestamps[first]));
+            long previous = timestamps[first];
+            for (int i = first; i < first + n; i++) {
+                end = BinaryProtocol.writeVarint(batchBuffer, end, Math.max(0, heartRates[i]));
+                end = BinaryProtocol.writeVarLong(batchBuffer, end, Math.max(0, timestamps[i] - previous));
+                previous = timestamps[i];
+            }
+            position += BinaryProtocol.endFrame(batchBuffer, position, end);
+        }
+        return position;
+    }
+
+    private void writeAndFlush(byte[] buffer, int length) throws IOException {
+        synchronized (output) {
+            output.write(buffer, 0, length);
+            output.flush();
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (batchBuffer.length < size) {
+            batchBuffer = new byte[size];
+        }
+    }
+
+    /**
+     * Converts a parsed numeric ID (e.g. "42") for the binary identity frame; 0 if unknown.
+     */
+    private static int parseNumericId(String id) {
+        try {
+            return Math.max(0, Integer.parseInt(id));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+
+/**
+ * Batching stage between the heart-rate listener and the Bluetooth socket.
+ *
+ * Samples (BPM + their own timestamp) are buffered in primitive arrays and handed to a
+ * {@link Sink} as one batch per flush window, or as soon as {@code maxSamples} are buffered,
+ * so the radio wakes once per window instead of once per sample. Sending happens on a
+ * dedicated uplink thread; the sensor thread only appends to the buffer.
+ *
+ * Modes:
+ * <ul>
+ *   <li>{@link #MODE_ALL}         → every sample is sent; if the buffer fills up while the link
+ *                                   is slow, the oldest samples are dropped.</li>
+ *   <li>{@link #MODE_LATEST_ONLY} → only the newest sample is kept; stale samples are dropped
+ *                                   (useful under backpressure, when only the current value matters).</li>
+ * </ul>
+ * With a window of 0 and {@code maxSamples} of 1 (the defaults), every sample is sent right away.
+ *
+ * With {@link #drainBacklog}, samples stored while no phone was connected ({@link HeartRateStore})
+ * are sent first, in large chunks at a bounded catch-up rate. Live samples arriving meanwhile are
+ * appended to the store behind them, so ordering is kept and nothing overflows the buffer; live
+ * batching resumes once the store is empty.
+ *
+ * No Android dependencies.
+ */
+public final class HeartRateUplink {
+
+    public static final int MODE_ALL = 0;
+    public static final int MODE_LATEST_ONLY = 1;
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Receives batches on the uplink thread. The arrays are reused after the call returns.
+     */
+    public interface Sink {
+        void send(int[] heartRates, long[] timestamps, int count);
+
+        /**
+         * Sends a chunk of stored samples.
+         *
+         * @return false if it could not be sent (the samples stay in the store).
+         */
+        default boolean sendBacklog(int[] heartRates, long[] timestamps, int count) {
+            send(heartRates, timestamps, count);
+            return true;
+        }
+    }
+
+    // Stored samples sent per backlog chunk, and the default catch-up rate (one chunk per second)
+    public static final int BACKLOG_CHUNK = 256;
+    public static final int DEFAULT_CATCH_UP_RATE = BACKLOG_CHUNK;
+
+    private final Sink sink;
+    private final int capacity;
+    private final Object lock = new Object();
+
+    // Double buffer: the sensor thread fills "pending" while the uplink thread sends "sending"
+    private int[] pendingRates;
+    private long[] pendingTimes;
+    private int[] sendingRates;
+    private long[] sendingTimes;
+    private int pendingCount;
+    private long firstPendingNanos;
+
+    private long windowNanos = 0;
+    private int maxSamples = 1;
+    private int mode = MODE_ALL;
+
+    private boolean closed;
+    private Thread thread;
+
+    // Offline backlog being drained ahead of live samples
+    private HeartRateStore backlog;
+    private int catchUpRate;
+    private int[] backlogRates;
+    private long[] backlogTimes;
+
+    private long samplesSent;
+    private long batchesSent;
+    private long samplesDropped;
+    private long backlogSent;
+
+    public HeartRateUplink(Sink sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    public HeartRateUplink(Sink sink, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.sink = sink;
+        this.capacity = capacity;
+        this.pendingRates = new int[capacity];
+        this.pendingTimes = new long[capacity];
+        this.sendingRates = new int[capacity];
+        this.sendingTimes = new long[capacity];
+    }
+
+    /**
+     * Changes the flush policy; can be called while running.
+     *
+     * @param windowMillis Longest time a sample waits before being sent (0 = send immediately).
+     * @param maxSamples   Batch size that triggers an immediate flush (clamped to the capacity).
+     * @param mode         {@link #MODE_ALL} or {@link #MODE_LATEST_ONLY}.
+     */
+    public void configure(long windowMillis, int maxSamples, int mode) {
+        synchronized (lock) {
+            this.windowNanos = Math.max(0, windowMillis) * 1_000_000L;
+            this.maxSamples = Math.max(1, Math.min(maxSamples, capacity));
+            this.mode = mode == MODE_LATEST_ONLY ? MODE_LATEST_ONLY : MODE_ALL;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends the samples of {@code store} before any live sample; call before {@link #start()} with
+     * a store claimed through {@link HeartRateStore#tryBeginDrain()}, which is released when the
+     * store is empty or the uplink closes.
+     *
+     * @param samplesPerSecond Catch-up rate (0 = as fast as the link allows).
+     */
+    public void drainBacklog(HeartRateStore store, int samplesPerSecond) {
+        drainBacklog(store, samplesPerSecond, BACKLOG_CHUNK);
+    }
+
+    /**
+     * Like {@link #drainBacklog(HeartRateStore, int)}, with fewer samples per chunk so an encoded
+     * chunk fits the sink's outbound queue.
+     *
+     * @param chunkSamples Most samples per chunk (clamped to 1..{@link #BACKLOG_CHUNK}).
+     */
+    public void drainBacklog(HeartRateStore store, int samplesPerSecond, int chunkSamples) {
+        int chunk = Math.max(1, Math.min(chunkSamples, BACKLOG_CHUNK));
+        synchronized (lock) {
+            backlog = store;
+            catchUpRate = Math.max(0, samplesPerSecond);
+            backlogRates = new int[chunk];
+            backlogTimes = new long[chunk];
+        }
+    }
+
+    /**
+     * Starts the uplink thread.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (thread != null) {
+                return;
+            }
+            thread = new Thread(this::runLoop, "HeartRateUplink");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the uplink thread; samples still buffered are discarded.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            endBacklog();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Buffers one sample. Never blocks on the link; called from the sensor callback.
+     *
+     * @param heartRate       Beats per minute.
+     * @param timestampMillis When the sample was measured (wall-clock milliseconds).
+     */
+    public void offer(int heartRate, long timestampMillis) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (backlog != null) {
+                // Still catching up: queue behind the stored samples
+                backlog.append(heartRate, timestampMillis);
+                return;
+            }
+
+            if (mode == MODE_LATEST_ONLY && pendingCount > 0) {
+                // Replace the stale sample
+                samplesDropped += pendingCount;
+                pendingCount = 0;
+            } else if (pendingCount == capacity) {
+                // Link too slow: drop the oldest sample
+                System.arraycopy(pendingRates, 1, pendingRates, 0, capacity - 1);
+                System.arraycopy(pendingTimes, 1, pendingTimes, 0, capacity - 1);
+                pendingCount--;
+                samplesDropped++;
+            }
+
+            if (pendingCount == 0) {
+                firstPendingNanos = System.nanoTime();
+            }
+            pendingRates[pendingCount] = heartRate;
+            pendingTimes[pendingCount] = timestampMillis;
+            pendingCount++;
+
+            // The first sample starts the flush window of an idle uplink thread
+            if (pendingCount == 1 || pendingCount >= maxSamples || windowNanos == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void runLoop() {
+        while (true) {
+            if (isCatchingUp()) {
+                if (!sendBacklogChunk()) {
+                    return;
+                }
+                continue;
+            }
+
+            int count;
+            synchronized (lock) {
+                // Step 1: Wait until the batch is full, the window has elapsed, or we are closed
+                try {
+                    while (!closed && !isDue()) {
+                        if (pendingCount == 0) {
+                            lock.wait();
+                        } else {
+                            long remaining = firstPendingNanos + windowNanos - System.nanoTime();
+                            lock.wait(Math.max(1, remaining / 1_000_000L));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+                if (closed) {
+                    return;
+                }
+
+                // Step 2: Swap buffers so the sensor thread can keep appending while we send
+                int[] rates = pendingRates;
+                long[] times = pendingTimes;
+                pendingRates = sendingRates;
+                pendingTimes = sendingTimes;
+                sendingRates = rates;
+                sendingTimes = times;
+                count = pendingCount;
+                pendingCount = 0;
+            }
+
+            // Step 3: Send outside the lock
+            sink.send(sendingRates, sendingTimes, count);
+
+            synchronized (lock) {
+                samplesSent += count;
+                batchesSent++;
+            }
+        }
+    }
+
+    private boolean isCatchingUp() {
+        synchronized (lock) {
+            return backlog != null;
+        }
+    }
+
+    /**
+     * Sends the next chunk of the backlog, then waits long enough to keep to the catch-up rate.
+     *
+     * @return false once the uplink is closed.
+     */
+    private boolean sendBacklogChunk() {
+        int count;
+        HeartRateStore store;
+        synchronized (lock) {
+            store = backlog;
+            if (closed || store == null) {
+                return !closed;
+            }
+            try {
+                count = store.peek(backlogRates, backlogTimes, backlogRates.length);
+            } catch (IOException e) {
+                count = 0; // Unreadable store: give up on the backlog, keep streaming live
+            }
+            if (count == 0) {
+                endBacklog();
+                return true;
+            }
+        }
+
+        // Send outside the lock; the store only drops the samples once they went out
+        boolean sent = sink.sendBacklog(backlogRates, backlogTimes, count);
+        synchronized (lock) {
+            if (!sent) {
+                endBacklog();
+                return true;
+            }
+            store.consume(count);
+            backlogSent += count;
+
+            // Pace the catch-up so live traffic and the radio are not starved
+            if (catchUpRate > 0) {
+                long deadline = System.nanoTime() + count * 1_000_000_000L / catchUpRate;
+                long remaining;
+                try {
+                    while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                        lock.wait(Math.max(1, remaining / 1_000_000L));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+            }
+            return !closed;
+        }
+    }
+
+    private void endBacklog() {
+        if (backlog != null) {
+            backlog.endDrain();
+            backlog = null;
+        }
+    }
+
+    private boolean isDue() {
+        return pendingCount > 0
+                && (pendingCount >= maxSamples || System.nanoTime() - firstPendingNanos >= windowNanos);
+    }
+
+    public long getSamplesSent() {
+        synchronized (lock) {
+            return samplesSent;
+        }
+    }
+
+    public long getBatchesSent() {
+        synchronized (lock) {
+            return batchesSent;
+        }
+    }
+
+    /** Stored samples sent from the offline backlog. */
+    public long getBacklogSent() {
+        synchronized (lock) {
+            return backlogSent;
+        }
+    }
+
+    public long getSamplesDropped() {
+        synchronized (lock) {
+            return samplesDropped;
+        }
+    }
+}
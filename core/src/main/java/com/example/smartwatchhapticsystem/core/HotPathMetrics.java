@@ -0,0 +1,344 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of the command and telemetry hot paths, shared by all
+ * client sessions and the haptic scheduler:
+ * <ul>
+ *   <li>command-to-vibration: socket read of a "Vibrate" frame → the vibrator call returned</li>
+ *   <li>sensor-to-send: sensor sample timestamp → its telemetry batch flushed to the socket</li>
+ *   <li>time-to-reaccept: server listener lost (radio off, socket error) → next client accepted</li>
+ *   <li>"VibrateAt:" lateness: target time of a scheduled pattern → the vibrator call returned,
+ *       and scheduled patterns that arrived too late to be played</li>
+ *   <li>bytes and messages in/out, parse failures and dropped commands</li>
+ *   <li>heart-rate samples suppressed by the sessions' {@link HeartRateDeadband}</li>
+ *   <li>wake lock held time, acquisitions and leases taken ({@link WakeLeases})</li>
+ *   <li>vibration commands over a session's admission limit ({@link TokenBucket}): deferred as
+ *       the latest cue, or rejected</li>
+ * </ul>
+ * Everything is updated lock-free and without allocation; the snapshot answering the
+ * "Stats:" command is only built on request. The {@link TraceBuffer} holding the recent
+ * event history and the {@link WakeLeases} of the process travel with the metrics.
+ *
+ * No Android dependencies.
+ */
+public final class HotPathMetrics {
+
+    // Fields of the binary snapshot, see snapshot()
+    public static final int SNAPSHOT_FIELDS = 29;
+    // Fields per OP_STATS_REPLY frame: the two varint header fields and this many varlongs always fit
+    static final int FIELDS_PER_FRAME = (BinaryProtocol.MAX_PAYLOAD_LENGTH - 2 * BinaryProtocol.MAX_VARINT_LENGTH)
+            / BinaryProtocol.MAX_VARLONG_LENGTH;
+
+    private final Clock clock;
+    private final TraceBuffer trace;
+    private final WakeLeases wakeLeases;
+
+    private final LatencyHistogram commandToVibration = new LatencyHistogram();
+    private final LatencyHistogram sensorToSend = new LatencyHistogram();
+    private final LatencyHistogram reaccept = new LatencyHistogram();
+    private final LatencyHistogram vibrateAtLateness = new LatencyHistogram();
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong messagesIn = new AtomicLong();
+    private final AtomicLong messagesOut = new AtomicLong();
+    private final AtomicLong parseFailures = new AtomicLong();
+    private final AtomicLong droppedCommands = new AtomicLong();
+    private final AtomicLong suppressedSamples = new AtomicLong();
+    private final AtomicLong deferredCommands = new AtomicLong();
+    private final AtomicLong rateLimitedCommands = new AtomicLong();
+    private final AtomicLong missedDeadlines = new AtomicLong();
+
+    /**
+     * @param clock Wall clock used to age sensor samples (their timestamps are wall-clock millis).
+     */
+    public HotPathMetrics(Clock clock) {
+        this(clock, new TraceBuffer());
+    }
+
+    public HotPathMetrics(Clock clock, TraceBuffer trace) {
+        this(clock, trace, new WakeLeases(WakeLeases.PowerLock.NONE));
+    }
+
+    public HotPathMetrics(Clock clock, TraceBuffer trace, WakeLeases wakeLeases) {
+        this.clock = clock;
+        this.trace = trace;
+        this.wakeLeases = wakeLeases;
+    }
+
+    /**
+     * Records the latency of a command received at {@code receivedNanos} ({@link System#nanoTime()}).
+     *
+     * @return The latency in microseconds.
+     */
+    public long recordCommandToVibration(long receivedNanos) {
+        long micros = (System.nanoTime() - receivedNanos) / 1000;
+        commandToVibration.record(micros);
+        return micros;
+    }
+
+    /**
+     * Records how late a "VibrateAt:" pattern due at {@code dueNanos} ({@link System#nanoTime()}) played.
+     *
+     * @return The lateness in microseconds.
+     */
+    public long recordVibrateAtLateness(long dueNanos) {
+        long micros = Math.max(0, (System.nanoTime() - dueNanos) / 1000);
+        vibrateAtLateness.record(micros);
+        return micros;
+    }
+
+    /**
+     * Records how long the server could not accept clients, from losing its listener
+     * ({@link System#nanoTime()} at {@code outageStartedNanos}) to the next accepted connection.
+     */
+    public void recordReaccept(long outageStartedNanos) {
+        reaccept.recordNanos(System.nanoTime() - outageStartedNanos);
+    }
+
+    /**
+     * Records a telemetry batch that has just been flushed: its bytes, its samples and how long
+     * each sample waited since the sensor measured it. Called by the {@link ConnectionWriter}
+     * thread after the flush, so the time spent queued is included.
+     */
+    public void recordSent(long[] timestampsMillis, int count, int bytes) {
+        long now = clock.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            sensorToSend.record((now - timestampsMillis[i]) * 1000);
+        }
+        messagesOut.addAndGet(count);
+        bytesOut.addAndGet(bytes);
+    }
+
+    /**
+     * Records a batch of stored samples sent after a reconnection; their age is not a
+     * sensor-to-send latency, so only the traffic is counted.
+     */
+    public void recordBacklogSent(int count, int bytes) {
+        messagesOut.addAndGet(count);
+        bytesOut.addAndGet(bytes);
+    }
+
+    public void addBytesIn(long bytes) {
+        bytesIn.addAndGet(bytes);
+    }
+
+    public void addBytesOut(long bytes) {
+        bytesOut.addAndGet(bytes);
+    }
+
+    public void incrementMessagesIn() {
+        messagesIn.incrementAndGet();
+    }
+
+    public void incrementParseFailures() {
+        parseFailures.incrementAndGet();
+    }
+
+    /** A command that was received but not acted on (oversized frame, no handler, queue full). */
+    public void incrementDroppedCommands() {
+        droppedCommands.incrementAndGet();
+    }
+
+    /** A heart-rate sample that was not sent because it was inside the dead-band. */
+    public void incrementSuppressedSamples() {
+        suppressedSamples.incrementAndGet();
+    }
+
+    /** A "VibrateAt:" pattern that arrived too long after its target time to be played. */
+    public void incrementMissedDeadlines() {
+        missedDeadlines.incrementAndGet();
+    }
+
+    /** A vibration command over the admission limit that was kept as the latest cue. */
+    public void incrementDeferredCommands() {
+        deferredCommands.incrementAndGet();
+    }
+
+    /** A vibration command over the admission limit that was rejected. */
+    public void incrementRateLimitedCommands() {
+        rateLimitedCommands.incrementAndGet();
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public TraceBuffer getTrace() {
+        return trace;
+    }
+
+    public WakeLeases getWakeLeases() {
+        return wakeLeases;
+    }
+
+    public LatencyHistogram getCommandToVibration() {
+        return commandToVibration;
+    }
+
+    public LatencyHistogram getSensorToSend() {
+        return sensorToSend;
+    }
+
+    public LatencyHistogram getReaccept() {
+        return reaccept;
+    }
+
+    public LatencyHistogram getVibrateAtLateness() {
+        return vibrateAtLateness;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getMessagesIn() {
+        return messagesIn.get();
+    }
+
+    public long getMessagesOut() {
+        return messagesOut.get();
+    }
+
+    public long getParseFailures() {
+        return parseFailures.get();
+    }
+
+    public long getDroppedCommands() {
+        return droppedCommands.get();
+    }
+
+    public long getSuppressedSamples() {
+        return suppressedSamples.get();
+    }
+
+    public long getDeferredCommands() {
+        return deferredCommands.get();
+    }
+
+    public long getRateLimitedCommands() {
+        return rateLimitedCommands.get();
+    }
+
+    public long getMissedDeadlines() {
+        return missedDeadlines.get();
+    }
+
+    /**
+     * Compact text snapshot, one line, latencies in microseconds as count/p50/p99/max:
+     * {@code "Stats:in=<bytes>/<msgs>,out=<bytes>/<msgs>,parseErr=<n>,dropped=<n>,cmd2vib=...,sensor2send=...,reaccept=...,wake=<heldMs>/<acquisitions>/<leases>,suppressed=<n>,admission=<deferred>/<rateLimited>,vibrateAt=...,missed=<n>\n"}.
+     */
+    public byte[] formatText() {
+        StringBuilder text = new StringBuilder(280)
+                .append("Stats:in=").append(getBytesIn()).append('/').append(getMessagesIn())
+                .append(",out=").append(getBytesOut()).append('/').append(getMessagesOut())
+                .append(",parseErr=").append(getParseFailures())
+                .append(",dropped=").append(getDroppedCommands())
+                .append(",cmd2vib=");
+        appendLatency(text, commandToVibration);
+        text.append(",sensor2send=");
+        appendLatency(text, sensorToSend);
+        text.append(",reaccept=");
+        appendLatency(text, reaccept);
+        text.append(",wake=").append(wakeLeases.getHeldMillis())
+                .append('/').append(wakeLeases.getAcquisitions())
+                .append('/').append(wakeLeases.getLeases());
+        text.append(",suppressed=").append(getSuppressedSamples());
+        text.append(",admission=").append(getDeferredCommands()).append('/').append(getRateLimitedCommands());
+        text.append(",vibrateAt=");
+        appendLatency(text, vibrateAtLateness);
+        text.append(",missed=").append(getMissedDeadlines());
+        return text.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return The snapshot fields, in binary order: bytes in, messages in, bytes out, messages out,
+     * parse failures, dropped commands, then count/p50/p99/max (µs) for command-to-vibration,
+     * sensor-to-send and time-to-reaccept, then wake lock held millis, acquisitions and leases,
+     * suppressed heart-rate samples, deferred and rate-limited commands, then count/p50/p99/max
+     * (µs) of "VibrateAt:" lateness and missed deadlines.
+     */
+    public long[] snapshot() {
+        long[] fields = new long[SNAPSHOT_FIELDS];
+        int i = 0;
+        fields[i++] = getBytesIn();
+        fields[i++] = getMessagesIn();
+        fields[i++] = getBytesOut();
+        fields[i++] = getMessagesOut();
+        fields[i++] = getParseFailures();
+        fields[i++] = getDroppedCommands();
+        i = putLatency(fields, i, commandToVibration);
+        i = putLatency(fields, i, sensorToSend);
+        i = putLatency(fields, i, reaccept);
+        fields[i++] = wakeLeases.getHeldMillis();
+        fields[i++] = wakeLeases.getAcquisitions();
+        fields[i++] = wakeLeases.getLeases();
+        fields[i++] = getSuppressedSamples();
+        fields[i++] = getDeferredCommands();
+        fields[i++] = getRateLimitedCommands();
+        i = putLatency(fields, i, vibrateAtLateness);
+        fields[i] = getMissedDeadlines();
+        return fields;
+    }
+
+    /**
+     * Encodes the {@link #snapshot()} as {@link BinaryProtocol#OP_STATS_REPLY} frames (see
+     * {@link #encodeSnapshot}).
+     *
+     * @return Total length of the frames.
+     */
+    public int encodeBinary(byte[] buffer, int offset) {
+        return encodeSnapshot(snapshot(), buffer, offset);
+    }
+
+    /**
+     * Encodes snapshot fields as consecutive {@link BinaryProtocol#OP_STATS_REPLY} frames of up to
+     * {@link #FIELDS_PER_FRAME} fields each, so every payload fits the 1-byte length however large
+     * the counters are. Each frame holds the varint index of its first field and the varint total
+     * field count, then its fields as varlongs.
+     *
+     * @return Total length of the frames.
+     */
+    static int encodeSnapshot(long[] fields, byte[] buffer, int offset) {
+        int position = offset;
+        for (int first = 0; first < fields.length; first += FIELDS_PER_FRAME) {
+            int end = BinaryProtocol.beginFrame(buffer, position, BinaryProtocol.OP_STATS_REPLY);
+            end = BinaryProtocol.writeVarint(buffer, end, first);
+            end = BinaryProtocol.writeVarint(buffer, end, fields.length);
+            for (int i = first; i < Math.min(fields.length, first + FIELDS_PER_FRAME); i++) {
+                end = BinaryProtocol.writeVarLong(buffer, end, fields[i]);
+            }
+            position += BinaryProtocol.endFrame(buffer, position, end);
+        }
+        return position - offset;
+    }
+
+    /** Buffer size that always fits {@link #encodeBinary}. */
+    public static int maxBinaryLength() {
+        int frames = (SNAPSHOT_FIELDS + FIELDS_PER_FRAME - 1) / FIELDS_PER_FRAME;
+        return frames * (BinaryProtocol.HEADER_LENGTH + 2 * BinaryProtocol.MAX_VARINT_LENGTH
+                + FIELDS_PER_FRAME * BinaryProtocol.MAX_VARLONG_LENGTH + BinaryProtocol.TRAILER_LENGTH);
+    }
+
+    private static void appendLatency(StringBuilder text, LatencyHistogram histogram) {
+        text.append(histogram.getCount())
+                .append('/').append(histogram.getPercentile(50))
+                .append('/').append(histogram.getPercentile(99))
+                .append('/').append(histogram.getMax());
+    }
+
+    private static int putLatency(long[] fields, int i, LatencyHistogram histogram) {
+        fields[i++] = histogram.getCount();
+        fields[i++] = histogram.getPercentile(50);
+        fields[i++] = histogram.getPercentile(99);
+        fields[i++] = histogram.getMax();
+        return i;
+    }
+}
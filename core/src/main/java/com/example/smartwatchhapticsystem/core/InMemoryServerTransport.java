@@ -0,0 +1,250 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * In-process {@link ServerTransport}: {@link #connect} hands back the client end of a pair of
+ * in-memory byte pipes and queues the server end for {@link #accept()}. Lets tests and load
+ * generators drive the full parse → dispatch → haptic/telemetry path without sockets.
+ *
+ * Unlike {@code PipedInputStream}, the pipes are not tied to the threads that created them and
+ * transfer whole arrays per call.
+ *
+ * No Android dependencies.
+ */
+public final class InMemoryServerTransport implements ServerTransport {
+
+    public static final int DEFAULT_PIPE_CAPACITY = 64 * 1024;
+
+    private final String localName;
+    private final int pipeCapacity;
+    private final ArrayDeque<ByteTransport> pending = new ArrayDeque<>();
+    private boolean closed;
+
+    public InMemoryServerTransport(String localName) {
+        this(localName, DEFAULT_PIPE_CAPACITY);
+    }
+
+    /**
+     * @param localName    Name reported as the watch name (used to derive the session IDs).
+     * @param pipeCapacity Bytes buffered per direction before writers block.
+     */
+    public InMemoryServerTransport(String localName, int pipeCapacity) {
+        this.localName = localName;
+        this.pipeCapacity = pipeCapacity;
+    }
+
+    /**
+     * Opens a connection to this transport; the name doubles as the client's address.
+     *
+     * @param remoteName Name the server sees for this client (e.g. "Android-7").
+     * @return The client end: write commands to its output, read telemetry from its input.
+     */
+    public ByteTransport connect(String remoteName) throws IOException {
+        return connect(remoteName, remoteName);
+    }
+
+    /**
+     * Opens a connection to this transport.
+     *
+     * @param remoteName    Name the server sees for this client (e.g. "Android-7").
+     * @param remoteAddress Address the server sees for this client (e.g. a Bluetooth MAC address).
+     * @return The client end: write commands to its output, read telemetry from its input.
+     */
+    public ByteTransport connect(String remoteName, String remoteAddress) throws IOException {
+        Pipe toServer = new Pipe(pipeCapacity);
+        Pipe toClient = new Pipe(pipeCapacity);
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            pending.add(new Connection(toServer, toClient, remoteName, remoteAddress));
+            notifyAll();
+        }
+        return new Connection(toClient, toServer, localName, localName);
+    }
+
+    @Override
+    public synchronized ByteTransport accept() throws IOException {
+        while (pending.isEmpty()) {
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a connection");
+            }
+        }
+        return pending.poll();
+    }
+
+    @Override
+    public String getLocalName() {
+        return localName;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * One end of an in-memory connection: reads from one pipe, writes to the other.
+     */
+    private static final class Connection implements ByteTransport {
+        private final Pipe in;
+        private final Pipe out;
+        private final String remoteName;
+        private final String remoteAddress;
+
+        Connection(Pipe in, Pipe out, String remoteName, String remoteAddress) {
+            this.in = in;
+            this.out = out;
+            this.remoteName = remoteName;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in.input;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out.output;
+        }
+
+        @Override
+        public String getRemoteName() {
+            return remoteName;
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        @Override
+        public void close() {
+            // Closing either end ends the connection in both directions, like a socket
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Bounded single-direction byte pipe backed by a ring buffer.
+     */
+    private static final class Pipe {
+        private final byte[] buffer;
+        private int readIndex;
+        private int count;
+        private boolean closed;
+
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                synchronized (Pipe.this) {
+                    return count;
+                }
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                Pipe.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+
+        Pipe(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (count == 0) {
+                if (closed) {
+                    return -1;
+                }
+                await();
+            }
+            int n = Math.min(len, count);
+            int first = Math.min(n, buffer.length - readIndex);
+            System.arraycopy(buffer, readIndex, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+            readIndex = (readIndex + n) % buffer.length;
+            count -= n;
+            notifyAll();
+            return n;
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+                if (count == buffer.length) {
+                    await();
+                    continue;
+                }
+                int writeIndex = (readIndex + count) % buffer.length;
+                int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writeIndex));
+                System.arraycopy(b, off, buffer, writeIndex, n);
+                count += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting on pipe");
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed log-linear buckets (HdrHistogram style).
+ *
+ * Values below {@value #SUB_BUCKETS} µs get one bucket each; above that, every power of two is
+ * split into {@value #HALF_SUB_BUCKETS} equal buckets, so a recorded value is off by at most
+ * 1/{@value #HALF_SUB_BUCKETS} (~6%). Values are clamped to {@link #MAX_VALUE_MICROS} (about 9.5 hours).
+ *
+ * {@link #record} is a couple of shifts and atomic increments and allocates nothing, so it can
+ * be called from the reader, sensor and haptic threads at once. Readers see a near-consistent
+ * snapshot (counts may move while a percentile is computed), which is fine for diagnostics.
+ *
+ * No Android dependencies.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;         // 32
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;         // 16
+    private static final int MAX_BIT = 34;
+
+    public static final long MAX_VALUE_MICROS = (1L << (MAX_BIT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_BIT - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records one latency.
+     *
+     * @param micros Latency in microseconds; negative values (clock skew) are recorded as 0.
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(0, micros), MAX_VALUE_MICROS);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Records a latency measured with {@link System#nanoTime()} or another nanosecond clock.
+     */
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /** Largest recorded value in microseconds (exact, not bucketed). */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the value at a percentile, as the upper bound of the bucket it falls in
+     * (never under-reports), capped at {@link #getMax()}.
+     *
+     * @param percentile 0–100.
+     * @return Latency in microseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears all counts. Not atomic with respect to concurrent {@link #record} calls.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Top SUB_BUCKET_BITS bits of the value select the sub-bucket within its power of two
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKETS;
+        return SUB_BUCKETS + (highestBit - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int k = index - SUB_BUCKETS;
+        int highestBit = k / HALF_SUB_BUCKETS + SUB_BUCKET_BITS;
+        int shift = highestBit - (SUB_BUCKET_BITS - 1);
+        long lowerBound = (long) (k % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
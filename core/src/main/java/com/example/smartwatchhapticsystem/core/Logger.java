@@ -0,0 +1,48 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Logging as seen by the core: android.util.Log on the watch, anything (or nothing) on a plain JVM.
+ * Tags and messages follow the app's Logcat conventions.
+ */
+public interface Logger {
+
+    /** Discards everything (benchmarks, tests). */
+    Logger NONE = new Logger() {
+        @Override
+        public void d(String tag, String message) {
+        }
+
+        @Override
+        public void w(String tag, String message) {
+        }
+
+        @Override
+        public void e(String tag, String message, Throwable error) {
+        }
+
+        @Override
+        public boolean isDebugEnabled(String tag) {
+            return false;
+        }
+    };
+
+    void d(String tag, String message);
+
+    void w(String tag, String message);
+
+    /**
+     * @param error The cause, or null.
+     */
+    void e(String tag, String message, Throwable error);
+
+    default void e(String tag, String message) {
+        e(tag, message, null);
+    }
+
+    /**
+     * Lets hot paths skip building debug messages that would be discarded.
+     */
+    default boolean isDebugEnabled(String tag) {
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Behaviour of one monitoring type ("HeartRate", "SunAzimuth", ...).
+ *
+ * A connection looks its handler up in the {@link MonitoringModeRegistry} once, when the
+ * "Monitoring:" command arrives, and then calls {@link #handleVibrate} directly for every
+ * "Vibrate:" command (and {@link #handleAzimuth} / {@link #handleVibrateAt} for every "Azimuth:" /
+ * "VibrateAt:" command). Each handler
+ * decides how its patterns are validated and played
+ * (its waveform strategy) and keeps its own counters.
+ *
+ * Each type also sets the admission limits of its commands: a session that asks for them
+ * ("RateLimit:0,0") keeps a {@link TokenBucket} configured with {@link #getAdmissionBurst()} /
+ * {@link #getAdmissionRate()}, and a command over the limit goes to {@link #deferVibrate} / {@link #deferAzimuth} instead.
+ * Types whose cues are "latest wins" (azimuth) play it once the current pattern is over; the
+ * others reject it.
+ *
+ * No Android dependencies.
+ */
+public abstract class MonitoringModeHandler {
+
+    private final int mode;
+    private final String name;
+
+    // Default admission limits; a type with longer patterns sets lower ones
+    public static final int DEFAULT_ADMISSION_BURST = 4;
+    public static final int DEFAULT_ADMISSION_RATE = 4;
+
+    private final AtomicLong vibrations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    private volatile int admissionBurst = DEFAULT_ADMISSION_BURST;
+    private volatile int admissionRate = DEFAULT_ADMISSION_RATE;
+
+    /**
+     * @param mode Mode ID, as sent in binary "Monitoring" frames (see CommandParser.MODE_*).
+     * @param name Monitoring type name, as sent in "Monitoring:<name>" (matched case-insensitively).
+     */
+    protected MonitoringModeHandler(int mode, String name) {
+        this.mode = mode;
+        this.name = name;
+    }
+
+    /**
+     * Handles one "Vibrate:" command received now; see {@link #handleVibrate(int, int, int, int, long)}.
+     */
+    public final boolean handleVibrate(int intensity, int pulses, int duration, int interval) {
+        return handleVibrate(intensity, pulses, duration, interval, System.nanoTime());
+    }
+
+    /**
+     * Handles one "Vibrate:" command for this monitoring type and updates the counters.
+     *
+     * @param receivedNanos When the command was read from the connection ({@link System#nanoTime()}).
+     * @return true if the pattern was accepted for playback.
+     */
+    public final boolean handleVibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        if (vibrate(intensity, pulses, duration, interval, receivedNanos)) {
+            vibrations.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Handles one "Azimuth:&lt;degrees&gt;" command and updates the counters.
+     *
+     * @param receivedNanos When the command was read from the connection ({@link System#nanoTime()}).
+     * @return true if the cue was accepted for playback.
+     */
+    public final boolean handleAzimuth(int degrees, long receivedNanos) {
+        if (azimuth(degrees, receivedNanos)) {
+            vibrations.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Handles one "VibrateAt:" command and updates the counters.
+     *
+     * @param atNanos When the pattern must play ({@link System#nanoTime()}).
+     * @return true if the pattern was scheduled.
+     */
+    public final boolean handleVibrateAt(long atNanos, int intensity, int pulses, int duration, int interval) {
+        if (vibrateAt(atNanos, intensity, pulses, duration, interval)) {
+            vibrations.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Handles a "Vibrate:" command over the session's admission limit: played after the current
+     * pattern if this type is "latest wins", rejected otherwise.
+     *
+     * @return true if the pattern was accepted for (deferred) playback.
+     */
+    public final boolean deferVibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return countDeferred(vibrateDeferred(intensity, pulses, duration, interval, receivedNanos));
+    }
+
+    /**
+     * Handles an "Azimuth:" command over the session's admission limit; see {@link #deferVibrate}.
+     */
+    public final boolean deferAzimuth(int degrees, long receivedNanos) {
+        return countDeferred(azimuthDeferred(degrees, receivedNanos));
+    }
+
+    private boolean countDeferred(boolean accepted) {
+        if (accepted) {
+            vibrations.incrementAndGet();
+            deferred.incrementAndGet();
+            return true;
+        }
+        rateLimited.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Plays (or queues) the prebuilt direction cue of a bearing; types without direction cues reject it.
+     */
+    protected boolean azimuth(int degrees, long receivedNanos) {
+        return false;
+    }
+
+    /**
+     * Plays (or queues) the pattern for this monitoring type.
+     *
+     * @param receivedNanos When the command was read, for the command-to-vibration latency.
+     * @return false if the parameters are invalid for this type or the pattern was dropped.
+     */
+    protected abstract boolean vibrate(int intensity, int pulses, int duration, int interval, long receivedNanos);
+
+    /**
+     * Queues the pattern of a command over the admission limit so that it plays once the current
+     * pattern is over, replacing any earlier deferred one; types without "latest wins" reject it.
+     */
+    protected boolean vibrateDeferred(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+        return false;
+    }
+
+    /**
+     * Schedules the pattern for this monitoring type at {@code atNanos}; types that cannot play
+     * at a given time reject it.
+     */
+    protected boolean vibrateAt(long atNanos, int intensity, int pulses, int duration, int interval) {
+        return false;
+    }
+
+    /**
+     * Deferred counterpart of {@link #azimuth}; see {@link #vibrateDeferred}.
+     */
+    protected boolean azimuthDeferred(int degrees, long receivedNanos) {
+        return false;
+    }
+
+    /**
+     * Sets the admission limits of this type's commands, applied by every session that follows the
+     * type's limits and selects it from then on.
+     *
+     * @param burst         Commands admitted back to back.
+     * @param ratePerSecond Sustained commands per second; 0 = unlimited.
+     */
+    public final void setAdmission(int burst, int ratePerSecond) {
+        admissionBurst = Math.max(1, burst);
+        admissionRate = Math.max(0, ratePerSecond);
+    }
+
+    public int getAdmissionBurst() {
+        return admissionBurst;
+    }
+
+    /** Sustained commands per second admitted; 0 = unlimited. */
+    public int getAdmissionRate() {
+        return admissionRate;
+    }
+
+    /**
+     * Whether selecting this type starts heart-rate streaming to the client.
+     */
+    public boolean streamsHeartRate() {
+        return false;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Vibrate commands accepted for playback. */
+    public long getVibrations() {
+        return vibrations.get();
+    }
+
+    /** Vibrate commands rejected (invalid parameters, no vibrator or queue full). */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Commands over the admission limit that were kept as the latest cue (included in the vibrations). */
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    /** Commands over the admission limit that were rejected. */
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registry of {@link MonitoringModeHandler}s, indexed by mode ID and looked up by name.
+ *
+ * Lookups happen once per "Monitoring:" command; the returned handler is then called directly
+ * for every "Vibrate:" command, so the hot path does no string hashing or comparison.
+ * New monitoring types are added by registering a handler, without touching the server.
+ *
+ * Handlers are stored in a copy-on-write array: lookups are lock-free, registration is rare.
+ * No Android dependencies.
+ */
+public final class MonitoringModeRegistry {
+
+    /** Highest mode ID a handler may use. */
+    public static final int MAX_MODE = 255;
+
+    private volatile MonitoringModeHandler[] byMode = new MonitoringModeHandler[0];
+
+    /**
+     * Adds a handler, replacing any handler already registered with the same mode ID.
+     */
+    public synchronized void register(MonitoringModeHandler handler) {
+        int mode = handler.getMode();
+        if (mode <= CommandParser.MODE_UNKNOWN || mode > MAX_MODE) {
+            throw new IllegalArgumentException("mode must be in 1.." + MAX_MODE + ": " + mode);
+        }
+        MonitoringModeHandler[] current = byMode;
+        MonitoringModeHandler[] updated = new MonitoringModeHandler[Math.max(current.length, mode + 1)];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[mode] = handler;
+        byMode = updated;
+    }
+
+    /**
+     * @return The handler for {@code mode}, or null if none is registered.
+     */
+    public MonitoringModeHandler get(int mode) {
+        MonitoringModeHandler[] handlers = byMode;
+        return mode > 0 && mode < handlers.length ? handlers[mode] : null;
+    }
+
+    /**
+     * @return The handler whose name matches {@code name} (ignoring case), or null.
+     */
+    public MonitoringModeHandler find(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (MonitoringModeHandler handler : byMode) {
+            if (handler != null && handler.getName().equalsIgnoreCase(name)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the monitoring type of a parsed "Monitoring" command: by mode ID first
+     * (built-in names and binary frames), then by name (types the parser does not know).
+     *
+     * @return The handler, or null if the type is not registered.
+     */
+    public MonitoringModeHandler resolve(int mode, String name) {
+        MonitoringModeHandler handler = get(mode);
+        return handler != null ? handler : find(name);
+    }
+
+    /**
+     * @return All registered handlers, in mode ID order (e.g. for reporting stats).
+     */
+    public List<MonitoringModeHandler> getHandlers() {
+        List<MonitoringModeHandler> handlers = new ArrayList<>();
+        for (MonitoringModeHandler handler : byMode) {
+            if (handler != null) {
+                handlers.add(handler);
+            }
+        }
+        return Collections.unmodifiableList(handlers);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Receives heart-rate readings from the {@link HeartRateService}.
+ */
+public interface OnHeartRateUpdateListener {
+    /**
+     * @param heartRate       Beats per minute.
+     * @param timestampMillis When the sample was measured (wall-clock milliseconds).
+     */
+    void onUpdate(int heartRate, long timestampMillis);
+}
@@ -0,0 +1,59 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter between attempts to rebuild a failed listener.
+ *
+ * The ceiling doubles after every failed attempt, from {@code initialMillis} up to
+ * {@code maxMillis}; each delay is drawn uniformly from the upper half of the ceiling, so
+ * retries spread out without ever becoming much shorter than planned. {@link #reset()} once an
+ * attempt succeeds.
+ *
+ * Not thread-safe. No Android dependencies.
+ */
+public final class ReconnectBackoff {
+
+    public static final long DEFAULT_INITIAL_MILLIS = 500;
+    public static final long DEFAULT_MAX_MILLIS = 30_000;
+
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random;
+    private int attempts;
+
+    public ReconnectBackoff() {
+        this(DEFAULT_INITIAL_MILLIS, DEFAULT_MAX_MILLIS, new Random());
+    }
+
+    public ReconnectBackoff(long initialMillis, long maxMillis, Random random) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("initialMillis=" + initialMillis + ", maxMillis=" + maxMillis);
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    /**
+     * @return How long to wait before the next attempt, in milliseconds.
+     */
+    public long nextDelayMillis() {
+        long ceiling = maxMillis;
+        if (attempts < 62 && initialMillis <= (maxMillis >> attempts)) {
+            ceiling = initialMillis << attempts;
+        }
+        attempts++;
+        long half = ceiling / 2;
+        return ceiling - half + (long) (random.nextDouble() * (half + 1));
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+
+    /** Failed attempts since the last {@link #reset()}. */
+    public int getAttempts() {
+        return attempts;
+    }
+}
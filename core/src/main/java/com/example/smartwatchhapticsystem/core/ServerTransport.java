@@ -0,0 +1,25 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Listening side of a {@link ByteTransport}: RFCOMM on the watch, TCP or an in-memory pipe for
+ * load tests on a plain JVM. {@link #close()} must unblock a pending {@link #accept()}.
+ *
+ * No Android dependencies.
+ */
+public interface ServerTransport extends Closeable {
+
+    /**
+     * Blocks until a client connects.
+     *
+     * @throws IOException if the transport was closed or failed.
+     */
+    ByteTransport accept() throws IOException;
+
+    /**
+     * @return Name of this end (e.g. the watch's Bluetooth name "UserID-1-SmartWatchID-2"), or null if unknown.
+     */
+    String getLocalName();
+}
@@ -0,0 +1,135 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads back the files written by {@link SessionRecorder}, oldest file first.
+ *
+ * Offline tool (replay, analysis): allocates one {@link Record} per entry. No Android dependencies.
+ */
+public final class SessionLogReader {
+
+    /**
+     * One recorded frame or write.
+     */
+    public static final class Record {
+        public final int type;
+        public final int sessionId;
+        public final long timeMicros;
+        public final byte[] payload;
+
+        Record(int type, int sessionId, long timeMicros, byte[] payload) {
+            this.type = type;
+            this.sessionId = sessionId;
+            this.timeMicros = timeMicros;
+            this.payload = payload;
+        }
+
+        public boolean isInbound() {
+            return type == SessionRecorder.TYPE_INBOUND_TEXT || type == SessionRecorder.TYPE_INBOUND_BINARY;
+        }
+    }
+
+    private SessionLogReader() {
+    }
+
+    /**
+     * Reads all records of the log {@code prefix} in {@code directory}, in recording order.
+     * Files with a wrong magic or version are skipped; a truncated record ends its file.
+     */
+    public static List<Record> read(File directory, String prefix) throws IOException {
+        List<long[]> files = new ArrayList<>(); // {sequence, index}
+        for (int index = 0; ; index++) {
+            File file = SessionRecorder.fileFor(directory, prefix, index);
+            if (!file.isFile()) {
+                break;
+            }
+            long sequence = readSequence(file);
+            if (sequence >= 0) {
+                files.add(new long[]{sequence, index});
+            }
+        }
+        files.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        List<Record> records = new ArrayList<>();
+        for (long[] file : files) {
+            readRecords(SessionRecorder.fileFor(directory, prefix, (int) file[1]), records);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the IDs of the sessions present in {@code records}, in order of first appearance.
+     */
+    public static List<Integer> sessionIds(List<Record> records) {
+        List<Integer> ids = new ArrayList<>();
+        for (Record record : records) {
+            if (!ids.contains(record.sessionId)) {
+                ids.add(record.sessionId);
+            }
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    private static long readSequence(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SessionRecorder.HEADER_LENGTH);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Fill the header
+            }
+        }
+        header.flip();
+        if (header.remaining() < SessionRecorder.HEADER_LENGTH
+                || header.getInt() != SessionRecorder.MAGIC
+                || header.get() != SessionRecorder.VERSION) {
+            return -1;
+        }
+        return header.getLong();
+    }
+
+    private static void readRecords(File file, List<Record> records) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.position(SessionRecorder.HEADER_LENGTH);
+        try {
+            while (buffer.hasRemaining()) {
+                int type = buffer.get() & 0xFF;
+                if (type == SessionRecorder.TYPE_END) {
+                    return;
+                }
+                int sessionId = (int) readVarLong(buffer);
+                long timeMicros = readVarLong(buffer);
+                int length = (int) readVarLong(buffer);
+                if (length < 0 || length > buffer.remaining()) {
+                    return;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                records.add(new Record(type, sessionId, timeMicros, payload));
+            }
+        } catch (java.nio.BufferUnderflowException e) {
+            // Record cut off at the end of the file
+        }
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
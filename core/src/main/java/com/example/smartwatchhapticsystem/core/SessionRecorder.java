@@ -0,0 +1,179 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only binary log of every inbound frame and outbound write of the client sessions,
+ * for reproducing field sessions with {@link SessionReplayer}.
+ *
+ * The log is a fixed set of {@code fileCount} memory-mapped files of {@code fileSize} bytes each
+ * ({@code <prefix>-<n>.bin}), used round-robin: when the current file is full, the oldest one is
+ * reused, so the disk footprint is bounded and appending is a copy into mapped memory (no
+ * system call per record). File layout:
+ * <pre>
+ * header:  magic "SWHR" (int) | version (byte) | file sequence (long)
+ * record:  type (byte) | session ID (varint) | time since recording start, µs (varlong)
+ *          | payload length (varint) | payload
+ * </pre>
+ * A type of {@link #TYPE_END} (the zero fill of a fresh file, or the marker written after each
+ * record) ends the file. Times come from {@link System#nanoTime()}, so they are monotonic.
+ *
+ * Records are appended under a lock; sessions, uplink threads and the haptic scheduler may
+ * record concurrently. No Android dependencies.
+ */
+public final class SessionRecorder implements Closeable {
+
+    public static final int TYPE_END = 0;
+    public static final int TYPE_INBOUND_TEXT = 1;     // Text frame without its '\n'
+    public static final int TYPE_INBOUND_BINARY = 2;   // Complete BinaryProtocol frame
+    public static final int TYPE_OUTBOUND = 3;         // One write to the client
+
+    public static final int DEFAULT_FILE_SIZE = 1 << 20;
+    public static final int DEFAULT_FILE_COUNT = 4;
+
+    static final int MAGIC = 0x53574852; // "SWHR"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 4 + 1 + 8;
+    private static final int MAX_RECORD_OVERHEAD = 1 + BinaryProtocol.MAX_VARINT_LENGTH
+            + BinaryProtocol.MAX_VARLONG_LENGTH + BinaryProtocol.MAX_VARINT_LENGTH;
+
+    private final File directory;
+    private final String prefix;
+    private final int fileSize;
+    private final int fileCount;
+    private final long startNanos = System.nanoTime();
+    private final byte[] scratch = new byte[MAX_RECORD_OVERHEAD];
+
+    private MappedByteBuffer buffer;
+    private long fileSequence = -1;
+    private boolean closed;
+
+    private long recordsWritten;
+    private long recordsDropped;
+
+    /**
+     * Creates the first log file.
+     *
+     * @param directory Where the files are kept (created if missing).
+     * @param prefix    File name prefix.
+     * @param fileSize  Size of each file in bytes.
+     * @param fileCount Number of files kept; the total size is {@code fileSize * fileCount}.
+     */
+    public SessionRecorder(File directory, String prefix, int fileSize, int fileCount) throws IOException {
+        if (fileSize <= HEADER_LENGTH + MAX_RECORD_OVERHEAD || fileCount <= 0) {
+            throw new IllegalArgumentException("fileSize=" + fileSize + ", fileCount=" + fileCount);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.fileSize = fileSize;
+        this.fileCount = fileCount;
+        rotate();
+    }
+
+    /**
+     * Appends one record. Records larger than a file are counted as dropped.
+     *
+     * @param type One of the {@code TYPE_*} constants.
+     */
+    public synchronized void record(int type, int sessionId, byte[] payload, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        int end = 0;
+        scratch[end++] = (byte) type;
+        end = BinaryProtocol.writeVarint(scratch, end, sessionId);
+        end = BinaryProtocol.writeVarLong(scratch, end, micros);
+        end = BinaryProtocol.writeVarint(scratch, end, length);
+
+        if (HEADER_LENGTH + end + length >= fileSize) {
+            recordsDropped++;
+            return;
+        }
+        try {
+            if (buffer.remaining() < end + length) {
+                rotate();
+            }
+        } catch (IOException e) {
+            recordsDropped++;
+            return;
+        }
+        buffer.put(scratch, 0, end);
+        buffer.put(payload, offset, length);
+        if (buffer.hasRemaining()) {
+            buffer.put(buffer.position(), (byte) TYPE_END); // Stale records of a reused file stop here
+        }
+        recordsWritten++;
+    }
+
+    /**
+     * Wraps a session's output so that every write is also recorded as {@link #TYPE_OUTBOUND}.
+     */
+    public OutputStream wrapOutput(int sessionId, OutputStream output) {
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+                record(TYPE_OUTBOUND, sessionId, bytes, offset, length);
+            }
+        };
+    }
+
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public synchronized long getRecordsDropped() {
+        return recordsDropped;
+    }
+
+    /**
+     * Flushes the mapped file to storage and stops recording.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+        }
+    }
+
+    /**
+     * Moves to the next file of the ring, overwriting its header (the oldest file is reused).
+     */
+    private void rotate() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        fileSequence++;
+        File file = fileFor(directory, prefix, (int) (fileSequence % fileCount));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(fileSize);
+            // The mapping stays valid after the channel is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putLong(fileSequence);
+        buffer.put(buffer.position(), (byte) TYPE_END);
+    }
+
+    static File fileFor(File directory, String prefix, int index) {
+        return new File(directory, prefix + "-" + index + ".bin");
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds the inbound frames of a session recorded by {@link SessionRecorder} back into a
+ * connection, at the recorded pace (optionally accelerated), and reports how far the replay
+ * drifted from the recorded timing.
+ *
+ * {@link #main} replays every session of a log against an in-process {@link ClientSession}
+ * (over an {@link InMemoryServerTransport}, with a silent haptic sink and no heart-rate sensor)
+ * and prints one report per session plus the resulting {@link HotPathMetrics} snapshot:
+ * <pre>
+ * java ...core.SessionReplayer &lt;directory&gt; &lt;prefix&gt; [speed]
+ * </pre>
+ * No Android dependencies.
+ */
+public final class SessionReplayer {
+
+    /**
+     * Outcome of one replayed session. Lateness is how much later than scheduled each frame was
+     * written; the outbound byte counts compare what the watch sent during recording and replay
+     * (telemetry differs when no sensor is attached).
+     */
+    public static final class Report {
+        public final int sessionId;
+        public long frames;
+        public long bytes;
+        public long recordedMicros;
+        public long replayMicros;
+        public long expectedOutboundBytes;
+        public long outboundBytes;
+        public final LatencyHistogram lateness = new LatencyHistogram();
+
+        Report(int sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public String toString() {
+            return "Session " + sessionId + ": " + frames + " frames, " + bytes + " bytes, recorded "
+                    + recordedMicros + "us, replayed " + replayMicros + "us, lateness p50/p99/max "
+                    + lateness.getPercentile(50) + "/" + lateness.getPercentile(99) + "/"
+                    + lateness.getMax() + "us, outbound " + outboundBytes + "/" + expectedOutboundBytes + " bytes";
+        }
+    }
+
+    private static final long SETTLE_MILLIS = 100;
+
+    private final List<SessionLogReader.Record> records;
+    private final double speed;
+
+    /**
+     * @param records Records from {@link SessionLogReader#read}.
+     * @param speed   1 replays at the recorded pace, 10 ten times faster; 0 or less as fast as possible.
+     */
+    public SessionReplayer(List<SessionLogReader.Record> records, double speed) {
+        this.records = records;
+        this.speed = speed;
+    }
+
+    /**
+     * Writes the inbound frames of {@code sessionId} to {@code target} (text frames get their
+     * '\n' back), each at its recorded offset from the first frame divided by the speed.
+     */
+    public Report replay(int sessionId, OutputStream target) throws IOException {
+        Report report = new Report(sessionId);
+        long firstMicros = -1;
+        long lastMicros = 0;
+        long startNanos = System.nanoTime();
+
+        for (SessionLogReader.Record record : records) {
+            if (record.sessionId != sessionId) {
+                continue;
+            }
+            if (!record.isInbound()) {
+                report.expectedOutboundBytes += record.payload.length;
+                continue;
+            }
+            if (firstMicros < 0) {
+                firstMicros = record.timeMicros;
+                startNanos = System.nanoTime();
+            }
+            lastMicros = record.timeMicros;
+
+            // Step 1: Wait for the frame's scheduled time
+            long scheduledNanos = startNanos;
+            if (speed > 0) {
+                scheduledNanos += (long) (TimeUnit.MICROSECONDS.toNanos(record.timeMicros - firstMicros) / speed);
+                long wait;
+                while ((wait = scheduledNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            // Step 2: Write it in one piece, as the client sent it, and measure how late it went out
+            byte[] frame = record.payload;
+            if (record.type == SessionRecorder.TYPE_INBOUND_TEXT) {
+                frame = Arrays.copyOf(frame, frame.length + 1);
+                frame[frame.length - 1] = '\n';
+            }
+            target.write(frame);
+            target.flush();
+            if (speed > 0) {
+                report.lateness.recordNanos(System.nanoTime() - scheduledNanos);
+            }
+            report.frames++;
+            report.bytes += record.payload.length;
+        }
+        report.recordedMicros = firstMicros < 0 ? 0 : lastMicros - firstMicros;
+        report.replayMicros = (System.nanoTime() - startNanos) / 1000;
+        return report;
+    }
+
+    /**
+     * Replays {@code sessionId} into a fresh {@link ClientSession} wired to {@code metrics}.
+     */
+    public Report replayIntoSession(int sessionId, HotPathMetrics metrics) throws IOException, InterruptedException {
+        HapticFeedback hapticFeedback = new HapticFeedback(SILENT_SINK, Logger.NONE, metrics);
+        MonitoringModeRegistry registry = new MonitoringModeRegistry();
+        registry.register(new HeartRateModeHandler(hapticFeedback));
+        registry.register(new AzimuthModeHandler(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth", hapticFeedback));
+        registry.register(new AzimuthModeHandler(CommandParser.MODE_MOON_AZIMUTH, "MoonAzimuth", hapticFeedback));
+
+        InMemoryServerTransport transport = new InMemoryServerTransport("Replay");
+        ByteTransport phone = transport.connect("Replay-" + sessionId);
+        ClientSession session = new ClientSession(transport.accept(), "Replay-" + sessionId,
+                new HeartRateService(NO_SENSOR, Clock.SYSTEM, Logger.NONE, metrics.getTrace()),
+                registry, metrics, Logger.NONE);
+        Thread sessionThread = new Thread(session, "Replay-" + sessionId);
+        sessionThread.start();
+
+        // Drain what the session sends back, so it never blocks on a full pipe
+        AtomicLong outbound = new AtomicLong();
+        Thread drain = new Thread(() -> {
+            byte[] buffer = new byte[1024];
+            try (InputStream input = phone.getInputStream()) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    outbound.addAndGet(read);
+                }
+            } catch (IOException ignored) {
+                // Connection closed
+            }
+        }, "Replay-drain-" + sessionId);
+        drain.start();
+
+        Report report;
+        try {
+            report = replay(sessionId, phone.getOutputStream());
+
+            // Let the replies to the last frames arrive before disconnecting
+            long previous;
+            do {
+                previous = outbound.get();
+                Thread.sleep(SETTLE_MILLIS);
+            } while (outbound.get() != previous);
+        } finally {
+            phone.close();
+            sessionThread.join(TimeUnit.SECONDS.toMillis(5));
+            drain.join(TimeUnit.SECONDS.toMillis(5));
+            hapticFeedback.release();
+            transport.close();
+        }
+        report.outboundBytes = outbound.get();
+        return report;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: SessionReplayer <directory> <prefix> [speed]");
+            System.exit(2);
+        }
+        List<SessionLogReader.Record> records = SessionLogReader.read(new File(args[0]), args[1]);
+        SessionReplayer replayer = new SessionReplayer(records, args.length > 2 ? Double.parseDouble(args[2]) : 1);
+        HotPathMetrics metrics = new HotPathMetrics(Clock.SYSTEM);
+
+        System.out.println(records.size() + " records");
+        for (int sessionId : SessionLogReader.sessionIds(records)) {
+            System.out.println(replayer.replayIntoSession(sessionId, metrics));
+        }
+        System.out.print(new String(metrics.formatText(), "US-ASCII"));
+    }
+
+    private static final HapticSink SILENT_SINK = new HapticSink() {
+        @Override
+        public boolean hasVibrator() {
+            return true;
+        }
+
+        @Override
+        public void play(int intensity, int pulses, int duration, int interval) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private static final HeartRateSource NO_SENSOR = new HeartRateSource() {
+        @Override
+        public boolean isAvailable() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsBatching() {
+            return false;
+        }
+
+        @Override
+        public boolean register(Callback callback, int samplingPeriodUs, int maxReportLatencyUs) {
+            return false;
+        }
+
+        @Override
+        public void unregister() {
+        }
+    };
+}
@@ -0,0 +1,93 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * {@link ServerTransport} over a plain TCP socket, e.g. on localhost to drive the command
+ * pipeline from a load generator. Nagle's algorithm is disabled so small commands are not delayed.
+ *
+ * No Android dependencies.
+ */
+public final class TcpServerTransport implements ServerTransport {
+
+    private final ServerSocket serverSocket;
+    private final String localName;
+
+    /**
+     * Listens on the loopback interface.
+     *
+     * @param port      TCP port, or 0 to pick a free one (see {@link #getPort()}).
+     * @param localName Name reported as the watch name (used to derive the session IDs).
+     */
+    public TcpServerTransport(int port, String localName) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.localName = localName;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public ByteTransport accept() throws IOException {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        return new Connection(socket);
+    }
+
+    @Override
+    public String getLocalName() {
+        return localName;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * One accepted TCP connection.
+     */
+    private static final class Connection implements ByteTransport {
+        private final Socket socket;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public String getRemoteName() {
+            return socket.getRemoteSocketAddress().toString();
+        }
+
+        /**
+         * @return The client's IP address; without the port, which changes on every connection.
+         */
+        @Override
+        public String getRemoteAddress() {
+            return socket.getInetAddress().getHostAddress();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Token bucket admission control of one session's vibration commands: up to {@code burst}
+ * commands are admitted at once, then one every {@code 1 / ratePerSecond} seconds.
+ *
+ * The bucket is kept as nanoseconds of credit (one token = {@code 1e9 / ratePerSecond} ns) that
+ * refill with the elapsed {@link System#nanoTime()}, so there is no timer and no allocation.
+ * A rate of 0 admits everything.
+ *
+ * Not thread-safe: used by the session's reader thread only. No Android dependencies.
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private int burst = 1;
+    private int ratePerSecond;
+    private long nanosPerToken;
+    private long capacityNanos;
+    private long creditNanos;
+    private long lastRefillNanos;
+    private boolean started;
+
+    private long admitted;
+    private long limited;
+
+    /**
+     * Sets the limits and refills the bucket.
+     *
+     * @param burst         Commands admitted back to back (at least 1).
+     * @param ratePerSecond Sustained commands per second; 0 or less = unlimited.
+     */
+    public void configure(int burst, int ratePerSecond) {
+        this.burst = Math.max(1, burst);
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+        nanosPerToken = this.ratePerSecond > 0 ? NANOS_PER_SECOND / this.ratePerSecond : 0;
+        capacityNanos = this.burst * nanosPerToken;
+        creditNanos = capacityNanos;
+        started = false;
+    }
+
+    /**
+     * Takes one token if there is one.
+     *
+     * @param nowNanos Current {@link System#nanoTime()} (e.g. when the command was read).
+     * @return true if the command is admitted; false if it exceeds the rate.
+     */
+    public boolean tryAcquire(long nowNanos) {
+        if (nanosPerToken == 0) {
+            admitted++;
+            return true;
+        }
+        if (started) {
+            long elapsed = nowNanos - lastRefillNanos;
+            if (elapsed > 0) {
+                creditNanos = elapsed >= capacityNanos - creditNanos ? capacityNanos : creditNanos + elapsed;
+            }
+        }
+        started = true;
+        lastRefillNanos = nowNanos;
+        if (creditNanos >= nanosPerToken) {
+            creditNanos -= nanosPerToken;
+            admitted++;
+            return true;
+        }
+        limited++;
+        return false;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /** Sustained rate; 0 = unlimited. */
+    public int getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /** Commands admitted. */
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    /** Commands over the rate. */
+    public long getLimited() {
+        return limited;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.smartwatchhapticsystem.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size in-memory ring of primitive trace events, replacing per-message debug logging on
+ * the hot paths (every frame, vibration, heart-rate sample and heartbeat).
+ *
+ * An event is an ID plus two long arguments and a {@link System#nanoTime()} timestamp, stored
+ * field by field in preallocated arrays: recording never allocates or formats anything, and
+ * the oldest events are overwritten once the ring is full. Text is only produced when the
+ * history is dumped ("Trace:Dump" command or {@link #dump(Logger, String)}).
+ *
+ * Gating:
+ * <ul>
+ *   <li>Compile time: call sites are wrapped in {@code if (TraceBuffer.COMPILED)}; setting it to
+ *       false removes them from the bytecode.</li>
+ *   <li>Run time: each event has a level; events above {@link #setLevel the current level} are
+ *       discarded after a single volatile read.</li>
+ * </ul>
+ * Safe to record from any thread. A slot being overwritten while it is dumped is skipped: each
+ * slot carries a sequence number, checked before and after its fields are read. The fields live in
+ * atomic arrays, written with release stores and read with volatile reads, so a field read cannot
+ * move past the second check (VarHandle fences would need API 33).
+ *
+ * No Android dependencies.
+ */
+public final class TraceBuffer {
+
+    /** Compile-time switch for all trace call sites. */
+    public static final boolean COMPILED = true;
+
+    public static final int LEVEL_OFF = 0;
+    public static final int LEVEL_INFO = 1;       // Rare events: connections, drops, parse failures
+    public static final int LEVEL_DEBUG = 2;      // Per command / per batch
+    public static final int LEVEL_VERBOSE = 3;    // Per frame, per sensor sample, heartbeats
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Event IDs and their arguments
+    public static final int EVENT_CLIENT_CONNECTED = 1;     // session ID, -
+    public static final int EVENT_CLIENT_DISCONNECTED = 2;  // session ID, frames received
+    public static final int EVENT_FRAME = 3;                // parser result, frame length
+    public static final int EVENT_PARSE_FAILED = 4;         // parser result, frame length
+    public static final int EVENT_VIBRATE_QUEUED = 5;       // kind, intensity
+    public static final int EVENT_VIBRATE_DROPPED = 6;      // kind, intensity
+    public static final int EVENT_VIBRATE_PLAYED = 7;       // kind, command-to-vibration µs
+    public static final int EVENT_HEART_RATE = 8;           // bpm, sample time (ms)
+    public static final int EVENT_HEART_RATE_SENT = 9;      // samples, bytes
+    public static final int EVENT_HEARTBEAT = 10;           // session ID, -
+    public static final int EVENT_BACKLOG_SENT = 11;        // samples, bytes
+    public static final int EVENT_OUTBOUND_DROPPED = 12;    // session ID, telemetry messages dropped
+    public static final int EVENT_WRITE_STALLED = 13;       // session ID, blocked ms
+    public static final int EVENT_HEART_RATE_ZONE = 14;     // zone (-1 = no reading), smoothed bpm
+    public static final int EVENT_RATE_LIMITED = 15;        // session ID, 1 = deferred as the latest cue / 0 = rejected
+
+    private static final String[] EVENT_NAMES = {
+            "?", "CLIENT_CONNECTED", "CLIENT_DISCONNECTED", "FRAME", "PARSE_FAILED", "VIBRATE_QUEUED",
+            "VIBRATE_DROPPED", "VIBRATE_PLAYED", "HEART_RATE", "HEART_RATE_SENT", "HEARTBEAT", "BACKLOG_SENT",
+            "OUTBOUND_DROPPED", "WRITE_STALLED", "HEART_RATE_ZONE", "RATE_LIMITED"
+    };
+    private static final int[] EVENT_LEVELS = {
+            LEVEL_INFO, LEVEL_INFO, LEVEL_INFO, LEVEL_VERBOSE, LEVEL_INFO, LEVEL_DEBUG,
+            LEVEL_INFO, LEVEL_DEBUG, LEVEL_VERBOSE, LEVEL_DEBUG, LEVEL_VERBOSE, LEVEL_DEBUG,
+            LEVEL_INFO, LEVEL_INFO, LEVEL_DEBUG, LEVEL_DEBUG
+    };
+    private static final String[] LEVEL_NAMES = {"Off", "Info", "Debug", "Verbose"};
+
+    /**
+     * Receives dumped events, oldest first.
+     */
+    public interface Visitor {
+        void onEvent(long timeNanos, int event, long arg0, long arg1);
+    }
+
+    private final int mask;
+    private final AtomicLongArray times;
+    private final AtomicIntegerArray events;
+    private final AtomicLongArray firstArgs;
+    private final AtomicLongArray secondArgs;
+
+    // Per slot: 2 * position + 1 while being written, 2 * position + 2 once complete
+    private final AtomicLongArray sequences;
+    private final AtomicLong nextPosition = new AtomicLong();
+
+    private volatile int level = LEVEL_DEBUG;
+
+    public TraceBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of events kept; must be a power of two.
+     */
+    public TraceBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.times = new AtomicLongArray(capacity);
+        this.events = new AtomicIntegerArray(capacity);
+        this.firstArgs = new AtomicLongArray(capacity);
+        this.secondArgs = new AtomicLongArray(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Records an event if its level is enabled.
+     *
+     * @param event One of the {@code EVENT_*} constants.
+     */
+    public void record(int event, long arg0, long arg1) {
+        if (EVENT_LEVELS[event] > level) {
+            return;
+        }
+        long position = nextPosition.getAndIncrement();
+        int index = (int) (position & mask);
+        sequences.set(index, 2 * position + 1);
+        // Release stores: a dump that sees one of them also sees the odd sequence set before it
+        times.lazySet(index, System.nanoTime());
+        events.lazySet(index, event);
+        firstArgs.lazySet(index, arg0);
+        secondArgs.lazySet(index, arg1);
+        sequences.set(index, 2 * position + 2);
+    }
+
+    public boolean isEnabled(int eventLevel) {
+        return eventLevel <= level;
+    }
+
+    /**
+     * @param level One of {@link #LEVEL_OFF}, {@link #LEVEL_INFO}, {@link #LEVEL_DEBUG}, {@link #LEVEL_VERBOSE}.
+     */
+    public void setLevel(int level) {
+        this.level = Math.max(LEVEL_OFF, Math.min(LEVEL_VERBOSE, level));
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Events recorded since start, including those already overwritten. */
+    public long getRecorded() {
+        return nextPosition.get();
+    }
+
+    /**
+     * Visits the events still in the ring, oldest first.
+     *
+     * @return Number of events visited.
+     */
+    public int forEach(Visitor visitor) {
+        long end = nextPosition.get();
+        long start = Math.max(0, end - capacity());
+        int visited = 0;
+        for (long position = start; position < end; position++) {
+            int index = (int) (position & mask);
+            long complete = 2 * position + 2;
+            if (sequences.get(index) != complete) {
+                continue; // Still being written, or already overwritten
+            }
+            long time = times.get(index);
+            int event = events.get(index);
+            long arg0 = firstArgs.get(index);
+            long arg1 = secondArgs.get(index);
+            if (sequences.get(index) != complete) {
+                continue;
+            }
+            visitor.onEvent(time, event, arg0, arg1);
+            visited++;
+        }
+        return visited;
+    }
+
+    /**
+     * Writes the history to the log (e.g. before the service shuts down), one line per event.
+     */
+    public void dump(Logger logger, String tag) {
+        long now = System.nanoTime();
+        StringBuilder line = new StringBuilder(64);
+        int count = forEach((time, event, arg0, arg1) -> {
+            line.setLength(0);
+            logger.d(tag, format(line, now, time, event, arg0, arg1).toString());
+        });
+        logger.d(tag, "🧾 Trace: " + count + " events (level " + levelName(level) + ")");
+    }
+
+    /**
+     * Text dump answering "Trace:Dump": one {@code "Trace:-<age>us <EVENT> <arg0> <arg1>\n"} line per
+     * event, oldest first, then {@code "Trace:End,<count>,<level>\n"}.
+     */
+    public byte[] formatText() {
+        long now = System.nanoTime();
+        StringBuilder text = new StringBuilder(capacity() * 40);
+        int count = forEach((time, event, arg0, arg1) ->
+                format(text.append("Trace:"), now, time, event, arg0, arg1).append('\n'));
+        text.append("Trace:End,").append(count).append(',').append(levelName(level)).append('\n');
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Binary dump: one {@link BinaryProtocol#OP_TRACE_EVENT} frame per event (age in µs, event,
+     * arg0, arg1), oldest first, then an empty OP_TRACE_EVENT frame.
+     */
+    public byte[] encodeBinary() {
+        long now = System.nanoTime();
+        byte[] frame = new byte[BinaryProtocol.HEADER_LENGTH + 3 * BinaryProtocol.MAX_VARLONG_LENGTH
+                + BinaryProtocol.MAX_VARINT_LENGTH + BinaryProtocol.TRAILER_LENGTH];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(capacity() * 16);
+        forEach((time, event, arg0, arg1) -> {
+            int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_TRACE_EVENT);
+            end = BinaryProtocol.writeVarLong(frame, end, (now - time) / 1000);
+            end = BinaryProtocol.writeVarint(frame, end, event);
+            end = BinaryProtocol.writeVarLong(frame, end, arg0);
+            end = BinaryProtocol.writeVarLong(frame, end, arg1);
+            out.write(frame, 0, BinaryProtocol.endFrame(frame, 0, end));
+        });
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_TRACE_EVENT);
+        out.write(frame, 0, BinaryProtocol.endFrame(frame, 0, end));
+        return out.toByteArray();
+    }
+
+    /**
+     * Formats one event as {@code "-<age>us <EVENT> <arg0> <arg1>"}.
+     */
+    public static StringBuilder format(StringBuilder out, long nowNanos, long timeNanos, int event,
+                                       long arg0, long arg1) {
+        return out.append('-').append((nowNanos - timeNanos) / 1000).append("us ")
+                .append(eventName(event)).append(' ').append(arg0).append(' ').append(arg1);
+    }
+
+    public static String eventName(int event) {
+        return event > 0 && event < EVENT_NAMES.length ? EVENT_NAMES[event] : EVENT_NAMES[0];
+    }
+
+    public static String levelName(int level) {
+        return LEVEL_NAMES[Math.max(LEVEL_OFF, Math.min(LEVEL_VERBOSE, level))];
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Demand-driven CPU wake lock: each active need takes a time-bounded lease, and the platform
+ * lock (a partial wake lock on the watch) is held only while at least one lease is live.
+ *
+ * Needs:
+ * <ul>
+ *   <li>{@link #REASON_SESSION}: a client is connected (renewed by every inbound frame, so an idle
+ *       connection lets the watch sleep)</li>
+ *   <li>{@link #REASON_HAPTIC}: a vibration pattern is queued or playing</li>
+ *   <li>{@link #REASON_TELEMETRY}: heart-rate samples wait for their batch to be flushed</li>
+ * </ul>
+ * A lease per need is extended by every {@link #lease} and ends at its deadline or on
+ * {@link #release}. No timer thread is needed: the platform lock is (re)acquired with a timeout
+ * covering the latest deadline, so it lapses on its own when nobody renews it. An extension asks
+ * for a slack ({@link #RENEW_SLACK_MILLIS} by default) more, so the per-frame and per-sample renewals that follow
+ * within it do not go back to the platform.
+ *
+ * Held time and lease counts are kept for the "Stats:" snapshot, to compare against holding the
+ * lock for the whole service lifetime. Thread-safe; no allocation. No Android dependencies.
+ */
+public final class WakeLeases {
+
+    public static final int REASON_SESSION = 0;
+    public static final int REASON_HAPTIC = 1;
+    public static final int REASON_TELEMETRY = 2;
+    private static final int REASONS = 3;
+
+    // Extra hold time taken with each extension of the platform lock
+    public static final long RENEW_SLACK_MILLIS = 1000;
+
+    /**
+     * The platform wake lock (not reference counted).
+     */
+    public interface PowerLock {
+        /** Acquires the lock, or replaces the timeout of the held lock. */
+        void hold(long timeoutMillis);
+
+        /** Releases the lock if held. */
+        void release();
+
+        PowerLock NONE = new PowerLock() {
+            @Override
+            public void hold(long timeoutMillis) {
+            }
+
+            @Override
+            public void release() {
+            }
+        };
+    }
+
+    private final PowerLock lock;
+    private final long slackNanos;
+
+    // Per need: deadline (System.nanoTime(), 0 = none) and number of leases taken
+    private final long[] deadlines = new long[REASONS];
+    private final long[] leaseCounts = new long[REASONS];
+
+    private boolean held;
+    private long heldSinceNanos;
+    private long heldUntilNanos;
+    private long heldNanos;
+    private long acquisitions;
+
+    public WakeLeases(PowerLock lock) {
+        this(lock, RENEW_SLACK_MILLIS);
+    }
+
+    /**
+     * @param renewSlackMillis Extra hold time taken with each extension (0 = hold exactly until the deadline).
+     */
+    public WakeLeases(PowerLock lock, long renewSlackMillis) {
+        this.lock = lock;
+        this.slackNanos = renewSlackMillis * 1_000_000L;
+    }
+
+    /**
+     * Takes or extends the lease of {@code reason} for {@code millis} from now.
+     */
+    public synchronized void lease(int reason, long millis) {
+        long now = System.nanoTime();
+        deadlines[reason] = Math.max(deadlines[reason], now + millis * 1_000_000L);
+        leaseCounts[reason]++;
+        update(now);
+    }
+
+    /**
+     * Ends the lease of {@code reason} before its deadline.
+     */
+    public synchronized void release(int reason) {
+        deadlines[reason] = 0;
+        update(System.nanoTime());
+    }
+
+    /**
+     * Ends every lease and releases the lock (service shutdown).
+     */
+    public synchronized void releaseAll() {
+        for (int reason = 0; reason < REASONS; reason++) {
+            deadlines[reason] = 0;
+        }
+        update(System.nanoTime());
+    }
+
+    public synchronized boolean isHeld() {
+        return held && heldUntilNanos > System.nanoTime();
+    }
+
+    /** Total time the lock has been held, including the current period. */
+    public synchronized long getHeldMillis() {
+        long total = heldNanos;
+        if (held) {
+            total += Math.min(System.nanoTime(), heldUntilNanos) - heldSinceNanos;
+        }
+        return total / 1_000_000L;
+    }
+
+    /** Number of times the lock went from released to held. */
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public synchronized long getLeases(int reason) {
+        return leaseCounts[reason];
+    }
+
+    public synchronized long getLeases() {
+        long total = 0;
+        for (long count : leaseCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Holds the platform lock until the latest live deadline (plus up to the renew slack),
+     * or releases it if there is none.
+     */
+    private void update(long now) {
+        long until = 0;
+        for (int reason = 0; reason < REASONS; reason++) {
+            if (deadlines[reason] - now > 0) {
+                until = Math.max(until, deadlines[reason]);
+            } else {
+                deadlines[reason] = 0;
+            }
+        }
+
+        // The platform lock lapsed on its own at the previous deadline
+        if (held && heldUntilNanos - now <= 0) {
+            heldNanos += heldUntilNanos - heldSinceNanos;
+            held = false;
+        }
+
+        if (until == 0) {
+            if (held) {
+                heldNanos += now - heldSinceNanos;
+                held = false;
+            }
+            lock.release();
+            return;
+        }
+        boolean acquiring = !held;
+        if (acquiring) {
+            held = true;
+            heldSinceNanos = now;
+            acquisitions++;
+        }
+        if (acquiring || until - heldUntilNanos > 0) {
+            // Extend past the deadline, so that renewals within the slack need no platform call
+            heldUntilNanos = until + slackNanos;
+        } else if (heldUntilNanos - until > slackNanos) {
+            // The longest lease ended early: shorten to the remaining one
+            heldUntilNanos = until;
+        } else {
+            return;
+        }
+        lock.hold((heldUntilNanos - now + 999_999L) / 1_000_000L);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Builds the timing and amplitude arrays of a pulse-train vibration:
+ * <pre>
+ * timings:    [0, duration, interval, duration, interval, ..., duration, interval]
+ * amplitudes: [0, intensity, 0,       intensity, 0,       ..., intensity, 0       ]
+ * </pre>
+ * i.e. start immediately, then {@code pulses} times a pulse of {@code duration} ms at
+ * {@code intensity} followed by a pause of {@code interval} ms.
+ *
+ * No Android dependencies; the arrays are passed to VibrationEffect.createWaveform by the caller.
+ */
+public final class WaveformBuilder {
+
+    private WaveformBuilder() {
+    }
+
+    /** Number of entries in the timing/amplitude arrays for {@code pulses} pulses. */
+    public static int length(int pulses) {
+        return pulses * 2 + 1;
+    }
+
+    public static long[] timings(int pulses, int duration, int interval) {
+        long[] timings = new long[length(pulses)];
+        timings[0] = 0; // Start immediately
+        for (int i = 1; i < timings.length; i++) {
+            timings[i] = (i % 2 == 1) ? duration : interval; // Pulse, then pause
+        }
+        return timings;
+    }
+
+    public static int[] amplitudes(int intensity, int pulses) {
+        int[] amplitudes = new int[length(pulses)];
+        amplitudes[0] = 0; // No amplitude for the initial delay
+        for (int i = 1; i < amplitudes.length; i++) {
+            amplitudes[i] = (i % 2 == 1) ? intensity : 0;
+        }
+        return amplitudes;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.smartwatchhapticsystem.core;
+
+/**
+ * Bounded LRU cache of prebuilt vibration waveforms keyed on
+ * (intensity, pulses, duration, interval).
+ *
+ * Azimuth clients resend the same few parameter tuples over and over, so a repeated command
+ * costs a lookup instead of building the timing/amplitude arrays and a new waveform object.
+ * Keys are kept in primitive arrays and the cache is small, so a lookup is a short linear scan
+ * that allocates nothing.
+ *
+ * Thread-safe. No Android dependencies: the waveform type is supplied by the {@link Factory}.
+ *
+ * @param <T> The built waveform type (VibrationEffect on the watch).
+ */
+public final class WaveformCache<T> {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Builds a waveform from its timing and amplitude arrays (only called on a cache miss).
+     */
+    public interface Factory<T> {
+        T create(long[] timings, int[] amplitudes);
+    }
+
+    private final Factory<T> factory;
+    private final int[] intensities;
+    private final int[] pulseCounts;
+    private final int[] durations;
+    private final int[] intervals;
+    private final long[] lastUsed;
+    private final Object[] waveforms;
+
+    private int size;
+    private long tick;
+    private long hits;
+    private long misses;
+
+    public WaveformCache(Factory<T> factory) {
+        this(DEFAULT_CAPACITY, factory);
+    }
+
+    public WaveformCache(int capacity, Factory<T> factory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.factory = factory;
+        this.intensities = new int[capacity];
+        this.pulseCounts = new int[capacity];
+        this.durations = new int[capacity];
+        this.intervals = new int[capacity];
+        this.lastUsed = new long[capacity];
+        this.waveforms = new Object[capacity];
+    }
+
+    /**
+     * Returns the waveform for the given parameters, building (and caching) it on a miss.
+     * Parameters are expected to be validated by the caller.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int intensity, int pulses, int duration, int interval) {
+        tick++;
+
+        // Step 1: Look for the tuple among the cached entries
+        for (int i = 0; i < size; i++) {
+            if (intensities[i] == intensity && pulseCounts[i] == pulses
+                    && durations[i] == duration && intervals[i] == interval) {
+                hits++;
+                lastUsed[i] = tick;
+                return (T) waveforms[i];
+            }
+        }
+
+        // Step 2: Miss → build the waveform
+        misses++;
+        T waveform = factory.create(
+                WaveformBuilder.timings(pulses, duration, interval),
+                WaveformBuilder.amplitudes(intensity, pulses));
+
+        // Step 3: Store it in a free slot, or evict the least recently used entry
+        int slot = size < waveforms.length ? size++ : leastRecentlyUsed();
+        intensities[slot] = intensity;
+        pulseCounts[slot] = pulses;
+        durations[slot] = duration;
+        intervals[slot] = interval;
+        lastUsed[slot] = tick;
+        waveforms[slot] = waveform;
+        return waveform;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AzimuthPatternLibrary}.
+ */
+public class AzimuthPatternLibraryTest {
+
+    @Test
+    public void bearings_roundToTheNearestSector() {
+        assertEquals(0, AzimuthPatternLibrary.sectorOf(0));
+        assertEquals(0, AzimuthPatternLibrary.sectorOf(7));
+        assertEquals(1, AzimuthPatternLibrary.sectorOf(8));
+        assertEquals(0, AzimuthPatternLibrary.sectorOf(359));
+        assertEquals(12, AzimuthPatternLibrary.sectorOf(180));
+        assertEquals(18, AzimuthPatternLibrary.sectorOf(-90));
+        assertEquals(6, AzimuthPatternLibrary.sectorOf(450));
+    }
+
+    @Test
+    public void everySector_isBuiltOnceUpFront() {
+        List<int[]> built = new ArrayList<>();
+        AzimuthPatternLibrary<int[]> library = new AzimuthPatternLibrary<>((timings, amplitudes) -> {
+            assertEquals(timings.length, amplitudes.length);
+            built.add(amplitudes);
+            return amplitudes;
+        });
+
+        assertEquals(AzimuthPatternLibrary.SECTOR_COUNT, built.size());
+        assertSame(built.get(3), library.get(3));
+    }
+
+    @Test
+    public void rightRampsRise_leftRampsFall_andFartherMeansMorePulses() {
+        AzimuthPatternLibrary<int[]> library = new AzimuthPatternLibrary<>((timings, amplitudes) -> amplitudes);
+
+        int[] right = library.get(AzimuthPatternLibrary.sectorOf(30));
+        int[] left = library.get(AzimuthPatternLibrary.sectorOf(330));
+        assertTrue(right[1] < right[AzimuthPatternLibrary.RAMP_STEPS]);
+        assertTrue(left[1] > left[AzimuthPatternLibrary.RAMP_STEPS]);
+
+        assertEquals(1, AzimuthPatternLibrary.pulses(AzimuthPatternLibrary.sectorOf(30)));
+        assertEquals(4, AzimuthPatternLibrary.pulses(AzimuthPatternLibrary.sectorOf(160)));
+        assertEquals(AzimuthPatternLibrary.pulses(AzimuthPatternLibrary.sectorOf(90)),
+                AzimuthPatternLibrary.pulses(AzimuthPatternLibrary.sectorOf(270)));
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ClientSession}, run end to end over an in-memory connection
+ * with fake platform implementations (no Android).
+ */
+public class ClientSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<int[]> played = new ArrayBlockingQueue<>(16);
+    private final FakeSource source = new FakeSource();
+    private final HotPathMetrics metrics = new HotPathMetrics(source);
+    private HapticFeedback hapticFeedback;
+    private MonitoringModeRegistry registry;
+    private HeartRateService heartRateService;
+    private ClientSession session;
+    private InMemoryServerTransport transport;
+    private ByteTransport phone;
+    private Thread sessionThread;
+
+    private final class FakeSink implements HapticSink {
+        @Override
+        public boolean hasVibrator() {
+            return true;
+        }
+
+        @Override
+        public void play(int intensity, int pulses, int duration, int interval) {
+            played.add(new int[]{intensity, pulses, duration, interval});
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    private static final class FakeSource implements HeartRateSource, Clock {
+        volatile Callback callback;
+        volatile long elapsedNanos = 5_000_000_000L;
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public boolean supportsBatching() {
+            return true;
+        }
+
+        @Override
+        public boolean register(Callback callback, int samplingPeriodUs, int maxReportLatencyUs) {
+            this.callback = callback;
+            return true;
+        }
+
+        @Override
+        public void unregister() {
+            callback = null;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return 1_000_000L;
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        hapticFeedback = new HapticFeedback(new FakeSink(), Logger.NONE, metrics);
+        registry = new MonitoringModeRegistry();
+        registry.register(new HeartRateModeHandler(hapticFeedback));
+        registry.register(new AzimuthModeHandler(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth", hapticFeedback));
+
+        transport = new InMemoryServerTransport("UserID-1-SmartWatchID-2");
+        phone = transport.connect("Android-3");
+        ByteTransport watch = transport.accept();
+
+        heartRateService = new HeartRateService(source, source, Logger.NONE);
+        // Alpha 1: the smoothed value is the median, which keeps zone changes predictable
+        heartRateService.setProcessor(new HeartRateProcessor(hapticFeedback,
+                () -> HeartRateProcessor.ACCURACY_HIGH, Logger.NONE, new TraceBuffer(), 3, 1.0));
+        session = new ClientSession(watch, "Android-3", heartRateService, registry, metrics, Logger.NONE);
+        session.setIdentity("1", "2", "3");
+        sessionThread = new Thread(session);
+        sessionThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        phone.close();
+        sessionThread.join(2000);
+        hapticFeedback.release();
+        transport.close();
+    }
+
+    @Test
+    public void vibrateCommand_playsOnSink() throws Exception {
+        send("Monitoring:SunAzimuth\nVibrate:50,3,1000,200\n");
+
+        int[] pattern = played.poll(2, TimeUnit.SECONDS);
+        assertNotNull(pattern);
+        assertArrayEquals(new int[]{50, 3, 1000, 200}, pattern);
+    }
+
+    @Test
+    public void azimuthCommand_playsTheSectorCue() throws Exception {
+        send("Monitoring:SunAzimuth\nAzimuth:90\n");
+
+        // The fake sink has no prebuilt waveforms and falls back to a pulse train of the same rhythm
+        int[] pattern = played.poll(2, TimeUnit.SECONDS);
+        assertNotNull(pattern);
+        assertEquals(AzimuthPatternLibrary.pulses(AzimuthPatternLibrary.sectorOf(90)), pattern[1]);
+        MonitoringModeHandler handler = registry.resolve(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth");
+        waitFor(() -> handler.getVibrations() == 1);
+    }
+
+    @Test
+    public void vibrateFlood_overTheRateLimit_playsOnlyTheLatest() throws Exception {
+        send("RateLimit:1,1\nMonitoring:SunAzimuth\nVibrate:50,1,500,0\n");
+        assertArrayEquals(new int[]{50, 1, 500, 0}, played.poll(2, TimeUnit.SECONDS));
+
+        // Over the limit: neither interrupts the playing cue, and the second replaces the first
+        send("Vibrate:60,1,100,0\nVibrate:70,1,100,0\n");
+        assertArrayEquals(new int[]{70, 1, 100, 0}, played.poll(2, TimeUnit.SECONDS));
+        assertNull(played.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, metrics.getDeferredCommands());
+        assertEquals(0, metrics.getRateLimitedCommands());
+    }
+
+    @Test
+    public void vibrateFlood_withoutRateLimit_isNotThrottled() throws Exception {
+        StringBuilder flood = new StringBuilder("Monitoring:SunAzimuth\n");
+        for (int i = 0; i < 8; i++) {
+            flood.append("Vibrate:50,1,100,0\n");
+        }
+        send(flood.toString());
+        MonitoringModeHandler handler = registry.resolve(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth");
+        waitFor(() -> handler.getVibrations() == 8);
+        assertEquals(0, metrics.getDeferredCommands() + metrics.getRateLimitedCommands());
+
+        // Opting in to the type's limits (burst 4) defers the rest of the same flood
+        send("RateLimit:0,0\n" + flood);
+        waitFor(() -> metrics.getDeferredCommands() >= 4);
+    }
+
+    @Test
+    public void clockSync_thenVibrateAt_playsOnTime() throws Exception {
+        send("Monitoring:SunAzimuth\nSync:7\n");
+        String[] reply = readLine(phone.getInputStream()).split("[:,]");
+        assertEquals("Sync", reply[0]);
+        assertEquals("7", reply[1]);
+        long watchMicros = Long.parseLong(reply[3]);
+        assertTrue(watchMicros >= Long.parseLong(reply[2]));
+
+        send("VibrateAt:" + (watchMicros + 500_000) + ",50,1,100,0\n");
+        assertNull(played.poll(100, TimeUnit.MILLISECONDS)); // Not on arrival
+        assertArrayEquals(new int[]{50, 1, 100, 0}, played.poll(2, TimeUnit.SECONDS));
+        waitFor(() -> metrics.getVibrateAtLateness().getCount() == 1);
+
+        send("VibrateAt:-1000000,50,1,100,0\n"); // A second before the session started
+        waitFor(() -> metrics.getMissedDeadlines() == 1);
+
+        // Hours ahead in µs no longer fit an int; far off either way must not overflow into range
+        send("VibrateAt:" + Long.MAX_VALUE + ",50,1,100,0\nVibrateAt:" + -Long.MAX_VALUE + ",50,1,100,0\n");
+        waitFor(() -> metrics.getMissedDeadlines() == 2);
+        assertNull(played.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void heartRateMonitoring_streamsTelemetry() throws Exception {
+        send("Monitoring:HeartRate\n");
+        waitFor(() -> source.callback != null);
+
+        source.callback.onHeartRate(72f, 5_000_000_000L);
+
+        assertEquals("MonitoringType:HeartRate,Value:72,UserID:1,SmartWatchID:2,AndroidID:3",
+                readLine(phone.getInputStream()));
+    }
+
+    @Test(timeout = 5000) // A suppressed zone change would block readLine
+    public void zoneChange_insideTheDeadband_isStillSent() throws Exception {
+        send("Monitoring:HeartRate\nDeadband:20,60000\nZones:100,140,170\n");
+        HeartRateProcessor processor = heartRateService.getProcessor();
+        waitFor(() -> source.callback != null && processor.getSubscriberCount() == 1);
+
+        source.callback.onHeartRate(95f, 5_000_000_000L);
+        source.callback.onHeartRate(100f, 6_000_000_000L);
+        source.callback.onHeartRate(101f, 7_000_000_000L);
+
+        // Zone 0, then zone 1 only a few bpm higher: both go out although the dead-band is 20 bpm
+        assertTrue(readLine(phone.getInputStream()).startsWith("MonitoringType:HeartRate,Value:95,"));
+        String zoneChange = readLine(phone.getInputStream());
+        assertTrue(zoneChange, zoneChange.matches("MonitoringType:HeartRate,Value:1\\d\\d,.*"));
+        assertEquals(1, processor.getZone());
+        assertEquals(0, metrics.getSuppressedSamples());
+    }
+
+    @Test(timeout = 10000)
+    public void storedHeartRate_isDrainedOnlyOnceSent() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile())) {
+            // More text than the telemetry queue holds, and more than one default backlog chunk
+            int samples = HeartRateUplink.BACKLOG_CHUNK + 44;
+            for (int i = 0; i < samples; i++) {
+                store.append(60 + i % 40, 1000L * i);
+            }
+            heartRateService.setOfflineStore(store, 0);
+
+            send("Monitoring:HeartRate\n");
+            for (int i = 0; i < samples; i++) {
+                String line = readLine(phone.getInputStream());
+                assertTrue(line, line.startsWith("MonitoringType:HeartRate,Value:" + (60 + i % 40) + ","));
+            }
+            waitFor(() -> store.getBacklog() == 0);
+            assertTrue(store.tryBeginDrain()); // Released once empty
+            heartRateService.setOfflineStore(null, 0);
+        }
+    }
+
+    @Test
+    public void statsCommand_repliesWithSnapshot() throws Exception {
+        send("Monitoring:SunAzimuth\nVibrate:50,3,1000,200\nBogus\n");
+        assertNotNull(played.poll(2, TimeUnit.SECONDS));
+        waitFor(() -> metrics.getCommandToVibration().getCount() == 1);
+
+        send("Stats:\n");
+        String stats = readLine(phone.getInputStream());
+        assertTrue(stats, stats.startsWith("Stats:in=57/4,out=0/0,parseErr=1,dropped=0,cmd2vib=1/"));
+        // Leases: connection, four frames, the vibration queued and played; one lock acquisition
+        assertTrue(stats, stats.matches(".*,sensor2send=0/0/0/0,reaccept=0/0/0/0,wake=\\d+/1/7,suppressed=0,admission=0/0,vibrateAt=0/0/0/0,missed=0"));
+    }
+
+    @Test
+    public void disconnect_unregistersSensor() throws Exception {
+        send("Monitoring:HeartRate\n");
+        waitFor(() -> source.callback != null);
+
+        phone.close();
+        sessionThread.join(2000);
+        assertNull(source.callback);
+    }
+
+    @Test
+    public void reconnect_resumesMonitoringType() throws Exception {
+        send("Monitoring:SunAzimuth\n");
+        waitFor(() -> session.getResumeState() != null);
+        phone.close();
+        sessionThread.join(2000);
+
+        // Same phone again: "Vibrate" works without repeating "Monitoring:"
+        phone = transport.connect("Android-3");
+        ClientSession resumed = new ClientSession(transport.accept(), "Android-3",
+                new HeartRateService(source, source, Logger.NONE), registry, metrics, Logger.NONE);
+        resumed.resume(session.getResumeState());
+        sessionThread = new Thread(resumed);
+        sessionThread.start();
+
+        send("Vibrate:50,3,1000,200\n");
+        assertArrayEquals(new int[]{50, 3, 1000, 200}, played.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void resumeStateAge_countsTimeTheWatchSpentAsleep() throws Exception {
+        send("Monitoring:SunAzimuth\n");
+        waitFor(() -> session.getResumeState() != null);
+        ClientSession.ResumeState state = session.getResumeState();
+
+        // Elapsed realtime advances through suspend; the resume window must see that
+        source.elapsedNanos += 6 * 60_000_000_000L;
+        assertEquals(6 * 60_000L, state.getAgeMillis());
+    }
+
+    private void send(String commands) throws IOException {
+        OutputStream output = phone.getOutputStream();
+        output.write(commands.getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toString("US-ASCII");
+    }
+}
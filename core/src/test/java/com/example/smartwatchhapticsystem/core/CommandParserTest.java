@@ -0,0 +1,215 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CommandParser}, fed from an in-memory stream
+ * the same way BluetoothServerManager feeds it from the socket.
+ */
+public class CommandParserTest {
+
+    private final CommandParser parser = new CommandParser();
+
+    private boolean isComplete(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+        return parser.isComplete(bytes, 0, bytes.length);
+    }
+
+    private int parse(String message) throws IOException {
+        InputStream input = new ByteArrayInputStream(message.getBytes(StandardCharsets.US_ASCII));
+        byte[] buffer = new byte[1024];
+        int bytes = input.read(buffer);
+        return parser.parse(buffer, 0, bytes);
+    }
+
+    @Test
+    public void vibrate_parsesAllFourParameters() throws IOException {
+        assertEquals(CommandParser.RESULT_VIBRATE, parse("Vibrate:50,3,1000,200\n"));
+        assertEquals(50, parser.getIntensity());
+        assertEquals(3, parser.getPulses());
+        assertEquals(1000, parser.getDuration());
+        assertEquals(200, parser.getInterval());
+    }
+
+    @Test
+    public void vibrate_rejectsWrongParameterCount() throws IOException {
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Vibrate:50,3,1000"));
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Vibrate:"));
+    }
+
+    @Test
+    public void vibrate_ignoresTrailingEmptyFieldsLikeSplit() throws IOException {
+        assertEquals(CommandParser.RESULT_VIBRATE, parse("Vibrate:50,3,1000,200,\n"));
+        assertEquals(200, parser.getInterval());
+        assertEquals(CommandParser.RESULT_VIBRATE, parse("Vibrate:50,3,1000,200,,, "));
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("Vibrate:50,,1000,200"));
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Vibrate:,50,3,1000,200"));
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Vibrate:50,3,1000,,"));
+    }
+
+    @Test
+    public void vibrate_rejectsInvalidNumbers() throws IOException {
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("Vibrate:50,x,1000,200"));
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("Vibrate:50, 3,1000,200"));
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("Vibrate:99999999999,3,1000,200"));
+    }
+
+    @Test
+    public void monitoring_resolvesKnownModes() throws IOException {
+        assertEquals(CommandParser.RESULT_MONITORING, parse("  Monitoring:HeartRate \r\n"));
+        assertEquals(CommandParser.MODE_HEART_RATE, parser.getMonitoringMode());
+        assertEquals("HeartRate", parser.getMonitoringName());
+
+        assertEquals(CommandParser.RESULT_MONITORING, parse("Monitoring:MoonAzimuth"));
+        assertEquals(CommandParser.MODE_MOON_AZIMUTH, parser.getMonitoringMode());
+
+        assertEquals(CommandParser.RESULT_MONITORING, parse("Monitoring:Steps"));
+        assertEquals(CommandParser.MODE_UNKNOWN, parser.getMonitoringMode());
+    }
+
+    @Test
+    public void isComplete_acceptsOnlyWholeLegacyCommands() {
+        assertTrue(isComplete("Vibrate:50,3,1000,200"));
+        assertTrue(isComplete("Monitoring:HeartRate"));
+        assertTrue(isComplete("Stats:"));
+        assertFalse(isComplete("Vibrate:50,3,"));
+        assertFalse(isComplete("Monitoring:Hea")); // Split by the radio: wait for the rest
+        assertFalse(isComplete("Vibr"));
+        assertFalse(isComplete(" "));
+    }
+
+    @Test
+    public void malformedFrames_areReported() throws IOException {
+        assertEquals(CommandParser.RESULT_INVALID_FORMAT, parse("Vibrate"));
+        assertEquals(CommandParser.RESULT_UNKNOWN_COMMAND, parse("Reset:now"));
+        assertEquals(CommandParser.RESULT_EMPTY, parse(" \n"));
+    }
+
+    @Test
+    public void stats_ignoresPayload() throws IOException {
+        assertEquals(CommandParser.RESULT_STATS, parse("Stats:\n"));
+        assertEquals(CommandParser.RESULT_STATS, parse("Stats:all"));
+
+        byte[] frame = new byte[8];
+        int length = BinaryProtocol.endFrame(frame, 0, BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_STATS));
+        assertEquals(CommandParser.RESULT_STATS, parser.parseBinary(frame, 0, length));
+    }
+
+    @Test
+    public void trace_parsesDumpAndLevels() throws IOException {
+        assertEquals(CommandParser.RESULT_TRACE, parse("Trace:Dump\n"));
+        assertEquals(CommandParser.TRACE_DUMP, parser.getTraceCommand());
+        assertEquals(CommandParser.RESULT_TRACE, parse("Trace:verbose"));
+        assertEquals(TraceBuffer.LEVEL_VERBOSE, parser.getTraceCommand());
+        assertEquals(CommandParser.RESULT_UNKNOWN_COMMAND, parse("Trace:Loud"));
+    }
+
+    @Test
+    public void zonesAndAlert_parseTheirParameters() throws IOException {
+        assertEquals(CommandParser.RESULT_ZONES, parse("Zones:100,140,170\n"));
+        assertEquals(140, parser.getZoneBoundary(1));
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Zones:100,140"));
+
+        assertEquals(CommandParser.RESULT_ALERT, parse("Alert:2,200,3,150,100\n"));
+        assertEquals(2, parser.getAlertZone());
+        assertEquals(200, parser.getAlertIntensity());
+        assertEquals(100, parser.getAlertInterval());
+    }
+
+    @Test
+    public void binaryFrames_decodeIntoSameFields() {
+        byte[] frame = new byte[32];
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_VIBRATE);
+        end = BinaryProtocol.writeVarint(frame, end, 50);
+        end = BinaryProtocol.writeVarint(frame, end, 3);
+        end = BinaryProtocol.writeVarint(frame, end, 1000);
+        end = BinaryProtocol.writeVarint(frame, end, 200);
+        int length = BinaryProtocol.endFrame(frame, 0, end);
+
+        assertEquals(CommandParser.RESULT_VIBRATE, parser.parseBinary(frame, 0, length));
+        assertEquals(50, parser.getIntensity());
+        assertEquals(1000, parser.getDuration());
+        assertEquals(200, parser.getInterval());
+
+        frame[3] ^= 0x01; // Corrupt the payload
+        assertEquals(CommandParser.RESULT_BAD_CHECKSUM, parser.parseBinary(frame, 0, length));
+    }
+
+    @Test
+    public void overlongBinaryVarint_isRejected() {
+        byte[] frame = new byte[16];
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_AZIMUTH);
+        // 5-byte varint whose last byte sets bit 32: it would silently decode as 90
+        frame[end++] = (byte) (0x80 | 90);
+        frame[end++] = (byte) 0x80;
+        frame[end++] = (byte) 0x80;
+        frame[end++] = (byte) 0x80;
+        frame[end++] = 0x10;
+        int length = BinaryProtocol.endFrame(frame, 0, end);
+
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parser.parseBinary(frame, 0, length));
+    }
+
+    @Test
+    public void batch_parsesThreeParameters() throws IOException {
+        assertEquals(CommandParser.RESULT_BATCH, parse("Batch:5000,10,1\n"));
+        assertEquals(5000, parser.getBatchWindowMillis());
+        assertEquals(10, parser.getBatchMaxSamples());
+        assertEquals(HeartRateUplink.MODE_LATEST_ONLY, parser.getBatchMode());
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("Batch:5000,10,1,2\n"));
+    }
+
+    @Test
+    public void rateLimit_parsesBurstAndRate() throws IOException {
+        assertEquals(CommandParser.RESULT_RATE_LIMIT, parse("RateLimit:4,2\n"));
+        assertEquals(4, parser.getRateLimitBurst());
+        assertEquals(2, parser.getRateLimitPerSecond());
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("RateLimit:4\n"));
+    }
+
+    @Test
+    public void syncAndVibrateAt_parseTheirParameters() throws IOException {
+        assertEquals(CommandParser.RESULT_SYNC, parse("Sync:42\n"));
+        assertEquals(42, parser.getSyncToken());
+
+        assertEquals(CommandParser.RESULT_VIBRATE_AT, parse("VibrateAt:125000,50,3,100,200\n"));
+        assertEquals(125000L, parser.getVibrateAtMicros());
+        assertEquals(50, parser.getVibrateAtIntensity());
+        assertEquals(200, parser.getVibrateAtInterval());
+        assertEquals(CommandParser.RESULT_BAD_PARAMETER_COUNT, parse("VibrateAt:50,3,100,200\n"));
+    }
+
+    @Test
+    public void vibrateAt_targetIsALongOfMicros() throws IOException {
+        // Three hours of session clock in µs: past the int range of the other fields
+        assertEquals(CommandParser.RESULT_VIBRATE_AT, parse("VibrateAt:10800000000,50,3,100,200\n"));
+        assertEquals(10_800_000_000L, parser.getVibrateAtMicros());
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("VibrateAt:10800000000,5000000000,3,100,200\n"));
+        assertEquals(CommandParser.RESULT_BAD_NUMBER, parse("VibrateAt:9223372036854775808,50,3,100,200\n"));
+
+        byte[] frame = new byte[32];
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_VIBRATE_AT);
+        end = BinaryProtocol.writeVarLong(frame, end, 10_800_000_000L);
+        end = BinaryProtocol.writeVarint(frame, end, 50);
+        end = BinaryProtocol.writeVarint(frame, end, 3);
+        end = BinaryProtocol.writeVarint(frame, end, 100);
+        end = BinaryProtocol.writeVarint(frame, end, 200);
+        int length = BinaryProtocol.endFrame(frame, 0, end);
+        assertEquals(CommandParser.RESULT_VIBRATE_AT, parser.parseBinary(frame, 0, length));
+        assertEquals(10_800_000_000L, parser.getVibrateAtMicros());
+        assertEquals(100, parser.getVibrateAtDuration());
+    }
+
+    @Test
+    public void protocolHandshake_isRecognised() throws IOException {
+        assertEquals(CommandParser.RESULT_PROTOCOL_BINARY, parse("Protocol:Binary\n"));
+        assertEquals(CommandParser.RESULT_UNKNOWN_COMMAND, parse("Protocol:Morse\n"));
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ConnectionWriter} queueing, drop policy and write timeout.
+ */
+public class ConnectionWriterTest {
+
+    /** Output that blocks every write until released. */
+    private static final class GatedOutput extends OutputStream {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (written) {
+                written.write(b, off, len);
+            }
+        }
+
+        String text() {
+            synchronized (written) {
+                return new String(written.toByteArray(), StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    @Test
+    public void queuedMessages_controlFirstAndTelemetryMerged() throws Exception {
+        GatedOutput output = new GatedOutput();
+        ConnectionWriter writer = new ConnectionWriter(output, 1024, 1024, 5000, Logger.NONE,
+                new TraceBuffer(), 1, () -> { });
+        writer.start("test-writer");
+
+        // Block the writer on a first message, then queue behind it
+        send(writer.telemetryStream(), "T0;");
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        send(writer.telemetryStream(), "T1;");
+        send(writer.telemetryStream(), "T2;");
+        send(writer.controlStream(), "C1;");
+        output.release.countDown();
+
+        waitFor(() -> output.text().length() == 12);
+        assertEquals("T0;C1;T1;T2;", output.text());
+        assertEquals(2, writer.getWrites()); // T0, then C1 + T1 + T2 merged
+        writer.close();
+    }
+
+    @Test
+    public void fullTelemetryQueue_dropsOldest() throws Exception {
+        GatedOutput output = new GatedOutput();
+        ConnectionWriter writer = new ConnectionWriter(output, 64, 16, 5000, Logger.NONE,
+                new TraceBuffer(), 1, () -> { });
+        writer.start("test-writer");
+
+        send(writer.telemetryStream(), "xx");
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            send(writer.telemetryStream(), "m" + i); // 4 + 2 bytes each, two fit
+        }
+        output.release.countDown();
+
+        waitFor(() -> output.text().length() == 6);
+        assertEquals("xxm3m4", output.text());
+        assertEquals(3, writer.getTelemetryDropped());
+        writer.close();
+    }
+
+    @Test
+    public void telemetryTimestamps_areReportedAfterTheFlush() throws Exception {
+        GatedOutput output = new GatedOutput();
+        ConnectionWriter writer = new ConnectionWriter(output, 64, 24, 5000, Logger.NONE,
+                new TraceBuffer(), 1, () -> { });
+        StringBuffer sent = new StringBuffer();
+        writer.setSentListener((timestamps, count, bytes) -> {
+            for (int i = 0; i < count; i++) {
+                sent.append(timestamps[i]).append(',');
+            }
+            sent.append(bytes).append(';');
+        });
+        writer.start("test-writer");
+
+        byte[] batch = "hr".getBytes(StandardCharsets.US_ASCII);
+        writer.offerTelemetry(batch, 0, 2, new long[]{10, 11}, 2);
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        assertEquals("", sent.toString()); // Not flushed yet
+        for (int i = 0; i < 4; i++) {
+            writer.offerTelemetry(batch, 0, 2, new long[]{20 + i}, 1); // 4 + 2 bytes each
+        }
+        writer.offerTelemetry(batch, 0, 2); // No sample timestamps; four messages fit
+        output.release.countDown();
+
+        waitFor(() -> sent.toString().endsWith("6;"));
+        assertEquals("10,11,2;21,22,23,6;", sent.toString()); // 20 was dropped, never sent
+        writer.close();
+    }
+
+    @Test
+    public void awaitedTelemetry_reportsFlushOrEviction() throws Exception {
+        GatedOutput output = new GatedOutput();
+        ConnectionWriter writer = new ConnectionWriter(output, 64, 16, 5000, Logger.NONE,
+                new TraceBuffer(), 1, () -> { });
+        writer.start("test-writer");
+
+        send(writer.telemetryStream(), "xx");
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        AtomicBoolean flushed = new AtomicBoolean(true);
+        Thread backlog = new Thread(() -> {
+            try {
+                flushed.set(writer.offerTelemetryAndAwait("bl".getBytes(StandardCharsets.US_ASCII), 0, 2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        backlog.start();
+        waitFor(() -> backlog.getState() == Thread.State.WAITING);
+        send(writer.telemetryStream(), "m0");
+        send(writer.telemetryStream(), "m1"); // Evicts the awaited message
+        backlog.join(2000);
+        assertFalse(flushed.get());
+        output.release.countDown();
+
+        waitFor(() -> output.text().length() == 6);
+        assertTrue(writer.offerTelemetryAndAwait("ok".getBytes(StandardCharsets.US_ASCII), 0, 2));
+        assertEquals("xxm0m1ok", output.text());
+        assertFalse(writer.offerTelemetryAndAwait(new byte[16], 0, 16)); // Larger than the queue
+        writer.close();
+    }
+
+    @Test
+    public void fullControlQueue_failsTheWrite() throws Exception {
+        GatedOutput output = new GatedOutput();
+        ConnectionWriter writer = new ConnectionWriter(output, 16, 16, 5000, Logger.NONE,
+                new TraceBuffer(), 1, () -> { });
+        writer.start("test-writer");
+
+        send(writer.controlStream(), "first");
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        send(writer.controlStream(), "0123456789");
+        try {
+            send(writer.controlStream(), "0123456789");
+            fail("Expected the full control queue to reject the message");
+        } catch (IOException expected) {
+            // Caller logs it, the connection stays up
+        }
+        output.release.countDown();
+        writer.close();
+    }
+
+    @Test
+    public void blockedWrite_isDetectedAfterTimeout() throws Exception {
+        GatedOutput output = new GatedOutput();
+        AtomicBoolean failed = new AtomicBoolean();
+        ConnectionWriter writer = new ConnectionWriter(output, 64, 64, 50, Logger.NONE,
+                new TraceBuffer(), 1, () -> failed.set(true));
+        writer.start("test-writer");
+
+        send(writer.telemetryStream(), "stuck");
+        assertTrue(output.entered.await(2, TimeUnit.SECONDS));
+        assertFalse(writer.checkWriteTimeout());
+
+        Thread.sleep(100);
+        assertTrue(writer.checkWriteTimeout());
+        assertTrue(failed.get());
+        assertFalse(writer.offerTelemetry(new byte[1], 0, 1)); // Failed connection accepts nothing
+        output.release.countDown();
+    }
+
+    private static void send(OutputStream stream, String message) throws IOException {
+        stream.write(message.getBytes(StandardCharsets.US_ASCII));
+        stream.flush();
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FrameReader}: frames must survive arbitrary read boundaries.
+ */
+public class FrameReaderTest {
+
+    /** Fake socket stream that returns at most {@code chunk} bytes per read(). */
+    private static InputStream chunked(String data, int chunk) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    /**
+     * Fake socket stream that delivers each chunk as one read, {@code gapMillis} after the previous
+     * one; available() reports nothing until the chunk has "arrived".
+     */
+    private static InputStream delayed(int gapMillis, String... chunks) {
+        return new InputStream() {
+            private int next;
+            private long readyAtNanos = System.nanoTime();
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (next == chunks.length) {
+                    return -1;
+                }
+                long wait;
+                while ((wait = readyAtNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                byte[] chunk = chunks[next++].getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(chunk, 0, b, off, chunk.length);
+                readyAtNanos = System.nanoTime() + gapMillis * 1_000_000L;
+                return chunk.length;
+            }
+
+            @Override
+            public int available() {
+                return next < chunks.length && System.nanoTime() >= readyAtNanos ? chunks[next].length() : 0;
+            }
+        };
+    }
+
+    private static class Collector implements FrameReader.FrameHandler {
+        final List<String> frames = new ArrayList<>();
+        int dropped;
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            frames.add(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void onFrameDropped(int length) {
+            dropped++;
+        }
+    }
+
+    /** Collector that recognizes whole legacy commands, like the client session. */
+    private static class ParsingCollector extends Collector {
+        private final CommandParser parser = new CommandParser();
+
+        @Override
+        public boolean isCompleteFrame(byte[] buffer, int offset, int length) {
+            return parser.isComplete(buffer, offset, length);
+        }
+    }
+
+    @Test
+    public void pipelinedCommands_areSplitAcrossReadBoundaries() throws IOException {
+        StringBuilder data = new StringBuilder("Monitoring:HeartRate\n");
+        for (int i = 0; i < 50; i++) {
+            data.append("Vibrate:50,3,1000,").append(i).append('\n');
+        }
+
+        for (int chunk : new int[]{1, 3, 7, 64, 1024}) {
+            Collector collector = new Collector();
+            new FrameReader(chunked(data.toString(), chunk), 64, 32, collector).run();
+
+            assertEquals(51, collector.frames.size());
+            assertEquals("Monitoring:HeartRate", collector.frames.get(0));
+            assertEquals("Vibrate:50,3,1000,49", collector.frames.get(50));
+            assertEquals(0, collector.dropped);
+        }
+    }
+
+    @Test
+    public void oversizedFrame_isDroppedUntilNextDelimiter() throws IOException {
+        Collector collector = new Collector();
+        String data = "Vibrate:" + "1".repeat(100) + "\nVibrate:1,2,3,4\n";
+        new FrameReader(chunked(data, 5), 64, 32, collector).run();
+
+        assertEquals(1, collector.dropped);
+        assertEquals(1, collector.frames.size());
+        assertEquals("Vibrate:1,2,3,4", collector.frames.get(0));
+    }
+
+    @Test
+    public void legacyClientWithoutDelimiter_getsOneFramePerWrite() throws IOException {
+        Collector collector = new Collector();
+        new FrameReader(chunked("Vibrate:50,3,1000,200", 1024), collector).run();
+
+        assertEquals(1, collector.frames.size());
+        assertEquals("Vibrate:50,3,1000,200", collector.frames.get(0));
+    }
+
+    @Test
+    public void completeLegacyCommand_isDispatchedWithoutTheIdleWait() throws IOException {
+        Collector collector = new ParsingCollector();
+        // available() is only asked while waiting for the stream to go idle
+        InputStream input = new ByteArrayInputStream("Monitoring:HeartRate".getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int available() {
+                throw new AssertionError("Waited for an idle stream");
+            }
+        };
+        assertTrue(new FrameReader(input, collector).readOnce());
+
+        assertEquals(1, collector.frames.size());
+        assertEquals("Monitoring:HeartRate", collector.frames.get(0));
+    }
+
+    @Test
+    public void firstCommandSplitAfterADigit_waitsForTheRest() throws IOException {
+        Collector collector = new ParsingCollector();
+        new FrameReader(delayed(5, "Vibrate:50,3,1000,2", "00\nVibrate:1,2,3,4\n"), collector).run();
+
+        assertEquals(2, collector.frames.size());
+        assertEquals("Vibrate:50,3,1000,200", collector.frames.get(0));
+    }
+
+    @Test
+    public void legacyClient_afterItsFirstCommand_isNotDelayed() throws IOException {
+        Collector collector = new ParsingCollector();
+        String[] writes = {"Vibrate:50,3,1000,200", "Vibrate:1,2,3,4"};
+        // One write per read; available() may only be asked while the first command waits
+        InputStream input = new InputStream() {
+            private int next;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                byte[] write = writes[next++].getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(write, 0, b, off, write.length);
+                return write.length;
+            }
+
+            @Override
+            public int available() {
+                assertEquals("Waited for an idle stream", 1, next);
+                return 0;
+            }
+        };
+        FrameReader reader = new FrameReader(input, collector);
+        assertTrue(reader.readOnce()); // Ends in a digit: waits for the stream to go idle
+        assertTrue(reader.readOnce());
+
+        assertEquals(List.of("Vibrate:50,3,1000,200", "Vibrate:1,2,3,4"), collector.frames);
+    }
+
+    @Test
+    public void firstCommandSplitByTheRadio_isStillOneFrame() throws IOException {
+        Collector collector = new Collector();
+        new FrameReader(delayed(5, "MonitoringHea", "rtRate\nVibrate:1,2,3,4\n"), collector).run();
+
+        assertEquals(2, collector.frames.size());
+        assertEquals("MonitoringHeartRate".length(), collector.frames.get(0).length());
+    }
+
+    @Test
+    public void maximumLengthBinaryFrame_isDelivered() throws IOException {
+        byte[] data = new byte[BinaryProtocol.MAX_FRAME_LENGTH];
+        int end = BinaryProtocol.beginFrame(data, 0, BinaryProtocol.OP_STATS);
+        int length = BinaryProtocol.endFrame(data, 0, end + BinaryProtocol.MAX_PAYLOAD_LENGTH);
+        Collector collector = new Collector();
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(data, 0, length), collector);
+        reader.switchToBinary();
+        reader.run();
+
+        assertEquals(BinaryProtocol.MAX_FRAME_LENGTH, length);
+        assertEquals(0, collector.dropped);
+        assertEquals(1, collector.frames.size());
+        assertEquals(length, collector.frames.get(0).length());
+    }
+}
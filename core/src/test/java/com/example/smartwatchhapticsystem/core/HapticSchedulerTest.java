@@ -0,0 +1,151 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HapticScheduler} and {@link HapticCommandQueue}.
+ */
+public class HapticSchedulerTest {
+
+    @Test
+    public void queue_rejectsWhenFull() {
+        HapticCommandQueue queue = new HapticCommandQueue(2);
+        assertTrue(queue.offer(0, 1, 1, 1, 1));
+        assertTrue(queue.offer(0, 2, 1, 1, 1));
+        assertFalse(queue.offer(0, 3, 1, 1, 1));
+
+        assertTrue(queue.poll());
+        assertEquals(1, queue.getIntensity());
+        assertTrue(queue.offer(0, 3, 1, 1, 1));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void alertPlaysFirst_andAzimuthBurstCoalesces() throws InterruptedException {
+        List<int[]> played = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        HapticScheduler scheduler = new HapticScheduler((kind, intensity, pulses, duration, interval, receivedNanos) -> {
+            synchronized (played) {
+                played.add(new int[]{kind, intensity});
+            }
+            done.countDown();
+        }, 8);
+
+        // Queued before the scheduler thread runs, so it sees the whole burst at once
+        scheduler.submit(HapticScheduler.KIND_AZIMUTH, 10, 1, 10, 0);
+        scheduler.submit(HapticScheduler.KIND_AZIMUTH, 20, 1, 10, 0);
+        scheduler.submit(HapticScheduler.KIND_HEART_RATE, 200, 1, 20, 0);
+        scheduler.submit(HapticScheduler.KIND_AZIMUTH, 30, 1, 10, 0);
+        scheduler.start();
+
+        try {
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+            Thread.sleep(50); // Nothing else may play
+        } finally {
+            scheduler.stop();
+        }
+
+        synchronized (played) {
+            assertEquals(2, played.size());
+            assertArrayEquals(new int[]{HapticScheduler.KIND_HEART_RATE, 200}, played.get(0));
+            assertArrayEquals(new int[]{HapticScheduler.KIND_AZIMUTH, 30}, played.get(1));
+        }
+        assertEquals(2, scheduler.getCoalesced());
+        assertEquals(0, scheduler.getDropped());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void deferredCue_waitsForThePlayingOne_andOnlyTheNewestPlays() throws InterruptedException {
+        List<int[]> played = new ArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        HapticScheduler scheduler = new HapticScheduler((kind, intensity, pulses, duration, interval, receivedNanos) -> {
+            synchronized (played) {
+                played.add(new int[]{kind, intensity});
+            }
+            first.countDown();
+            second.countDown();
+        }, 8);
+        scheduler.start();
+
+        try {
+            scheduler.submit(HapticScheduler.KIND_AZIMUTH, 10, 1, 300, 0);
+            assertTrue(first.await(2, TimeUnit.SECONDS));
+            scheduler.submit(HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_DEFERRED, 20, 1, 10, 0);
+            scheduler.submit(HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_DEFERRED, 30, 1, 10, 0);
+
+            assertFalse(second.await(100, TimeUnit.MILLISECONDS)); // The first cue is not interrupted
+            assertTrue(second.await(2, TimeUnit.SECONDS));
+        } finally {
+            scheduler.stop();
+        }
+
+        synchronized (played) {
+            assertEquals(2, played.size());
+            assertArrayEquals(new int[]{HapticScheduler.KIND_AZIMUTH, 30}, played.get(1));
+        }
+        assertEquals(1, scheduler.getCoalesced());
+    }
+
+    @Test
+    public void timedPattern_playsAtItsTarget_notBefore() throws InterruptedException {
+        long[] playedAt = new long[2];
+        int[] kinds = new int[2];
+        CountDownLatch done = new CountDownLatch(2);
+        HapticScheduler scheduler = new HapticScheduler((kind, intensity, pulses, duration, interval, receivedNanos) -> {
+            int i = (int) (2 - done.getCount());
+            playedAt[i] = System.nanoTime();
+            kinds[i] = kind;
+            done.countDown();
+        }, 8);
+        scheduler.start();
+
+        long target = System.nanoTime() + 50_000_000L;
+        try {
+            // Submitted out of order
+            scheduler.submit(HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_TIMED, 20, 1, 10, 0, target + 30_000_000L);
+            scheduler.submit(HapticScheduler.KIND_HEART_RATE | HapticScheduler.FLAG_TIMED, 10, 1, 10, 0, target);
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+        } finally {
+            scheduler.stop();
+        }
+
+        assertEquals(HapticScheduler.KIND_HEART_RATE | HapticScheduler.FLAG_TIMED, kinds[0]);
+        assertTrue(playedAt[0] >= target);
+        assertTrue(playedAt[1] >= target + 30_000_000L);
+    }
+
+    @Test
+    public void timedPatterns_overCapacity_areRefusedBySubmit() {
+        HapticScheduler scheduler = new HapticScheduler((kind, intensity, pulses, duration, interval, receivedNanos) -> {
+        }, 32);
+        long target = System.nanoTime() + 60_000_000_000L;
+        for (int i = 0; i < HapticScheduler.DEFAULT_TIMED_CAPACITY; i++) {
+            assertTrue(scheduler.submit(HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_TIMED, 20, 1, 10, 0, target));
+        }
+
+        // The caller learns of the drop, instead of the scheduler thread discarding it later
+        assertFalse(scheduler.submit(HapticScheduler.KIND_AZIMUTH | HapticScheduler.FLAG_TIMED, 20, 1, 10, 0, target));
+        assertEquals(1, scheduler.getDropped());
+        assertTrue(scheduler.submit(HapticScheduler.KIND_HEART_RATE, 10, 1, 10, 0));
+    }
+
+    @Test
+    public void fullQueue_countsDrops() {
+        HapticScheduler scheduler = new HapticScheduler((kind, intensity, pulses, duration, interval, receivedNanos) -> { }, 2);
+        assertTrue(scheduler.submit(HapticScheduler.KIND_AZIMUTH, 1, 1, 1, 0));
+        assertTrue(scheduler.submit(HapticScheduler.KIND_AZIMUTH, 2, 1, 1, 0));
+        assertFalse(scheduler.submit(HapticScheduler.KIND_AZIMUTH, 3, 1, 1, 0));
+
+        assertEquals(1, scheduler.getDropped());
+        assertEquals(2, scheduler.getQueueDepth());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateDeadband}.
+ */
+public class HeartRateDeadbandTest {
+
+    @Test
+    public void samplesInsideTheBand_areSuppressedUntilKeepAlive() {
+        HeartRateDeadband deadband = new HeartRateDeadband();
+        deadband.configure(1, 5000);
+
+        assertTrue(deadband.shouldSend(70, 0));      // First sample is the reference
+        assertFalse(deadband.shouldSend(71, 1000));
+        assertFalse(deadband.shouldSend(69, 2000));
+        assertTrue(deadband.shouldSend(72, 3000));   // Outside ±1 of 70
+        assertFalse(deadband.shouldSend(72, 7000));
+        assertTrue(deadband.shouldSend(72, 8000));   // Keep-alive: 5 s since the last one sent
+
+        assertEquals(3, deadband.getSent());
+        assertEquals(3, deadband.getSuppressed());
+    }
+
+    @Test
+    public void slowDrift_isReportedOnceItLeavesTheBand() {
+        HeartRateDeadband deadband = new HeartRateDeadband();
+        deadband.configure(2, 60_000);
+
+        assertTrue(deadband.shouldSend(60, 0));
+        assertFalse(deadband.shouldSend(61, 1000));
+        assertFalse(deadband.shouldSend(62, 2000));
+        assertTrue(deadband.shouldSend(63, 3000));   // 3 bpm from the last value sent
+    }
+
+    @Test
+    public void zeroBand_sendsEverySample() {
+        HeartRateDeadband deadband = new HeartRateDeadband();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(deadband.shouldSend(70, i));
+        }
+        assertEquals(0, deadband.getSuppressed());
+    }
+}
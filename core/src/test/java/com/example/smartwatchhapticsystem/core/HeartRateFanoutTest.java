@@ -0,0 +1,45 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateFanout}.
+ */
+public class HeartRateFanoutTest {
+
+    @Test
+    public void firstAndLastSubscriber_areReported() {
+        HeartRateFanout fanout = new HeartRateFanout();
+        OnHeartRateUpdateListener phone = (heartRate, timestampMillis) -> { };
+        OnHeartRateUpdateListener logger = (heartRate, timestampMillis) -> { };
+
+        assertTrue(fanout.add(phone));      // Start the sensor
+        assertFalse(fanout.add(logger));    // Share it
+        assertFalse(fanout.add(logger));    // Already subscribed
+        assertEquals(2, fanout.getSubscriberCount());
+
+        assertFalse(fanout.remove(phone));  // The logger is still listening
+        assertFalse(fanout.remove(phone));  // Not subscribed any more
+        assertTrue(fanout.remove(logger));  // Stop the sensor
+        assertEquals(0, fanout.getSubscriberCount());
+    }
+
+    @Test
+    public void samples_reachEverySubscriber() {
+        HeartRateFanout fanout = new HeartRateFanout();
+        List<String> received = new ArrayList<>();
+        fanout.add((heartRate, timestampMillis) -> received.add("phone:" + heartRate));
+        fanout.add((heartRate, timestampMillis) -> received.add("logger:" + heartRate));
+
+        fanout.onUpdate(72, 1000L);
+
+        assertEquals(2, received.size());
+        assertTrue(received.contains("phone:72"));
+        assertTrue(received.contains("logger:72"));
+    }
+}
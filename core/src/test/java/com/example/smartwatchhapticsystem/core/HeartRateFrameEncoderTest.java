@@ -0,0 +1,60 @@
+package com.example.smartwatchhapticsystem.core;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link HeartRateFrameEncoder}, including a small allocation
+ * microbenchmark of the per-sample path.
+ */
+public class HeartRateFrameEncoderTest {
+
+    private static String frame(HeartRateFrameEncoder encoder) {
+        return new String(encoder.getBuffer(), encoder.getOffset(), encoder.getLength(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void encode_matchesPreviousTextFormat() {
+        HeartRateFrameEncoder encoder = new HeartRateFrameEncoder("7", "12", "3");
+
+        encoder.encode(72);
+        assertEquals("MonitoringType:HeartRate,Value:72,UserID:7,SmartWatchID:12,AndroidID:3\n", frame(encoder));
+
+        encoder.encode(105);
+        assertEquals("MonitoringType:HeartRate,Value:105,UserID:7,SmartWatchID:12,AndroidID:3\n", frame(encoder));
+
+        encoder.encode(0);
+        assertEquals("MonitoringType:HeartRate,Value:0,UserID:7,SmartWatchID:12,AndroidID:3\n", frame(encoder));
+    }
+
+    @Test
+    public void encode_doesNotAllocatePerSample() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        ThreadMXBean threads = (ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        HeartRateFrameEncoder encoder = new HeartRateFrameEncoder("UnknownUser", "UnknownWatch", "UnknownAndroid");
+        int checksum = 0;
+        for (int i = 0; i < 200_000; i++) { // Warm up so the JIT has compiled encode()
+            checksum += encoder.encode(40 + i % 160);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000_000; i++) {
+            checksum += encoder.encode(40 + i % 160);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0);
+        // A String-based frame costs well over 100 bytes per sample; allow only measurement noise
+        assertTrue("allocated " + allocated + " bytes for 1M samples", allocated < 64 * 1024);
+    }
+}
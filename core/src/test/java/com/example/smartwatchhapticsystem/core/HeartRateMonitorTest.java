@@ -0,0 +1,108 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateMonitor} against a fake sensor source.
+ */
+public class HeartRateMonitorTest {
+
+    /** Fake sensor and clock: records registrations and lets the test push samples. */
+    private static class FakeSource implements HeartRateSource, Clock {
+        Callback callback;
+        int samplingPeriodUs = -1;
+        int reportLatencyUs = -1;
+        int registrations;
+        long nowNanos = 10_000_000_000L;
+        long nowMillis = 1_700_000_000_000L;
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public boolean supportsBatching() {
+            return true;
+        }
+
+        @Override
+        public boolean register(Callback callback, int samplingPeriodUs, int maxReportLatencyUs) {
+            this.callback = callback;
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.reportLatencyUs = maxReportLatencyUs;
+            registrations++;
+            return true;
+        }
+
+        @Override
+        public void unregister() {
+            callback = null;
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return nowNanos;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMillis;
+        }
+    }
+
+    @Test
+    public void start_usesProfileOfMonitoringType() {
+        FakeSource source = new FakeSource();
+        HeartRateMonitor monitor = new HeartRateMonitor(source, source);
+        monitor.setBatchingProfile(CommandParser.MODE_HEART_RATE, 1_000_000, 10_000_000);
+
+        assertEquals(HeartRateMonitor.RESULT_STARTED,
+                monitor.start(CommandParser.MODE_HEART_RATE, (hr, ts) -> { }));
+        assertEquals(1_000_000, source.samplingPeriodUs);
+        assertEquals(10_000_000, source.reportLatencyUs);
+
+        assertEquals(HeartRateMonitor.RESULT_ALREADY_ACTIVE,
+                monitor.start(CommandParser.MODE_HEART_RATE, (hr, ts) -> { }));
+        assertEquals(1, source.registrations);
+    }
+
+    @Test
+    public void profileChange_reRegistersActiveSensor() {
+        FakeSource source = new FakeSource();
+        HeartRateMonitor monitor = new HeartRateMonitor(source, source);
+        monitor.start(CommandParser.MODE_HEART_RATE, (hr, ts) -> { });
+        assertEquals(0, source.reportLatencyUs);
+
+        monitor.setBatchingProfile(CommandParser.MODE_HEART_RATE, HeartRateMonitor.DEFAULT_SAMPLING_PERIOD_US, 5_000_000);
+        assertEquals(2, source.registrations);
+        assertEquals(5_000_000, source.reportLatencyUs);
+        assertTrue(monitor.isMonitoring());
+    }
+
+    @Test
+    public void batchedBurst_keepsEachSampleTimestamp() {
+        FakeSource source = new FakeSource();
+        HeartRateMonitor monitor = new HeartRateMonitor(source, source);
+        List<long[]> samples = new ArrayList<>();
+        monitor.start(CommandParser.MODE_HEART_RATE, (hr, ts) -> samples.add(new long[]{hr, ts}));
+
+        // A FIFO flush delivers three samples measured 3s, 2s and 1s ago
+        source.callback.onHeartRate(71.6f, source.nowNanos - 3_000_000_000L);
+        source.callback.onHeartRate(72.2f, source.nowNanos - 2_000_000_000L);
+        source.callback.onHeartRate(73.0f, source.nowNanos - 1_000_000_000L);
+
+        assertEquals(3, samples.size());
+        assertArrayEquals(new long[]{72, source.nowMillis - 3000}, samples.get(0));
+        assertArrayEquals(new long[]{73, source.nowMillis - 1000}, samples.get(2));
+
+        assertTrue(monitor.stop());
+        assertNull(source.callback);
+        assertFalse(monitor.stop());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateProcessor} filtering, zones and local alerts.
+ */
+public class HeartRateProcessorTest {
+
+    private final BlockingQueue<int[]> played = new ArrayBlockingQueue<>(16);
+    private final List<Integer> published = new ArrayList<>();
+    private volatile int accuracy = HeartRateProcessor.ACCURACY_HIGH;
+    private HapticFeedback hapticFeedback;
+    private HeartRateProcessor processor;
+    private long time = 1_000_000L;
+
+    @Before
+    public void setUp() {
+        hapticFeedback = new HapticFeedback(new HapticSink() {
+            @Override
+            public boolean hasVibrator() {
+                return true;
+            }
+
+            @Override
+            public void play(int intensity, int pulses, int duration, int interval) {
+                played.add(new int[]{intensity, pulses, duration, interval});
+            }
+
+            @Override
+            public void cancel() {
+            }
+        }, Logger.NONE);
+        // Alpha 1: the smoothed value is the median, which keeps the expected values exact
+        processor = new HeartRateProcessor(hapticFeedback, () -> accuracy, Logger.NONE, new TraceBuffer(), 3, 1.0);
+        processor.subscribe((heartRate, timestampMillis) -> published.add(heartRate));
+        assertTrue(processor.setZones(100, 140, 170));
+    }
+
+    @After
+    public void tearDown() {
+        hapticFeedback.release();
+    }
+
+    @Test
+    public void spikeIsRejected_andOnlyZoneChangesArePublished() {
+        feed(70, 72, 71, 150, 73, 72);
+
+        assertEquals(0, processor.getZone());
+        assertEquals(72, processor.getSmoothedHeartRate());
+        assertEquals(1, processor.getArtifacts());
+        assertEquals(1, published.size()); // Entering zone 0 only
+    }
+
+    @Test
+    public void zoneHysteresis_preventsFlapping() {
+        feed(95, 100, 101, 101);
+        assertEquals(1, processor.getZone());
+
+        // Just below the boundary stays in zone 1, clearly below leaves it
+        feed(99, 98, 98);
+        assertEquals(1, processor.getZone());
+        feed(90, 90);
+        assertEquals(0, processor.getZone());
+        assertEquals(3, processor.getZoneChanges());
+    }
+
+    @Test
+    public void enteringAlertZone_vibratesLocally() throws Exception {
+        assertTrue(processor.setAlert(2, 200, 3, 150, 100));
+        feed(120, 130, 142, 145, 146);
+
+        int[] pattern = played.poll(2, TimeUnit.SECONDS);
+        assertArrayEquals(new int[]{200, 3, 150, 100}, pattern);
+        assertEquals(1, processor.getAlerts());
+        assertNull(played.poll(100, TimeUnit.MILLISECONDS)); // Not repeated within the repeat interval
+    }
+
+    @Test
+    public void lostContact_resetsToUnknown() {
+        feed(80, 80);
+        accuracy = HeartRateProcessor.ACCURACY_NO_CONTACT;
+        feed(80);
+
+        assertEquals(HeartRateProcessor.ZONE_UNKNOWN, processor.getZone());
+        assertEquals(0, processor.getSmoothedHeartRate());
+        assertEquals(Integer.valueOf(0), published.get(published.size() - 1));
+        assertEquals(1, processor.getSamplesRejected());
+    }
+
+    private void feed(int... heartRates) {
+        for (int heartRate : heartRates) {
+            time += 1000;
+            processor.onUpdate(heartRate, time);
+        }
+    }
+}
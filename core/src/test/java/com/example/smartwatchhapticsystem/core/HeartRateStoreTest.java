@@ -0,0 +1,107 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateStore}.
+ */
+public class HeartRateStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final int[] rates = new int[1000];
+    private final long[] times = new long[1000];
+
+    @Test
+    public void samples_areReadBackInOrderAcrossBlocks() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile(), 64, 8, 4)) {
+            for (int i = 0; i < 50; i++) {
+                store.append(60 + i % 7, 1_700_000_000_000L + 1000L * i);
+            }
+            assertEquals(50, store.getBacklog());
+
+            assertEquals(20, store.peek(rates, times, 20));
+            assertEquals(20, store.peek(rates, times, 20)); // Not consumed yet
+            store.consume(20);
+            assertEquals(30, store.getBacklog());
+
+            assertEquals(30, store.peek(rates, times, rates.length));
+            for (int i = 0; i < 30; i++) {
+                assertEquals(60 + (i + 20) % 7, rates[i]);
+                assertEquals(1_700_000_000_000L + 1000L * (i + 20), times[i]);
+            }
+        }
+    }
+
+    @Test
+    public void reopen_resumesBacklogAndAppends() throws Exception {
+        File path = folder.newFile();
+        try (HeartRateStore store = new HeartRateStore(path, 64, 8, 4)) {
+            for (int i = 0; i < 10; i++) {
+                store.append(70 + i, 1000L * i);
+            }
+            store.consume(3);
+        }
+
+        try (HeartRateStore store = new HeartRateStore(path, 64, 8, 4)) {
+            assertEquals(7, store.getBacklog());
+            store.append(99, 99_000L);
+            assertEquals(8, store.peek(rates, times, rates.length));
+            assertEquals(73, rates[0]);
+            assertEquals(3000L, times[0]);
+            assertEquals(99, rates[7]);
+            assertEquals(99_000L, times[7]);
+        }
+    }
+
+    @Test
+    public void fullRing_overwritesOldestBlock() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile(), 64, 4, 16)) {
+            for (int i = 0; i < 500; i++) {
+                store.append(80, 1000L * i);
+            }
+            long backlog = store.getBacklog();
+            assertTrue(backlog > 0 && backlog < 500);
+            assertEquals(500, backlog + store.getSamplesOverwritten());
+
+            int count = store.peek(rates, times, rates.length);
+            assertEquals(backlog, count);
+            assertEquals(1000L * 499, times[count - 1]);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void append_doesNotWaitForTheStoreLock() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile(), 64, 8, 4)) {
+            Thread sensor = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    store.append(60 + i, 1000L * i);
+                }
+            });
+            synchronized (store) { // Held as by a peek, consume or sync in progress
+                sensor.start();
+                sensor.join();
+            }
+            assertEquals(10, store.getBacklog());
+            assertEquals(10, store.peek(rates, times, rates.length));
+            assertEquals(69, rates[9]);
+        }
+    }
+
+    @Test
+    public void drain_isClaimedByOneSession() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile())) {
+            assertTrue(store.tryBeginDrain());
+            assertFalse(store.tryBeginDrain());
+            store.endDrain();
+            assertTrue(store.tryBeginDrain());
+        }
+    }
+}
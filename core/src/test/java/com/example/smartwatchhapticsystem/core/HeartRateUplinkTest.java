@@ -0,0 +1,132 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HeartRateUplink} batching.
+ */
+public class HeartRateUplinkTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static class RecordingSink implements HeartRateUplink.Sink {
+        final List<int[]> batches = new ArrayList<>();
+        final CountDownLatch latch;
+
+        RecordingSink(int expectedSamples) {
+            latch = new CountDownLatch(expectedSamples);
+        }
+
+        @Override
+        public synchronized void send(int[] heartRates, long[] timestamps, int count) {
+            int[] batch = new int[count];
+            System.arraycopy(heartRates, 0, batch, 0, count);
+            batches.add(batch);
+            for (int i = 0; i < count; i++) {
+                latch.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void samples_areSentOncePerBatch() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(6);
+        HeartRateUplink uplink = new HeartRateUplink(sink);
+        uplink.configure(60_000, 3, HeartRateUplink.MODE_ALL);
+        uplink.start();
+
+        for (int i = 0; i < 6; i++) {
+            uplink.offer(70 + i, 1000L * i);
+        }
+
+        assertTrue(sink.latch.await(5, TimeUnit.SECONDS));
+        uplink.close();
+        assertEquals(0, uplink.getSamplesDropped());
+        // Never flushed before the size threshold; a backlog may go out in one larger batch
+        assertTrue(sink.batches.size() <= 2);
+        for (int[] batch : sink.batches) {
+            assertTrue(batch.length >= 3);
+        }
+        assertEquals(70, sink.batches.get(0)[0]);
+    }
+
+    @Test
+    public void window_flushesPartialBatch() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(2);
+        HeartRateUplink uplink = new HeartRateUplink(sink);
+        uplink.configure(50, 10, HeartRateUplink.MODE_ALL);
+        uplink.start();
+
+        uplink.offer(80, 0L);
+        uplink.offer(81, 1000L);
+
+        assertTrue(sink.latch.await(5, TimeUnit.SECONDS));
+        uplink.close();
+        assertArrayEquals(new int[]{80, 81}, sink.batches.get(0));
+    }
+
+    @Test
+    public void latestOnly_dropsStaleSamples() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(1);
+        HeartRateUplink uplink = new HeartRateUplink(sink);
+        uplink.configure(50, 10, HeartRateUplink.MODE_LATEST_ONLY);
+
+        // Buffer before the uplink thread runs, as if the link were busy
+        uplink.offer(60, 0L);
+        uplink.offer(61, 1000L);
+        uplink.offer(62, 2000L);
+        uplink.start();
+
+        assertTrue(sink.latch.await(5, TimeUnit.SECONDS));
+        uplink.close();
+        assertArrayEquals(new int[]{62}, sink.batches.get(0));
+        assertEquals(2, uplink.getSamplesDropped());
+    }
+
+    @Test
+    public void backlog_isSentBeforeLiveSamples() throws Exception {
+        try (HeartRateStore store = new HeartRateStore(folder.newFile())) {
+            for (int i = 0; i < 5; i++) {
+                store.append(50 + i, 1000L * i);
+            }
+            assertTrue(store.tryBeginDrain());
+
+            RecordingSink sink = new RecordingSink(7);
+            HeartRateUplink uplink = new HeartRateUplink(sink);
+            uplink.drainBacklog(store, 0);
+            uplink.offer(55, 5000L); // Arrives while catching up: queued behind the backlog
+            uplink.start();
+
+            assertTrue(waitForBacklogSent(uplink, 6));
+            uplink.offer(56, 6000L);
+            assertTrue(sink.latch.await(5, TimeUnit.SECONDS));
+            uplink.close();
+
+            assertArrayEquals(new int[]{50, 51, 52, 53, 54, 55}, sink.batches.get(0));
+            assertArrayEquals(new int[]{56}, sink.batches.get(1));
+            assertEquals(0, store.getBacklog());
+            assertTrue(store.tryBeginDrain()); // Released once empty
+        }
+    }
+
+    private static boolean waitForBacklogSent(HeartRateUplink uplink, long samples) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (uplink.getBacklogSent() < samples) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the binary {@link HotPathMetrics} snapshot.
+ */
+public class HotPathMetricsTest {
+
+    private static long readVarLong(byte[] buffer, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    @Test
+    public void snapshotWithEveryCounterAtMaximum_splitsIntoValidFrames() {
+        long[] fields = new long[HotPathMetrics.SNAPSHOT_FIELDS];
+        Arrays.fill(fields, Long.MAX_VALUE);
+        byte[] buffer = new byte[HotPathMetrics.maxBinaryLength()];
+
+        int length = HotPathMetrics.encodeSnapshot(fields, buffer, 0);
+
+        long[] decoded = new long[fields.length];
+        int frames = 0;
+        int offset = 0;
+        while (offset < length) {
+            assertEquals(BinaryProtocol.OP_STATS_REPLY, buffer[offset] & 0xFF);
+            int frameLength = BinaryProtocol.frameLength(buffer[offset + 1]);
+            int end = offset + frameLength - BinaryProtocol.TRAILER_LENGTH;
+            assertEquals(BinaryProtocol.crc8(buffer, offset, end - offset), buffer[end] & 0xFF);
+
+            int[] position = {offset + BinaryProtocol.HEADER_LENGTH};
+            int first = (int) readVarLong(buffer, position);
+            assertEquals(fields.length, readVarLong(buffer, position));
+            for (int i = first; position[0] < end; i++) {
+                decoded[i] = readVarLong(buffer, position);
+            }
+            offset += frameLength;
+            frames++;
+        }
+
+        assertEquals(length, offset);
+        assertTrue(frames > 1);
+        assertArrayEquals(fields, decoded);
+    }
+
+    @Test
+    public void encodeBinary_fitsMaxBinaryLength() {
+        byte[] buffer = new byte[HotPathMetrics.maxBinaryLength()];
+
+        int length = new HotPathMetrics(Clock.SYSTEM).encodeBinary(buffer, 0);
+
+        assertTrue(length > 0);
+        assertEquals(BinaryProtocol.OP_STATS_REPLY, buffer[0] & 0xFF);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void endFrame_rejectsPayloadOverMaximum() {
+        byte[] buffer = new byte[BinaryProtocol.MAX_FRAME_LENGTH + 1];
+        int end = BinaryProtocol.beginFrame(buffer, 0, BinaryProtocol.OP_STATS_REPLY);
+
+        BinaryProtocol.endFrame(buffer, 0, end + BinaryProtocol.MAX_PAYLOAD_LENGTH + 1);
+    }
+}
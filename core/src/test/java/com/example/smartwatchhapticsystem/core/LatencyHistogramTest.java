@@ -0,0 +1,49 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinPrecision() {
+        for (long value = 0; value < 1_000_000; value = value < 64 ? value + 1 : value * 11 / 10) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(value + " > " + upper, value <= upper);
+            assertTrue(value + " vs " + upper, upper - value <= Math.max(0, value / 16));
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+            }
+        }
+        int last = LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE_MICROS);
+        assertEquals(LatencyHistogram.MAX_VALUE_MICROS, LatencyHistogram.bucketUpperBound(last));
+    }
+
+    @Test
+    public void percentiles_followRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L); // 100 µs … 100 ms
+        }
+        histogram.record(-5); // Clock skew counts as zero
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        assertTrue("p50=" + p50, p50 >= 49_900 && p50 <= 49_900 * 17 / 16);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p99=" + p99, p99 >= 98_900 && p99 <= 100_000);
+        assertEquals(100_000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
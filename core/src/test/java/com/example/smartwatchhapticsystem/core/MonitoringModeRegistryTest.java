@@ -0,0 +1,84 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MonitoringModeRegistry} and {@link MonitoringModeHandler}.
+ */
+public class MonitoringModeRegistryTest {
+
+    /** Accepts patterns with a positive intensity and counts what it played. */
+    private static final class CountingHandler extends MonitoringModeHandler {
+        int played;
+
+        CountingHandler(int mode, String name) {
+            super(mode, name);
+        }
+
+        @Override
+        protected boolean vibrate(int intensity, int pulses, int duration, int interval, long receivedNanos) {
+            if (intensity <= 0) {
+                return false;
+            }
+            played++;
+            return true;
+        }
+    }
+
+    @Test
+    public void resolve_byModeThenByName() {
+        MonitoringModeRegistry registry = new MonitoringModeRegistry();
+        CountingHandler sun = new CountingHandler(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth");
+        CountingHandler compass = new CountingHandler(7, "Compass");
+        registry.register(sun);
+        registry.register(compass);
+
+        assertSame(sun, registry.resolve(CommandParser.MODE_SUN_AZIMUTH, "SunAzimuth"));
+        assertSame(compass, registry.resolve(7, null));                            // Binary frame
+        assertSame(compass, registry.resolve(CommandParser.MODE_UNKNOWN, "compass")); // Text, unknown to the parser
+        assertNull(registry.resolve(CommandParser.MODE_UNKNOWN, "Tides"));
+        assertNull(registry.get(1000));
+        assertEquals(2, registry.getHandlers().size());
+    }
+
+    @Test
+    public void register_replacesSameMode() {
+        MonitoringModeRegistry registry = new MonitoringModeRegistry();
+        registry.register(new CountingHandler(CommandParser.MODE_HEART_RATE, "HeartRate"));
+        CountingHandler replacement = new CountingHandler(CommandParser.MODE_HEART_RATE, "HeartRate");
+        registry.register(replacement);
+
+        assertSame(replacement, registry.get(CommandParser.MODE_HEART_RATE));
+        assertEquals(1, registry.getHandlers().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_rejectsUnknownMode() {
+        new MonitoringModeRegistry().register(new CountingHandler(CommandParser.MODE_UNKNOWN, "None"));
+    }
+
+    @Test
+    public void handler_countsVibrations() {
+        CountingHandler handler = new CountingHandler(CommandParser.MODE_MOON_AZIMUTH, "MoonAzimuth");
+        assertTrue(handler.handleVibrate(50, 3, 100, 50));
+        assertFalse(handler.handleVibrate(0, 3, 100, 50));
+
+        assertEquals(1, handler.played);
+        assertEquals(1, handler.getVibrations());
+        assertEquals(1, handler.getRejected());
+    }
+
+    @Test
+    public void binaryMonitoringFrame_passesModeIdThrough() {
+        CommandParser parser = new CommandParser();
+        byte[] frame = new byte[16];
+        int end = BinaryProtocol.beginFrame(frame, 0, BinaryProtocol.OP_MONITORING);
+        end = BinaryProtocol.writeVarint(frame, end, 7);
+        int length = BinaryProtocol.endFrame(frame, 0, end);
+
+        assertEquals(CommandParser.RESULT_MONITORING, parser.parseBinary(frame, 0, length));
+        assertEquals(7, parser.getMonitoringMode());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReconnectBackoff}.
+ */
+public class ReconnectBackoffTest {
+
+    @Test
+    public void delays_doubleWithinJitterUpToMax() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000, new Random(42));
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000, 1000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay + " for ceiling " + ceiling, delay >= ceiling / 2 && delay <= ceiling);
+        }
+        assertEquals(ceilings.length, backoff.getAttempts());
+    }
+
+    @Test
+    public void reset_startsOverFromInitialDelay() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 30_000, new Random(7));
+        for (int i = 0; i < 100; i++) {
+            backoff.nextDelayMillis(); // Far past the point where the ceiling would overflow
+        }
+        assertTrue(backoff.nextDelayMillis() <= 30_000);
+
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the off-device {@link ServerTransport}s.
+ */
+public class ServerTransportTest {
+
+    @Test
+    public void inMemory_carriesBytesBothWays() throws IOException {
+        InMemoryServerTransport transport = new InMemoryServerTransport("UserID-1-SmartWatchID-2", 8);
+        ByteTransport client = transport.connect("Android-7", "00:11:22:33:44:55");
+        ByteTransport server = transport.accept();
+        assertEquals("Android-7", server.getRemoteName());
+        assertEquals("00:11:22:33:44:55", server.getRemoteAddress());
+
+        // Larger than the pipe: the reader drains while the writer waits for space
+        byte[] command = "Vibrate:50,3,1000,200\n".getBytes(StandardCharsets.US_ASCII);
+        Thread writer = new Thread(() -> {
+            try {
+                client.getOutputStream().write(command);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        assertArrayEquals(command, readFully(server.getInputStream(), command.length));
+
+        server.getOutputStream().write('A');
+        assertEquals('A', client.getInputStream().read());
+
+        client.close();
+        assertEquals(-1, server.getInputStream().read());
+    }
+
+    @Test(expected = IOException.class)
+    public void inMemory_closeUnblocksAccept() throws IOException {
+        InMemoryServerTransport transport = new InMemoryServerTransport("watch");
+        new Thread(transport::close).start();
+        transport.accept();
+    }
+
+    @Test
+    public void tcp_acceptsLoopbackClient() throws IOException {
+        try (TcpServerTransport transport = new TcpServerTransport(0, "watch");
+             Socket client = new Socket("127.0.0.1", transport.getPort())) {
+            ByteTransport server = transport.accept();
+            assertEquals("127.0.0.1", server.getRemoteAddress()); // Same on every reconnection
+            client.getOutputStream().write("Monitoring:HeartRate\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("Monitoring", new String(readFully(server.getInputStream(), 10), StandardCharsets.US_ASCII));
+            server.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream input, int length) throws IOException {
+        byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = input.read(data, read, length - read);
+            assertTrue("stream ended early", n > 0);
+            read += n;
+        }
+        return data;
+    }
+}
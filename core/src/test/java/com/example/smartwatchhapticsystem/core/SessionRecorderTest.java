@@ -0,0 +1,95 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SessionRecorder}, {@link SessionLogReader} and {@link SessionReplayer}.
+ */
+public class SessionRecorderTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedFrames_readBackInOrder() throws Exception {
+        File directory = folder.getRoot();
+        try (SessionRecorder recorder = new SessionRecorder(directory, "test", 4096, 2)) {
+            record(recorder, SessionRecorder.TYPE_INBOUND_TEXT, 7, "Monitoring:SunAzimuth");
+            OutputStream output = recorder.wrapOutput(7, new ByteArrayOutputStream());
+            output.write(ascii("Stats:in=0/0\n"));
+            record(recorder, SessionRecorder.TYPE_INBOUND_BINARY, 8, "\u0004\u0000");
+        }
+
+        List<SessionLogReader.Record> records = SessionLogReader.read(directory, "test");
+        assertEquals(3, records.size());
+        assertEquals(SessionRecorder.TYPE_INBOUND_TEXT, records.get(0).type);
+        assertEquals("Monitoring:SunAzimuth", text(records.get(0)));
+        assertEquals(SessionRecorder.TYPE_OUTBOUND, records.get(1).type);
+        assertEquals("Stats:in=0/0\n", text(records.get(1)));
+        assertEquals(8, records.get(2).sessionId);
+        assertTrue(records.get(1).timeMicros >= records.get(0).timeMicros);
+        assertEquals(List.of(7, 8), SessionLogReader.sessionIds(records));
+    }
+
+    @Test
+    public void rotation_keepsNewestRecordsWithinBound() throws Exception {
+        File directory = folder.getRoot();
+        try (SessionRecorder recorder = new SessionRecorder(directory, "test", 256, 2)) {
+            for (int i = 0; i < 100; i++) {
+                record(recorder, SessionRecorder.TYPE_INBOUND_TEXT, 1, "Vibrate:50,3,1000," + i);
+            }
+            assertEquals(100, recorder.getRecordsWritten());
+        }
+
+        assertFalse(new File(directory, "test-2.bin").exists());
+        List<SessionLogReader.Record> records = SessionLogReader.read(directory, "test");
+        assertTrue(records.size() > 0 && records.size() < 100);
+        for (int i = 0; i < records.size(); i++) {
+            int expected = 100 - records.size() + i;
+            assertEquals("Vibrate:50,3,1000," + expected, text(records.get(i)));
+        }
+    }
+
+    @Test
+    public void replay_writesInboundFramesWithDelimiters() throws Exception {
+        File directory = folder.getRoot();
+        try (SessionRecorder recorder = new SessionRecorder(directory, "test", 4096, 2)) {
+            record(recorder, SessionRecorder.TYPE_INBOUND_TEXT, 1, "Monitoring:SunAzimuth");
+            record(recorder, SessionRecorder.TYPE_OUTBOUND, 1, "ok");
+            record(recorder, SessionRecorder.TYPE_INBOUND_TEXT, 2, "Stats:");
+            record(recorder, SessionRecorder.TYPE_INBOUND_TEXT, 1, "Vibrate:50,3,1000,200");
+        }
+
+        SessionReplayer replayer = new SessionReplayer(SessionLogReader.read(directory, "test"), 1000);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        SessionReplayer.Report report = replayer.replay(1, target);
+
+        assertEquals("Monitoring:SunAzimuth\nVibrate:50,3,1000,200\n", target.toString("US-ASCII"));
+        assertEquals(2, report.frames);
+        assertEquals(2, report.expectedOutboundBytes);
+        assertEquals(2, report.lateness.getCount());
+    }
+
+    private static void record(SessionRecorder recorder, int type, int sessionId, String payload) {
+        byte[] bytes = ascii(payload);
+        recorder.record(type, sessionId, bytes, 0, bytes.length);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String text(SessionLogReader.Record record) {
+        return new String(record.payload, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TokenBucket}.
+ */
+public class TokenBucketTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void burstIsAdmitted_thenTheSustainedRate() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.configure(3, 10); // One token every 100 ms
+
+        long now = 5_000 * MILLIS;
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now + 50 * MILLIS));
+        assertTrue(bucket.tryAcquire(now + 100 * MILLIS));
+        assertFalse(bucket.tryAcquire(now + 150 * MILLIS));
+
+        // A long pause refills up to the burst only
+        now += 60_000 * MILLIS;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+
+        assertEquals(7, bucket.getAdmitted());
+        assertEquals(3, bucket.getLimited());
+    }
+
+    @Test
+    public void zeroRate_admitsEverything() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.configure(1, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(bucket.tryAcquire(i));
+        }
+        assertEquals(0, bucket.getLimited());
+    }
+}
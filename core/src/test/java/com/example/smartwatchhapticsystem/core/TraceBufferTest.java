@@ -0,0 +1,73 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TraceBuffer}.
+ */
+public class TraceBufferTest {
+
+    @Test
+    public void ring_keepsNewestEventsInOrder() {
+        TraceBuffer trace = new TraceBuffer(4);
+        for (int i = 1; i <= 6; i++) {
+            trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, 0, i);
+        }
+
+        List<Long> args = new ArrayList<>();
+        assertEquals(4, trace.forEach((time, event, arg0, arg1) -> args.add(arg1)));
+        assertEquals(List.of(3L, 4L, 5L, 6L), args);
+        assertEquals(6, trace.getRecorded());
+    }
+
+    @Test
+    public void dumpWhileRecording_neverReturnsTornEvents() throws InterruptedException {
+        TraceBuffer trace = new TraceBuffer(8);
+        Thread writer = new Thread(() -> {
+            for (long i = 0; i < 200_000; i++) {
+                trace.record(TraceBuffer.EVENT_VIBRATE_QUEUED, i, -i);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            trace.forEach((time, event, arg0, arg1) -> {
+                assertEquals(TraceBuffer.EVENT_VIBRATE_QUEUED, event);
+                assertEquals(-arg0, arg1); // Both arguments come from the same record() call
+            });
+        }
+        writer.join();
+    }
+
+    @Test
+    public void level_gatesEvents() {
+        TraceBuffer trace = new TraceBuffer(8);
+        trace.record(TraceBuffer.EVENT_HEART_RATE, 72, 0);        // Verbose: off by default
+        trace.record(TraceBuffer.EVENT_VIBRATE_PLAYED, 0, 850);   // Debug
+        assertEquals(1, trace.getRecorded());
+
+        trace.setLevel(TraceBuffer.LEVEL_OFF);
+        trace.record(TraceBuffer.EVENT_PARSE_FAILED, -2, 9);
+        assertEquals(1, trace.getRecorded());
+
+        trace.setLevel(TraceBuffer.LEVEL_VERBOSE);
+        trace.record(TraceBuffer.EVENT_HEART_RATE, 72, 0);
+        assertEquals(2, trace.getRecorded());
+    }
+
+    @Test
+    public void textDump_listsEventsThenSummary() {
+        TraceBuffer trace = new TraceBuffer(8);
+        trace.record(TraceBuffer.EVENT_VIBRATE_PLAYED, 1, 850);
+
+        String[] lines = new String(trace.formatText(), StandardCharsets.US_ASCII).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].matches("Trace:-\\d+us VIBRATE_PLAYED 1 850"));
+        assertEquals("Trace:End,1,Debug", lines[1]);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WakeLeases}.
+ */
+public class WakeLeasesTest {
+
+    /** Records what the leases asked of the platform lock. */
+    private static final class RecordingLock implements WakeLeases.PowerLock {
+        boolean held;
+        long timeoutMillis;
+        int holds;
+
+        @Override
+        public void hold(long timeoutMillis) {
+            held = true;
+            this.timeoutMillis = timeoutMillis;
+            holds++;
+        }
+
+        @Override
+        public void release() {
+            held = false;
+        }
+    }
+
+    @Test
+    public void lock_isHeldUntilTheLatestDeadline() {
+        RecordingLock lock = new RecordingLock();
+        WakeLeases leases = new WakeLeases(lock);
+
+        leases.lease(WakeLeases.REASON_SESSION, 10_000);
+        assertTrue(lock.held);
+        assertTrue(lock.timeoutMillis > 9_000 && lock.timeoutMillis <= 10_000 + WakeLeases.RENEW_SLACK_MILLIS);
+
+        // A shorter lease of another need does not shorten the lock
+        leases.lease(WakeLeases.REASON_HAPTIC, 100);
+        assertTrue(lock.timeoutMillis > 9_000);
+        assertEquals(1, lock.holds);
+
+        // Ending the long lease leaves the lock to the short one
+        leases.release(WakeLeases.REASON_SESSION);
+        assertTrue(lock.held);
+        assertTrue(lock.timeoutMillis <= 100);
+
+        leases.release(WakeLeases.REASON_HAPTIC);
+        assertFalse(lock.held);
+        assertFalse(leases.isHeld());
+        assertEquals(1, leases.getAcquisitions());
+        assertEquals(2, leases.getLeases());
+        assertEquals(1, leases.getLeases(WakeLeases.REASON_SESSION));
+    }
+
+    @Test
+    public void expiredLease_countsHeldTimeOnlyUntilItsDeadline() throws Exception {
+        WakeLeases leases = new WakeLeases(WakeLeases.PowerLock.NONE, 0);
+
+        leases.lease(WakeLeases.REASON_TELEMETRY, 20);
+        Thread.sleep(80);
+        assertFalse(leases.isHeld());
+        long heldMillis = leases.getHeldMillis();
+        assertTrue("held " + heldMillis, heldMillis >= 19 && heldMillis <= 21);
+
+        // The next lease starts a new acquisition
+        leases.lease(WakeLeases.REASON_TELEMETRY, 1000);
+        assertTrue(leases.isHeld());
+        assertEquals(2, leases.getAcquisitions());
+        leases.releaseAll();
+        assertFalse(leases.isHeld());
+    }
+
+    @Test
+    public void renewalsWithinTheSlack_doNotReacquireThePlatformLock() throws Exception {
+        RecordingLock lock = new RecordingLock();
+        WakeLeases leases = new WakeLeases(lock);
+
+        // One renewal per inbound frame: only the first reaches the platform
+        for (int i = 0; i < 20; i++) {
+            leases.lease(WakeLeases.REASON_SESSION, 10_000);
+            Thread.sleep(1);
+        }
+        assertEquals(1, lock.holds);
+        assertEquals(20, leases.getLeases(WakeLeases.REASON_SESSION));
+
+        // Past the slack, the lock is extended again
+        Thread.sleep(WakeLeases.RENEW_SLACK_MILLIS);
+        leases.lease(WakeLeases.REASON_SESSION, 10_000);
+        assertEquals(2, lock.holds);
+        assertTrue(lock.timeoutMillis > 10_000);
+        leases.releaseAll();
+    }
+}
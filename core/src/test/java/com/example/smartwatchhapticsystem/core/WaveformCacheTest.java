@@ -0,0 +1,48 @@
+package com.example.smartwatchhapticsystem.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WaveformCache} and {@link WaveformBuilder}.
+ */
+public class WaveformCacheTest {
+
+    @Test
+    public void builder_producesPulseTrain() {
+        assertArrayEquals(new long[]{0, 100, 50, 100, 50}, WaveformBuilder.timings(2, 100, 50));
+        assertArrayEquals(new int[]{0, 200, 0, 200, 0}, WaveformBuilder.amplitudes(200, 2));
+    }
+
+    @Test
+    public void repeatedTuple_isServedFromCache() {
+        int[] builds = {0};
+        WaveformCache<long[]> cache = new WaveformCache<>(4, (timings, amplitudes) -> {
+            builds[0]++;
+            return timings;
+        });
+
+        long[] first = cache.get(100, 3, 200, 100);
+        assertSame(first, cache.get(100, 3, 200, 100));
+        assertNotSame(first, cache.get(101, 3, 200, 100));
+
+        assertEquals(2, builds[0]);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void fullCache_evictsLeastRecentlyUsed() {
+        WaveformCache<long[]> cache = new WaveformCache<>(2, (timings, amplitudes) -> timings);
+
+        long[] a = cache.get(1, 1, 10, 10);
+        long[] b = cache.get(2, 1, 10, 10);
+        cache.get(1, 1, 10, 10);            // a is now most recently used
+        cache.get(3, 1, 10, 10);            // evicts b
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(1, 1, 10, 10));
+        assertNotSame(b, cache.get(2, 1, 10, 10));
+    }
+}